@@ -0,0 +1,436 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Unpacks a zip or gzipped tar archive into a directory as it is read from a response body, so
+ * the archive itself is never written to disk.
+ *
+ * <p>Entries are first written to a staging directory inside the target directory, and only
+ * moved into place once the whole archive has been read, so a download that fails leaves what
+ * was there before untouched. Files already in the directory are replaced by entries of the same
+ * name and kept otherwise. Entries that would land outside the directory fail the extraction.
+ */
+final class ArchiveExtractor {
+
+    static final String ZIP = "zip";
+    static final String TAR_GZ = "tar.gz";
+
+    static final String STAGING_NAME = ".extract" + FileDownloader.PARTIAL_SUFFIX;
+
+    private static final int TAR_BLOCK = 512;
+
+    private final File directory;
+    private final File staging;
+    private final String format;
+    private final HttpRequestHandler.ProgressEmitter progress;
+
+    private ContentHasher hasher;
+    private JSObject hashes;
+    private int entries = 0;
+    private long contentLength = 0;
+    private Source source;
+
+    /**
+     * @param directory the directory to unpack the archive into
+     * @param format the format of the archive, {@link #ZIP} or {@link #TAR_GZ}
+     * @param progress receives an event for every entry unpacked, with the entry's name if it is a
+     *                 {@link HttpRequestHandler.EntryProgressEmitter}
+     * @throws IllegalArgumentException if the format isn't supported
+     */
+    ArchiveExtractor(File directory, String format, HttpRequestHandler.ProgressEmitter progress) {
+        if (!ZIP.equals(format) && !TAR_GZ.equals(format)) {
+            throw new IllegalArgumentException("Unsupported archive format " + format + ", expected zip or tar.gz");
+        }
+        this.directory = directory;
+        this.staging = new File(directory, STAGING_NAME);
+        this.format = format;
+        this.progress = progress;
+    }
+
+    /**
+     * Sets the hasher the archive is hashed with as it is read, and whose expected digest it must
+     * match for its entries to be moved into place
+     */
+    void setHasher(ContentHasher hasher) {
+        this.hasher = hasher;
+    }
+
+    /**
+     * Returns the digests of the archive, or null if it wasn't hashed
+     */
+    JSObject getHashes() {
+        return hashes;
+    }
+
+    /**
+     * Returns how many entries were unpacked
+     */
+    int getEntries() {
+        return entries;
+    }
+
+    /**
+     * Unpacks the archive read from a body, which is read to its end
+     * @param in the body
+     * @param contentLength the length of the body, or 0 if it isn't known
+     * @throws IOException if the archive can't be read or unpacked, in which case the directory is
+     *                     left as it was
+     */
+    void extract(InputStream in, long contentLength) throws IOException {
+        this.contentLength = contentLength;
+        source = new Source(in, hasher);
+        deleteRecursively(staging);
+        if (!staging.mkdirs()) {
+            throw new IOException("Unable to create " + staging);
+        }
+        try {
+            if (ZIP.equals(format)) {
+                extractZip();
+            } else {
+                extractTar(new GZIPInputStream(source, BufferPool.BUFFER_SIZE));
+            }
+            // whatever follows the last entry is read too, so the hash covers the whole archive
+            drain(source, Long.MAX_VALUE);
+            if (hasher != null) {
+                hashes = hasher.verify();
+            }
+            moveInto(staging, directory);
+        } finally {
+            deleteRecursively(staging);
+        }
+    }
+
+    private void extractZip() throws IOException {
+        ZipInputStream zip = new ZipInputStream(source);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            File target = resolve(entry.getName());
+            if (entry.isDirectory()) {
+                mkdirs(target);
+            } else {
+                write(zip, target, Long.MAX_VALUE);
+            }
+            entryDone(entry.getName());
+        }
+    }
+
+    private void extractTar(InputStream in) throws IOException {
+        byte[] header = new byte[TAR_BLOCK];
+        String longName = null;
+        while (readBlock(in, header) && !isZero(header)) {
+            String name = longName != null ? longName : getTarName(header);
+            longName = null;
+            long size = parseNumber(header, 124, 12);
+            long padding = (TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK;
+            switch (header[156]) {
+                case 'L':
+                    // GNU long name of the next entry
+                    longName = trimNul(readString(in, size));
+                    break;
+                case 'x':
+                    // pax extended header of the next entry, only its path matters here
+                    longName = getPaxPath(readString(in, size));
+                    break;
+                case '5':
+                    mkdirs(resolve(name));
+                    entryDone(name);
+                    drain(in, size);
+                    break;
+                case '0':
+                case '7':
+                case 0:
+                    write(in, resolve(name), size);
+                    entryDone(name);
+                    break;
+                default:
+                    // links, devices and global headers have nothing to unpack
+                    drain(in, size);
+            }
+            drain(in, padding);
+        }
+    }
+
+    /**
+     * Returns where an entry goes in the staging directory
+     * @throws IOException if the entry would land outside it
+     */
+    private File resolve(String name) throws IOException {
+        File target = new File(staging, name);
+        String root = staging.getCanonicalPath();
+        String path = target.getCanonicalPath();
+        if (!path.equals(root) && !path.startsWith(root + File.separator)) {
+            throw new IOException("Archive entry " + name + " is outside the target directory");
+        }
+        return target;
+    }
+
+    private void write(InputStream in, File target, long size) throws IOException {
+        mkdirs(target.getParentFile());
+        byte[] buffer = BufferPool.acquireBytes();
+        try (OutputStream out = new FileOutputStream(target)) {
+            long remaining = size;
+            while (remaining > 0) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new RequestCancelledException();
+                }
+                int len = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (len == -1) {
+                    if (size == Long.MAX_VALUE) {
+                        break;
+                    }
+                    throw new IOException("Unexpected end of archive in " + target.getName());
+                }
+                out.write(buffer, 0, len);
+                remaining -= len;
+            }
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    private void entryDone(String name) {
+        entries++;
+        if (progress instanceof HttpRequestHandler.EntryProgressEmitter) {
+            ((HttpRequestHandler.EntryProgressEmitter) progress).emitEntry(name, entries, source.count, contentLength);
+        } else {
+            progress.emit(source.count, contentLength);
+        }
+    }
+
+    /**
+     * Moves what was unpacked into the directory, replacing files of the same name
+     */
+    private static void moveInto(File from, File to) throws IOException {
+        File[] children = from.listFiles();
+        if (children == null) {
+            return;
+        }
+        mkdirs(to);
+        for (File child : children) {
+            File target = new File(to, child.getName());
+            if (child.isDirectory()) {
+                if (target.isFile()) {
+                    target.delete();
+                }
+                moveInto(child, target);
+            } else {
+                if (target.isDirectory()) {
+                    deleteRecursively(target);
+                }
+                if (!child.renameTo(target) && !(target.delete() && child.renameTo(target))) {
+                    throw new IOException("Unable to move " + child.getName() + " to " + to);
+                }
+            }
+        }
+    }
+
+    private static void mkdirs(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Reads a whole block, returning false at the end of the stream
+     */
+    private static boolean readBlock(InputStream in, byte[] block) throws IOException {
+        int read = 0;
+        while (read < block.length) {
+            int len = in.read(block, read, block.length - read);
+            if (len == -1) {
+                if (read == 0) {
+                    return false;
+                }
+                throw new IOException("Unexpected end of archive");
+            }
+            read += len;
+        }
+        return true;
+    }
+
+    private static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String getTarName(byte[] header) {
+        String name = trimNul(new String(header, 0, 100, StandardCharsets.UTF_8));
+        boolean ustar = new String(header, 257, 5, StandardCharsets.US_ASCII).equals("ustar");
+        String prefix = ustar ? trimNul(new String(header, 345, 155, StandardCharsets.UTF_8)) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    /**
+     * Parses a numeric header field, written in octal, or in base-256 when it is too large for it
+     */
+    static long parseNumber(byte[] header, int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) {
+            long value = header[offset] & 0x7f;
+            for (int i = 1; i < length; i++) {
+                value = (value << 8) | (header[offset + i] & 0xff);
+            }
+            return value;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                if (value > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Invalid tar header");
+            }
+            value = (value << 3) + (b - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Returns the path in pax extended header records, which are written as "length key=value\n"
+     */
+    static String getPaxPath(String records) {
+        int position = 0;
+        while (position < records.length()) {
+            int space = records.indexOf(' ', position);
+            if (space < 0) {
+                break;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(records.substring(position, space));
+            } catch (NumberFormatException e) {
+                break;
+            }
+            // the length counts bytes, which matches chars for the ASCII keys looked for
+            int end = Math.min(records.length(), position + length);
+            String record = records.substring(space + 1, end);
+            if (record.startsWith("path=")) {
+                return record.substring("path=".length(), record.endsWith("\n") ? record.length() - 1 : record.length());
+            }
+            if (length <= 0) {
+                break;
+            }
+            position = end;
+        }
+        return null;
+    }
+
+    private static String readString(InputStream in, long size) throws IOException {
+        if (size > 1024 * 1024) {
+            throw new IOException("Invalid tar header");
+        }
+        byte[] bytes = new byte[(int) size];
+        int read = 0;
+        while (read < bytes.length) {
+            int len = in.read(bytes, read, bytes.length - read);
+            if (len == -1) {
+                throw new IOException("Unexpected end of archive");
+            }
+            read += len;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String trimNul(String value) {
+        int nul = value.indexOf('\0');
+        return nul >= 0 ? value.substring(0, nul) : value;
+    }
+
+    private static void drain(InputStream in, long size) throws IOException {
+        byte[] buffer = BufferPool.acquireBytes();
+        try {
+            long remaining = size;
+            while (remaining > 0) {
+                int len = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (len == -1) {
+                    if (size == Long.MAX_VALUE) {
+                        return;
+                    }
+                    throw new IOException("Unexpected end of archive");
+                }
+                remaining -= len;
+            }
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * The body of the response, counted and hashed as the archive is read from it
+     */
+    private static final class Source extends FilterInputStream {
+
+        private final ContentHasher hasher;
+        long count = 0;
+
+        Source(InputStream in, ContentHasher hasher) {
+            super(in);
+            this.hasher = hasher;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+                if (hasher != null) {
+                    hasher.update(new byte[] { (byte) b }, 0, 1);
+                }
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+                if (hasher != null) {
+                    hasher.update(b, off, read);
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes have to be hashed too
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(0, read);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
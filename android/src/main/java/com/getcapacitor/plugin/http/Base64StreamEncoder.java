@@ -0,0 +1,103 @@
+package com.getcapacitor.plugin.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Base64-encodes a response body as it is read, so the raw body is never held in memory as a
+ * whole. The output is the same as {@code android.util.Base64.encodeToString(body, DEFAULT)}:
+ * lines of 76 characters, each followed by a line feed, including the last one.
+ */
+final class Base64StreamEncoder {
+
+    private static final byte[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(
+        StandardCharsets.US_ASCII
+    );
+
+    // 19 groups of 4 characters make a 76 character line
+    private static final int LINE_GROUPS = 19;
+
+    // upper bound on how much a Content-Length header can make us allocate up front
+    private static final long MAX_PRESIZE_BYTES = 256L * 1024 * 1024;
+
+    private Base64StreamEncoder() {}
+
+    /**
+     * Encodes a whole body
+     * @param in the body; it is closed afterwards
+     * @param contentLength the length of the body in bytes if known, or -1; used to size the output
+     * @return the encoded body
+     */
+    static String encode(InputStream in, long contentLength) throws IOException {
+        byte[] out = new byte[contentLength > 0 ? encodedLength(Math.min(contentLength, MAX_PRESIZE_BYTES)) : 1024];
+        int op = 0;
+        int groups = 0;
+        int carry = 0;
+        byte[] buffer = BufferPool.acquireBytes();
+        try {
+            int read;
+            while ((read = in.read(buffer, carry, buffer.length - carry)) != -1) {
+                int available = carry + read;
+                int whole = available - available % 3;
+                int wholeGroups = whole / 3;
+                out = ensureCapacity(out, op, wholeGroups * 4 + (groups + wholeGroups) / LINE_GROUPS);
+                for (int p = 0; p < whole; p += 3) {
+                    int bits = ((buffer[p] & 0xFF) << 16) | ((buffer[p + 1] & 0xFF) << 8) | (buffer[p + 2] & 0xFF);
+                    out[op++] = ALPHABET[(bits >> 18) & 0x3F];
+                    out[op++] = ALPHABET[(bits >> 12) & 0x3F];
+                    out[op++] = ALPHABET[(bits >> 6) & 0x3F];
+                    out[op++] = ALPHABET[bits & 0x3F];
+                    if (++groups == LINE_GROUPS) {
+                        out[op++] = '\n';
+                        groups = 0;
+                    }
+                }
+                // keep the last one or two bytes for the next group
+                carry = available - whole;
+                System.arraycopy(buffer, whole, buffer, 0, carry);
+            }
+
+            out = ensureCapacity(out, op, carry > 0 ? 5 : 1);
+            if (carry == 1) {
+                int bits = (buffer[0] & 0xFF) << 16;
+                out[op++] = ALPHABET[(bits >> 18) & 0x3F];
+                out[op++] = ALPHABET[(bits >> 12) & 0x3F];
+                out[op++] = '=';
+                out[op++] = '=';
+                out[op++] = '\n';
+            } else if (carry == 2) {
+                int bits = ((buffer[0] & 0xFF) << 16) | ((buffer[1] & 0xFF) << 8);
+                out[op++] = ALPHABET[(bits >> 18) & 0x3F];
+                out[op++] = ALPHABET[(bits >> 12) & 0x3F];
+                out[op++] = ALPHABET[(bits >> 6) & 0x3F];
+                out[op++] = '=';
+                out[op++] = '\n';
+            } else if (op > 0 && groups != 0) {
+                out[op++] = '\n';
+            }
+        } finally {
+            BufferPool.release(buffer);
+            in.close();
+        }
+        return new String(out, 0, op, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Returns the encoded length of {@code length} bytes, line feeds included
+     */
+    static int encodedLength(long length) {
+        long groups = (length + 2) / 3;
+        return (int) (groups * 4 + groups / LINE_GROUPS + 1);
+    }
+
+    private static byte[] ensureCapacity(byte[] out, int used, int needed) {
+        if (out.length - used >= needed) {
+            return out;
+        }
+        long grown = Math.max((long) used + needed, out.length + (out.length >> 1));
+        byte[] larger = new byte[(int) Math.min(grown, Integer.MAX_VALUE - 8)];
+        System.arraycopy(out, 0, larger, 0, used);
+        return larger;
+    }
+}
@@ -0,0 +1,69 @@
+package com.getcapacitor.plugin.http;
+
+import java.util.ArrayDeque;
+
+/**
+ * Recycles the fixed-size byte and char buffers used to copy and decode response bodies, so
+ * reading a body doesn't allocate fresh scratch buffers on every request
+ */
+final class BufferPool {
+
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    private static final int MAX_POOLED_BUFFERS = 8;
+
+    private static final ArrayDeque<byte[]> byteBuffers = new ArrayDeque<>();
+    private static final ArrayDeque<char[]> charBuffers = new ArrayDeque<>();
+
+    private BufferPool() {}
+
+    /**
+     * Returns a byte buffer of {@link #BUFFER_SIZE} bytes, which should be handed back with
+     * {@link #release(byte[])} when done
+     */
+    static byte[] acquireBytes() {
+        synchronized (byteBuffers) {
+            byte[] buffer = byteBuffers.pollLast();
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return new byte[BUFFER_SIZE];
+    }
+
+    static void release(byte[] buffer) {
+        if (buffer.length != BUFFER_SIZE) {
+            return;
+        }
+        synchronized (byteBuffers) {
+            if (byteBuffers.size() < MAX_POOLED_BUFFERS) {
+                byteBuffers.addLast(buffer);
+            }
+        }
+    }
+
+    /**
+     * Returns a char buffer of {@link #BUFFER_SIZE} chars, which should be handed back with
+     * {@link #release(char[])} when done
+     */
+    static char[] acquireChars() {
+        synchronized (charBuffers) {
+            char[] buffer = charBuffers.pollLast();
+            if (buffer != null) {
+                return buffer;
+            }
+        }
+        return new char[BUFFER_SIZE];
+    }
+
+    static void release(char[] buffer) {
+        if (buffer.length != BUFFER_SIZE) {
+            return;
+        }
+        synchronized (charBuffers) {
+            if (charBuffers.size() < MAX_POOLED_BUFFERS) {
+                charBuffers.addLast(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.getcapacitor.plugin.http;
+
+import android.text.TextUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The headers of a stored response, looked up without regard to case
+ */
+final class CacheHeaders {
+
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * Copies the header fields of a response, leaving out the status line
+     */
+    static CacheHeaders from(Map<String, List<String>> fields) {
+        CacheHeaders result = new CacheHeaders();
+        for (Map.Entry<String, List<String>> field : fields.entrySet()) {
+            if (field.getKey() != null && field.getValue() != null) {
+                result.headers.put(field.getKey(), new ArrayList<>(field.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values of a header joined with commas, or null if it is absent
+     */
+    String get(String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : TextUtils.join(", ", values);
+    }
+
+    void set(String name, String value) {
+        headers.put(name, new ArrayList<>(Collections.singletonList(value)));
+    }
+
+    void remove(String name) {
+        headers.remove(name);
+    }
+
+    /**
+     * Replaces the headers also present in {@code update}, as a 304 response does (RFC 7234 4.3.4)
+     * @param update the headers of the 304 response
+     * @param excluded names of headers that are not to be replaced
+     */
+    void merge(CacheHeaders update, String... excluded) {
+        for (Map.Entry<String, List<String>> header : update.headers.entrySet()) {
+            boolean skip = false;
+            for (String name : excluded) {
+                skip |= name.equalsIgnoreCase(header.getKey());
+            }
+            if (!skip) {
+                headers.put(header.getKey(), new ArrayList<>(header.getValue()));
+            }
+        }
+    }
+
+    Map<String, List<String>> toMap() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            json.put(header.getKey(), new JSONArray(header.getValue()));
+        }
+        return json;
+    }
+
+    static CacheHeaders fromJSON(JSONObject json) throws JSONException {
+        CacheHeaders result = new CacheHeaders();
+        Iterator<String> names = json.keys();
+        while (names.hasNext()) {
+            String name = names.next();
+            JSONArray values = json.getJSONArray(name);
+            List<String> list = new ArrayList<>(values.length());
+            for (int i = 0; i < values.length(); i++) {
+                list.add(values.getString(i));
+            }
+            result.headers.put(name, list);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,222 @@
+package com.getcapacitor.plugin.http;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * The parts of RFC 7234 that decide whether a response may be stored and for how long it stays
+ * fresh, for a private cache
+ */
+final class CachePolicy {
+
+    // status codes that may be stored without explicit freshness information (RFC 7231 6.1)
+    private static final int[] HEURISTICALLY_CACHEABLE = { 200, 203, 204, 300, 301, 404, 405, 410, 414, 501 };
+
+    private static final String[] DATE_FORMATS = {
+        "EEE, dd MMM yyyy HH:mm:ss zzz",
+        "EEEE, dd-MMM-yy HH:mm:ss zzz",
+        "EEE MMM d HH:mm:ss yyyy"
+    };
+
+    private CachePolicy() {}
+
+    /**
+     * Parsed Cache-Control directives. Directive names are lowercase; directives without an
+     * argument map to an empty string.
+     */
+    static final class CacheControl {
+
+        private final Map<String, String> directives;
+
+        private CacheControl(Map<String, String> directives) {
+            this.directives = directives;
+        }
+
+        static CacheControl parse(String... values) {
+            Map<String, String> directives = new HashMap<>();
+            for (String value : values) {
+                if (value == null) {
+                    continue;
+                }
+                for (String directive : value.split(",")) {
+                    String trimmed = directive.trim();
+                    if (trimmed.isEmpty()) {
+                        continue;
+                    }
+                    int equals = trimmed.indexOf('=');
+                    if (equals == -1) {
+                        directives.put(trimmed.toLowerCase(Locale.ROOT), "");
+                    } else {
+                        String argument = trimmed.substring(equals + 1).trim().replace("\"", "");
+                        directives.put(trimmed.substring(0, equals).trim().toLowerCase(Locale.ROOT), argument);
+                    }
+                }
+            }
+            return new CacheControl(directives);
+        }
+
+        boolean has(String directive) {
+            return directives.containsKey(directive);
+        }
+
+        /**
+         * Returns the number of seconds given to a directive, -1 if it is absent or has no
+         * valid argument
+         */
+        long seconds(String directive) {
+            String argument = directives.get(directive);
+            if (argument == null || argument.isEmpty()) {
+                return -1;
+            }
+            try {
+                return Math.max(0, Long.parseLong(argument));
+            } catch (NumberFormatException e) {
+                // out of range values count as "forever" (RFC 7234 1.2.1)
+                return argument.matches("\\d+") ? Integer.MAX_VALUE : -1;
+            }
+        }
+    }
+
+    /**
+     * Returns whether a response to a GET request may be stored
+     * @param status the response status
+     * @param headers the response headers
+     * @param request the Cache-Control directives of the request
+     */
+    static boolean isStorable(int status, CacheHeaders headers, CacheControl request) {
+        if (request.has("no-store")) {
+            return false;
+        }
+        CacheControl response = CacheControl.parse(headers.get("Cache-Control"));
+        if (response.has("no-store")) {
+            return false;
+        }
+        String vary = headers.get("Vary");
+        if (vary != null && vary.trim().equals("*")) {
+            return false;
+        }
+        boolean explicit = response.has("max-age") || response.has("public") || headers.get("Expires") != null;
+        boolean validated = headers.get("ETag") != null || headers.get("Last-Modified") != null;
+        if (!explicit && !validated) {
+            // it would be stale straight away and could not be revalidated
+            return false;
+        }
+        return explicit || isHeuristicallyCacheable(status);
+    }
+
+    /**
+     * Returns how long a response stays fresh after it was generated, in milliseconds
+     * @param status the response status
+     * @param headers the response headers
+     * @param responseTime when the response was received, used when it has no Date
+     */
+    static long freshnessLifetime(int status, CacheHeaders headers, long responseTime) {
+        CacheControl response = CacheControl.parse(headers.get("Cache-Control"));
+        long maxAge = response.seconds("max-age");
+        if (maxAge >= 0) {
+            return maxAge * 1000;
+        }
+        long date = parseDate(headers.get("Date"), responseTime);
+        String expires = headers.get("Expires");
+        if (expires != null) {
+            long expiresAt = parseDate(expires, -1);
+            // an invalid Expires, such as "0", means already expired
+            return expiresAt == -1 ? 0 : Math.max(0, expiresAt - date);
+        }
+        long lastModified = parseDate(headers.get("Last-Modified"), -1);
+        if (lastModified != -1 && lastModified < date && isHeuristicallyCacheable(status)) {
+            // the customary heuristic: a tenth of the time since the resource last changed
+            return (date - lastModified) / 10;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the age of a stored response, in milliseconds (RFC 7234 4.2.3)
+     * @param headers the response headers
+     * @param requestTime when the request that got the response was sent
+     * @param responseTime when the response was received
+     * @param now the current time
+     */
+    static long currentAge(CacheHeaders headers, long requestTime, long responseTime, long now) {
+        long date = parseDate(headers.get("Date"), responseTime);
+        long apparentAge = Math.max(0, responseTime - date);
+        long ageValue = 0;
+        String age = headers.get("Age");
+        if (age != null) {
+            try {
+                ageValue = Math.max(0, Long.parseLong(age.trim())) * 1000;
+            } catch (NumberFormatException ignored) {}
+        }
+        long responseDelay = Math.max(0, responseTime - requestTime);
+        long correctedInitialAge = Math.max(apparentAge, ageValue + responseDelay);
+        long residentTime = Math.max(0, now - responseTime);
+        return correctedInitialAge + residentTime;
+    }
+
+    /**
+     * Returns whether a stored response may be used without revalidating it, given the
+     * directives of the request (RFC 7234 4.2 and 5.2.1)
+     * @param lifetime the freshness lifetime of the response
+     * @param age the current age of the response
+     * @param headers the response headers
+     * @param request the Cache-Control directives of the request
+     */
+    static boolean isFresh(long lifetime, long age, CacheHeaders headers, CacheControl request) {
+        CacheControl response = CacheControl.parse(headers.get("Cache-Control"));
+        if (response.has("no-cache")) {
+            return false;
+        }
+        long maxAge = request.seconds("max-age");
+        if (maxAge >= 0) {
+            lifetime = Math.min(lifetime, maxAge * 1000);
+        }
+        long minFresh = request.seconds("min-fresh");
+        if (minFresh >= 0) {
+            age += minFresh * 1000;
+        }
+        if (age < lifetime) {
+            return true;
+        }
+        if (request.has("max-stale") && !response.has("must-revalidate")) {
+            long maxStale = request.seconds("max-stale");
+            return maxStale < 0 || age - lifetime <= maxStale * 1000;
+        }
+        return false;
+    }
+
+    /**
+     * Parses an HTTP-date in any of the three formats of RFC 7231 7.1.1.1
+     * @return the time in milliseconds, or {@code fallback} if it is missing or invalid
+     */
+    static long parseDate(String value, long fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        String trimmed = value.trim();
+        for (String format : DATE_FORMATS) {
+            SimpleDateFormat parser = new SimpleDateFormat(format, Locale.US);
+            parser.setTimeZone(TimeZone.getTimeZone("GMT"));
+            ParsePosition position = new ParsePosition(0);
+            Date date = parser.parse(trimmed, position);
+            if (date != null && position.getIndex() == trimmed.length()) {
+                return date.getTime();
+            }
+        }
+        return fallback;
+    }
+
+    private static boolean isHeuristicallyCacheable(int status) {
+        for (int cacheable : HEURISTICALLY_CACHEABLE) {
+            if (cacheable == status) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,123 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers a request from a response stored by {@link HttpCache}, so it is read by
+ * {@link HttpRequestHandler} the same way as one from the network
+ */
+class CachedUrlConnection implements ICapacitorHttpUrlConnection {
+
+    private final URL url;
+    private final int status;
+    private final CacheHeaders headers;
+    private final InputStream body;
+
+    /**
+     * @param url the URL of the request
+     * @param status the status of the stored response
+     * @param headers the headers of the stored response
+     * @param body the stored body, opened already so that a concurrent eviction can't take it away
+     */
+    CachedUrlConnection(URL url, int status, CacheHeaders headers, InputStream body) {
+        this.url = url;
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    @Override
+    public void setRequestMethod(String method) {}
+
+    @Override
+    public void setConnectTimeout(int timeout) {}
+
+    @Override
+    public void setReadTimeout(int timeout) {}
+
+    @Override
+    public void setDisableRedirects(boolean disableRedirects) {}
+
+    @Override
+    public void setRequestHeaders(JSObject headers) {}
+
+    @Override
+    public void setRequestProperty(String key, String value) {}
+
+    @Override
+    public String getRequestProperty(String key) {
+        return null;
+    }
+
+    @Override
+    public void setDoOutput(boolean shouldDoOutput) {}
+
+    @Override
+    public void setRequestBody(PluginCall call, JSValue body) {}
+
+    @Override
+    public OutputStream getOutputStream() {
+        throw new UnsupportedOperationException("Cached responses have no request body");
+    }
+
+    @Override
+    public void connect() {}
+
+    @Override
+    public int getResponseCode() {
+        return status;
+    }
+
+    @Override
+    public URL getURL() {
+        return url;
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        return headers.toMap();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return status >= 400 ? body : null;
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        return headers.get(name);
+    }
+
+    @Override
+    public InputStream getInputStream() throws FileNotFoundException {
+        if (status >= 400) {
+            throw new FileNotFoundException(url.toString());
+        }
+        return body;
+    }
+
+    @Override
+    public JSObject getContentEncodingStats() {
+        return null;
+    }
+
+    @Override
+    public void release(boolean success) {
+        try {
+            body.close();
+        } catch (IOException ignored) {}
+    }
+
+    @Override
+    public void disconnect() {
+        release(false);
+    }
+}
@@ -9,6 +9,7 @@ import com.getcapacitor.PluginCall;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.ProtocolException;
 import java.net.SocketTimeoutException;
@@ -24,7 +25,12 @@ import org.json.JSONException;
 
 public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
 
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
     private final HttpURLConnection connection;
+    private final HttpTransport transport;
+    private ContentDecoder.DecodedStream decodedInputStream;
+    private ContentDecoder.DecodedStream decodedErrorStream;
 
     /**
      * Make a new CapacitorHttpUrlConnection instance, which wraps around HttpUrlConnection
@@ -33,7 +39,18 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      *             {@code (HttpUrlConnection) URL.openConnection()}
      */
     public CapacitorHttpUrlConnection(HttpURLConnection conn) {
+        this(conn, null);
+    }
+
+    /**
+     * Make a new CapacitorHttpUrlConnection instance around a connection opened by an
+     * {@link HttpTransport}. The connection is handed back to the transport by {@link #release(boolean)}.
+     * @param conn the base HttpUrlConnection, as returned by {@link HttpTransport#open(URL, Integer)}
+     * @param transport the transport that opened the connection
+     */
+    public CapacitorHttpUrlConnection(HttpURLConnection conn, HttpTransport transport) {
         connection = conn;
+        this.transport = transport;
         this.setDefaultRequestProperties();
     }
 
@@ -76,6 +93,7 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      *              method is "TRACE", but the "allowHttpTrace"
      *              NetPermission is not granted.
      */
+    @Override
     public void setRequestMethod(String method) throws ProtocolException {
         connection.setRequestMethod(method);
     }
@@ -100,6 +118,7 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      *               timeout value in milliseconds
      * @throws IllegalArgumentException if the timeout parameter is negative
      */
+    @Override
     public void setConnectTimeout(int timeout) {
         if (timeout < 0) {
             throw new IllegalArgumentException("timeout can not be negative");
@@ -119,6 +138,7 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      * value to be used in milliseconds
      * @throws IllegalArgumentException if the timeout parameter is negative
      */
+    @Override
     public void setReadTimeout(int timeout) {
         if (timeout < 0) {
             throw new IllegalArgumentException("timeout can not be negative");
@@ -130,6 +150,7 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      * Sets whether automatic HTTP redirects should be disabled
      * @param disableRedirects the flag to determine if redirects should be followed
      */
+    @Override
     public void setDisableRedirects(boolean disableRedirects) {
         connection.setInstanceFollowRedirects(!disableRedirects);
     }
@@ -138,6 +159,7 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      * Sets the request headers given a JSObject of key-value pairs
      * @param headers the JSObject values to map to the HttpUrlConnection request headers
      */
+    @Override
     public void setRequestHeaders(JSObject headers) {
         Iterator<String> keys = headers.keys();
         while (keys.hasNext()) {
@@ -147,6 +169,33 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
         }
     }
 
+    /**
+     * Sets the general request property. If a property with the key already
+     * exists, overwrite its value with the new value.
+     *
+     * @param key the keyword by which the request is known
+     *            (e.g., "{@code Accept}").
+     * @param value the value associated with it.
+     * @throws IllegalStateException if already connected
+     */
+    @Override
+    public void setRequestProperty(String key, String value) {
+        connection.setRequestProperty(key, value);
+    }
+
+    /**
+     * Returns the value of the named general request property for this
+     * connection.
+     *
+     * @param key the keyword by which the request is known (e.g., "Accept").
+     * @return the value of the named general request property for this
+     *           connection.
+     */
+    @Override
+    public String getRequestProperty(String key) {
+        return connection.getRequestProperty(key);
+    }
+
     /**
      * Sets the value of the {@code doOutput} field for this
      * {@code URLConnection} to the specified value.
@@ -158,19 +207,26 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      * @param  shouldDoOutput   the new value.
      * @throws IllegalStateException if already connected
      */
+    @Override
     public void setDoOutput(boolean shouldDoOutput) {
         connection.setDoOutput(shouldDoOutput);
     }
 
     /**
-     *
-     * @param call
+     * Writes the request body in the format of its Content-Type. JSON, form and text bodies are
+     * compressed with the coding of the {@code requestCompression} option when they are at
+     * least {@code requestCompressionThreshold} bytes long.
+     * @param call the call holding the request options
+     * @param body the body to write
      * @throws JSONException
      * @throws IOException
      */
+    @Override
     public void setRequestBody(PluginCall call, JSValue body) throws JSONException, IOException {
         String contentType = connection.getRequestProperty("Content-Type");
         String dataString = "";
+        String compression = call.getString("requestCompression");
+        int compressionThreshold = call.getInt("requestCompressionThreshold", ContentEncoder.DEFAULT_THRESHOLD);
 
         if (contentType == null || contentType.isEmpty()) return;
 
@@ -186,7 +242,7 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
             } else if (body == null) {
                 dataString = call.getString("data");
             }
-            this.writeRequestBody(dataString.toString());
+            this.writeRequestBody(dataString.toString(), compression, compressionThreshold);
         } else if (contentType.contains("application/x-www-form-urlencoded")) {
             StringBuilder builder = new StringBuilder();
 
@@ -201,9 +257,9 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
                     builder.append("&");
                 }
             }
-            this.writeRequestBody(builder.toString());
+            this.writeRequestBody(builder.toString(), compression, compressionThreshold);
         } else if (contentType.contains("multipart/form-data")) {
-            FormUploader uploader = new FormUploader(connection);
+            FormUploader uploader = new FormUploader(this);
 
             JSObject obj = body.toJSObject();
             Iterator<String> keys = obj.keys();
@@ -215,7 +271,7 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
             }
             uploader.finish();
         } else {
-            this.writeRequestBody(body.toString());
+            this.writeRequestBody(body.toString(), compression, compressionThreshold);
         }
     }
 
@@ -223,12 +279,44 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      * Writes the provided string to the HTTP connection managed by this instance.
      *
      * @param body The string value to write to the connection stream.
+     * @param compression The coding to compress the body with, or null to send it as it is.
+     *                    Bodies are sent as they are if the coding isn't available or the
+     *                    request already sets a Content-Encoding.
+     * @param threshold The length in bytes below which the body is sent as it is.
      */
-    private void writeRequestBody(String body) throws IOException {
-        try (DataOutputStream os = new DataOutputStream(connection.getOutputStream())) {
-            os.write(body.getBytes(StandardCharsets.UTF_8));
-            os.flush();
+    private void writeRequestBody(String body, String compression, int threshold) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        boolean compress =
+            compression != null &&
+            bytes.length >= threshold &&
+            ContentEncoder.isSupported(compression) &&
+            connection.getRequestProperty("Content-Encoding") == null;
+        if (!compress) {
+            try (DataOutputStream os = new DataOutputStream(connection.getOutputStream())) {
+                os.write(bytes);
+                os.flush();
+            }
+            return;
         }
+
+        connection.setRequestProperty("Content-Encoding", ContentEncoder.normalize(compression));
+        // the compressed length isn't known up front; stream it in chunks rather than buffering it
+        connection.setChunkedStreamingMode(BufferPool.BUFFER_SIZE);
+        try (OutputStream os = ContentEncoder.encode(compression, connection.getOutputStream())) {
+            os.write(bytes);
+        }
+    }
+
+    /**
+     * Returns an output stream that writes to this connection.
+     *
+     * @return an output stream that writes to this connection.
+     * @exception IOException if an I/O error occurs while
+     *               creating the output stream.
+     */
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return connection.getOutputStream();
     }
 
     /**
@@ -252,6 +340,7 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      * @exception  IOException  if an I/O error occurs while opening the
      *               connection.
      */
+    @Override
     public void connect() throws IOException {
         connection.connect();
     }
@@ -269,6 +358,7 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      * @throws IOException if an error occurred connecting to the server.
      * @return the HTTP Status-Code, or -1
      */
+    @Override
     public int getResponseCode() throws IOException {
         return connection.getResponseCode();
     }
@@ -281,6 +371,7 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      *          field.
      * @see     java.net.URLConnection#url
      */
+    @Override
     public URL getURL() {
         return connection.getURL();
     }
@@ -305,7 +396,16 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      */
     @Override
     public InputStream getErrorStream() {
-        return connection.getErrorStream();
+        if (decodedErrorStream != null) {
+            return decodedErrorStream;
+        }
+        InputStream stream = connection.getErrorStream();
+        String[] codings = getContentCodings();
+        if (stream == null || codings == null) {
+            return stream;
+        }
+        decodedErrorStream = ContentDecoder.decode(codings, stream);
+        return decodedErrorStream;
     }
 
     /**
@@ -321,6 +421,10 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      */
     @Override
     public String getHeaderField(String name) {
+        if ("Content-Length".equalsIgnoreCase(name) && getContentCodings() != null) {
+            // the length is that of the encoded body, not of what the body reads as
+            return null;
+        }
         return connection.getHeaderField(name);
     }
 
@@ -340,7 +444,33 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      */
     @Override
     public InputStream getInputStream() throws IOException {
-        return connection.getInputStream();
+        if (decodedInputStream != null) {
+            return decodedInputStream;
+        }
+        String[] codings = getContentCodings();
+        if (codings == null) {
+            return connection.getInputStream();
+        }
+        decodedInputStream = ContentDecoder.decode(codings, connection.getInputStream());
+        return decodedInputStream;
+    }
+
+    /**
+     * Returns the content coding of the response body, and how many bytes were received and
+     * how many they decoded to, or null if the body wasn't decoded
+     */
+    @Override
+    public JSObject getContentEncodingStats() {
+        ContentDecoder.DecodedStream stream = decodedErrorStream != null ? decodedErrorStream : decodedInputStream;
+        return stream != null ? stream.getStats() : null;
+    }
+
+    /**
+     * Returns the codings of the response body if it is encoded with codings that can all be
+     * decoded, or null if it is to be read as it is
+     */
+    private String[] getContentCodings() {
+        return ContentDecoder.parse(connection.getHeaderField("Content-Encoding"));
     }
 
     /**
@@ -352,16 +482,88 @@ public class CapacitorHttpUrlConnection implements ICapacitorHttpUrlConnection {
      *
      * @return a Map of header fields
      */
+    @Override
     public Map<String, List<String>> getHeaderFields() {
         return connection.getHeaderFields();
     }
 
+    /**
+     * Returns the transport the connection was opened by, or null if it wasn't opened by one
+     */
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Finishes the exchange and hands the connection back to the transport it was opened by.
+     * Any unread response body is drained first, as the platform only reuses a socket once
+     * its response has been consumed; failed exchanges have their socket discarded.
+     * @param success whether the exchange completed normally
+     */
+    @Override
+    public void release(boolean success) {
+        boolean reusable = success && !"close".equalsIgnoreCase(connection.getHeaderField("Connection"));
+        if (reusable) {
+            reusable = drainResponseBody();
+        }
+        if (!reusable) {
+            connection.disconnect();
+        }
+        if (transport != null) {
+            transport.release(connection, reusable);
+        }
+    }
+
+    /**
+     * Aborts the exchange, typically from another thread when the request is cancelled. The
+     * socket is closed rather than handed back to the transport.
+     */
+    @Override
+    public void disconnect() {
+        connection.disconnect();
+    }
+
+    /**
+     * Reads and discards whatever is left of the response body
+     * @return false if the body was too large to drain, or couldn't be read to its end, and the
+     *         socket should be discarded instead
+     */
+    private boolean drainResponseBody() {
+        InputStream stream = null;
+        try {
+            stream = connection.getErrorStream();
+            if (stream == null) {
+                stream = connection.getInputStream();
+            }
+            byte[] buffer = new byte[4096];
+            int drained = 0;
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                drained += read;
+                if (drained > MAX_DRAIN_BYTES) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            // nothing tells where the next response would start
+            return false;
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
     /**
      * Sets the default request properties on the newly created connection.
      * This is called as early as possible to allow overrides by user-provided values.
      */
     private void setDefaultRequestProperties() {
         connection.setRequestProperty("Accept-Charset", StandardCharsets.UTF_8.name());
+        connection.setRequestProperty("Accept-Encoding", ContentDecoder.getAcceptEncoding());
         String acceptLanguage = buildDefaultAcceptLanguageProperty();
         if (!TextUtils.isEmpty(acceptLanguage)) {
             connection.setRequestProperty("Accept-Language", acceptLanguage);
@@ -0,0 +1,214 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Keep-alive connection pool used by {@link HttpRequestHandler} to lease connections.
+ *
+ * <p>The sockets themselves are owned by the platform {@link HttpURLConnection} implementation,
+ * which only reuses a socket once its response body has been fully consumed and closed. This pool
+ * configures the platform keep-alive behaviour (via the {@code http.keepAlive},
+ * {@code http.maxConnections} and {@code http.keepAliveDuration} system properties), makes sure
+ * released connections are drained so their sockets can go back to the platform pool, and keeps
+ * a per-host ledger of idle connections that mirrors the platform pool. Like the platform pool,
+ * which {@code http.maxConnections} sizes for the whole process, the ledger limits idle
+ * connections across all hosts rather than per host.
+ *
+ * <p>HttpURLConnection never tells whether it reused a socket, so the idle count, hits, misses and
+ * evictions are estimates drawn from that ledger rather than measurements: they assume every
+ * connection released as reusable went back to the platform pool and every lease took one from it.
+ *
+ * <p>As an {@link HttpTransport} this is the {@code urlconnection} engine, and the fallback for
+ * every other engine.
+ */
+public class ConnectionPool implements HttpTransport {
+
+    public static final String NAME = "urlconnection";
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+    public static final long DEFAULT_KEEP_ALIVE_DURATION_MS = 5 * 60 * 1000;
+
+    private final boolean keepAlive;
+    private final int maxIdleConnections;
+    private final long keepAliveDurationMs;
+
+    // route -> timestamps of the moment each idle connection was released, oldest first
+    private final Map<String, ArrayDeque<Long>> idleConnections = new HashMap<>();
+    private int idleCount = 0;
+
+    private int activeConnections = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public ConnectionPool() {
+        this(true, DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_KEEP_ALIVE_DURATION_MS);
+    }
+
+    /**
+     * @param keepAlive whether connections should be kept alive between requests at all
+     * @param maxIdleConnections the maximum number of idle connections kept across all hosts
+     * @param keepAliveDurationMs how long an idle connection is kept before it is evicted
+     */
+    public ConnectionPool(boolean keepAlive, int maxIdleConnections, long keepAliveDurationMs) {
+        if (maxIdleConnections < 0) {
+            throw new IllegalArgumentException("maxIdleConnections can not be negative");
+        }
+        if (keepAliveDurationMs <= 0) {
+            throw new IllegalArgumentException("keepAliveDuration must be positive");
+        }
+        this.keepAlive = keepAlive;
+        this.maxIdleConnections = maxIdleConnections;
+        this.keepAliveDurationMs = keepAliveDurationMs;
+    }
+
+    /**
+     * Applies the pool configuration to the platform HttpURLConnection implementation. This must
+     * be called before the first connection of the process is opened, as the platform reads these
+     * values once when its own pool is created.
+     */
+    public void install() {
+        System.setProperty("http.keepAlive", String.valueOf(keepAlive));
+        // the size of the platform's idle pool for the whole process, not a per-host limit
+        System.setProperty("http.maxConnections", String.valueOf(maxIdleConnections));
+        System.setProperty("http.keepAliveDuration", String.valueOf(keepAliveDurationMs));
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public HttpURLConnection open(URL url, Integer connectTimeout) throws IOException {
+        return lease(url);
+    }
+
+    @Override
+    public void release(HttpURLConnection connection, boolean reusable) {
+        release(connection.getURL(), reusable);
+    }
+
+    /**
+     * Leases a connection to the given URL. The connection must be handed back with
+     * {@link #release(URL, boolean)} once its response has been consumed.
+     * @param url the URL to connect to
+     * @return a new, unconnected HttpURLConnection
+     * @throws IOException if the connection could not be created
+     */
+    public HttpURLConnection lease(URL url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if (!keepAlive) {
+            connection.setRequestProperty("Connection", "close");
+        }
+
+        synchronized (this) {
+            evictExpired(System.currentTimeMillis());
+            ArrayDeque<Long> idle = idleConnections.get(routeKey(url));
+            if (idle != null && !idle.isEmpty()) {
+                // the platform hands out the most recently used socket first
+                idle.pollLast();
+                idleCount--;
+                hits++;
+            } else {
+                misses++;
+            }
+            activeConnections++;
+        }
+        return connection;
+    }
+
+    /**
+     * Returns a leased connection to the pool
+     * @param url the URL the connection ended up talking to
+     * @param reusable whether the connection's socket can be reused by a later request
+     */
+    public synchronized void release(URL url, boolean reusable) {
+        activeConnections = Math.max(0, activeConnections - 1);
+        long now = System.currentTimeMillis();
+        evictExpired(now);
+
+        if (!keepAlive || !reusable || maxIdleConnections == 0) {
+            return;
+        }
+
+        String key = routeKey(url);
+        ArrayDeque<Long> idle = idleConnections.get(key);
+        if (idle == null) {
+            idle = new ArrayDeque<>();
+            idleConnections.put(key, idle);
+        }
+        idle.addLast(now);
+        idleCount++;
+        while (idleCount > maxIdleConnections) {
+            evictOldest();
+        }
+    }
+
+    /**
+     * Drops the idle connection released the longest ago, whatever its host
+     */
+    private void evictOldest() {
+        Map.Entry<String, ArrayDeque<Long>> oldest = null;
+        for (Map.Entry<String, ArrayDeque<Long>> route : idleConnections.entrySet()) {
+            if (oldest == null || route.getValue().peekFirst() < oldest.getValue().peekFirst()) {
+                oldest = route;
+            }
+        }
+        oldest.getValue().pollFirst();
+        if (oldest.getValue().isEmpty()) {
+            idleConnections.remove(oldest.getKey());
+        }
+        idleCount--;
+        evictions++;
+    }
+
+    /**
+     * Drops every idle connection that has been unused for longer than the keep-alive duration
+     */
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, ArrayDeque<Long>>> routes = idleConnections.entrySet().iterator();
+        while (routes.hasNext()) {
+            ArrayDeque<Long> idle = routes.next().getValue();
+            while (!idle.isEmpty() && now - idle.peekFirst() >= keepAliveDurationMs) {
+                idle.pollFirst();
+                idleCount--;
+                evictions++;
+            }
+            if (idle.isEmpty()) {
+                routes.remove();
+            }
+        }
+    }
+
+    private static String routeKey(URL url) {
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        return url.getProtocol() + "://" + url.getHost() + ":" + port;
+    }
+
+    /**
+     * Returns a snapshot of the pool usage counters. Only the active count is measured, the others
+     * are estimated from the ledger and named as such.
+     */
+    @Override
+    public synchronized JSObject getStats() {
+        evictExpired(System.currentTimeMillis());
+
+        JSObject stats = new JSObject();
+        stats.put("keepAlive", keepAlive);
+        stats.put("maxIdleConnections", maxIdleConnections);
+        stats.put("keepAliveDuration", keepAliveDurationMs);
+        stats.put("active", activeConnections);
+        stats.put("estimatedIdle", idleCount);
+        stats.put("estimatedHits", hits);
+        stats.put("estimatedMisses", misses);
+        stats.put("estimatedEvictions", evictions);
+        return stats;
+    }
+}
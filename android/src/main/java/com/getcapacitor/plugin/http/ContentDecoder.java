@@ -0,0 +1,284 @@
+package com.getcapacitor.plugin.http;
+
+import android.text.TextUtils;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Negotiates and decodes compressed response bodies. gzip and deflate are always supported;
+ * brotli and zstd are when the {@code org.brotli:dec} or {@code com.github.luben:zstd-jni}
+ * libraries are part of the app, and further codings can be registered by native code. Bodies
+ * are decoded as they are read, and the bytes received and decoded are counted for each response.
+ */
+public final class ContentDecoder {
+
+    /**
+     * Decodes one content coding
+     */
+    public interface Codec {
+        /**
+         * Wraps a stream of encoded bytes in one that decodes them
+         */
+        InputStream decode(InputStream in) throws IOException;
+    }
+
+    private static final Map<String, Codec> codecs = new LinkedHashMap<>();
+
+    private static long responses = 0;
+    private static long compressedBytes = 0;
+    private static long decompressedBytes = 0;
+
+    static {
+        register(
+            "gzip",
+            new Codec() {
+                @Override
+                public InputStream decode(InputStream in) throws IOException {
+                    return new GZIPInputStream(in, BufferPool.BUFFER_SIZE);
+                }
+            }
+        );
+        register(
+            "deflate",
+            new Codec() {
+                @Override
+                public InputStream decode(InputStream in) throws IOException {
+                    return inflate(in);
+                }
+            }
+        );
+        registerIfPresent("br", "org.brotli.dec.BrotliInputStream");
+        registerIfPresent("zstd", "com.github.luben.zstd.ZstdInputStream");
+    }
+
+    private ContentDecoder() {}
+
+    /**
+     * Adds support for a content coding, which is then advertised in Accept-Encoding
+     * @param name the coding as it appears in Content-Encoding, such as {@code br}
+     * @param codec the decoder
+     */
+    public static synchronized void register(String name, Codec codec) {
+        codecs.put(name.toLowerCase(Locale.ROOT), codec);
+    }
+
+    /**
+     * Returns the Accept-Encoding value advertising every supported coding
+     */
+    static synchronized String getAcceptEncoding() {
+        return TextUtils.join(", ", codecs.keySet());
+    }
+
+    /**
+     * Returns the codings of a Content-Encoding value in the order they were applied
+     * @return the codings, or null if one of them isn't supported
+     */
+    static synchronized String[] parse(String contentEncoding) {
+        if (contentEncoding == null) {
+            return null;
+        }
+        String[] codings = contentEncoding.split(",");
+        int count = 0;
+        for (String coding : codings) {
+            String name = coding.trim().toLowerCase(Locale.ROOT);
+            if (name.isEmpty() || name.equals("identity")) {
+                continue;
+            }
+            if (name.equals("x-gzip")) {
+                name = "gzip";
+            }
+            if (!codecs.containsKey(name)) {
+                return null;
+            }
+            codings[count++] = name;
+        }
+        if (count == 0) {
+            return null;
+        }
+        String[] result = new String[count];
+        System.arraycopy(codings, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Wraps a response body in a stream that decodes it
+     * @param codings the codings of the body, as returned by {@link #parse(String)}
+     * @param in the encoded body
+     */
+    static DecodedStream decode(String[] codings, InputStream in) {
+        return new DecodedStream(codings, in);
+    }
+
+    public static synchronized JSObject getStats() {
+        JSObject stats = new JSObject();
+        stats.put("supported", new JSArray(codecs.keySet()));
+        stats.put("responses", responses);
+        stats.put("compressedBytes", compressedBytes);
+        stats.put("decompressedBytes", decompressedBytes);
+        return stats;
+    }
+
+    private static synchronized void record(long compressed, long decompressed) {
+        responses++;
+        compressedBytes += compressed;
+        decompressedBytes += decompressed;
+    }
+
+    private static synchronized Codec getCodec(String name) {
+        return codecs.get(name);
+    }
+
+    /**
+     * Registers a coding whose decoder is an InputStream taking the encoded stream in its
+     * constructor, if that class is available
+     */
+    private static void registerIfPresent(String name, String className) {
+        final Constructor<?> constructor;
+        try {
+            constructor = Class.forName(className).getConstructor(InputStream.class);
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            return;
+        }
+        register(
+            name,
+            new Codec() {
+                @Override
+                public InputStream decode(InputStream in) throws IOException {
+                    try {
+                        return (InputStream) constructor.newInstance(in);
+                    } catch (InvocationTargetException e) {
+                        if (e.getCause() instanceof IOException) {
+                            throw (IOException) e.getCause();
+                        }
+                        throw new IOException(e.getCause());
+                    } catch (InstantiationException | IllegalAccessException e) {
+                        throw new IOException(e);
+                    }
+                }
+            }
+        );
+    }
+
+    /**
+     * Inflates a deflate body. The coding is meant to be zlib-wrapped, but some servers send raw
+     * deflate data, so the zlib header is looked for first.
+     */
+    private static InputStream inflate(InputStream in) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, 2);
+        byte[] header = new byte[2];
+        int length = 0;
+        int read;
+        while (length < 2 && (read = pushback.read(header, length, 2 - length)) != -1) {
+            length += read;
+        }
+        pushback.unread(header, 0, length);
+        int cmf = header[0] & 0xFF;
+        int flg = header[1] & 0xFF;
+        boolean zlib = length == 2 && (cmf & 0x0F) == 8 && ((cmf << 8) | flg) % 31 == 0;
+        final Inflater inflater = new Inflater(!zlib);
+        return new InflaterInputStream(pushback, inflater, BufferPool.BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * A response body decoded as it is read. The decoders are only set up on the first read,
+     * as empty bodies, such as those of HEAD requests, have no coding headers to read.
+     */
+    static final class DecodedStream extends InputStream {
+
+        private final String[] codings;
+        private final CountingInputStream raw;
+        private InputStream decoded;
+        private long decodedBytes = 0;
+        private boolean closed = false;
+
+        private DecodedStream(String[] codings, InputStream in) {
+            this.codings = codings;
+            this.raw = new CountingInputStream(in);
+        }
+
+        /**
+         * Returns the codings, how many bytes were received and how many they decoded to so far
+         */
+        JSObject getStats() {
+            JSObject stats = new JSObject();
+            stats.put("contentEncoding", TextUtils.join(", ", codings));
+            stats.put("compressedBytes", raw.getCount());
+            stats.put("decompressedBytes", decodedBytes);
+            return stats;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int read = read(one, 0, 1);
+            return read == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (decoded == null) {
+                open();
+            }
+            int read = decoded.read(b, off, len);
+            if (read > 0) {
+                decodedBytes += read;
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return decoded != null ? decoded.available() : 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            record(raw.getCount(), decodedBytes);
+            if (decoded != null) {
+                decoded.close();
+            } else {
+                raw.close();
+            }
+        }
+
+        private void open() throws IOException {
+            PushbackInputStream pushback = new PushbackInputStream(raw, 1);
+            int first = pushback.read();
+            if (first == -1) {
+                decoded = pushback;
+                return;
+            }
+            pushback.unread(first);
+            InputStream stream = pushback;
+            // codings are listed in the order they were applied, so they are undone from the last
+            for (int i = codings.length - 1; i >= 0; i--) {
+                stream = getCodec(codings[i]).decode(stream);
+            }
+            decoded = stream;
+        }
+    }
+}
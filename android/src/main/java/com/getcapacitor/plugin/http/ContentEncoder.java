@@ -0,0 +1,74 @@
+package com.getcapacitor.plugin.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses request bodies as they are written. gzip is always supported; zstd is when the
+ * {@code com.github.luben:zstd-jni} library is part of the app.
+ */
+final class ContentEncoder {
+
+    static final String GZIP = "gzip";
+    static final String ZSTD = "zstd";
+
+    // bodies smaller than this gain too little from compression to be worth the CPU
+    static final int DEFAULT_THRESHOLD = 1024;
+
+    private static final Constructor<?> zstdConstructor = findConstructor("com.github.luben.zstd.ZstdOutputStream");
+
+    private ContentEncoder() {}
+
+    /**
+     * Returns whether bodies can be compressed with a coding
+     * @param coding the coding, as sent in Content-Encoding
+     */
+    static boolean isSupported(String coding) {
+        String name = normalize(coding);
+        return GZIP.equals(name) || (ZSTD.equals(name) && zstdConstructor != null);
+    }
+
+    /**
+     * Returns the coding as sent in Content-Encoding
+     */
+    static String normalize(String coding) {
+        return coding != null ? coding.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * Wraps a stream in one that compresses what is written to it; closing it closes the stream
+     * @param coding a coding for which {@link #isSupported(String)} is true
+     * @param out the stream the compressed bytes are written to
+     */
+    static OutputStream encode(String coding, OutputStream out) throws IOException {
+        String name = normalize(coding);
+        if (GZIP.equals(name)) {
+            return new GZIPOutputStream(out, BufferPool.BUFFER_SIZE);
+        }
+        if (ZSTD.equals(name) && zstdConstructor != null) {
+            try {
+                return (OutputStream) zstdConstructor.newInstance(out);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IOException(e);
+            }
+        }
+        throw new IllegalArgumentException("Unsupported content coding: " + coding);
+    }
+
+    private static Constructor<?> findConstructor(String className) {
+        try {
+            return Class.forName(className).getConstructor(OutputStream.class);
+        } catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+            return null;
+        }
+    }
+}
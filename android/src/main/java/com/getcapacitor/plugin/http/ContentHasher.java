@@ -0,0 +1,184 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.json.JSONException;
+
+/**
+ * Hashes the bytes of a file as they are downloaded or uploaded, so verifying it doesn't take
+ * reading it again. Digests are reported as lowercase hex, keyed by algorithm.
+ */
+final class ContentHasher {
+
+    static final String SHA256 = "sha256";
+    static final String MD5 = "md5";
+    static final String CRC32C = "crc32c";
+
+    private final Map<String, MessageDigest> digests = new LinkedHashMap<>();
+    private Crc32c crc32c;
+    private String expectedAlgorithm;
+    private String expectedDigest;
+
+    /**
+     * Returns a hasher for the algorithms a request asks for in hashAlgorithms, plus the one its
+     * expectedHash is in, or null if it asks for none
+     * @throws IllegalArgumentException if an algorithm isn't supported
+     */
+    static ContentHasher fromOptions(JSArray algorithms, String expectedHash) {
+        if ((algorithms == null || algorithms.length() == 0) && expectedHash == null) {
+            return null;
+        }
+        ContentHasher hasher = new ContentHasher();
+        if (algorithms != null) {
+            try {
+                for (Object algorithm : algorithms.toList()) {
+                    hasher.add(String.valueOf(algorithm));
+                }
+            } catch (JSONException e) {
+                throw new IllegalArgumentException("hashAlgorithms must be a list of algorithm names");
+            }
+        }
+        if (expectedHash != null) {
+            hasher.expect(expectedHash);
+        }
+        return hasher;
+    }
+
+    /**
+     * Adds an algorithm to compute, one of sha256, md5 or crc32c
+     * @throws IllegalArgumentException if the algorithm isn't supported
+     */
+    void add(String algorithm) {
+        String name = algorithm.toLowerCase(Locale.ROOT).replace("-", "");
+        if (digests.containsKey(name) || (CRC32C.equals(name) && crc32c != null)) {
+            return;
+        }
+        try {
+            if (SHA256.equals(name)) {
+                digests.put(name, MessageDigest.getInstance("SHA-256"));
+            } else if (MD5.equals(name)) {
+                digests.put(name, MessageDigest.getInstance("MD5"));
+            } else if (CRC32C.equals(name)) {
+                crc32c = new Crc32c();
+            } else {
+                throw new IllegalArgumentException("Unsupported hash algorithm " + algorithm);
+            }
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unsupported hash algorithm " + algorithm, e);
+        }
+    }
+
+    /**
+     * Sets the digest {@link #verify()} checks, as algorithm:hex, or as plain hex for SHA-256
+     */
+    void expect(String expectedHash) {
+        int colon = expectedHash.indexOf(':');
+        expectedAlgorithm = colon >= 0 ? expectedHash.substring(0, colon).trim().toLowerCase(Locale.ROOT).replace("-", "") : SHA256;
+        expectedDigest = expectedHash.substring(colon + 1).trim().toLowerCase(Locale.ROOT);
+        add(expectedAlgorithm);
+    }
+
+    void update(byte[] b, int off, int len) {
+        for (MessageDigest digest : digests.values()) {
+            digest.update(b, off, len);
+        }
+        if (crc32c != null) {
+            crc32c.update(b, off, len);
+        }
+    }
+
+    /**
+     * Hashes the bytes remaining in the buffer, leaving its position where it was
+     */
+    void update(ByteBuffer buffer) {
+        for (MessageDigest digest : digests.values()) {
+            digest.update(buffer.duplicate());
+        }
+        if (crc32c != null) {
+            crc32c.update(buffer.duplicate());
+        }
+    }
+
+    /**
+     * Hashes the first bytes of a file, such as the part kept from an earlier download
+     */
+    void update(File file, long length) throws IOException {
+        byte[] buffer = BufferPool.acquireBytes();
+        try (InputStream in = new FileInputStream(file)) {
+            long remaining = length;
+            while (remaining > 0) {
+                int len = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (len == -1) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                update(buffer, 0, len);
+                remaining -= len;
+            }
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Finishes hashing and returns the digests. Can only be called once.
+     */
+    JSObject getDigests() {
+        JSObject result = new JSObject();
+        for (Map.Entry<String, MessageDigest> entry : digests.entrySet()) {
+            result.put(entry.getKey(), toHex(entry.getValue().digest()));
+        }
+        if (crc32c != null) {
+            result.put(CRC32C, String.format(Locale.ROOT, "%08x", crc32c.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Finishes hashing and returns the digests
+     * @throws IOException if the digest set with {@link #expect(String)} doesn't match
+     */
+    JSObject verify() throws IOException {
+        JSObject result = getDigests();
+        if (expectedDigest != null && !expectedDigest.equals(result.getString(expectedAlgorithm))) {
+            throw new IOException(
+                "The " + expectedAlgorithm + " hash " + result.getString(expectedAlgorithm) + " doesn't match the expected " + expectedDigest
+            );
+        }
+        return result;
+    }
+
+    /**
+     * Whether digests computed earlier cover every algorithm this hasher computes and match the
+     * expected digest, so they can stand in for hashing the same file again
+     */
+    boolean isSatisfiedBy(JSObject earlier) {
+        for (String algorithm : digests.keySet()) {
+            if (earlier.getString(algorithm) == null) {
+                return false;
+            }
+        }
+        if (crc32c != null && earlier.getString(CRC32C) == null) {
+            return false;
+        }
+        return expectedDigest == null || expectedDigest.equals(earlier.getString(expectedAlgorithm));
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = Character.forDigit((bytes[i] >> 4) & 0xf, 16);
+            hex[2 * i + 1] = Character.forDigit(bytes[i] & 0xf, 16);
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,511 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONException;
+
+/**
+ * Runs downloads in the background on threads of its own, a configurable number at a time,
+ * so that scheduling many of them neither blocks plugin calls nor takes up dispatcher workers.
+ *
+ * <p>Every transfer is kept in a file of its own in app storage until it is removed, so the
+ * queue of pending, active, paused, completed and failed transfers survives the app being
+ * stopped. Transfers that were active when it stopped are run again when it starts, picking up
+ * where they left off since they are downloaded with {@code resume} enabled unless their options
+ * say otherwise.
+ */
+class DownloadManager {
+
+    static final int DEFAULT_CONCURRENCY = 2;
+
+    static final String STATUS_PENDING = "pending";
+    static final String STATUS_ACTIVE = "active";
+    static final String STATUS_PAUSED = "paused";
+    static final String STATUS_COMPLETED = "completed";
+    static final String STATUS_FAILED = "failed";
+
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 60;
+
+    private static final String TRANSFER_SUFFIX = ".json";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Carries out the downloads
+     */
+    interface Runner {
+        /**
+         * Downloads a file, blocking until it is done
+         * @param id the ID of the transfer
+         * @param options the options of the download, as passed to {@code downloadFile}
+         * @param progress receives the progress of the download
+         * @return the result of the download
+         */
+        JSObject run(String id, JSObject options, HttpRequestHandler.ProgressEmitter progress) throws Exception;
+
+        /**
+         * Stops a running download, which then fails
+         */
+        void cancel(String id);
+
+        /**
+         * Deletes what an unfinished download left behind
+         */
+        void discard(JSObject options);
+    }
+
+    /**
+     * Receives an event every time a transfer changes status or makes progress
+     */
+    interface Listener {
+        void onTransfer(JSObject event);
+    }
+
+    private static final class Transfer {
+
+        final String id;
+        final long sequence;
+        final JSObject options;
+        final long createdAt;
+        String status;
+        long bytes;
+        long contentLength;
+        String path;
+        String error;
+
+        // transient state, guarded by the manager
+        int generation = 0;
+        Thread worker;
+        boolean removed = false;
+
+        Transfer(String id, long sequence, JSObject options, long createdAt, String status) {
+            this.id = id;
+            this.sequence = sequence;
+            this.options = options;
+            this.createdAt = createdAt;
+            this.status = status;
+        }
+
+        JSObject toJSObject() {
+            JSObject json = new JSObject();
+            json.put("id", id);
+            json.put("url", options.getString("url"));
+            json.put("filePath", options.getString("filePath"));
+            json.put("status", status);
+            json.put("bytes", bytes);
+            json.put("contentLength", contentLength);
+            json.put("createdAt", createdAt);
+            if (path != null) {
+                json.put("path", path);
+            }
+            if (error != null) {
+                json.put("error", error);
+            }
+            return json;
+        }
+    }
+
+    private final File directory;
+    private final Runner runner;
+    private final Listener listener;
+    private final ExecutorService executor;
+
+    private Map<String, Transfer> transfers;
+    private long nextSequence = 0;
+
+    private long enqueued = 0;
+    private long completed = 0;
+    private long failed = 0;
+
+    /**
+     * @param directory the directory the transfers are kept in, created when the first one is added
+     * @param concurrency the maximum number of downloads running at once
+     * @param runner carries out the downloads
+     * @param listener receives the transfer events, or null
+     */
+    DownloadManager(File directory, int concurrency, Runner runner, Listener listener) {
+        this.directory = directory;
+        this.runner = runner;
+        this.listener = listener;
+        int threads = Math.max(1, concurrency);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+            threads,
+            threads,
+            WORKER_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "CapacitorHttp Download " + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }
+        );
+        pool.allowCoreThreadTimeOut(true);
+        this.executor = pool;
+    }
+
+    /**
+     * Runs the transfers that were pending or active when the app stopped
+     */
+    void start() {
+        List<Transfer> pending = new ArrayList<>();
+        synchronized (this) {
+            for (Transfer transfer : load().values()) {
+                if (STATUS_ACTIVE.equals(transfer.status)) {
+                    transfer.status = STATUS_PENDING;
+                    save(transfer);
+                }
+                if (STATUS_PENDING.equals(transfer.status)) {
+                    pending.add(transfer);
+                }
+            }
+        }
+        for (Transfer transfer : pending) {
+            schedule(transfer);
+        }
+    }
+
+    /**
+     * Adds a download to the end of the queue
+     * @param options the options of the download, as passed to {@code downloadFile}
+     * @return the ID of the transfer
+     */
+    String enqueue(JSObject options) throws IOException, JSONException {
+        JSObject copy = new JSObject(options.toString());
+        String id = UUID.randomUUID().toString();
+        // cancelling the transfer goes through the request registry under its ID
+        copy.put("requestId", id);
+        copy.put("resume", options.getBoolean("resume", true));
+
+        Transfer transfer;
+        synchronized (this) {
+            load();
+            transfer = new Transfer(id, nextSequence++, copy, System.currentTimeMillis(), STATUS_PENDING);
+            write(transfer);
+            transfers.put(id, transfer);
+            enqueued++;
+        }
+        emit(transfer);
+        schedule(transfer);
+        return id;
+    }
+
+    /**
+     * Lists the transfers in the order they were added
+     */
+    synchronized JSArray list() {
+        JSArray list = new JSArray();
+        for (Transfer transfer : load().values()) {
+            list.put(transfer.toJSObject());
+        }
+        return list;
+    }
+
+    /**
+     * Stops a pending or active transfer until it is resumed
+     * @return false if there is no such transfer or it has already finished
+     */
+    boolean pause(String id) {
+        Transfer transfer;
+        synchronized (this) {
+            transfer = load().get(id);
+            if (transfer == null || !(STATUS_PENDING.equals(transfer.status) || STATUS_ACTIVE.equals(transfer.status))) {
+                return false;
+            }
+            transfer.status = STATUS_PAUSED;
+            transfer.generation++;
+            save(transfer);
+            stop(transfer);
+        }
+        emit(transfer);
+        return true;
+    }
+
+    /**
+     * Queues a paused or failed transfer again
+     * @return false if there is no such transfer or it is pending, active or completed
+     */
+    boolean resume(String id) {
+        Transfer transfer;
+        boolean stopping;
+        synchronized (this) {
+            transfer = load().get(id);
+            if (transfer == null || !(STATUS_PAUSED.equals(transfer.status) || STATUS_FAILED.equals(transfer.status))) {
+                return false;
+            }
+            transfer.status = STATUS_PENDING;
+            transfer.error = null;
+            save(transfer);
+            // a transfer paused a moment ago is scheduled again once its download has stopped
+            stopping = transfer.worker != null;
+        }
+        emit(transfer);
+        if (!stopping) {
+            schedule(transfer);
+        }
+        return true;
+    }
+
+    /**
+     * Stops a transfer if it is active and forgets it, deleting what it downloaded unless it
+     * completed
+     * @return false if there is no such transfer
+     */
+    boolean remove(String id) {
+        Transfer transfer;
+        boolean discard;
+        synchronized (this) {
+            transfer = load().remove(id);
+            if (transfer == null) {
+                return false;
+            }
+            transfer.removed = true;
+            transfer.generation++;
+            new File(directory, id + TRANSFER_SUFFIX).delete();
+            // an active transfer cleans up after itself once it has stopped
+            discard = !STATUS_COMPLETED.equals(transfer.status) && transfer.worker == null;
+            stop(transfer);
+        }
+        if (discard) {
+            runner.discard(transfer.options);
+        }
+        return true;
+    }
+
+    synchronized JSObject getStats() {
+        int pending = 0;
+        int active = 0;
+        for (Transfer transfer : load().values()) {
+            if (STATUS_PENDING.equals(transfer.status)) {
+                pending++;
+            } else if (STATUS_ACTIVE.equals(transfer.status)) {
+                active++;
+            }
+        }
+        JSObject stats = new JSObject();
+        stats.put("transfers", transfers.size());
+        stats.put("pending", pending);
+        stats.put("active", active);
+        stats.put("enqueued", enqueued);
+        stats.put("completed", completed);
+        stats.put("failed", failed);
+        return stats;
+    }
+
+    private void schedule(final Transfer transfer) {
+        final int generation;
+        synchronized (this) {
+            generation = transfer.generation;
+        }
+        executor.execute(
+            new Runnable() {
+                @Override
+                public void run() {
+                    DownloadManager.this.run(transfer, generation);
+                }
+            }
+        );
+    }
+
+    private void run(final Transfer transfer, int generation) {
+        synchronized (this) {
+            // paused, removed or queued again since it was scheduled
+            if (transfer.generation != generation || !STATUS_PENDING.equals(transfer.status)) {
+                return;
+            }
+            transfer.status = STATUS_ACTIVE;
+            transfer.worker = Thread.currentThread();
+            save(transfer);
+        }
+        emit(transfer);
+
+        JSObject result = null;
+        Exception failure = null;
+        try {
+            result =
+                runner.run(
+                    transfer.id,
+                    transfer.options,
+                    new HttpRequestHandler.ProgressEmitter() {
+                        @Override
+                        public void emit(long bytes, long contentLength) {
+                            synchronized (DownloadManager.this) {
+                                transfer.bytes = bytes;
+                                transfer.contentLength = contentLength;
+                            }
+                            DownloadManager.this.emit(transfer);
+                        }
+                    }
+                );
+        } catch (Exception e) {
+            failure = e;
+        }
+
+        boolean discard = false;
+        boolean changed = true;
+        boolean again = false;
+        synchronized (this) {
+            transfer.worker = null;
+            // a pause or removal interrupts the worker, which mustn't carry over to the next one
+            Thread.interrupted();
+            if (transfer.removed) {
+                discard = result == null;
+                changed = false;
+            } else if (result != null) {
+                transfer.status = STATUS_COMPLETED;
+                transfer.path = result.getString("path");
+                completed++;
+                save(transfer);
+            } else if (STATUS_ACTIVE.equals(transfer.status)) {
+                transfer.status = STATUS_FAILED;
+                transfer.error = failure.getMessage() != null ? failure.getMessage() : failure.toString();
+                failed++;
+                save(transfer);
+            } else {
+                // paused while it ran, and maybe resumed since; the bytes received so far are kept
+                again = STATUS_PENDING.equals(transfer.status);
+                changed = false;
+            }
+        }
+        if (discard) {
+            runner.discard(transfer.options);
+        }
+        if (changed) {
+            emit(transfer);
+        }
+        if (again) {
+            schedule(transfer);
+        }
+    }
+
+    /**
+     * Stops the download of an active transfer. Must be called holding the lock.
+     */
+    private void stop(Transfer transfer) {
+        if (transfer.worker != null) {
+            transfer.worker.interrupt();
+            runner.cancel(transfer.id);
+        }
+    }
+
+    private void emit(Transfer transfer) {
+        if (listener == null) {
+            return;
+        }
+        JSObject event;
+        synchronized (this) {
+            event = transfer.toJSObject();
+        }
+        listener.onTransfer(event);
+    }
+
+    /**
+     * Returns the transfers, reading them from storage the first time. Must be called holding the
+     * lock.
+     */
+    private Map<String, Transfer> load() {
+        if (transfers != null) {
+            return transfers;
+        }
+        List<Transfer> loaded = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    file.delete();
+                    continue;
+                }
+                if (!name.endsWith(TRANSFER_SUFFIX)) {
+                    continue;
+                }
+                try {
+                    JSObject json = new JSObject(
+                        TextBodyReader.readFully(new FileInputStream(file), StandardCharsets.UTF_8, file.length())
+                    );
+                    Transfer transfer = new Transfer(
+                        json.getString("id"),
+                        json.getLong("sequence"),
+                        json.getJSObject("options", new JSObject()),
+                        json.getLong("createdAt"),
+                        json.getString("status")
+                    );
+                    transfer.bytes = json.optLong("bytes");
+                    transfer.contentLength = json.optLong("contentLength");
+                    transfer.path = json.getString("path");
+                    transfer.error = json.getString("error");
+                    loaded.add(transfer);
+                } catch (IOException | JSONException e) {
+                    // a transfer is only ever renamed into place whole, so this isn't one of ours
+                    file.delete();
+                }
+            }
+        }
+        Collections.sort(
+            loaded,
+            new Comparator<Transfer>() {
+                @Override
+                public int compare(Transfer a, Transfer b) {
+                    return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+                }
+            }
+        );
+        transfers = new LinkedHashMap<>();
+        for (Transfer transfer : loaded) {
+            transfers.put(transfer.id, transfer);
+            nextSequence = Math.max(nextSequence, transfer.sequence + 1);
+        }
+        return transfers;
+    }
+
+    /**
+     * Writes a transfer, keeping the previous state if that fails. Must be called holding the lock.
+     */
+    private void save(Transfer transfer) {
+        try {
+            write(transfer);
+        } catch (IOException | JSONException ignored) {
+            // the previous state stays stored
+        }
+    }
+
+    private void write(Transfer transfer) throws IOException, JSONException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        JSObject json = transfer.toJSObject();
+        json.put("sequence", transfer.sequence);
+        json.put("options", transfer.options);
+        File temp = File.createTempFile("transfer-", TEMP_SUFFIX, directory);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(new File(directory, transfer.id + TRANSFER_SUFFIX))) {
+            temp.delete();
+            throw new IOException("Unable to store transfer " + transfer.id);
+        }
+    }
+}
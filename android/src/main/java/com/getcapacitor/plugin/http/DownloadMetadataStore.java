@@ -0,0 +1,138 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.json.JSONException;
+
+/**
+ * Remembers what was downloaded into each file: the URL, the validators of the response, and the
+ * size, modification time and hashes of the file. The next download of the same URL into a file
+ * that is still as it was left can then be made conditional, and skipped if the server answers
+ * 304 Not Modified.
+ *
+ * <p>Each file has a small JSON record in the store's directory, named after a hash of its path,
+ * so files in public directories aren't cluttered with metadata of their own.
+ */
+final class DownloadMetadataStore {
+
+    private static final String RECORD_SUFFIX = ".json";
+
+    /**
+     * What was downloaded into a file
+     */
+    static final class Entry {
+
+        final String url;
+        final String etag;
+        final String lastModified;
+        final long size;
+        final long modified;
+        final JSObject hashes;
+
+        Entry(String url, String etag, String lastModified, long size, long modified, JSObject hashes) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.modified = modified;
+            this.hashes = hashes;
+        }
+    }
+
+    private final File directory;
+
+    /**
+     * @param directory the directory the records are kept in, created when the first is written
+     */
+    DownloadMetadataStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns what was downloaded into a file from a URL, or null if nothing was or the file has
+     * changed since
+     */
+    synchronized Entry get(File file, String url) {
+        File record = recordOf(file);
+        if (!record.isFile()) {
+            return null;
+        }
+        try {
+            JSObject json = new JSObject(TextBodyReader.readFully(new FileInputStream(record), StandardCharsets.UTF_8, record.length()));
+            Entry entry = new Entry(
+                json.getString("url"),
+                json.getString("etag"),
+                json.getString("lastModified"),
+                json.getLong("size"),
+                json.getLong("modified"),
+                json.getJSObject("hashes", new JSObject())
+            );
+            if (url.equals(entry.url) && file.isFile() && file.length() == entry.size && file.lastModified() == entry.modified) {
+                return entry;
+            }
+        } catch (IOException | JSONException e) {
+            // written whole or not at all, so this isn't one of ours
+        }
+        return null;
+    }
+
+    /**
+     * Records what was just downloaded into a file, or forgets the file if the response had no
+     * validator to make the next download conditional on
+     * @param hashes the digests of the file, or null
+     */
+    synchronized void put(File file, String url, String etag, String lastModified, JSObject hashes) {
+        if (etag == null && lastModified == null) {
+            remove(file);
+            return;
+        }
+        JSObject json = new JSObject();
+        json.put("url", url);
+        json.put("etag", etag);
+        json.put("lastModified", lastModified);
+        json.put("size", file.length());
+        json.put("modified", file.lastModified());
+        json.put("hashes", hashes != null ? hashes : new JSObject());
+        File record = recordOf(file);
+        File temp = new File(record.getPath() + ".tmp");
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create " + directory);
+            }
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+            if (!temp.renameTo(record)) {
+                throw new IOException("Unable to store " + record);
+            }
+        } catch (IOException e) {
+            // without a record the next download is simply unconditional
+            temp.delete();
+            record.delete();
+        }
+    }
+
+    synchronized void remove(File file) {
+        recordOf(file).delete();
+    }
+
+    private File recordOf(File file) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return new File(directory, key + RECORD_SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
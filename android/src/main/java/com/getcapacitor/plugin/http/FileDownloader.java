@@ -0,0 +1,458 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import org.json.JSONException;
+
+/**
+ * Downloads a response body into a file. The body is written to a partial file next to the
+ * destination, which replaces the destination only once the whole body has been received.
+ *
+ * <p>With resume enabled, a download that fails keeps its partial file, together with a journal
+ * recording the URL, the validator of the response and how many bytes are safely on disk. The
+ * next download of the same URL into the same file asks only for the rest with a Range request
+ * made conditional on the validator with If-Range: a 206 response is appended to the partial
+ * file, while a 200 response, which the server sends when the file changed, starts it over.
+ */
+class FileDownloader {
+
+    static final String PARTIAL_SUFFIX = ".part";
+    static final String JOURNAL_SUFFIX = ".part.json";
+
+    static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    static final int MIN_BUFFER_SIZE = 8 * 1024;
+
+    // how often the journal is brought up to date while receiving a body
+    private static final long CHECKPOINT_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Opens the connection a download is received from
+     */
+    interface Connector {
+        /**
+         * @param headers headers to send in addition to the request's own, replacing any of the
+         *                same name
+         */
+        ICapacitorHttpUrlConnection open(JSObject headers) throws IOException;
+    }
+
+    /**
+     * What has been received of a response so far
+     */
+    private static final class Journal {
+
+        final String url;
+        final String etag;
+        final String lastModified;
+        final long length;
+        long bytes;
+
+        Journal(String url, String etag, String lastModified, long length, long bytes) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Returns the validator to send in If-Range, or null if the response had none usable.
+         * If-Range only takes strong ETags.
+         */
+        String getValidator() {
+            if (etag != null && !etag.startsWith("W/")) {
+                return etag;
+            }
+            return lastModified;
+        }
+    }
+
+    private final File file;
+    private final File partial;
+    private final File journalFile;
+    private final String url;
+    private final boolean resume;
+    private final int maxSegments;
+    private final Connector connector;
+    private final ProgressThrottle throttle;
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private ContentHasher hasher;
+    private JSObject hashes;
+    private String knownETag;
+    private String knownLastModified;
+    private long resumedFrom = 0;
+    private boolean transferred = false;
+    private String etag;
+    private String lastModified;
+
+    /**
+     * @param file the file the body is downloaded into
+     * @param url the URL of the download, which a kept partial file must match to be resumed
+     * @param resume whether to keep a partial file when the download fails and resume from it
+     * @param maxSegments how many connections may receive the file at once, if the server
+     *                    supports ranges; 1 receives it over a single connection
+     * @param connector opens the connections
+     * @param throttle receives the progress of the download
+     */
+    FileDownloader(File file, String url, boolean resume, int maxSegments, Connector connector, ProgressThrottle throttle) {
+        this.file = file;
+        this.partial = new File(file.getPath() + PARTIAL_SUFFIX);
+        this.journalFile = new File(file.getPath() + JOURNAL_SUFFIX);
+        this.url = url;
+        this.resume = resume;
+        this.maxSegments = maxSegments;
+        this.connector = connector;
+        this.throttle = throttle;
+    }
+
+    /**
+     * Deletes the partial file and journal an unfinished download into a file left behind
+     */
+    static void discard(File file) {
+        new File(file.getPath() + PARTIAL_SUFFIX).delete();
+        new File(file.getPath() + JOURNAL_SUFFIX).delete();
+    }
+
+    /**
+     * Sets how many bytes are gathered from the connection before they are written to the file
+     */
+    void setBufferSize(int bufferSize) {
+        this.bufferSize = Math.max(MIN_BUFFER_SIZE, bufferSize);
+    }
+
+    /**
+     * Sets the hasher the file is hashed with while it is received, and whose expected digest it
+     * must match to replace the destination
+     */
+    void setHasher(ContentHasher hasher) {
+        this.hasher = hasher;
+    }
+
+    /**
+     * Makes the download conditional on the file having changed since the version already in
+     * place, which is left untouched if the server answers 304 Not Modified
+     * @param etag the ETag the file was downloaded with, or null
+     * @param lastModified the Last-Modified date the file was downloaded with, or null
+     */
+    void setKnownVersion(String etag, String lastModified) {
+        this.knownETag = etag;
+        this.knownLastModified = lastModified;
+    }
+
+    /**
+     * Whether the file was downloaded, rather than left as it was because it hadn't changed
+     */
+    boolean isTransferred() {
+        return transferred;
+    }
+
+    /**
+     * Returns the ETag of the downloaded file, or null
+     */
+    String getETag() {
+        return etag;
+    }
+
+    /**
+     * Returns the Last-Modified date of the downloaded file, or null
+     */
+    String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns how many bytes of the file were kept from an earlier download
+     */
+    long getResumedFrom() {
+        return resumedFrom;
+    }
+
+    /**
+     * Returns the digests of the downloaded file, or null if it wasn't hashed
+     */
+    JSObject getHashes() {
+        return hashes;
+    }
+
+    /**
+     * Downloads the body into the file, unless the server answers a conditional download with
+     * 304 Not Modified
+     * @throws IOException if the download fails, in which case the partial file is kept if resume
+     *                     is enabled
+     */
+    void download() throws IOException {
+        Journal journal = resume ? readJournal() : null;
+        if (journal == null) {
+            discard();
+        }
+        while (true) {
+            long offset = journal != null ? journal.bytes : 0;
+            JSObject headers = new JSObject();
+            if (resume || maxSegments > 1) {
+                // ranges count the bytes of the body as sent, which must then be stored as sent
+                headers.put("Accept-Encoding", "identity");
+            }
+            boolean conditional = offset == 0 && (knownETag != null || knownLastModified != null);
+            if (offset > 0) {
+                headers.put("Range", "bytes=" + offset + "-");
+                headers.put("If-Range", journal.getValidator());
+            } else if (conditional) {
+                // a server that supports both only looks at If-None-Match
+                if (knownETag != null) {
+                    headers.put("If-None-Match", knownETag);
+                }
+                if (knownLastModified != null) {
+                    headers.put("If-Modified-Since", knownLastModified);
+                }
+            }
+
+            ICapacitorHttpUrlConnection connection = connector.open(headers);
+            boolean success = false;
+            boolean segmented = false;
+            try {
+                int status = connection.getResponseCode();
+                if (offset > 0 && (status == 416 || (status == 206 && getRangeStart(connection) != offset))) {
+                    // the server doesn't agree with what was kept, so ask for the whole body again
+                    discard();
+                    journal = null;
+                    continue;
+                }
+                if (conditional && status == 304) {
+                    success = true;
+                    return;
+                }
+                // throws for error responses before the partial file is touched
+                InputStream in = connection.getInputStream();
+                if (status != 206) {
+                    offset = 0;
+                }
+                long length = getLength(connection, offset);
+                journal =
+                    new Journal(url, connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"), length, offset);
+                etag = journal.etag;
+                lastModified = journal.lastModified;
+                resumedFrom = offset;
+                if (hasher != null && offset > 0) {
+                    // only the kept part is read back, the rest is hashed as it arrives
+                    hasher.update(partial, offset);
+                }
+                if (status == 200 && SegmentedDownload.accepts(connection, length, journal.getValidator(), maxSegments)) {
+                    segmented = true;
+                    receiveSegmented(connection, in, journal);
+                    if (hasher != null) {
+                        // segments arrive out of order, so the file is hashed once it is whole
+                        hasher.update(partial, journal.length);
+                    }
+                } else {
+                    receive(in, journal);
+                }
+                success = true;
+                break;
+            } finally {
+                // the first segment leaves the rest of its body unread
+                connection.release(success && !segmented);
+            }
+        }
+        if (hasher != null) {
+            try {
+                hashes = hasher.verify();
+            } catch (IOException e) {
+                discard();
+                throw e;
+            }
+        }
+        if (!partial.renameTo(file)) {
+            throw new IOException("Unable to move the download to " + file);
+        }
+        journalFile.delete();
+        transferred = true;
+    }
+
+    private void receive(InputStream in, Journal journal) throws IOException {
+        long checkpoint = journal.bytes;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        try (
+            ReadableByteChannel source = Channels.newChannel(in);
+            RandomAccessFile output = new RandomAccessFile(partial, "rw");
+            FileChannel sink = output.getChannel()
+        ) {
+            // drops whatever a write that wasn't journaled left past the offset
+            sink.truncate(journal.bytes);
+            try {
+                while (true) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new RequestCancelledException();
+                    }
+                    int len = source.read(buffer);
+                    if (len > 0) {
+                        throttle.update(journal.bytes + buffer.position(), journal.length);
+                    }
+                    // bytes are gathered until the buffer is full, then written in one go
+                    if (len == -1 || !buffer.hasRemaining()) {
+                        flush(buffer, sink, journal);
+                        if (resume && journal.bytes - checkpoint >= CHECKPOINT_BYTES) {
+                            checkpoint = journal.bytes;
+                            sink.force(false);
+                            writeJournal(journal);
+                        }
+                        if (len == -1) {
+                            break;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (resume && journal.getValidator() != null) {
+                    // file channels close when the thread is interrupted, so a cancelled download
+                    // holds off the interrupt until what was received intact is kept
+                    boolean interrupted = Thread.interrupted();
+                    try {
+                        flush(buffer, sink, journal);
+                        sink.force(false);
+                    } catch (IOException ignored) {
+                        // the journal records only what made it to the file
+                    }
+                    writeJournal(journal);
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else {
+                    discard();
+                }
+                throw e instanceof ClosedByInterruptException ? new RequestCancelledException() : e;
+            }
+        }
+        throttle.finish(journal.bytes, journal.length);
+    }
+
+    /**
+     * Writes the bytes gathered in the buffer at the end of the partial file
+     */
+    private void flush(ByteBuffer buffer, FileChannel sink, Journal journal) throws IOException {
+        buffer.flip();
+        if (hasher != null) {
+            hasher.update(buffer);
+        }
+        while (buffer.hasRemaining()) {
+            journal.bytes += sink.write(buffer, journal.bytes);
+        }
+        buffer.clear();
+    }
+
+    private void receiveSegmented(ICapacitorHttpUrlConnection connection, InputStream in, Journal journal) throws IOException {
+        // segments are received in any order, so what they leave behind can't be resumed
+        discard();
+        try {
+            new SegmentedDownload(partial, journal.length, journal.getValidator(), connector, throttle, maxSegments).run(connection, in);
+        } catch (IOException e) {
+            discard();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the journal of an earlier download, returning null unless its partial file can be
+     * resumed
+     */
+    private Journal readJournal() {
+        if (!journalFile.isFile()) {
+            return null;
+        }
+        try {
+            JSObject json = new JSObject(
+                TextBodyReader.readFully(new FileInputStream(journalFile), StandardCharsets.UTF_8, journalFile.length())
+            );
+            Journal journal = new Journal(
+                json.getString("url"),
+                json.getString("etag"),
+                json.getString("lastModified"),
+                json.getLong("length"),
+                json.getLong("bytes")
+            );
+            if (url.equals(journal.url) && journal.getValidator() != null && journal.bytes > 0 && partial.length() >= journal.bytes) {
+                return journal;
+            }
+        } catch (IOException | JSONException e) {
+            // written whole or not at all, so this isn't one of ours
+        }
+        return null;
+    }
+
+    private void writeJournal(Journal journal) {
+        JSObject json = new JSObject();
+        json.put("url", journal.url);
+        json.put("etag", journal.etag);
+        json.put("lastModified", journal.lastModified);
+        json.put("length", journal.length);
+        json.put("bytes", journal.bytes);
+        File temp = new File(journalFile.getPath() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+            if (!temp.renameTo(journalFile)) {
+                temp.delete();
+            }
+        } catch (IOException e) {
+            // the previous checkpoint stays journaled
+            temp.delete();
+        }
+    }
+
+    private void discard() {
+        discard(file);
+    }
+
+    /**
+     * Returns the offset a 206 response starts at according to its Content-Range, or -1
+     */
+    static long getRangeStart(ICapacitorHttpUrlConnection connection) {
+        String contentRange = connection.getHeaderField("Content-Range");
+        if (contentRange == null || !contentRange.trim().startsWith("bytes ")) {
+            return -1;
+        }
+        String range = contentRange.trim().substring("bytes ".length()).trim();
+        int dash = range.indexOf('-');
+        try {
+            return dash > 0 ? Long.parseLong(range.substring(0, dash).trim()) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the length of the whole file, or 0 if it isn't known
+     */
+    private static long getLength(ICapacitorHttpUrlConnection connection, long offset) {
+        String contentRange = connection.getHeaderField("Content-Range");
+        if (offset > 0 && contentRange != null) {
+            int slash = contentRange.lastIndexOf('/');
+            if (slash >= 0) {
+                try {
+                    return Long.parseLong(contentRange.substring(slash + 1).trim());
+                } catch (NumberFormatException ignored) {
+                    // an unknown length is sent as *
+                }
+            }
+        }
+        String contentLength = connection.getHeaderField("Content-Length");
+        if (contentLength != null) {
+            try {
+                return offset + Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException ignored) {}
+        }
+        return 0;
+    }
+}
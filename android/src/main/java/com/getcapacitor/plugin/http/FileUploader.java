@@ -6,23 +6,33 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
 import java.net.URLConnection;
 
 public class FileUploader {
     private final OutputStream outputStream;
+    private ContentHasher hasher;
 
-    public FileUploader(HttpURLConnection connection) throws IOException {
+    public FileUploader(ICapacitorHttpUrlConnection connection) throws IOException {
         connection.setRequestProperty("Content-Type", "application/octet-stream");
         outputStream = connection.getOutputStream();
     }
 
+    /**
+     * Sets the hasher the file is hashed with as it is sent
+     */
+    void setHasher(ContentHasher hasher) {
+        this.hasher = hasher;
+    }
+
     public void addFilePart(String fieldName, File uploadFile, JSObject data) throws IOException {
         try (FileInputStream inputStream = new FileInputStream(uploadFile)) {
             byte[] buffer = new byte[4096];
             int bytesRead;
             while ((bytesRead = inputStream.read(buffer)) != -1) {
                 outputStream.write(buffer, 0, bytesRead);
+                if (hasher != null) {
+                    hasher.update(buffer, 0, bytesRead);
+                }
             }
             outputStream.flush();
         } finally {
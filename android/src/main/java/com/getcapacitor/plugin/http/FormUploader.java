@@ -7,7 +7,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.net.HttpURLConnection;
 import java.net.URLConnection;
 import java.util.Iterator;
 import java.util.UUID;
@@ -24,10 +23,10 @@ public class FormUploader {
     /**
      * This constructor initializes a new HTTP POST request with content type
      * is set to multipart/form-data
-     * @param connection The HttpUrlConnection to use to upload a Form
+     * @param connection The connection to use to upload a Form
      * @throws IOException Thrown if unable to parse the OutputStream of the connection
      */
-    public FormUploader(HttpURLConnection connection) throws IOException {
+    public FormUploader(ICapacitorHttpUrlConnection connection) throws IOException {
         UUID uuid = UUID.randomUUID();
         boundary = uuid.toString();
 
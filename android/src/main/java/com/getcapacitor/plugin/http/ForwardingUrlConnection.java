@@ -0,0 +1,125 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONException;
+
+/**
+ * A connection that passes every call on to another one, for subclasses that change how part of
+ * the exchange is carried out
+ */
+abstract class ForwardingUrlConnection implements ICapacitorHttpUrlConnection {
+
+    private final ICapacitorHttpUrlConnection delegate;
+
+    ForwardingUrlConnection(ICapacitorHttpUrlConnection delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void setRequestMethod(String method) throws ProtocolException {
+        delegate.setRequestMethod(method);
+    }
+
+    @Override
+    public void setConnectTimeout(int timeout) {
+        delegate.setConnectTimeout(timeout);
+    }
+
+    @Override
+    public void setReadTimeout(int timeout) {
+        delegate.setReadTimeout(timeout);
+    }
+
+    @Override
+    public void setDisableRedirects(boolean disableRedirects) {
+        delegate.setDisableRedirects(disableRedirects);
+    }
+
+    @Override
+    public void setRequestHeaders(JSObject headers) {
+        delegate.setRequestHeaders(headers);
+    }
+
+    @Override
+    public void setRequestProperty(String key, String value) {
+        delegate.setRequestProperty(key, value);
+    }
+
+    @Override
+    public String getRequestProperty(String key) {
+        return delegate.getRequestProperty(key);
+    }
+
+    @Override
+    public void setDoOutput(boolean shouldDoOutput) {
+        delegate.setDoOutput(shouldDoOutput);
+    }
+
+    @Override
+    public void setRequestBody(PluginCall call, JSValue body) throws JSONException, IOException {
+        delegate.setRequestBody(call, body);
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return delegate.getOutputStream();
+    }
+
+    @Override
+    public void connect() throws IOException {
+        delegate.connect();
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+        return delegate.getResponseCode();
+    }
+
+    @Override
+    public URL getURL() {
+        return delegate.getURL();
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        return delegate.getHeaderFields();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        return delegate.getErrorStream();
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        return delegate.getHeaderField(name);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return delegate.getInputStream();
+    }
+
+    @Override
+    public JSObject getContentEncodingStats() {
+        return delegate.getContentEncodingStats();
+    }
+
+    @Override
+    public void release(boolean success) {
+        delegate.release(success);
+    }
+
+    @Override
+    public void disconnect() {
+        delegate.disconnect();
+    }
+}
@@ -0,0 +1,393 @@
+package com.getcapacitor.plugin.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * HPACK header compression for HTTP/2 (RFC 7541)
+ */
+final class Hpack {
+
+    static final int DEFAULT_HEADER_TABLE_SIZE = 4096;
+
+    private static final Header[] STATIC_TABLE = {
+        new Header(":authority", ""),
+        new Header(":method", "GET"),
+        new Header(":method", "POST"),
+        new Header(":path", "/"),
+        new Header(":path", "/index.html"),
+        new Header(":scheme", "http"),
+        new Header(":scheme", "https"),
+        new Header(":status", "200"),
+        new Header(":status", "204"),
+        new Header(":status", "206"),
+        new Header(":status", "304"),
+        new Header(":status", "400"),
+        new Header(":status", "404"),
+        new Header(":status", "500"),
+        new Header("accept-charset", ""),
+        new Header("accept-encoding", "gzip, deflate"),
+        new Header("accept-language", ""),
+        new Header("accept-ranges", ""),
+        new Header("accept", ""),
+        new Header("access-control-allow-origin", ""),
+        new Header("age", ""),
+        new Header("allow", ""),
+        new Header("authorization", ""),
+        new Header("cache-control", ""),
+        new Header("content-disposition", ""),
+        new Header("content-encoding", ""),
+        new Header("content-language", ""),
+        new Header("content-length", ""),
+        new Header("content-location", ""),
+        new Header("content-range", ""),
+        new Header("content-type", ""),
+        new Header("cookie", ""),
+        new Header("date", ""),
+        new Header("etag", ""),
+        new Header("expect", ""),
+        new Header("expires", ""),
+        new Header("from", ""),
+        new Header("host", ""),
+        new Header("if-match", ""),
+        new Header("if-modified-since", ""),
+        new Header("if-none-match", ""),
+        new Header("if-range", ""),
+        new Header("if-unmodified-since", ""),
+        new Header("last-modified", ""),
+        new Header("link", ""),
+        new Header("location", ""),
+        new Header("max-forwards", ""),
+        new Header("proxy-authenticate", ""),
+        new Header("proxy-authorization", ""),
+        new Header("range", ""),
+        new Header("referer", ""),
+        new Header("refresh", ""),
+        new Header("retry-after", ""),
+        new Header("server", ""),
+        new Header("set-cookie", ""),
+        new Header("strict-transport-security", ""),
+        new Header("transfer-encoding", ""),
+        new Header("user-agent", ""),
+        new Header("vary", ""),
+        new Header("via", ""),
+        new Header("www-authenticate", "")
+    };
+
+    private static final Map<String, Integer> STATIC_NAME_INDEX = new HashMap<>();
+    private static final Map<String, Integer> STATIC_ENTRY_INDEX = new HashMap<>();
+
+    static {
+        for (int i = STATIC_TABLE.length - 1; i >= 0; i--) {
+            STATIC_NAME_INDEX.put(STATIC_TABLE[i].name, i + 1);
+            if (!STATIC_TABLE[i].value.isEmpty()) {
+                STATIC_ENTRY_INDEX.put(STATIC_TABLE[i].name + '\u0000' + STATIC_TABLE[i].value, i + 1);
+            }
+        }
+    }
+
+    private Hpack() {}
+
+    /**
+     * A single header field, with a lowercase name
+     */
+    static final class Header {
+
+        final String name;
+        final String value;
+        final int size;
+
+        Header(String name, String value) {
+            this.name = name;
+            this.value = value;
+            // RFC 7541 section 4.1: the size of an entry is its octets plus 32
+            this.size = name.getBytes(StandardCharsets.UTF_8).length + value.getBytes(StandardCharsets.UTF_8).length + 32;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + value;
+        }
+    }
+
+    /**
+     * The dynamic table shared by an encoder or decoder and its peer. The newest entry has the
+     * lowest index.
+     */
+    private static final class DynamicTable {
+
+        private final List<Header> entries = new ArrayList<>();
+        private int size = 0;
+        private int maxSize;
+
+        DynamicTable(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        int length() {
+            return entries.size();
+        }
+
+        /**
+         * @param index the 1-based index within the dynamic table
+         */
+        Header get(int index) {
+            return entries.get(entries.size() - index);
+        }
+
+        void add(Header header) {
+            if (header.size > maxSize) {
+                entries.clear();
+                size = 0;
+                return;
+            }
+            evict(maxSize - header.size);
+            entries.add(header);
+            size += header.size;
+        }
+
+        void setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            evict(maxSize);
+        }
+
+        private void evict(int targetSize) {
+            while (size > targetSize && !entries.isEmpty()) {
+                size -= entries.remove(0).size;
+            }
+        }
+    }
+
+    /**
+     * Decodes header blocks received from the peer
+     */
+    static final class Reader {
+
+        private final DynamicTable table;
+        private final int maxTableSizeSetting;
+
+        private byte[] block;
+        private int position;
+
+        /**
+         * @param maxTableSizeSetting the SETTINGS_HEADER_TABLE_SIZE we advertised to the peer
+         */
+        Reader(int maxTableSizeSetting) {
+            this.maxTableSizeSetting = maxTableSizeSetting;
+            this.table = new DynamicTable(maxTableSizeSetting);
+        }
+
+        List<Header> decode(byte[] headerBlock) throws IOException {
+            block = headerBlock;
+            position = 0;
+            List<Header> headers = new ArrayList<>();
+
+            while (position < block.length) {
+                int b = block[position] & 0xFF;
+                if ((b & 0x80) != 0) {
+                    headers.add(lookup(readInt(7)));
+                } else if ((b & 0x40) != 0) {
+                    Header header = readLiteral(6);
+                    table.add(header);
+                    headers.add(header);
+                } else if ((b & 0x20) != 0) {
+                    int newSize = readInt(5);
+                    if (newSize > maxTableSizeSetting) {
+                        throw new IOException("HPACK dynamic table size update exceeds the advertised maximum: " + newSize);
+                    }
+                    table.setMaxSize(newSize);
+                } else {
+                    // literal without indexing (0000) or never indexed (0001)
+                    headers.add(readLiteral(4));
+                }
+            }
+
+            block = null;
+            return headers;
+        }
+
+        private Header lookup(int index) throws IOException {
+            if (index <= 0) {
+                throw new IOException("Invalid HPACK index: " + index);
+            }
+            if (index <= STATIC_TABLE.length) {
+                return STATIC_TABLE[index - 1];
+            }
+            int dynamicIndex = index - STATIC_TABLE.length;
+            if (dynamicIndex > table.length()) {
+                throw new IOException("HPACK index out of range: " + index);
+            }
+            return table.get(dynamicIndex);
+        }
+
+        private Header readLiteral(int prefixBits) throws IOException {
+            int nameIndex = readInt(prefixBits);
+            String name = nameIndex == 0 ? readString().toLowerCase(Locale.US) : lookup(nameIndex).name;
+            String value = readString();
+            return new Header(name, value);
+        }
+
+        private int readInt(int prefixBits) throws IOException {
+            int mask = (1 << prefixBits) - 1;
+            int value = readByte() & mask;
+            if (value < mask) {
+                return value;
+            }
+            int shift = 0;
+            int b;
+            do {
+                b = readByte();
+                if (shift > 28) {
+                    throw new IOException("HPACK integer overflow");
+                }
+                value += (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private String readString() throws IOException {
+            if (position >= block.length) {
+                throw new IOException("Truncated HPACK string");
+            }
+            boolean huffman = (block[position] & 0x80) != 0;
+            int length = readInt(7);
+            if (length > block.length - position) {
+                throw new IOException("Truncated HPACK string");
+            }
+            byte[] bytes = new byte[length];
+            System.arraycopy(block, position, bytes, 0, length);
+            position += length;
+            if (huffman) {
+                bytes = Huffman.decode(bytes);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private int readByte() throws IOException {
+            if (position >= block.length) {
+                throw new IOException("Truncated HPACK header block");
+            }
+            return block[position++] & 0xFF;
+        }
+    }
+
+    /**
+     * Encodes header blocks sent to the peer
+     */
+    static final class Writer {
+
+        private final DynamicTable table = new DynamicTable(DEFAULT_HEADER_TABLE_SIZE);
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        private int smallestPendingSize = Integer.MAX_VALUE;
+        private boolean sizeUpdatePending = false;
+
+        /**
+         * Applies the peer's SETTINGS_HEADER_TABLE_SIZE. The table never grows past the
+         * default size, to bound the memory spent per connection.
+         */
+        void setMaxTableSize(int settingSize) {
+            int newSize = Math.min(settingSize, DEFAULT_HEADER_TABLE_SIZE);
+            if (newSize == table.maxSize && !sizeUpdatePending) {
+                return;
+            }
+            smallestPendingSize = Math.min(smallestPendingSize, newSize);
+            sizeUpdatePending = true;
+            table.setMaxSize(newSize);
+        }
+
+        byte[] encode(List<Header> headers) {
+            out.reset();
+
+            if (sizeUpdatePending) {
+                if (smallestPendingSize < table.maxSize) {
+                    writeInt(smallestPendingSize, 5, 0x20);
+                }
+                writeInt(table.maxSize, 5, 0x20);
+                sizeUpdatePending = false;
+                smallestPendingSize = Integer.MAX_VALUE;
+            }
+
+            for (Header header : headers) {
+                writeHeader(header);
+            }
+            return out.toByteArray();
+        }
+
+        private void writeHeader(Header header) {
+            Integer staticIndex = STATIC_ENTRY_INDEX.get(header.name + '\u0000' + header.value);
+            if (staticIndex != null) {
+                writeInt(staticIndex, 7, 0x80);
+                return;
+            }
+
+            int nameIndex = 0;
+            for (int i = 1; i <= table.length(); i++) {
+                Header entry = table.get(i);
+                if (entry.name.equals(header.name)) {
+                    if (entry.value.equals(header.value)) {
+                        writeInt(STATIC_TABLE.length + i, 7, 0x80);
+                        return;
+                    }
+                    if (nameIndex == 0) {
+                        nameIndex = STATIC_TABLE.length + i;
+                    }
+                }
+            }
+            Integer staticNameIndex = STATIC_NAME_INDEX.get(header.name);
+            if (staticNameIndex != null) {
+                nameIndex = staticNameIndex;
+            }
+
+            if (isSensitive(header.name)) {
+                // literal never indexed, so intermediaries don't compress credentials either
+                writeInt(nameIndex, 4, 0x10);
+            } else {
+                writeInt(nameIndex, 6, 0x40);
+                table.add(header);
+            }
+            if (nameIndex == 0) {
+                writeString(header.name);
+            }
+            writeString(header.value);
+        }
+
+        private static boolean isSensitive(String name) {
+            return name.equals("authorization") || name.equals("proxy-authorization");
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int huffmanLength = Huffman.encodedLength(bytes);
+            if (huffmanLength < bytes.length) {
+                writeInt(huffmanLength, 7, 0x80);
+                Huffman.encode(bytes, out);
+            } else {
+                writeInt(bytes.length, 7, 0);
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+
+        private void writeInt(int value, int prefixBits, int bits) {
+            int mask = (1 << prefixBits) - 1;
+            if (value < mask) {
+                out.write(bits | value);
+                return;
+            }
+            out.write(bits | mask);
+            value -= mask;
+            while (value >= 0x80) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package com.getcapacitor.plugin.http;
 
 import android.Manifest;
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
 import android.os.Build;
 import android.util.Log;
 import com.getcapacitor.CapConfig;
@@ -8,13 +14,23 @@ import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginConfig;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.annotation.Permission;
+import java.io.File;
 import java.io.IOException;
 import java.net.HttpCookie;
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.json.JSONException;
 
 /**
  * Native HTTP Plugin
@@ -25,8 +41,17 @@ public class Http extends Plugin {
     public static final int HTTP_REQUEST_DOWNLOAD_WRITE_PERMISSIONS = 9022;
     public static final int HTTP_REQUEST_UPLOAD_READ_PERMISSIONS = 9023;
 
+    private static final Timer OUTBOX_RETRY_TIMER = new Timer("http-outbox-retry", true);
+
     CapConfig capConfig;
     CapacitorCookieManager cookieManager;
+    RequestDispatcher dispatcher;
+    RequestCoalescer coalescer;
+    ResponseMemoryCache memoryCache;
+    RequestOutbox outbox;
+    DownloadManager downloads;
+    final Map<String, ResponseStreamer> streamers = new ConcurrentHashMap<>();
+    final Map<String, RequestBatch> batches = new ConcurrentHashMap<>();
 
     private String[] getPermissions() {
         String[] permissions;
@@ -87,21 +112,341 @@ public class Http extends Plugin {
         }
     }
 
-    private void http(final PluginCall call, final String httpMethod) {
-        Runnable asyncHttpCall = new Runnable() {
+    /**
+     * Work run on a dispatcher worker on behalf of a tracked request
+     */
+    private abstract static class RequestTask {
+
+        /**
+         * Runs the request. Must settle the call.
+         */
+        abstract void run(RequestRegistry.Entry entry);
+
+        /**
+         * Called when the request was cancelled before it started; the call is rejected by the caller
+         */
+        void cancelled(RequestRegistry.Entry entry) {}
+    }
+
+    /**
+     * Registers the call with the request registry
+     * @return the registry entry, or null if the call was rejected
+     */
+    private RequestRegistry.Entry register(PluginCall call, String type) {
+        try {
+            return HttpRequestHandler.getRequestRegistry().register(call, type);
+        } catch (IllegalArgumentException e) {
+            call.reject(e.getMessage(), "DUPLICATE_REQUEST_ID");
+            return null;
+        }
+    }
+
+    /**
+     * Registers the call with the request registry and runs it on the dispatcher, so that it can
+     * be cancelled while queued or running
+     * @param call the plugin call
+     * @param type the kind of request, reported by {@code getActiveRequests}
+     * @param task the work to run
+     */
+    private void dispatch(final PluginCall call, String type, final RequestTask task) {
+        RequestRegistry.Entry entry = register(call, type);
+        if (entry != null) {
+            dispatch(entry, task);
+        }
+    }
+
+    private void dispatch(final RequestRegistry.Entry entry, final RequestTask task) {
+        final RequestRegistry requests = HttpRequestHandler.getRequestRegistry();
+        final PluginCall call = entry.call;
+        Runnable runnable = new Runnable() {
             @Override
             public void run() {
+                if (!requests.start(entry)) {
+                    call.reject(RequestRegistry.CANCELLED_MESSAGE, RequestRegistry.CANCELLED_CODE);
+                    task.cancelled(entry);
+                    requests.finished(entry);
+                    return;
+                }
                 try {
-                    JSObject response = HttpRequestHandler.request(call, httpMethod);
-                    call.resolve(response);
-                } catch (Exception e) {
-                    System.out.println(e.toString());
-                    call.reject(e.getClass().getSimpleName(), e);
+                    task.run(entry);
+                } finally {
+                    requests.finished(entry);
                 }
             }
         };
-        Thread httpThread = new Thread(asyncHttpCall);
-        httpThread.start();
+        URI uri = getUri(call.getString("url", ""));
+        String host = uri != null ? uri.getHost() : null;
+        final RequestDispatcher.Call dispatcherCall = dispatcher.enqueue(host, call.getInt("priority", 0), runnable);
+        requests.setPending(
+            entry,
+            new RequestRegistry.Pending() {
+                @Override
+                public boolean cancel() {
+                    if (!dispatcherCall.cancel()) {
+                        return false;
+                    }
+                    task.cancelled(entry);
+                    return true;
+                }
+            }
+        );
+    }
+
+    /**
+     * Rejects a failed request, reporting it as cancelled if it failed because it was cancelled
+     */
+    private void reject(PluginCall call, RequestRegistry.Entry entry, String message, Exception e) {
+        if (entry.isCancelled()) {
+            call.reject(RequestRegistry.CANCELLED_MESSAGE, RequestRegistry.CANCELLED_CODE);
+        } else {
+            call.reject(message, e);
+        }
+    }
+
+    /**
+     * Creates the streamer a request with the {@code stream} option hands its body to, which emits
+     * it as {@code responseChunk} events
+     */
+    private ResponseStreamer createStreamer(PluginCall call, RequestRegistry.Entry entry) {
+        ResponseStreamer streamer = new ResponseStreamer(
+            entry.id,
+            call.getInt("streamChunkSize", ResponseStreamer.DEFAULT_CHUNK_SIZE),
+            call.getInt("streamWindow", (int) ResponseStreamer.DEFAULT_WINDOW_MS),
+            call.getInt("streamMaxPending", 0),
+            new ResponseStreamer.Listener() {
+                @Override
+                public void onChunk(JSObject chunk) {
+                    notifyListeners("responseChunk", chunk);
+                }
+            }
+        );
+        streamers.put(entry.id, streamer);
+        return streamer;
+    }
+
+    private void http(final PluginCall call, final String httpMethod) {
+        final String method = httpMethod != null ? httpMethod.toUpperCase() : call.getString("method", "").toUpperCase();
+        final boolean stream = call.getBoolean("stream", false);
+        // a streamed body goes to listeners of this request only, so it can't be shared
+        final String coalesceKey = stream ? null : coalescer.getKey(call, method);
+        final boolean queueWhenOffline = call.getBoolean("queueWhenOffline", false) && HttpRequestHandler.isMutating(method);
+        String id = null;
+        if (queueWhenOffline) {
+            try {
+                id = RequestOutbox.attachIdempotencyKey(call.getData());
+            } catch (JSONException e) {
+                call.reject("Headers must be an object", e);
+                return;
+            }
+        }
+        final String queueId = id;
+        if (queueWhenOffline && !isOnline() && queue(call, method, queueId)) {
+            return;
+        }
+        final String memoryKey = stream ? null : memoryCache.getKey(call, method);
+        if (memoryKey != null) {
+            ResponseMemoryCache.Hit hit = memoryCache.get(memoryKey, call.getInt("maxAge", 0), call.getInt("staleWhileRevalidate", 0));
+            if (hit != null) {
+                call.resolve(hit.response);
+                if (hit.stale && memoryCache.startRefresh(memoryKey)) {
+                    refresh(call, httpMethod, memoryKey);
+                }
+                return;
+            }
+        }
+        final RequestRegistry.Entry entry = register(call, "request");
+        if (entry == null) {
+            return;
+        }
+
+        if (coalesceKey != null && coalescer.join(coalesceKey, entry)) {
+            // an identical request is in flight; wait for its result instead of sending another
+            HttpRequestHandler
+                .getRequestRegistry()
+                .setPending(
+                    entry,
+                    new RequestRegistry.Pending() {
+                        @Override
+                        public boolean cancel() {
+                            return coalescer.leave(coalesceKey, entry);
+                        }
+                    }
+                );
+            return;
+        }
+        send(entry, httpMethod, method, coalesceKey, memoryKey, queueId, stream);
+    }
+
+    /**
+     * Sends a request on the dispatcher. If it leads a coalesced flight, the requests waiting on
+     * it settle with its outcome, or the first of them is sent in its place if it is cancelled.
+     * @param queueId the outbox ID to journal the request with if it can't reach the server, or
+     *                null if it isn't queued when offline
+     */
+    private void send(
+        RequestRegistry.Entry entry,
+        final String httpMethod,
+        final String method,
+        final String coalesceKey,
+        final String memoryKey,
+        final String queueId,
+        final boolean stream
+    ) {
+        final PluginCall call = entry.call;
+        dispatch(
+            entry,
+            new RequestTask() {
+                @Override
+                public void run(RequestRegistry.Entry entry) {
+                    ResponseStreamer streamer = stream ? createStreamer(call, entry) : null;
+                    try {
+                        JSObject response = HttpRequestHandler.request(call, httpMethod, streamer);
+                        if (memoryKey != null) {
+                            memoryCache.put(memoryKey, call.getString("url", ""), response);
+                        }
+                        call.resolve(response);
+                        settleFollowers(response, null);
+                    } catch (Exception e) {
+                        System.out.println(e.toString());
+                        boolean unreachable = RequestOutbox.failedBeforeSending(e, entry.isSent());
+                        if (queueId != null && unreachable && !entry.isCancelled() && queue(call, method, queueId)) {
+                            return;
+                        }
+                        reject(call, entry, e.getClass().getSimpleName(), e);
+                        if (entry.isCancelled()) {
+                            handOver();
+                        } else {
+                            settleFollowers(null, e);
+                        }
+                    } finally {
+                        if (streamer != null) {
+                            streamers.remove(entry.id);
+                        }
+                    }
+                }
+
+                @Override
+                void cancelled(RequestRegistry.Entry entry) {
+                    handOver();
+                }
+
+                private void settleFollowers(JSObject response, Exception e) {
+                    if (coalesceKey == null) {
+                        return;
+                    }
+                    for (RequestRegistry.Entry follower : coalescer.complete(coalesceKey)) {
+                        if (e == null) {
+                            follower.call.resolve(response);
+                        } else {
+                            follower.call.reject(e.getClass().getSimpleName(), e);
+                        }
+                        HttpRequestHandler.getRequestRegistry().finished(follower);
+                    }
+                }
+
+                /**
+                 * Sends the first request waiting on this one in its place, so cancelling this
+                 * request doesn't cancel the others
+                 */
+                private void handOver() {
+                    if (coalesceKey == null) {
+                        return;
+                    }
+                    RequestRegistry.Entry next = coalescer.promote(coalesceKey);
+                    if (next != null) {
+                        send(next, method, method, coalesceKey, memoryCache.getKey(next.call, method), null, false);
+                    }
+                }
+            }
+        );
+    }
+
+    /**
+     * Journals a mutating request that can't reach the server, to be sent again once the
+     * network is back, and resolves its call with the ID of the outbox entry
+     * @return false if the request couldn't be journaled and must be settled as usual
+     */
+    private boolean queue(PluginCall call, String method, String queueId) {
+        try {
+            String id = outbox.add(queueId, method, call.getData());
+            JSObject response = new JSObject();
+            response.put("status", 0);
+            response.put("headers", new JSObject());
+            response.put("data", "");
+            response.put("url", call.getString("url", ""));
+            response.put("queueId", id);
+            call.resolve(response);
+            return true;
+        } catch (IOException | JSONException e) {
+            Log.e(getLogTag(), "Unable to queue " + call.getString("url"), e);
+            return false;
+        }
+    }
+
+    /**
+     * Whether the device has a network with internet access, the same kind of network whose
+     * arrival replays the outbox. Without a default network the device is offline.
+     */
+    @SuppressWarnings("deprecation")
+    private boolean isOnline() {
+        ConnectivityManager connectivity = (ConnectivityManager) getContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivity == null) {
+            // nothing to tell by; the request itself will find out
+            return true;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            Network network = connectivity.getActiveNetwork();
+            NetworkCapabilities capabilities = network != null ? connectivity.getNetworkCapabilities(network) : null;
+            return capabilities != null && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+        }
+        NetworkInfo network = connectivity.getActiveNetworkInfo();
+        return network != null && network.isConnected();
+    }
+
+    /**
+     * Replays the outbox whenever a network with internet access becomes available, which
+     * includes straight away if one already is
+     */
+    private void replayOutboxWhenOnline() {
+        ConnectivityManager connectivity = (ConnectivityManager) getContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (connectivity == null) {
+            outbox.replay();
+            return;
+        }
+        NetworkRequest request = new NetworkRequest.Builder().addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET).build();
+        connectivity.registerNetworkCallback(
+            request,
+            new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onAvailable(Network network) {
+                    outbox.replay();
+                }
+            }
+        );
+    }
+
+    /**
+     * Fetches a response again in the background after its stale copy was returned from memory,
+     * so the next request gets the fresh one
+     */
+    private void refresh(final PluginCall call, final String httpMethod, final String memoryKey) {
+        URI uri = getUri(call.getString("url", ""));
+        dispatcher.enqueue(
+            uri != null ? uri.getHost() : null,
+            call.getInt("priority", 0),
+            new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        memoryCache.put(memoryKey, call.getString("url", ""), HttpRequestHandler.request(call, httpMethod));
+                    } catch (Exception e) {
+                        Log.w(getLogTag(), "Unable to refresh " + call.getString("url"), e);
+                    } finally {
+                        memoryCache.refreshed(memoryKey);
+                    }
+                }
+            }
+        );
     }
 
     @Override
@@ -109,6 +454,142 @@ public class Http extends Plugin {
         this.cookieManager = new CapacitorCookieManager(null, java.net.CookiePolicy.ACCEPT_ALL);
         java.net.CookieHandler.setDefault(cookieManager);
         capConfig = getBridge().getConfig();
+
+        PluginConfig pluginConfig = capConfig.getPluginConfiguration("Http");
+        this.dispatcher =
+            new RequestDispatcher(
+                pluginConfig.getInt("maxRequests", RequestDispatcher.DEFAULT_MAX_REQUESTS),
+                pluginConfig.getInt("maxRequestsPerHost", RequestDispatcher.DEFAULT_MAX_REQUESTS_PER_HOST)
+            );
+
+        int keepAliveDuration = pluginConfig.getInt("keepAliveDuration", (int) ConnectionPool.DEFAULT_KEEP_ALIVE_DURATION_MS);
+        ConnectionPool connectionPool = new ConnectionPool(
+            pluginConfig.getBoolean("keepAlive", true),
+            pluginConfig.getInt("maxIdleConnections", ConnectionPool.DEFAULT_MAX_IDLE_CONNECTIONS),
+            keepAliveDuration
+        );
+        connectionPool.install();
+
+        HttpTransportRegistry transports = new HttpTransportRegistry(connectionPool);
+        transports.register(new Http2Transport(keepAliveDuration));
+        transports.register(
+            new NioTransport(
+                pluginConfig.getInt("maxIdleConnectionsPerHost", NioTransport.DEFAULT_MAX_IDLE_CONNECTIONS_PER_HOST),
+                keepAliveDuration
+            )
+        );
+        String defaultTransport = pluginConfig.getString(
+            "transport",
+            pluginConfig.getBoolean("http2", false) ? Http2Transport.NAME : ConnectionPool.NAME
+        );
+        try {
+            transports.setDefault(defaultTransport);
+        } catch (IllegalArgumentException e) {
+            Log.w(getLogTag(), "Unknown transport '" + defaultTransport + "' in config, using " + ConnectionPool.NAME);
+        }
+        HttpRequestHandler.setTransportRegistry(transports);
+        HttpRequestHandler.setRequestRegistry(new RequestRegistry());
+        HttpRequestHandler.setResponseSpill(
+            new File(FilesystemUtils.getDirectory(getContext(), FilesystemUtils.DIRECTORY_CACHE), "http-responses"),
+            pluginConfig.getInt("spillThreshold", -1)
+        );
+        HttpRequestHandler.setHttpCache(
+            new HttpCache(
+                new File(FilesystemUtils.getDirectory(getContext(), FilesystemUtils.DIRECTORY_CACHE), "http-cache"),
+                pluginConfig.getInt("cacheSize", 0)
+            )
+        );
+        HttpRequestHandler.setDownloadMetadataStore(
+            new DownloadMetadataStore(new File(FilesystemUtils.getDirectory(getContext(), FilesystemUtils.DIRECTORY_DATA), "http-download-metadata"))
+        );
+
+        this.outbox =
+            new RequestOutbox(
+                new File(FilesystemUtils.getDirectory(getContext(), FilesystemUtils.DIRECTORY_DATA), "http-outbox"),
+                pluginConfig.getInt("outboxConcurrency", RequestOutbox.DEFAULT_CONCURRENCY),
+                pluginConfig.getInt("outboxMaxAttempts", RequestOutbox.DEFAULT_MAX_ATTEMPTS),
+                new RequestOutbox.Submitter() {
+                    @Override
+                    public void submit(PluginCall entryCall) {
+                        http(entryCall, null);
+                    }
+                },
+                new RequestOutbox.Scheduler() {
+                    @Override
+                    public void schedule(final Runnable replay, long delayMs) {
+                        OUTBOX_RETRY_TIMER.schedule(
+                            new TimerTask() {
+                                @Override
+                                public void run() {
+                                    // offline, the replay waits for the network to come back
+                                    if (isOnline()) {
+                                        replay.run();
+                                    }
+                                }
+                            },
+                            delayMs
+                        );
+                    }
+                },
+                new RequestOutbox.Listener() {
+                    @Override
+                    public void onEntry(JSObject event) {
+                        notifyListeners("outboxEntry", event);
+                    }
+                }
+            );
+        this.downloads =
+            new DownloadManager(
+                new File(FilesystemUtils.getDirectory(getContext(), FilesystemUtils.DIRECTORY_DATA), "http-downloads"),
+                pluginConfig.getInt("downloadConcurrency", DownloadManager.DEFAULT_CONCURRENCY),
+                new DownloadManager.Runner() {
+                    @Override
+                    public JSObject run(String id, JSObject options, HttpRequestHandler.ProgressEmitter progress) throws Exception {
+                        PluginCall transferCall = new PluginCall(null, "Http", "download/" + id, "downloadFile", options);
+                        RequestRegistry requests = HttpRequestHandler.getRequestRegistry();
+                        RequestRegistry.Entry entry = requests.register(transferCall, "download");
+                        try {
+                            if (!requests.start(entry)) {
+                                throw new RequestCancelledException();
+                            }
+                            return HttpRequestHandler.downloadFile(transferCall, getContext(), progress);
+                        } finally {
+                            requests.finished(entry);
+                        }
+                    }
+
+                    @Override
+                    public void cancel(String id) {
+                        HttpRequestHandler.getRequestRegistry().cancel(id);
+                    }
+
+                    @Override
+                    public void discard(JSObject options) {
+                        FileDownloader.discard(
+                            FilesystemUtils.getFileObject(
+                                getContext(),
+                                options.getString("filePath"),
+                                options.getString("fileDirectory", FilesystemUtils.DIRECTORY_DOCUMENTS)
+                            )
+                        );
+                    }
+                },
+                new DownloadManager.Listener() {
+                    @Override
+                    public void onTransfer(JSObject event) {
+                        notifyListeners("downloadTransfer", event);
+                    }
+                }
+            );
+        this.memoryCache = new ResponseMemoryCache(pluginConfig.getInt("memoryCacheSize", 0));
+        this.coalescer =
+            new RequestCoalescer(
+                pluginConfig.getBoolean("coalesceRequests", false),
+                pluginConfig.getArray("coalesceHeaders", RequestCoalescer.DEFAULT_KEY_HEADERS)
+            );
+        replayOutboxWhenOnline();
+        downloads.start();
+
         requestMediaPermissions();
     }
 
@@ -142,6 +623,65 @@ public class Http extends Plugin {
         this.http(call, "DELETE");
     }
 
+    @PluginMethod
+    public void requestBatch(final PluginCall call) {
+        JSArray requests = call.getArray("requests");
+        if (requests == null) {
+            call.reject("Must provide an array of requests");
+            return;
+        }
+
+        final String batchId = call.getString("batchId", UUID.randomUUID().toString());
+        String tag = call.getString("tag");
+        List<JSObject> items = new ArrayList<>();
+        try {
+            for (int i = 0; i < requests.length(); i++) {
+                JSObject item = JSObject.fromJSONObject(requests.getJSONObject(i));
+                if (tag != null && !item.has("tag")) {
+                    item.put("tag", tag);
+                }
+                items.add(item);
+            }
+        } catch (JSONException e) {
+            call.reject("Requests must be request options", e);
+            return;
+        }
+
+        RequestBatch.Listener listener = null;
+        if (call.getBoolean("emitEvents", false)) {
+            listener =
+                new RequestBatch.Listener() {
+                    @Override
+                    public void onItem(JSObject item) {
+                        notifyListeners("batchItem", item);
+                    }
+                };
+        }
+        final RequestBatch batch = new RequestBatch(
+            batchId,
+            call,
+            items,
+            call.getInt("concurrency", RequestBatch.DEFAULT_CONCURRENCY),
+            new RequestBatch.Submitter() {
+                @Override
+                public void submit(PluginCall itemCall) {
+                    http(itemCall, null);
+                }
+            },
+            listener
+        );
+        batches.put(batchId, batch);
+        batch.setOnComplete(
+            new Runnable() {
+                @Override
+                public void run() {
+                    batches.remove(batchId, batch);
+                }
+            }
+        );
+        batch.start();
+    }
+
     @PluginMethod
     public void downloadFile(final PluginCall call) {
         try {
@@ -153,49 +693,89 @@ public class Http extends Plugin {
 
                 HttpRequestHandler.ProgressEmitter emitter = new HttpRequestHandler.ProgressEmitter() {
                     @Override
-                    public void emit(Integer bytes, Integer contentLength) {
+                    public void emit(long bytes, long contentLength) {
                         // no-op
                     }
                 };
                 Boolean progress = call.getBoolean("progress", false);
                 if (progress) {
                     emitter =
-                        new HttpRequestHandler.ProgressEmitter() {
+                        new HttpRequestHandler.EntryProgressEmitter() {
+                            @Override
+                            public void emit(long bytes, long contentLength) {
+                                JSObject ret = new JSObject();
+                                ret.put("type", "DOWNLOAD");
+                                ret.put("url", call.getString("url"));
+                                ret.put("bytes", bytes);
+                                ret.put("contentLength", contentLength);
+
+                                notifyListeners("progress", ret);
+                            }
+
                             @Override
-                            public void emit(final Integer bytes, final Integer contentLength) {
+                            public void emitEntry(String entry, int entries, long bytes, long contentLength) {
                                 JSObject ret = new JSObject();
                                 ret.put("type", "DOWNLOAD");
                                 ret.put("url", call.getString("url"));
                                 ret.put("bytes", bytes);
                                 ret.put("contentLength", contentLength);
+                                ret.put("entry", entry);
+                                ret.put("entries", entries);
 
                                 notifyListeners("progress", ret);
                             }
                         };
                 }
 
-                JSObject response = HttpRequestHandler.downloadFile(call, getContext(), emitter);
-                call.resolve(response);
+                final HttpRequestHandler.ProgressEmitter progressEmitter = emitter;
+                dispatch(
+                    call,
+                    "download",
+                    new RequestTask() {
+                        @Override
+                        public void run(RequestRegistry.Entry entry) {
+                            try {
+                                JSObject response = HttpRequestHandler.downloadFile(call, getContext(), progressEmitter);
+                                call.resolve(response);
+                            } catch (MalformedURLException ex) {
+                                reject(call, entry, "Invalid URL", ex);
+                            } catch (IOException ex) {
+                                reject(call, entry, "IO Error", ex);
+                            } catch (Exception ex) {
+                                reject(call, entry, "Error", ex);
+                            }
+                        }
+                    }
+                );
             }
-        } catch (MalformedURLException ex) {
-            call.reject("Invalid URL", ex);
-        } catch (IOException ex) {
-            call.reject("IO Error", ex);
         } catch (Exception ex) {
             call.reject("Error", ex);
         }
     }
 
     @PluginMethod
-    public void uploadFile(PluginCall call) {
+    public void uploadFile(final PluginCall call) {
         try {
             String fileDirectory = call.getString("fileDirectory", FilesystemUtils.DIRECTORY_DOCUMENTS);
             bridge.saveCall(call);
 
             if (!FilesystemUtils.isPublicDirectory(fileDirectory) || isStoragePermissionGranted(call, getPermissions()[0])) {
                 call.release(bridge);
-                JSObject response = HttpRequestHandler.uploadFile(call, getContext());
-                call.resolve(response);
+                dispatch(
+                    call,
+                    "upload",
+                    new RequestTask() {
+                        @Override
+                        public void run(RequestRegistry.Entry entry) {
+                            try {
+                                JSObject response = HttpRequestHandler.uploadFile(call, getContext());
+                                call.resolve(response);
+                            } catch (Exception ex) {
+                                reject(call, entry, "Error", ex);
+                            }
+                        }
+                    }
+                );
             }
         } catch (Exception ex) {
             call.reject("Error", ex);
@@ -289,4 +869,161 @@ public class Http extends Plugin {
         cookieManager.removeAllCookies();
         call.resolve();
     }
+
+    @PluginMethod
+    public void cancel(PluginCall call) {
+        String requestId = call.getString("requestId");
+        if (requestId == null) {
+            call.reject("Must provide a requestId");
+            return;
+        }
+        boolean cancelled = HttpRequestHandler.getRequestRegistry().cancel(requestId);
+        // a request of a batch that hasn't been sent yet isn't in the registry
+        for (RequestBatch batch : batches.values()) {
+            cancelled |= batch.cancel("requestId", requestId) > 0;
+        }
+        JSObject ret = new JSObject();
+        ret.put("cancelled", cancelled);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void cancelAll(PluginCall call) {
+        String tag = call.getString("tag");
+        int cancelled = HttpRequestHandler.getRequestRegistry().cancelAll(tag);
+        for (RequestBatch batch : batches.values()) {
+            cancelled += batch.cancel("tag", tag);
+        }
+        JSObject ret = new JSObject();
+        ret.put("cancelled", cancelled);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void ackChunk(PluginCall call) {
+        String requestId = call.getString("requestId");
+        Integer index = call.getInt("index");
+        if (requestId == null || index == null) {
+            call.reject("Must provide a requestId and index");
+            return;
+        }
+        ResponseStreamer streamer = streamers.get(requestId);
+        if (streamer != null) {
+            streamer.acknowledge(index);
+        }
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void invalidateCache(PluginCall call) {
+        String urlPrefix = call.getString("urlPrefix");
+        if (urlPrefix == null) {
+            call.reject("Must provide a urlPrefix");
+            return;
+        }
+        JSObject result = new JSObject();
+        result.put("memory", memoryCache.invalidate(urlPrefix));
+        result.put("disk", HttpRequestHandler.getHttpCache().invalidate(urlPrefix));
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void getOutbox(PluginCall call) {
+        JSObject result = new JSObject();
+        result.put("entries", outbox.list());
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void replayOutbox(PluginCall call) {
+        outbox.replay();
+        call.resolve();
+    }
+
+    @PluginMethod
+    public void enqueueDownload(PluginCall call) {
+        String fileDirectory = call.getString("fileDirectory", FilesystemUtils.DIRECTORY_DOCUMENTS);
+        if (FilesystemUtils.isPublicDirectory(fileDirectory) && !hasPermission(getPermissions()[0])) {
+            // a background transfer can't wait for the user to answer a permission prompt
+            call.reject("Permission to write to " + fileDirectory + " has not been granted");
+            return;
+        }
+        try {
+            JSObject result = new JSObject();
+            result.put("id", downloads.enqueue(call.getData()));
+            call.resolve(result);
+        } catch (IOException | JSONException ex) {
+            call.reject("Unable to queue the download", ex);
+        }
+    }
+
+    @PluginMethod
+    public void getDownloads(PluginCall call) {
+        JSObject result = new JSObject();
+        result.put("transfers", downloads.list());
+        call.resolve(result);
+    }
+
+    @PluginMethod
+    public void pauseDownload(PluginCall call) {
+        String id = call.getString("id");
+        if (id == null) {
+            call.reject("Must provide an id");
+            return;
+        }
+        JSObject ret = new JSObject();
+        ret.put("paused", downloads.pause(id));
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void resumeDownload(PluginCall call) {
+        String id = call.getString("id");
+        if (id == null) {
+            call.reject("Must provide an id");
+            return;
+        }
+        JSObject ret = new JSObject();
+        ret.put("resumed", downloads.resume(id));
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void removeDownload(PluginCall call) {
+        String id = call.getString("id");
+        if (id == null) {
+            call.reject("Must provide an id");
+            return;
+        }
+        JSObject ret = new JSObject();
+        ret.put("removed", downloads.remove(id));
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void getActiveRequests(PluginCall call) {
+        call.resolve(HttpRequestHandler.getRequestRegistry().getActiveRequests());
+    }
+
+    @PluginMethod
+    public void getStats(PluginCall call) {
+        JSObject stats = new JSObject();
+        stats.put("dispatcher", dispatcher.getStats());
+        stats.put("requests", HttpRequestHandler.getRequestRegistry().getStats());
+        stats.put("coalescer", coalescer.getStats());
+        stats.put("compression", ContentDecoder.getStats());
+        stats.put("cache", HttpRequestHandler.getHttpCache().getStats());
+        stats.put("memoryCache", memoryCache.getStats());
+        stats.put("outbox", outbox.getStats());
+        stats.put("downloads", downloads.getStats());
+        HttpTransportRegistry transports = HttpRequestHandler.getTransportRegistry();
+        stats.put("transport", transports.getDefaultName());
+        stats.put("connectionPool", transports.get(ConnectionPool.NAME).getStats());
+        for (String name : transports.getNames()) {
+            if (!name.equals(ConnectionPool.NAME)) {
+                stats.put(name, transports.get(name).getStats());
+            }
+        }
+        call.resolve(stats);
+    }
 }
@@ -0,0 +1,631 @@
+package com.getcapacitor.plugin.http;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single HTTP/2 connection (RFC 7540) that multiplexes many concurrent {@link Http2Stream}s
+ * over one socket. Frames are read by a dedicated reader thread; writes are serialized on the
+ * connection's writer lock.
+ */
+final class Http2Connection {
+
+    static final int TYPE_DATA = 0x0;
+    static final int TYPE_HEADERS = 0x1;
+    static final int TYPE_PRIORITY = 0x2;
+    static final int TYPE_RST_STREAM = 0x3;
+    static final int TYPE_SETTINGS = 0x4;
+    static final int TYPE_PUSH_PROMISE = 0x5;
+    static final int TYPE_PING = 0x6;
+    static final int TYPE_GOAWAY = 0x7;
+    static final int TYPE_WINDOW_UPDATE = 0x8;
+    static final int TYPE_CONTINUATION = 0x9;
+
+    static final int FLAG_END_STREAM = 0x1;
+    static final int FLAG_ACK = 0x1;
+    static final int FLAG_END_HEADERS = 0x4;
+    static final int FLAG_PADDED = 0x8;
+    static final int FLAG_PRIORITY = 0x20;
+
+    static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+    static final int SETTINGS_ENABLE_PUSH = 0x2;
+    static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+
+    static final int ERROR_NO_ERROR = 0x0;
+    static final int ERROR_PROTOCOL_ERROR = 0x1;
+    static final int ERROR_FLOW_CONTROL_ERROR = 0x3;
+    static final int ERROR_STREAM_CLOSED = 0x5;
+    static final int ERROR_FRAME_SIZE_ERROR = 0x6;
+    static final int ERROR_REFUSED_STREAM = 0x7;
+    static final int ERROR_CANCEL = 0x8;
+
+    static final int DEFAULT_INITIAL_WINDOW_SIZE = 65535;
+    static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+
+    /**
+     * The per-stream receive window we advertise. It bounds how much unread data a stream buffers.
+     */
+    static final int STREAM_RECEIVE_WINDOW = 4 * 1024 * 1024;
+
+    /**
+     * The receive window for the whole connection, shared by all streams
+     */
+    static final int CONNECTION_RECEIVE_WINDOW = 16 * 1024 * 1024;
+
+    private static final byte[] CONNECTION_PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final Object writeLock = new Object();
+
+    private final Hpack.Reader hpackReader = new Hpack.Reader(Hpack.DEFAULT_HEADER_TABLE_SIZE);
+    private final Hpack.Writer hpackWriter = new Hpack.Writer();
+
+    private final Map<Integer, Http2Stream> streams = new HashMap<>();
+    private int nextStreamId = 1;
+    private int reservedStreams = 0;
+
+    private int peerInitialWindowSize = DEFAULT_INITIAL_WINDOW_SIZE;
+    private volatile int peerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+    private int peerMaxConcurrentStreams = Integer.MAX_VALUE;
+    private long connectionSendWindow = DEFAULT_INITIAL_WINDOW_SIZE;
+    private long unacknowledgedBytesRead = 0;
+
+    private boolean shutdown = false;
+    private IOException failure;
+    private long idleSince = System.currentTimeMillis();
+
+    Http2Connection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 16 * 1024));
+        this.out = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024);
+    }
+
+    /**
+     * Sends the connection preface and our settings, then starts reading frames
+     * @param name a name for the reader thread
+     */
+    void start(String name) throws IOException {
+        synchronized (writeLock) {
+            out.write(CONNECTION_PREFACE);
+
+            byte[] settings = new byte[18];
+            putSetting(settings, 0, SETTINGS_ENABLE_PUSH, 0);
+            putSetting(settings, 6, SETTINGS_INITIAL_WINDOW_SIZE, STREAM_RECEIVE_WINDOW);
+            putSetting(settings, 12, SETTINGS_HEADER_TABLE_SIZE, Hpack.DEFAULT_HEADER_TABLE_SIZE);
+            writeFrameLocked(TYPE_SETTINGS, 0, 0, settings, 0, settings.length);
+            writeWindowUpdateLocked(0, CONNECTION_RECEIVE_WINDOW - DEFAULT_INITIAL_WINDOW_SIZE);
+            out.flush();
+        }
+
+        Thread reader = new Thread(
+            new Runnable() {
+                @Override
+                public void run() {
+                    readLoop();
+                }
+            },
+            "CapacitorHttp HTTP/2 " + name
+        );
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * @return true if new streams can still be opened on this connection
+     */
+    synchronized boolean isUsable() {
+        return !shutdown && !socket.isClosed();
+    }
+
+    /**
+     * @return how long, in milliseconds, the connection has had no open streams, or 0 if busy
+     */
+    synchronized long idleDuration(long now) {
+        return streams.isEmpty() && reservedStreams == 0 ? now - idleSince : 0;
+    }
+
+    synchronized int activeStreamCount() {
+        return streams.size();
+    }
+
+    /**
+     * Opens a new stream by sending its request headers
+     * @param headers the request headers, pseudo-headers first
+     * @param endStream true if the request has no body
+     * @param readTimeout how long to wait for response data, in milliseconds (0 waits forever)
+     */
+    Http2Stream newStream(List<Hpack.Header> headers, boolean endStream, int readTimeout) throws IOException {
+        synchronized (this) {
+            while (!shutdown && streams.size() + reservedStreams >= peerMaxConcurrentStreams) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for a free HTTP/2 stream");
+                }
+            }
+            if (shutdown) {
+                throw new IOException("HTTP/2 connection is shut down", failure);
+            }
+            reservedStreams++;
+        }
+
+        synchronized (writeLock) {
+            Http2Stream stream;
+            synchronized (this) {
+                reservedStreams--;
+                if (shutdown) {
+                    notifyAll();
+                    throw new IOException("HTTP/2 connection is shut down", failure);
+                }
+                int id = nextStreamId;
+                nextStreamId += 2;
+                stream = new Http2Stream(this, id, peerInitialWindowSize, readTimeout);
+                streams.put(id, stream);
+            }
+            if (endStream) {
+                stream.localClosed();
+            }
+            writeHeadersLocked(stream.getId(), hpackWriter.encode(headers), endStream);
+            out.flush();
+            return stream;
+        }
+    }
+
+    private void writeHeadersLocked(int streamId, byte[] block, boolean endStream) throws IOException {
+        int maxFrameSize = peerMaxFrameSize;
+        int length = Math.min(block.length, maxFrameSize);
+        int flags = (endStream ? FLAG_END_STREAM : 0) | (length == block.length ? FLAG_END_HEADERS : 0);
+        writeFrameLocked(TYPE_HEADERS, flags, streamId, block, 0, length);
+
+        int offset = length;
+        while (offset < block.length) {
+            length = Math.min(block.length - offset, maxFrameSize);
+            flags = offset + length == block.length ? FLAG_END_HEADERS : 0;
+            writeFrameLocked(TYPE_CONTINUATION, flags, streamId, block, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Writes request body bytes, blocking while the stream or connection send window is exhausted
+     */
+    void writeData(Http2Stream stream, byte[] data, int offset, int length) throws IOException {
+        while (length > 0) {
+            int chunk;
+            synchronized (this) {
+                while (stream.sendWindow <= 0 || connectionSendWindow <= 0) {
+                    stream.checkWritable();
+                    if (shutdown) {
+                        throw new IOException("HTTP/2 connection is shut down", failure);
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for the HTTP/2 send window");
+                    }
+                }
+                stream.checkWritable();
+                chunk = (int) Math.min(Math.min(length, peerMaxFrameSize), Math.min(stream.sendWindow, connectionSendWindow));
+                stream.sendWindow -= chunk;
+                connectionSendWindow -= chunk;
+            }
+            writeFrame(TYPE_DATA, 0, stream.getId(), data, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Half-closes the stream by sending an empty DATA frame with END_STREAM set
+     */
+    void writeEndStream(Http2Stream stream) throws IOException {
+        writeFrame(TYPE_DATA, FLAG_END_STREAM, stream.getId(), new byte[0], 0, 0);
+    }
+
+    void writeReset(int streamId, int errorCode) throws IOException {
+        byte[] payload = new byte[4];
+        putInt(payload, 0, errorCode);
+        writeFrame(TYPE_RST_STREAM, 0, streamId, payload, 0, 4);
+    }
+
+    void writeWindowUpdate(int streamId, long increment) throws IOException {
+        synchronized (writeLock) {
+            writeWindowUpdateLocked(streamId, increment);
+            out.flush();
+        }
+    }
+
+    private void writeWindowUpdateLocked(int streamId, long increment) throws IOException {
+        byte[] payload = new byte[4];
+        putInt(payload, 0, (int) increment);
+        writeFrameLocked(TYPE_WINDOW_UPDATE, 0, streamId, payload, 0, 4);
+    }
+
+    private void writeFrame(int type, int flags, int streamId, byte[] payload, int offset, int length) throws IOException {
+        synchronized (writeLock) {
+            writeFrameLocked(type, flags, streamId, payload, offset, length);
+            out.flush();
+        }
+    }
+
+    private void writeFrameLocked(int type, int flags, int streamId, byte[] payload, int offset, int length) throws IOException {
+        out.write((length >>> 16) & 0xFF);
+        out.write((length >>> 8) & 0xFF);
+        out.write(length & 0xFF);
+        out.write(type & 0xFF);
+        out.write(flags & 0xFF);
+        out.write((streamId >>> 24) & 0x7F);
+        out.write((streamId >>> 16) & 0xFF);
+        out.write((streamId >>> 8) & 0xFF);
+        out.write(streamId & 0xFF);
+        out.write(payload, offset, length);
+    }
+
+    /**
+     * Called by a stream once the application has read {@code count} bytes of its data, so
+     * that the connection-level receive window can be replenished
+     */
+    void dataConsumed(int count) throws IOException {
+        long increment = 0;
+        synchronized (this) {
+            unacknowledgedBytesRead += count;
+            if (unacknowledgedBytesRead >= CONNECTION_RECEIVE_WINDOW / 2) {
+                increment = unacknowledgedBytesRead;
+                unacknowledgedBytesRead = 0;
+            }
+        }
+        if (increment > 0) {
+            writeWindowUpdate(0, increment);
+        }
+    }
+
+    synchronized void streamClosed(Http2Stream stream) {
+        if (streams.remove(stream.getId()) != null && streams.isEmpty()) {
+            idleSince = System.currentTimeMillis();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Closes the connection gracefully, or immediately if streams are still open
+     */
+    void close() {
+        synchronized (this) {
+            shutdown = true;
+        }
+        try {
+            byte[] payload = new byte[8];
+            synchronized (this) {
+                putInt(payload, 0, nextStreamId > 1 ? nextStreamId - 2 : 0);
+            }
+            putInt(payload, 4, ERROR_NO_ERROR);
+            writeFrame(TYPE_GOAWAY, 0, 0, payload, 0, 8);
+        } catch (IOException ignored) {}
+        fail(new IOException("HTTP/2 connection closed"));
+    }
+
+    private void readLoop() {
+        try {
+            while (readFrame()) {
+                // keep reading
+            }
+            fail(new EOFException("HTTP/2 connection closed by peer"));
+        } catch (ProtocolException e) {
+            try {
+                byte[] payload = new byte[8];
+                putInt(payload, 4, ERROR_PROTOCOL_ERROR);
+                writeFrame(TYPE_GOAWAY, 0, 0, payload, 0, 8);
+            } catch (IOException ignored) {}
+            fail(e);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Reads and dispatches a single frame
+     * @return false on a clean end of stream
+     */
+    private boolean readFrame() throws IOException {
+        int first = in.read();
+        if (first == -1) {
+            return false;
+        }
+        int length = (first << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+        int type = in.readUnsignedByte();
+        int flags = in.readUnsignedByte();
+        int streamId = in.readInt() & 0x7FFFFFFF;
+
+        if (length > DEFAULT_MAX_FRAME_SIZE) {
+            throw new ProtocolException("HTTP/2 frame too large: " + length);
+        }
+
+        switch (type) {
+            case TYPE_DATA:
+                readData(length, flags, streamId);
+                break;
+            case TYPE_HEADERS:
+                readHeaders(length, flags, streamId);
+                break;
+            case TYPE_RST_STREAM:
+                readReset(length, streamId);
+                break;
+            case TYPE_SETTINGS:
+                readSettings(length, flags);
+                break;
+            case TYPE_PING:
+                readPing(length, flags);
+                break;
+            case TYPE_GOAWAY:
+                readGoAway(length);
+                break;
+            case TYPE_WINDOW_UPDATE:
+                readWindowUpdate(length, streamId);
+                break;
+            case TYPE_PUSH_PROMISE:
+                throw new ProtocolException("Received PUSH_PROMISE although server push is disabled");
+            case TYPE_CONTINUATION:
+                throw new ProtocolException("Unexpected CONTINUATION frame");
+            case TYPE_PRIORITY:
+            default:
+                skip(length);
+                break;
+        }
+        return true;
+    }
+
+    private void readData(int length, int flags, int streamId) throws IOException {
+        int padding = (flags & FLAG_PADDED) != 0 ? in.readUnsignedByte() : 0;
+        int dataLength = length - ((flags & FLAG_PADDED) != 0 ? 1 : 0) - padding;
+        if (dataLength < 0) {
+            throw new ProtocolException("HTTP/2 DATA padding exceeds the frame length");
+        }
+
+        byte[] data = new byte[dataLength];
+        in.readFully(data);
+        skip(padding);
+
+        Http2Stream stream = getStream(streamId);
+        boolean endStream = (flags & FLAG_END_STREAM) != 0;
+        int paddingBytes = length - dataLength;
+
+        if (stream == null) {
+            // data for a stream we already gave up on still counts against the connection window
+            dataConsumed(length);
+            return;
+        }
+        if (paddingBytes > 0) {
+            dataConsumed(paddingBytes);
+        }
+        if (!stream.receiveData(data, endStream)) {
+            dataConsumed(dataLength);
+            writeReset(streamId, ERROR_FLOW_CONTROL_ERROR);
+        }
+    }
+
+    private void readHeaders(int length, int flags, int streamId) throws IOException {
+        int padding = (flags & FLAG_PADDED) != 0 ? in.readUnsignedByte() : 0;
+        int fragmentLength = length - ((flags & FLAG_PADDED) != 0 ? 1 : 0) - padding;
+        if ((flags & FLAG_PRIORITY) != 0) {
+            in.readInt();
+            in.readUnsignedByte();
+            fragmentLength -= 5;
+        }
+        if (fragmentLength < 0) {
+            throw new ProtocolException("HTTP/2 HEADERS padding exceeds the frame length");
+        }
+
+        ByteArrayOutputStream block = new ByteArrayOutputStream(fragmentLength);
+        byte[] fragment = new byte[fragmentLength];
+        in.readFully(fragment);
+        block.write(fragment, 0, fragmentLength);
+        skip(padding);
+
+        boolean endHeaders = (flags & FLAG_END_HEADERS) != 0;
+        while (!endHeaders) {
+            int continuationLength = (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+            int continuationType = in.readUnsignedByte();
+            int continuationFlags = in.readUnsignedByte();
+            int continuationStream = in.readInt() & 0x7FFFFFFF;
+            if (continuationType != TYPE_CONTINUATION || continuationStream != streamId) {
+                throw new ProtocolException("Expected CONTINUATION for stream " + streamId);
+            }
+            if (continuationLength > DEFAULT_MAX_FRAME_SIZE) {
+                throw new ProtocolException("HTTP/2 frame too large: " + continuationLength);
+            }
+            fragment = new byte[continuationLength];
+            in.readFully(fragment);
+            block.write(fragment, 0, continuationLength);
+            endHeaders = (continuationFlags & FLAG_END_HEADERS) != 0;
+        }
+
+        // always decode, even for unknown streams, to keep the HPACK tables in sync
+        List<Hpack.Header> headers = hpackReader.decode(block.toByteArray());
+        Http2Stream stream = getStream(streamId);
+        if (stream != null) {
+            stream.receiveHeaders(headers, (flags & FLAG_END_STREAM) != 0);
+        }
+    }
+
+    private void readReset(int length, int streamId) throws IOException {
+        if (length != 4) {
+            throw new ProtocolException("Invalid RST_STREAM length: " + length);
+        }
+        int errorCode = in.readInt();
+        Http2Stream stream = getStream(streamId);
+        if (stream != null) {
+            stream.receiveReset(errorCode);
+        }
+    }
+
+    private void readSettings(int length, int flags) throws IOException {
+        if ((flags & FLAG_ACK) != 0) {
+            skip(length);
+            return;
+        }
+        if (length % 6 != 0) {
+            throw new ProtocolException("Invalid SETTINGS length: " + length);
+        }
+
+        Integer headerTableSize = null;
+        synchronized (this) {
+            for (int i = 0; i < length; i += 6) {
+                int id = in.readUnsignedShort();
+                int value = in.readInt();
+                switch (id) {
+                    case SETTINGS_HEADER_TABLE_SIZE:
+                        headerTableSize = value;
+                        break;
+                    case SETTINGS_MAX_CONCURRENT_STREAMS:
+                        peerMaxConcurrentStreams = value;
+                        break;
+                    case SETTINGS_INITIAL_WINDOW_SIZE:
+                        if (value < 0) {
+                            throw new ProtocolException("Invalid SETTINGS_INITIAL_WINDOW_SIZE: " + value);
+                        }
+                        int delta = value - peerInitialWindowSize;
+                        peerInitialWindowSize = value;
+                        for (Http2Stream stream : streams.values()) {
+                            stream.sendWindow += delta;
+                        }
+                        break;
+                    case SETTINGS_MAX_FRAME_SIZE:
+                        if (value < DEFAULT_MAX_FRAME_SIZE || value > 16777215) {
+                            throw new ProtocolException("Invalid SETTINGS_MAX_FRAME_SIZE: " + value);
+                        }
+                        peerMaxFrameSize = value;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            notifyAll();
+        }
+
+        synchronized (writeLock) {
+            if (headerTableSize != null) {
+                hpackWriter.setMaxTableSize(headerTableSize);
+            }
+            writeFrameLocked(TYPE_SETTINGS, FLAG_ACK, 0, new byte[0], 0, 0);
+            out.flush();
+        }
+    }
+
+    private void readPing(int length, int flags) throws IOException {
+        if (length != 8) {
+            throw new ProtocolException("Invalid PING length: " + length);
+        }
+        byte[] payload = new byte[8];
+        in.readFully(payload);
+        if ((flags & FLAG_ACK) == 0) {
+            writeFrame(TYPE_PING, FLAG_ACK, 0, payload, 0, 8);
+        }
+    }
+
+    private void readGoAway(int length) throws IOException {
+        if (length < 8) {
+            throw new ProtocolException("Invalid GOAWAY length: " + length);
+        }
+        int lastStreamId = in.readInt() & 0x7FFFFFFF;
+        int errorCode = in.readInt();
+        skip(length - 8);
+
+        List<Http2Stream> refused = new ArrayList<>();
+        synchronized (this) {
+            shutdown = true;
+            for (Http2Stream stream : streams.values()) {
+                if (stream.getId() > lastStreamId) {
+                    refused.add(stream);
+                }
+            }
+            notifyAll();
+        }
+        for (Http2Stream stream : refused) {
+            stream.fail(new IOException("HTTP/2 stream refused by GOAWAY (error " + errorCode + ")"));
+        }
+    }
+
+    private void readWindowUpdate(int length, int streamId) throws IOException {
+        if (length != 4) {
+            throw new ProtocolException("Invalid WINDOW_UPDATE length: " + length);
+        }
+        long increment = in.readInt() & 0x7FFFFFFFL;
+        if (increment == 0) {
+            throw new ProtocolException("WINDOW_UPDATE increment of zero");
+        }
+        synchronized (this) {
+            if (streamId == 0) {
+                connectionSendWindow += increment;
+            } else {
+                Http2Stream stream = streams.get(streamId);
+                if (stream != null) {
+                    stream.sendWindow += increment;
+                }
+            }
+            notifyAll();
+        }
+    }
+
+    private synchronized Http2Stream getStream(int streamId) {
+        return streams.get(streamId);
+    }
+
+    private void skip(int length) throws IOException {
+        while (length > 0) {
+            int skipped = in.skipBytes(length);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            length -= skipped;
+        }
+    }
+
+    private void fail(IOException e) {
+        List<Http2Stream> open;
+        synchronized (this) {
+            shutdown = true;
+            if (failure == null) {
+                failure = e;
+            }
+            open = new ArrayList<>(streams.values());
+            notifyAll();
+        }
+        for (Http2Stream stream : open) {
+            stream.fail(e);
+        }
+        try {
+            socket.close();
+        } catch (IOException ignored) {}
+    }
+
+    private static void putSetting(byte[] buffer, int offset, int id, int value) {
+        buffer[offset] = (byte) (id >>> 8);
+        buffer[offset + 1] = (byte) id;
+        putInt(buffer, offset + 2, value);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+}
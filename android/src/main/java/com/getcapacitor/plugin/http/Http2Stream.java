@@ -0,0 +1,312 @@
+package com.getcapacitor.plugin.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * One request/response exchange on an {@link Http2Connection}. Response data is buffered up to
+ * the advertised receive window and the window is replenished as the application reads it, so a
+ * slow reader applies backpressure to the server.
+ */
+final class Http2Stream {
+
+    private final Http2Connection connection;
+    private final int id;
+    private final int readTimeout;
+
+    /**
+     * The peer's receive window for this stream. Guarded by the connection.
+     */
+    long sendWindow;
+
+    private final ArrayDeque<byte[]> buffer = new ArrayDeque<>();
+    private int headOffset = 0;
+    private long bufferedBytes = 0;
+    private int unacknowledgedBytes = 0;
+
+    private List<Hpack.Header> responseHeaders;
+    private boolean remoteClosed = false;
+    private boolean localClosed = false;
+    private boolean closedNotified = false;
+    private volatile IOException error;
+
+    private final InputStream inputStream = new StreamInputStream();
+    private final OutputStream outputStream = new StreamOutputStream();
+
+    Http2Stream(Http2Connection connection, int id, int initialSendWindow, int readTimeout) {
+        this.connection = connection;
+        this.id = id;
+        this.sendWindow = initialSendWindow;
+        this.readTimeout = readTimeout;
+    }
+
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Waits for the final (non-informational) response headers
+     */
+    synchronized List<Hpack.Header> awaitResponseHeaders() throws IOException {
+        long deadline = readTimeout > 0 ? System.currentTimeMillis() + readTimeout : 0;
+        while (responseHeaders == null && error == null) {
+            awaitLocked(deadline);
+        }
+        if (responseHeaders == null) {
+            throw error;
+        }
+        return responseHeaders;
+    }
+
+    InputStream getInputStream() {
+        return inputStream;
+    }
+
+    OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Abandons the stream, telling the peer to stop sending if the exchange isn't complete
+     */
+    void cancel() {
+        boolean wasOpen;
+        synchronized (this) {
+            wasOpen = error == null && !(remoteClosed && localClosed);
+            if (error == null) {
+                error = new IOException("HTTP/2 stream cancelled");
+            }
+            buffer.clear();
+            bufferedBytes = 0;
+            notifyAll();
+        }
+        if (wasOpen) {
+            try {
+                connection.writeReset(id, Http2Connection.ERROR_CANCEL);
+            } catch (IOException ignored) {}
+        }
+        closeIfDone(true);
+    }
+
+    void localClosed() {
+        synchronized (this) {
+            localClosed = true;
+        }
+        closeIfDone(false);
+    }
+
+    void checkWritable() throws IOException {
+        IOException e = error;
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    void receiveHeaders(List<Hpack.Header> headers, boolean endStream) {
+        synchronized (this) {
+            if (responseHeaders == null) {
+                String status = null;
+                for (Hpack.Header header : headers) {
+                    if (header.name.equals(":status")) {
+                        status = header.value;
+                    }
+                }
+                // skip informational (1xx) responses
+                if (status == null || !status.startsWith("1")) {
+                    responseHeaders = headers;
+                }
+            }
+            if (endStream) {
+                remoteClosed = true;
+            }
+            notifyAll();
+        }
+        if (endStream) {
+            closeIfDone(false);
+        }
+    }
+
+    /**
+     * @return false if the peer sent more data than the advertised window allows
+     */
+    boolean receiveData(byte[] data, boolean endStream) {
+        synchronized (this) {
+            if (error != null) {
+                return true;
+            }
+            if (bufferedBytes + data.length > Http2Connection.STREAM_RECEIVE_WINDOW) {
+                error = new IOException("HTTP/2 flow control violated by peer");
+                notifyAll();
+                return false;
+            }
+            if (data.length > 0) {
+                buffer.addLast(data);
+                bufferedBytes += data.length;
+            }
+            if (endStream) {
+                remoteClosed = true;
+            }
+            notifyAll();
+        }
+        if (endStream) {
+            closeIfDone(false);
+        }
+        return true;
+    }
+
+    void receiveReset(int errorCode) {
+        synchronized (this) {
+            if (error == null && !(remoteClosed && errorCode == Http2Connection.ERROR_NO_ERROR)) {
+                error = new IOException("HTTP/2 stream reset by peer (error " + errorCode + ")");
+            }
+            remoteClosed = true;
+            localClosed = true;
+            notifyAll();
+        }
+        closeIfDone(true);
+    }
+
+    void fail(IOException e) {
+        synchronized (this) {
+            if (error == null && !(remoteClosed && localClosed)) {
+                error = e;
+            }
+            remoteClosed = true;
+            localClosed = true;
+            notifyAll();
+        }
+        closeIfDone(true);
+    }
+
+    private void closeIfDone(boolean force) {
+        synchronized (this) {
+            if (closedNotified || !(force || (remoteClosed && localClosed))) {
+                return;
+            }
+            closedNotified = true;
+        }
+        connection.streamClosed(this);
+    }
+
+    private void awaitLocked(long deadline) throws IOException {
+        try {
+            if (deadline == 0) {
+                wait();
+            } else {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new SocketTimeoutException("Read timed out");
+                }
+                wait(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private final class StreamInputStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int read = 0;
+            int acknowledge = 0;
+            synchronized (Http2Stream.this) {
+                long deadline = readTimeout > 0 ? System.currentTimeMillis() + readTimeout : 0;
+                while (buffer.isEmpty() && !remoteClosed && error == null) {
+                    awaitLocked(deadline);
+                }
+                if (buffer.isEmpty()) {
+                    if (error != null) {
+                        throw error;
+                    }
+                    return -1;
+                }
+                while (read < len && !buffer.isEmpty()) {
+                    byte[] head = buffer.peekFirst();
+                    int count = Math.min(len - read, head.length - headOffset);
+                    System.arraycopy(head, headOffset, b, off + read, count);
+                    read += count;
+                    headOffset += count;
+                    if (headOffset == head.length) {
+                        buffer.pollFirst();
+                        headOffset = 0;
+                    }
+                }
+                bufferedBytes -= read;
+                unacknowledgedBytes += read;
+                if (!remoteClosed && unacknowledgedBytes >= Http2Connection.STREAM_RECEIVE_WINDOW / 2) {
+                    acknowledge = unacknowledgedBytes;
+                    unacknowledgedBytes = 0;
+                }
+            }
+            if (acknowledge > 0) {
+                connection.writeWindowUpdate(id, acknowledge);
+            }
+            connection.dataConsumed(read);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            synchronized (Http2Stream.this) {
+                return (int) Math.min(Integer.MAX_VALUE, bufferedBytes);
+            }
+        }
+
+        @Override
+        public void close() {
+            boolean complete;
+            synchronized (Http2Stream.this) {
+                complete = remoteClosed && buffer.isEmpty();
+            }
+            if (!complete) {
+                cancel();
+            }
+        }
+    }
+
+    private final class StreamOutputStream extends OutputStream {
+
+        private boolean closed = false;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("HTTP/2 request body already closed");
+            }
+            connection.writeData(Http2Stream.this, b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            checkWritable();
+            connection.writeEndStream(Http2Stream.this);
+            localClosed();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.getcapacitor.plugin.http;
+
+import android.os.Build;
+import android.security.NetworkSecurityPolicy;
+import com.getcapacitor.JSObject;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.UnknownServiceException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocket;
+
+/**
+ * Opt-in HTTP/2 transport. Requests to the same origin share one multiplexed connection, so a
+ * burst of small requests does not queue behind each other or open one socket each.
+ *
+ * <p>HTTPS origins negotiate HTTP/2 through ALPN, which the platform supports from Android 10;
+ * origins that don't negotiate {@code h2} (or older devices) fall back to the regular
+ * HttpURLConnection. Cleartext origins are spoken to with prior knowledge (h2c), as HTTP/1.1
+ * upgrade is not supported.
+ */
+public class Http2Transport implements HttpTransport {
+
+    public static final String NAME = "http2";
+
+    private final long idleTimeoutMs;
+
+    private final Map<String, Http2Connection> connections = new HashMap<>();
+    private final Map<String, Object> routeLocks = new HashMap<>();
+    private final Set<String> http1Routes = new HashSet<>();
+
+    private long connectionsOpened = 0;
+    private long streamsOpened = 0;
+    private long multiplexedStreams = 0;
+    private long fallbacks = 0;
+
+    /**
+     * @param idleTimeoutMs how long a connection without open streams is kept
+     */
+    public Http2Transport(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Creates a connection that performs its exchange over HTTP/2
+     * @param url the URL to request
+     * @param connectTimeout the timeout for establishing a new connection, in milliseconds
+     * @return the connection, or null if HTTP/2 can't be used for this origin
+     * @throws IOException if a new connection could not be established
+     */
+    @Override
+    public HttpURLConnection open(URL url, Integer connectTimeout) throws IOException {
+        Http2Connection connection = acquire(url, connectTimeout != null ? connectTimeout : 0);
+        if (connection == null) {
+            return null;
+        }
+        return new Http2UrlConnection(url, this, connection);
+    }
+
+    /**
+     * Returns a usable connection to the URL's origin, connecting if needed
+     * @return the connection, or null if the origin doesn't speak HTTP/2
+     */
+    Http2Connection acquire(URL url, int connectTimeout) throws IOException {
+        String protocol = url.getProtocol();
+        if (!protocol.equals("http") && !protocol.equals("https")) {
+            return null;
+        }
+        String route = routeKey(url);
+
+        Object routeLock;
+        synchronized (this) {
+            pruneIdleConnections();
+            if (http1Routes.contains(route)) {
+                return null;
+            }
+            routeLock = routeLocks.get(route);
+            if (routeLock == null) {
+                routeLock = new Object();
+                routeLocks.put(route, routeLock);
+            }
+        }
+
+        // only one caller connects per route, so concurrent requests end up multiplexed
+        synchronized (routeLock) {
+            synchronized (this) {
+                Http2Connection existing = connections.get(route);
+                if (existing != null && existing.isUsable()) {
+                    return existing;
+                }
+                connections.remove(route);
+            }
+
+            Http2Connection connection = connect(url, connectTimeout);
+            synchronized (this) {
+                if (connection == null) {
+                    fallbacks++;
+                    return null;
+                }
+                connectionsOpened++;
+                connections.put(route, connection);
+                return connection;
+            }
+        }
+    }
+
+    @Override
+    public void release(HttpURLConnection connection, boolean reusable) {
+        // streams are closed by their connection; the shared connection stays open until idle
+    }
+
+    synchronized void streamOpened(Http2Connection connection) {
+        streamsOpened++;
+        if (connection.activeStreamCount() > 1) {
+            multiplexedStreams++;
+        }
+    }
+
+    private Http2Connection connect(URL url, int connectTimeout) throws IOException {
+        String host = url.getHost();
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        boolean secure = url.getProtocol().equals("https");
+
+        if (secure && Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            // ALPN is not exposed by the platform before Android 10
+            return null;
+        }
+        if (!secure && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && !NetworkSecurityPolicy.getInstance().isCleartextTrafficPermitted(host)) {
+            throw new UnknownServiceException("CLEARTEXT communication to " + host + " not permitted by network security policy");
+        }
+
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), connectTimeout);
+            socket.setTcpNoDelay(true);
+
+            if (secure) {
+                SSLSocket sslSocket = (SSLSocket) HttpsURLConnection.getDefaultSSLSocketFactory().createSocket(socket, host, port, true);
+                socket = sslSocket;
+                SSLParameters parameters = sslSocket.getSSLParameters();
+                parameters.setApplicationProtocols(new String[] { "h2", "http/1.1" });
+                sslSocket.setSSLParameters(parameters);
+                sslSocket.startHandshake();
+
+                if (!HttpsURLConnection.getDefaultHostnameVerifier().verify(host, sslSocket.getSession())) {
+                    throw new SSLPeerUnverifiedException("Hostname " + host + " not verified");
+                }
+                if (!"h2".equals(sslSocket.getApplicationProtocol())) {
+                    synchronized (this) {
+                        http1Routes.add(routeKey(url));
+                    }
+                    socket.close();
+                    return null;
+                }
+            }
+
+            Http2Connection connection = new Http2Connection(socket);
+            connection.start(host + ":" + port);
+            return connection;
+        } catch (IOException e) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {}
+            throw e;
+        }
+    }
+
+    /**
+     * Closes connections that have had no open streams for longer than the idle timeout
+     */
+    private void pruneIdleConnections() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Http2Connection>> iterator = connections.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Http2Connection connection = iterator.next().getValue();
+            if (!connection.isUsable()) {
+                iterator.remove();
+            } else if (connection.idleDuration(now) > idleTimeoutMs) {
+                connection.close();
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String routeKey(URL url) {
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        return url.getProtocol() + "://" + url.getHost() + ":" + port;
+    }
+
+    /**
+     * Returns a snapshot of the HTTP/2 usage counters
+     */
+    @Override
+    public synchronized JSObject getStats() {
+        pruneIdleConnections();
+
+        int activeStreams = 0;
+        for (Http2Connection connection : connections.values()) {
+            activeStreams += connection.activeStreamCount();
+        }
+
+        JSObject stats = new JSObject();
+        stats.put("connections", connections.size());
+        stats.put("activeStreams", activeStreams);
+        stats.put("connectionsOpened", connectionsOpened);
+        stats.put("streamsOpened", streamsOpened);
+        stats.put("multiplexedStreams", multiplexedStreams);
+        stats.put("fallbacks", fallbacks);
+        return stats;
+    }
+}
@@ -0,0 +1,147 @@
+package com.getcapacitor.plugin.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * An {@link HttpURLConnection} that performs its exchange as a stream on a shared, multiplexed
+ * {@link Http2Connection}. It plugs into {@link CapacitorHttpUrlConnection} like the platform
+ * connection does, so the rest of the request pipeline is unchanged.
+ */
+class Http2UrlConnection extends TransportUrlConnection {
+
+    private static final Set<String> CONNECTION_SPECIFIC_HEADERS = new HashSet<>();
+
+    static {
+        Collections.addAll(
+            CONNECTION_SPECIFIC_HEADERS,
+            "connection",
+            "host",
+            "keep-alive",
+            "proxy-connection",
+            "te",
+            "transfer-encoding",
+            "upgrade"
+        );
+    }
+
+    private final Http2Transport transport;
+    private Http2Connection h2Connection;
+    private Http2Connection redirectConnection;
+    private Http2Stream stream;
+
+    Http2UrlConnection(URL url, Http2Transport transport, Http2Connection h2Connection) {
+        super(url);
+        this.transport = transport;
+        this.h2Connection = h2Connection;
+    }
+
+    @Override
+    protected void startExchange(List<String[]> headers, boolean hasBody) throws IOException {
+        List<Hpack.Header> h2Headers = buildRequestHeaders(headers);
+        if (h2Connection == null || !h2Connection.isUsable()) {
+            h2Connection = transport.acquire(url, getConnectTimeout());
+            if (h2Connection == null) {
+                throw new IOException("HTTP/2 is not available for " + url.getHost());
+            }
+        }
+        stream = h2Connection.newStream(h2Headers, !hasBody, getReadTimeout());
+        transport.streamOpened(h2Connection);
+    }
+
+    @Override
+    protected OutputStream openRequestBody() {
+        return stream.getOutputStream();
+    }
+
+    @Override
+    protected ResponseHead readResponseHead() throws IOException {
+        List<String[]> headers = new ArrayList<>();
+        String status = null;
+        for (Hpack.Header header : stream.awaitResponseHeaders()) {
+            if (header.name.equals(":status")) {
+                status = header.value;
+            } else if (!header.name.startsWith(":")) {
+                headers.add(new String[] { header.name, header.value });
+            }
+        }
+        if (status == null) {
+            throw new ProtocolException("HTTP/2 response without :status");
+        }
+        try {
+            return new ResponseHead(Integer.parseInt(status), "", "HTTP/2 " + status, headers);
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Invalid HTTP/2 :status " + status);
+        }
+    }
+
+    @Override
+    protected InputStream openResponseBody() {
+        return stream.getInputStream();
+    }
+
+    @Override
+    protected void abortExchange() {
+        if (stream != null) {
+            stream.cancel();
+        }
+    }
+
+    /**
+     * Only redirects within the same protocol are followed, as the platform engine does, and only
+     * to an origin that speaks HTTP/2; any other redirect is returned as the response.
+     */
+    @Override
+    protected boolean canFollowRedirect(URL location) throws IOException {
+        if (!location.getProtocol().equals(url.getProtocol())) {
+            return false;
+        }
+        if (isSameOrigin(url, location)) {
+            return true;
+        }
+        redirectConnection = transport.acquire(location, getConnectTimeout());
+        return redirectConnection != null;
+    }
+
+    @Override
+    protected void onRedirect(URL location) {
+        if (!isSameOrigin(url, location)) {
+            h2Connection = redirectConnection;
+        }
+        redirectConnection = null;
+    }
+
+    private List<Hpack.Header> buildRequestHeaders(List<String[]> headers) {
+        List<Hpack.Header> h2Headers = new ArrayList<>();
+        String path = url.getPath().isEmpty() ? "/" : url.getPath();
+        if (url.getQuery() != null) {
+            path += "?" + url.getQuery();
+        }
+        String authority = url.getPort() != -1 && url.getPort() != url.getDefaultPort()
+            ? url.getHost() + ":" + url.getPort()
+            : url.getHost();
+
+        h2Headers.add(new Hpack.Header(":method", method));
+        h2Headers.add(new Hpack.Header(":scheme", url.getProtocol()));
+        h2Headers.add(new Hpack.Header(":authority", authority));
+        h2Headers.add(new Hpack.Header(":path", path));
+
+        for (String[] header : headers) {
+            String name = header[0].toLowerCase(Locale.US);
+            if (!CONNECTION_SPECIFIC_HEADERS.contains(name)) {
+                h2Headers.add(new Hpack.Header(name, header[1]));
+            }
+        }
+        return h2Headers;
+    }
+}
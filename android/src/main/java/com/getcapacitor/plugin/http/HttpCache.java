@@ -0,0 +1,806 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A private HTTP cache on disk, following RFC 7234. Responses to GET requests are stored when
+ * their headers allow it, served while they are fresh, and revalidated with If-None-Match or
+ * If-Modified-Since once they are stale, so that a 304 answer is served from the stored body.
+ * The least recently used responses are evicted once the cache outgrows its size.
+ */
+public final class HttpCache {
+
+    public static final String MODE_DEFAULT = "default";
+    public static final String MODE_NO_STORE = "no-store";
+    public static final String MODE_RELOAD = "reload";
+    public static final String MODE_NO_CACHE = "no-cache";
+    public static final String MODE_FORCE_CACHE = "force-cache";
+    public static final String MODE_ONLY_IF_CACHED = "only-if-cached";
+
+    static final String STATUS_HIT = "hit";
+    static final String STATUS_MISS = "miss";
+    static final String STATUS_REVALIDATED = "revalidated";
+
+    // headers that describe the transfer rather than the stored body
+    private static final String[] TRANSFER_HEADERS = {
+        "Connection",
+        "Content-Encoding",
+        "Content-Length",
+        "Keep-Alive",
+        "Proxy-Authenticate",
+        "Trailer",
+        "Transfer-Encoding",
+        "Upgrade"
+    };
+
+    private static final String[] CONDITIONAL_HEADERS = { "If-None-Match", "If-Modified-Since", "If-Match", "If-Unmodified-Since", "If-Range" };
+
+    private static final String META_SUFFIX = ".meta";
+    private static final String BODY_SUFFIX = ".body";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * A stored response
+     */
+    static final class Entry {
+
+        final String key;
+        final URL url;
+        final int status;
+        final CacheHeaders headers;
+        final Map<String, String> vary;
+        long requestTime;
+        long responseTime;
+
+        Entry(String key, URL url, int status, CacheHeaders headers, Map<String, String> vary, long requestTime, long responseTime) {
+            this.key = key;
+            this.url = url;
+            this.status = status;
+            this.headers = headers;
+            this.vary = vary;
+            this.requestTime = requestTime;
+            this.responseTime = responseTime;
+        }
+
+        long getFreshnessLifetime() {
+            return CachePolicy.freshnessLifetime(status, headers, responseTime);
+        }
+
+        long getAge(long now) {
+            return CachePolicy.currentAge(headers, requestTime, responseTime, now);
+        }
+    }
+
+    /**
+     * What the cache can do for one request
+     */
+    static final class Lookup {
+
+        final String key;
+        final URL url;
+        final long requestTime;
+        final CachePolicy.CacheControl requestCacheControl;
+        final Entry entry;
+        final boolean store;
+        final ICapacitorHttpUrlConnection response;
+        final String status;
+
+        private Lookup(
+            String key,
+            URL url,
+            long requestTime,
+            CachePolicy.CacheControl requestCacheControl,
+            Entry entry,
+            boolean store,
+            ICapacitorHttpUrlConnection response,
+            String status
+        ) {
+            this.key = key;
+            this.url = url;
+            this.requestTime = requestTime;
+            this.requestCacheControl = requestCacheControl;
+            this.entry = entry;
+            this.store = store;
+            this.response = response;
+            this.status = status;
+        }
+
+        /**
+         * Returns the response to answer the request with without going to the network, or null
+         */
+        ICapacitorHttpUrlConnection getResponse() {
+            return response;
+        }
+
+        /**
+         * Returns the validators to send so the server can answer with 304 if the stored
+         * response is still current; empty unless a stale response is being revalidated
+         */
+        Map<String, String> getConditionalHeaders() {
+            Map<String, String> headers = new HashMap<>();
+            if (entry != null && response == null) {
+                String etag = entry.headers.get("ETag");
+                String lastModified = entry.headers.get("Last-Modified");
+                if (etag != null) {
+                    headers.put("If-None-Match", etag);
+                }
+                if (lastModified != null) {
+                    headers.put("If-Modified-Since", lastModified);
+                }
+            }
+            return headers;
+        }
+
+        boolean isRevalidation() {
+            return entry != null && response == null;
+        }
+    }
+
+    private final File directory;
+    private final long maxSize;
+
+    // keys in least recently used order, with the bytes their files take
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean loaded = false;
+    private long size = 0;
+
+    private long requests = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long revalidations = 0;
+    private long notModified = 0;
+    private long stores = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    /**
+     * @param directory the directory responses are stored in, created when the first is stored
+     * @param maxSize the number of bytes the cache may take; 0 disables it
+     */
+    public HttpCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = directory != null ? Math.max(0, maxSize) : 0;
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Decides how a request is served
+     * @param method the request method
+     * @param url the request URL, query included
+     * @param requestHeaders the request headers, may be null
+     * @param mode one of the {@code MODE_} constants, null for {@link #MODE_DEFAULT}
+     * @return the decision, with a null status if the cache is not involved at all
+     */
+    Lookup lookup(String method, URL url, JSObject requestHeaders, String mode) {
+        long now = System.currentTimeMillis();
+        String cacheControl = header(requestHeaders, "Cache-Control");
+        String pragma = header(requestHeaders, "Pragma");
+        CachePolicy.CacheControl request = CachePolicy.CacheControl.parse(cacheControl);
+        boolean conditional = false;
+        for (String name : CONDITIONAL_HEADERS) {
+            conditional |= header(requestHeaders, name) != null;
+        }
+        if (mode == null) {
+            mode = MODE_DEFAULT;
+        }
+        if (!isEnabled() || !"GET".equals(method) || MODE_NO_STORE.equals(mode) || request.has("no-store") || conditional) {
+            // the caller's own conditional requests are left alone
+            return new Lookup(null, url, now, request, null, false, null, null);
+        }
+
+        String key = keyOf(url);
+        synchronized (this) {
+            requests++;
+        }
+        Entry entry = MODE_RELOAD.equals(mode) ? null : read(key, url);
+        if (entry != null && !matchesVary(entry, requestHeaders)) {
+            entry = null;
+        }
+
+        if (entry == null) {
+            count(false);
+            if (MODE_ONLY_IF_CACHED.equals(mode)) {
+                CachedUrlConnection gatewayTimeout = new CachedUrlConnection(url, 504, new CacheHeaders(), new ByteArrayInputStream(new byte[0]));
+                return new Lookup(key, url, now, request, null, false, gatewayTimeout, STATUS_MISS);
+            }
+            return new Lookup(key, url, now, request, null, true, null, STATUS_MISS);
+        }
+
+        boolean revalidate = MODE_NO_CACHE.equals(mode) || request.has("no-cache") || (pragma != null && pragma.contains("no-cache"));
+        boolean usable =
+            MODE_FORCE_CACHE.equals(mode) ||
+            MODE_ONLY_IF_CACHED.equals(mode) ||
+            (!revalidate && CachePolicy.isFresh(entry.getFreshnessLifetime(), entry.getAge(now), entry.headers, request));
+        if (usable) {
+            ICapacitorHttpUrlConnection response = open(entry);
+            if (response != null) {
+                count(true);
+                return new Lookup(key, url, now, request, entry, false, response, STATUS_HIT);
+            }
+            entry = null;
+        }
+        count(false);
+        if (entry != null && entry.headers.get("ETag") == null && entry.headers.get("Last-Modified") == null) {
+            entry = null;
+        }
+        return new Lookup(key, url, now, request, entry, true, null, STATUS_MISS);
+    }
+
+    /**
+     * Wraps a network response so that its body is stored as it is read, if it may be stored
+     * @param lookup the decision made for the request
+     * @param connection the network response
+     * @param requestHeaders the request headers, may be null
+     * @return the connection to read the response from
+     */
+    ICapacitorHttpUrlConnection store(Lookup lookup, ICapacitorHttpUrlConnection connection, JSObject requestHeaders)
+        throws IOException {
+        if (!lookup.store) {
+            return connection;
+        }
+        int status = connection.getResponseCode();
+        if (status == 206 || status == 304) {
+            // partial and bodiless responses can't answer a plain GET later
+            return connection;
+        }
+        CacheHeaders headers = CacheHeaders.from(connection.getHeaderFields());
+        if (!CachePolicy.isStorable(status, headers, lookup.requestCacheControl)) {
+            return connection;
+        }
+        long contentLength = -1;
+        String length = connection.getHeaderField("Content-Length");
+        if (length != null) {
+            try {
+                contentLength = Long.parseLong(length.trim());
+            } catch (NumberFormatException ignored) {}
+        }
+        if (contentLength > maxSize) {
+            return connection;
+        }
+        for (String name : TRANSFER_HEADERS) {
+            headers.remove(name);
+        }
+        Map<String, String> vary = new HashMap<>();
+        String varyHeader = headers.get("Vary");
+        if (varyHeader != null) {
+            for (String name : varyHeader.split(",")) {
+                String trimmed = name.trim().toLowerCase(Locale.ROOT);
+                if (!trimmed.isEmpty()) {
+                    String value = header(requestHeaders, trimmed);
+                    vary.put(trimmed, value != null ? value : "");
+                }
+            }
+        }
+        Entry entry = new Entry(lookup.key, lookup.url, status, headers, vary, lookup.requestTime, System.currentTimeMillis());
+        synchronized (this) {
+            // loading clears leftover temporary files, so it must not happen while a body is written
+            ensureLoaded();
+        }
+        return new CacheWritingConnection(connection, entry, contentLength);
+    }
+
+    /**
+     * Refreshes a stored response with the headers of the 304 that revalidated it
+     * @param lookup the decision made for the request, for which {@link Lookup#isRevalidation()} is true
+     * @param connection the 304 response
+     * @return the stored response to answer with, or null if its body is gone
+     */
+    ICapacitorHttpUrlConnection revalidated(Lookup lookup, ICapacitorHttpUrlConnection connection) {
+        Entry entry = lookup.entry;
+        entry.headers.merge(CacheHeaders.from(connection.getHeaderFields()), TRANSFER_HEADERS);
+        entry.requestTime = lookup.requestTime;
+        entry.responseTime = System.currentTimeMillis();
+        synchronized (this) {
+            notModified++;
+            try {
+                writeMeta(entry, bodyFile(entry.key).length());
+            } catch (IOException | JSONException ignored) {
+                // still answer with the stored body, it just won't be fresher next time
+            }
+        }
+        return open(entry);
+    }
+
+    /**
+     * Records that a conditional request was sent to revalidate a stored response
+     */
+    synchronized void revalidating() {
+        revalidations++;
+    }
+
+    /**
+     * Removes the stored response for a URL, as a successful unsafe request changes it (RFC 7234 4.4)
+     */
+    public synchronized void invalidate(URL url) {
+        if (!isEnabled()) {
+            return;
+        }
+        ensureLoaded();
+        if (remove(keyOf(url))) {
+            invalidations++;
+        }
+    }
+
+    /**
+     * Removes the stored responses of every URL starting with a prefix
+     * @return the number of responses removed
+     */
+    public synchronized int invalidate(String urlPrefix) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        ensureLoaded();
+        int removed = 0;
+        for (String key : new ArrayList<>(index.keySet())) {
+            File meta = metaFile(key);
+            String url;
+            try {
+                url = new JSONObject(TextBodyReader.readFully(new FileInputStream(meta), StandardCharsets.UTF_8, meta.length())).getString("url");
+            } catch (IOException | JSONException e) {
+                url = null;
+            }
+            if (url == null || url.startsWith(urlPrefix)) {
+                remove(key);
+                removed += url != null ? 1 : 0;
+            }
+        }
+        invalidations += removed;
+        return removed;
+    }
+
+    /**
+     * Removes every stored response
+     */
+    public synchronized void clear() {
+        if (!isEnabled()) {
+            return;
+        }
+        ensureLoaded();
+        for (String key : new ArrayList<>(index.keySet())) {
+            remove(key);
+        }
+    }
+
+    public synchronized JSObject getStats() {
+        JSObject stats = new JSObject();
+        stats.put("enabled", isEnabled());
+        stats.put("maxSize", maxSize);
+        if (isEnabled()) {
+            ensureLoaded();
+        }
+        stats.put("size", size);
+        stats.put("entries", index.size());
+        stats.put("requests", requests);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("revalidations", revalidations);
+        stats.put("notModified", notModified);
+        stats.put("stores", stores);
+        stats.put("evictions", evictions);
+        stats.put("invalidations", invalidations);
+        return stats;
+    }
+
+    private synchronized void count(boolean hit) {
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+        }
+    }
+
+    /**
+     * Opens the stored body of an entry, marking it as recently used
+     * @return the stored response, or null if its body is gone
+     */
+    private ICapacitorHttpUrlConnection open(Entry entry) {
+        InputStream body;
+        try {
+            body = new FileInputStream(bodyFile(entry.key));
+        } catch (IOException e) {
+            return null;
+        }
+        synchronized (this) {
+            ensureLoaded();
+            index.get(entry.key);
+            metaFile(entry.key).setLastModified(System.currentTimeMillis());
+        }
+        CacheHeaders headers = CacheHeaders.from(entry.headers.toMap());
+        headers.set("Content-Length", String.valueOf(bodyFile(entry.key).length()));
+        return new CachedUrlConnection(entry.url, entry.status, headers, body);
+    }
+
+    /**
+     * Reads the entry stored for a key
+     * @return the entry, or null if there is none or it can't be read
+     */
+    private Entry read(String key, URL url) {
+        File meta = metaFile(key);
+        if (!meta.isFile()) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(TextBodyReader.readFully(new FileInputStream(meta), StandardCharsets.UTF_8, meta.length()));
+            if (!url.toString().equals(json.getString("url"))) {
+                return null;
+            }
+            Map<String, String> vary = new HashMap<>();
+            JSONObject varyJson = json.getJSONObject("vary");
+            Iterator<String> names = varyJson.keys();
+            while (names.hasNext()) {
+                String name = names.next();
+                vary.put(name, varyJson.getString(name));
+            }
+            return new Entry(
+                key,
+                url,
+                json.getInt("status"),
+                CacheHeaders.fromJSON(json.getJSONObject("headers")),
+                vary,
+                json.getLong("requestTime"),
+                json.getLong("responseTime")
+            );
+        } catch (IOException | JSONException e) {
+            synchronized (this) {
+                ensureLoaded();
+                remove(key);
+            }
+            return null;
+        }
+    }
+
+    private static boolean matchesVary(Entry entry, JSObject requestHeaders) {
+        for (Map.Entry<String, String> vary : entry.vary.entrySet()) {
+            String value = header(requestHeaders, vary.getKey());
+            if (!vary.getValue().equals(value != null ? value : "")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes a fully read body the stored response for its key
+     * @param entry the response
+     * @param body the temporary file holding the body
+     */
+    private synchronized void commit(Entry entry, File body) {
+        ensureLoaded();
+        try {
+            File target = bodyFile(entry.key);
+            if (!body.renameTo(target)) {
+                throw new IOException("Unable to store " + target);
+            }
+            long metaSize = writeMeta(entry, target.length());
+            Long previous = index.put(entry.key, target.length() + metaSize);
+            size += target.length() + metaSize - (previous != null ? previous : 0);
+            stores++;
+            evict();
+        } catch (IOException | JSONException e) {
+            body.delete();
+            remove(entry.key);
+        }
+    }
+
+    /**
+     * Writes the metadata of an entry next to its body
+     * @return the size of the metadata file
+     */
+    private long writeMeta(Entry entry, long bodySize) throws IOException, JSONException {
+        JSONObject json = new JSONObject();
+        json.put("url", entry.url.toString());
+        json.put("status", entry.status);
+        json.put("headers", entry.headers.toJSON());
+        json.put("vary", new JSONObject(entry.vary));
+        json.put("requestTime", entry.requestTime);
+        json.put("responseTime", entry.responseTime);
+        json.put("size", bodySize);
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        File temp = File.createTempFile(entry.key, TEMP_SUFFIX, directory);
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(bytes);
+        }
+        File meta = metaFile(entry.key);
+        if (!temp.renameTo(meta)) {
+            temp.delete();
+            throw new IOException("Unable to store " + meta);
+        }
+        return bytes.length;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> eldest = index.entrySet().iterator();
+        while (size > maxSize && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            eldest.remove();
+            deleteFiles(entry.getKey());
+            size -= entry.getValue();
+            evictions++;
+        }
+    }
+
+    private boolean remove(String key) {
+        Long removed = index.remove(key);
+        deleteFiles(key);
+        if (removed != null) {
+            size -= removed;
+        }
+        return removed != null;
+    }
+
+    private void recomputeSize() {
+        long total = 0;
+        for (Long entrySize : index.values()) {
+            total += entrySize;
+        }
+        size = total;
+    }
+
+    private void deleteFiles(String key) {
+        metaFile(key).delete();
+        bodyFile(key).delete();
+    }
+
+    /**
+     * Builds the index from the directory the first time it is needed, so the plugin doesn't
+     * touch the disk while loading
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> metas = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(META_SUFFIX)) {
+                metas.add(file);
+            } else if (name.endsWith(TEMP_SUFFIX)) {
+                // left behind by a body that was being written when the app stopped
+                file.delete();
+            } else if (name.endsWith(BODY_SUFFIX) && !metaFile(name.substring(0, name.length() - BODY_SUFFIX.length())).exists()) {
+                file.delete();
+            }
+        }
+        Collections.sort(
+            metas,
+            new Comparator<File>() {
+                @Override
+                public int compare(File a, File b) {
+                    long difference = a.lastModified() - b.lastModified();
+                    return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+                }
+            }
+        );
+        for (File meta : metas) {
+            String key = meta.getName().substring(0, meta.getName().length() - META_SUFFIX.length());
+            File body = bodyFile(key);
+            if (!body.isFile()) {
+                meta.delete();
+                continue;
+            }
+            index.put(key, meta.length() + body.length());
+        }
+        recomputeSize();
+        evict();
+    }
+
+    private File metaFile(String key) {
+        return new File(directory, key + META_SUFFIX);
+    }
+
+    private File bodyFile(String key) {
+        return new File(directory, key + BODY_SUFFIX);
+    }
+
+    static String keyOf(URL url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns a request header regardless of the case it was given in
+     */
+    private static String header(JSObject headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        Iterator<String> keys = headers.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (key.equalsIgnoreCase(name)) {
+                return headers.getString(key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copies the response body into a temporary file while it is read, and stores it once it
+     * has been read to the end. A body that is abandoned or outgrows the cache isn't stored.
+     */
+    private final class CacheWritingConnection extends ForwardingUrlConnection {
+
+        private final Entry entry;
+        private final long contentLength;
+        private InputStream input;
+        private InputStream error;
+
+        CacheWritingConnection(ICapacitorHttpUrlConnection connection, Entry entry, long contentLength) {
+            super(connection);
+            this.entry = entry;
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (input == null) {
+                input = tee(super.getInputStream());
+            }
+            return input;
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            if (error == null) {
+                InputStream stream = super.getErrorStream();
+                if (stream == null) {
+                    return null;
+                }
+                error = tee(stream);
+            }
+            return error;
+        }
+
+        @Override
+        public void release(boolean success) {
+            for (InputStream stream : new InputStream[] { input, error }) {
+                if (stream instanceof TeeInputStream) {
+                    ((TeeInputStream) stream).abandon();
+                }
+            }
+            super.release(success);
+        }
+
+        private InputStream tee(InputStream in) {
+            try {
+                return new TeeInputStream(in, entry, contentLength);
+            } catch (IOException e) {
+                // the response is still served, it just isn't stored
+                return in;
+            }
+        }
+    }
+
+    private final class TeeInputStream extends FilterInputStream {
+
+        private final Entry entry;
+        private final long contentLength;
+        private final File temp;
+        private final OutputStream out;
+        private long written = 0;
+        private boolean done = false;
+
+        /**
+         * @param contentLength the length of the body, or -1 to store it at the end of the stream
+         */
+        TeeInputStream(InputStream in, Entry entry, long contentLength) throws IOException {
+            super(in);
+            this.entry = entry;
+            this.contentLength = contentLength;
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Unable to create " + directory);
+            }
+            this.temp = File.createTempFile(entry.key, TEMP_SUFFIX, directory);
+            this.out = new FileOutputStream(temp);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int read = read(one, 0, 1);
+            return read == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (done) {
+                return read;
+            }
+            if (read == -1) {
+                if (contentLength == -1 || written == contentLength) {
+                    store();
+                } else {
+                    abandon();
+                }
+            } else if (read > 0) {
+                written += read;
+                if (written > maxSize || (contentLength != -1 && written > contentLength)) {
+                    abandon();
+                } else {
+                    out.write(b, off, read);
+                    // readers that go by Content-Length close the stream without reaching its end
+                    if (written == contentLength) {
+                        store();
+                    }
+                }
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes would be missing from the stored body
+            abandon();
+            return super.skip(n);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                abandon();
+            }
+        }
+
+        private void store() throws IOException {
+            done = true;
+            out.close();
+            commit(entry, temp);
+        }
+
+        void abandon() {
+            if (done) {
+                return;
+            }
+            done = true;
+            try {
+                out.close();
+            } catch (IOException ignored) {}
+            temp.delete();
+        }
+    }
+}
@@ -5,22 +5,19 @@ import static com.getcapacitor.plugin.http.MimeType.APPLICATION_VND_API_JSON;
 
 import android.content.Context;
 import android.text.TextUtils;
-import android.util.Base64;
-import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.PluginCall;
-import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -30,6 +27,71 @@ import org.json.JSONObject;
 
 public class HttpRequestHandler {
 
+    private static HttpTransportRegistry transports = new HttpTransportRegistry(new ConnectionPool());
+    private static RequestRegistry requests = new RequestRegistry();
+    private static File spillDirectory = new File(System.getProperty("java.io.tmpdir"), "http-responses");
+    private static long spillThreshold = -1;
+    private static HttpCache cache = new HttpCache(null, 0);
+    private static DownloadMetadataStore downloadMetadata = new DownloadMetadataStore(
+        new File(System.getProperty("java.io.tmpdir"), "http-download-metadata")
+    );
+
+    /**
+     * Sets the engines requests can be sent with
+     * @param registry the transport registry, configured from the plugin config
+     */
+    static void setTransportRegistry(HttpTransportRegistry registry) {
+        transports = registry;
+    }
+
+    static HttpTransportRegistry getTransportRegistry() {
+        return transports;
+    }
+
+    /**
+     * Sets the registry in-flight requests are tracked in, so they can be cancelled
+     * @param registry the request registry shared with the plugin
+     */
+    static void setRequestRegistry(RequestRegistry registry) {
+        requests = registry;
+    }
+
+    static RequestRegistry getRequestRegistry() {
+        return requests;
+    }
+
+    /**
+     * Sets where response bodies are written when they are returned as files
+     * @param directory the directory, created when the first body is written
+     * @param threshold bodies longer than this many bytes are written to a file unless a request
+     *                  sets its own {@code spillThreshold}; -1 keeps them in memory
+     */
+    static void setResponseSpill(File directory, long threshold) {
+        spillDirectory = directory;
+        spillThreshold = threshold;
+    }
+
+    /**
+     * Sets the cache GET responses are stored in and served from
+     * @param httpCache the cache, configured from the plugin config
+     */
+    static void setHttpCache(HttpCache httpCache) {
+        cache = httpCache;
+    }
+
+    static HttpCache getHttpCache() {
+        return cache;
+    }
+
+    /**
+     * Sets where what was downloaded into each file is remembered, so unchanged files aren't
+     * downloaded again
+     * @param store the store, kept in app storage
+     */
+    static void setDownloadMetadataStore(DownloadMetadataStore store) {
+        downloadMetadata = store;
+    }
+
     /**
      * An enum specifying conventional HTTP Response Types
      * See https://developer.mozilla.org/en-US/docs/Web/API/XMLHttpRequest/responseType
@@ -38,6 +100,7 @@ public class HttpRequestHandler {
         ARRAY_BUFFER("arraybuffer"),
         BLOB("blob"),
         DOCUMENT("document"),
+        FILE("file"),
         JSON("json"),
         TEXT("text");
 
@@ -67,11 +130,12 @@ public class HttpRequestHandler {
         private Integer connectTimeout;
         private Integer readTimeout;
         private Boolean disableRedirects;
+        private String transport;
         private JSObject headers;
         private String method;
         private URL url;
 
-        private CapacitorHttpUrlConnection connection;
+        private ICapacitorHttpUrlConnection connection;
 
         public HttpURLConnectionBuilder setConnectTimeout(Integer connectTimeout) {
             this.connectTimeout = connectTimeout;
@@ -88,6 +152,11 @@ public class HttpRequestHandler {
             return this;
         }
 
+        public HttpURLConnectionBuilder setTransport(String transport) {
+            this.transport = transport;
+            return this;
+        }
+
         public HttpURLConnectionBuilder setHeaders(JSObject headers) {
             this.headers = headers;
             return this;
@@ -103,8 +172,13 @@ public class HttpRequestHandler {
             return this;
         }
 
+        public URL getUrl() {
+            return url;
+        }
+
         public HttpURLConnectionBuilder openConnection() throws IOException {
-            connection = new CapacitorHttpUrlConnection((HttpURLConnection) url.openConnection());
+            HttpTransportRegistry.Opened opened = transports.open(transport, url, connectTimeout);
+            CapacitorHttpUrlConnection connection = new CapacitorHttpUrlConnection(opened.connection, opened.transport);
 
             connection.setAllowUserInteraction(false);
             connection.setRequestMethod(method);
@@ -114,6 +188,7 @@ public class HttpRequestHandler {
             if (disableRedirects != null) connection.setDisableRedirects(disableRedirects);
 
             connection.setRequestHeaders(headers);
+            this.connection = connection;
             return this;
         }
 
@@ -174,48 +249,87 @@ public class HttpRequestHandler {
             return this;
         }
 
-        public CapacitorHttpUrlConnection build() {
+        public ICapacitorHttpUrlConnection build() {
             return connection;
         }
     }
 
     /**
-     * Builds an HTTP Response given CapacitorHttpUrlConnection and ResponseType objects.
+     * Builds an HTTP Response given ICapacitorHttpUrlConnection and ResponseType objects.
      *   Defaults to ResponseType.DEFAULT
-     * @param connection The CapacitorHttpUrlConnection to respond with
+     * @param connection The ICapacitorHttpUrlConnection to respond with
      * @throws IOException Thrown if the InputStream is unable to be parsed correctly
      * @throws JSONException Thrown if the JSON is unable to be parsed
      */
-    private static JSObject buildResponse(CapacitorHttpUrlConnection connection) throws IOException, JSONException {
-        return buildResponse(connection, ResponseType.DEFAULT);
+    private static JSObject buildResponse(ICapacitorHttpUrlConnection connection) throws IOException, JSONException {
+        return buildResponse(connection, ResponseType.DEFAULT, null, null);
     }
 
     /**
-     * Builds an HTTP Response given CapacitorHttpUrlConnection and ResponseType objects
-     * @param connection The CapacitorHttpUrlConnection to respond with
+     * Builds an HTTP Response given ICapacitorHttpUrlConnection and ResponseType objects
+     * @param connection The ICapacitorHttpUrlConnection to respond with
      * @param responseType The requested ResponseType
+     * @param spill Where to write the body if it is returned as a file, or null to keep it in memory
+     * @param streamer Receives the body in chunks instead of it being returned, or null
      * @return A JSObject that contains the HTTPResponse to return to the browser
      * @throws IOException Thrown if the InputStream is unable to be parsed correctly
      * @throws JSONException Thrown if the JSON is unable to be parsed
      */
-    private static JSObject buildResponse(CapacitorHttpUrlConnection connection, ResponseType responseType)
-        throws IOException, JSONException {
+    private static JSObject buildResponse(
+        ICapacitorHttpUrlConnection connection,
+        ResponseType responseType,
+        ResponseSpill spill,
+        ResponseStreamer streamer
+    ) throws IOException, JSONException {
         int statusCode = connection.getResponseCode();
 
         JSObject output = new JSObject();
         output.put("status", statusCode);
         output.put("headers", buildResponseHeaders(connection));
         output.put("url", connection.getURL());
-        output.put("data", readData(connection, responseType));
+        if (streamer != null && connection.getErrorStream() == null) {
+            // error bodies are returned as usual so they can be inspected in one piece
+            boolean binary = responseType == ResponseType.ARRAY_BUFFER || responseType == ResponseType.BLOB;
+            ResponseStreamer.StreamedBody body = streamer.stream(
+                connection.getInputStream(),
+                connection.getHeaderField("Content-Type"),
+                binary
+            );
+            output.put("data", "");
+            output.put("stream", body.toJSObject());
+            putContentEncodingStats(output, connection);
+            return output;
+        }
+        Object data = readData(connection, responseType, spill);
+        if (data instanceof ResponseSpill.SpilledBody) {
+            ResponseSpill.SpilledBody body = (ResponseSpill.SpilledBody) data;
+            output.put("data", body.file.getAbsolutePath());
+            output.put("file", body.toJSObject());
+        } else {
+            output.put("data", data);
+        }
 
         InputStream errorStream = connection.getErrorStream();
         if (errorStream != null) {
             output.put("error", true);
         }
+        putContentEncodingStats(output, connection);
 
         return output;
     }
 
+    /**
+     * Adds how many bytes of a compressed body were received and how many they decoded to
+     * @param output The response being built
+     * @param connection The ICapacitorHttpUrlConnection whose body has been read
+     */
+    private static void putContentEncodingStats(JSObject output, ICapacitorHttpUrlConnection connection) {
+        JSObject encoding = connection.getContentEncodingStats();
+        if (encoding != null) {
+            output.put("encoding", encoding);
+        }
+    }
+
     /**
      * Read the existing ICapacitorHttpUrlConnection data
      * @param connection The ICapacitorHttpUrlConnection object to read in
@@ -225,35 +339,165 @@ public class HttpRequestHandler {
      * @throws JSONException Thrown if the JSON is malformed when parsing as JSON
      */
     static Object readData(ICapacitorHttpUrlConnection connection, ResponseType responseType) throws IOException, JSONException {
+        return readData(connection, responseType, null);
+    }
+
+    /**
+     * Read the existing ICapacitorHttpUrlConnection data, writing the body to a file if it is
+     * longer than the threshold of {@code spill}. Error bodies are always read into memory.
+     * @param connection The ICapacitorHttpUrlConnection object to read in
+     * @param responseType The type of HTTP response to return to the API
+     * @param spill Where to write the body if it is returned as a file, or null to keep it in memory
+     * @return The parsed data from the connection, or a {@link ResponseSpill.SpilledBody}
+     * @throws IOException Thrown if the InputStreams cannot be properly parsed
+     * @throws JSONException Thrown if the JSON is malformed when parsing as JSON
+     */
+    static Object readData(ICapacitorHttpUrlConnection connection, ResponseType responseType, ResponseSpill spill)
+        throws IOException, JSONException {
         InputStream errorStream = connection.getErrorStream();
         String contentType = connection.getHeaderField("Content-Type");
+        long contentLength = getContentLength(connection);
 
-        if (responseType != null) {
+        if (errorStream != null) {
+            if (isOneOf(contentType, APPLICATION_JSON, APPLICATION_VND_API_JSON)) {
+                return readStreamAsJSON(errorStream, contentType);
+            } else {
+                return readStreamAsString(errorStream, contentType, contentLength);
+            }
+        } else if (responseType != null) {
             InputStream stream = connection.getInputStream();
+            if (spill != null) {
+                if (spill.mustSpill(contentLength)) {
+                    return spill.write(null, 0, stream, contentType);
+                }
+                if (contentLength < 0) {
+                    // the length isn't known, so read up to the threshold to find out which side of it we are
+                    byte[] head = readAtMost(stream, spill.getThreshold() + 1);
+                    if (head.length > spill.getThreshold()) {
+                        return spill.write(head, head.length, stream, contentType);
+                    }
+                    stream.close();
+                    stream = new ByteArrayInputStream(head);
+                    contentLength = head.length;
+                }
+            }
             switch (responseType) {
                 case ARRAY_BUFFER:
                 case BLOB:
-                    return readStreamAsBase64(stream);
+                    return readStreamAsBase64(stream, contentLength);
                 case JSON:
-                    return parseJSON(readStreamAsString(stream));
+                    return readStreamAsJSON(stream, contentType);
                 case DOCUMENT:
                 case TEXT:
                 default:
-                    return readStreamAsString(stream);
-            }
-        } else if (errorStream != null) {
-            if (isOneOf(contentType, APPLICATION_JSON, APPLICATION_VND_API_JSON)) {
-                return parseJSON(readStreamAsString(errorStream));
-            } else {
-                return readStreamAsString(errorStream);
+                    return readStreamAsString(stream, contentType, contentLength);
             }
         } else if (contentType != null && contentType.contains(APPLICATION_JSON.getValue())) {
             // backward compatibility
-            return parseJSON(readStreamAsString(connection.getInputStream()));
+            return readStreamAsJSON(connection.getInputStream(), contentType);
         }
         return "Set Response TYPE !!!";
     }
 
+    /**
+     * Reads up to {@code limit} bytes of an InputStream, fewer if it ends first
+     * @param in The InputStream to read, left open
+     * @param limit The maximum number of bytes to read
+     * @return the bytes read
+     * @throws IOException thrown if the InputStream is unable to be read
+     */
+    private static byte[] readAtMost(InputStream in, long limit) throws IOException {
+        int capped = (int) Math.min(limit, Integer.MAX_VALUE - 8);
+        byte[] bytes = new byte[Math.min(capped, BufferPool.BUFFER_SIZE)];
+        int count = 0;
+        while (count < capped) {
+            if (count == bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min((long) bytes.length * 2, capped));
+            }
+            int read = in.read(bytes, count, bytes.length - count);
+            if (read == -1) {
+                break;
+            }
+            count += read;
+        }
+        return count == bytes.length ? bytes : Arrays.copyOf(bytes, count);
+    }
+
+    /**
+     * Returns where a request writes its response body when it is returned as a file
+     * @param call The Capacitor PluginCall that contains the request options
+     * @param responseType The requested ResponseType
+     * @return the spill, or null if the body is always kept in memory
+     */
+    private static ResponseSpill getResponseSpill(PluginCall call, ResponseType responseType) {
+        if (responseType == ResponseType.FILE) {
+            return new ResponseSpill(spillDirectory, 0);
+        }
+        Double threshold = call.getDouble("spillThreshold");
+        long effective = threshold != null ? threshold.longValue() : spillThreshold;
+        return effective >= 0 ? new ResponseSpill(spillDirectory, effective) : null;
+    }
+
+    /**
+     * Whether the response body of a request can be returned as a file rather than in memory,
+     * either because it asks for a file or because it may be longer than the spill threshold
+     */
+    static boolean mayReturnFile(PluginCall call) {
+        if (ResponseType.parse(call.getString("responseType")) == ResponseType.FILE) {
+            return true;
+        }
+        Double threshold = call.getDouble("spillThreshold");
+        return (threshold != null ? threshold.longValue() : spillThreshold) >= 0;
+    }
+
+    /**
+     * Returns the length of the response body declared by the Content-Length header
+     * @param connection The ICapacitorHttpUrlConnection connection
+     * @return the length in bytes, or -1 if it isn't known
+     */
+    private static long getContentLength(ICapacitorHttpUrlConnection connection) {
+        String contentLength = connection.getHeaderField("Content-Length");
+        if (contentLength != null) {
+            try {
+                return Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException ignored) {}
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a copy of the request headers with the given headers added, replacing any of the
+     * same name regardless of case
+     * @param headers the request headers, or null
+     * @param extra the headers to add
+     */
+    private static JSObject mergeHeaders(JSObject headers, JSObject extra) {
+        JSObject merged = new JSObject();
+        Iterator<String> keys = headers != null ? headers.keys() : Collections.<String>emptyIterator();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!hasKeyIgnoreCase(extra, key)) {
+                merged.put(key, headers.opt(key));
+            }
+        }
+        Iterator<String> extraKeys = extra.keys();
+        while (extraKeys.hasNext()) {
+            String key = extraKeys.next();
+            merged.put(key, extra.opt(key));
+        }
+        return merged;
+    }
+
+    private static boolean hasKeyIgnoreCase(JSObject object, String name) {
+        Iterator<String> keys = object.keys();
+        while (keys.hasNext()) {
+            if (keys.next().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Helper function for determining if the Content-Type is a typeof an existing Mime-Type
      * @param contentType The Content-Type string to check for
@@ -273,10 +517,10 @@ public class HttpRequestHandler {
 
     /**
      * Build the JSObject response headers based on the connection header map
-     * @param connection The CapacitorHttpUrlConnection connection
-     * @return A JSObject of the header values from the CapacitorHttpUrlConnection
+     * @param connection The ICapacitorHttpUrlConnection connection
+     * @return A JSObject of the header values from the ICapacitorHttpUrlConnection
      */
-    private static JSObject buildResponseHeaders(CapacitorHttpUrlConnection connection) {
+    private static JSObject buildResponseHeaders(ICapacitorHttpUrlConnection connection) {
         JSObject output = new JSObject();
 
         for (Map.Entry<String, List<String>> entry : connection.getHeaderFields().entrySet()) {
@@ -288,69 +532,73 @@ public class HttpRequestHandler {
     }
 
     /**
-     * Returns a JSObject or a JSArray based on a string-ified input
-     * @param input String-ified JSON that needs parsing
-     * @return A JSObject or JSArray
+     * Decodes a JSON InputStream in a single pass, without buffering it as a String first
+     * @param in The InputStream to decode
+     * @param contentType The Content-Type of the response, which may declare its charset
+     * @return A JSObject or JSArray, or the value of a scalar document
+     * @throws IOException thrown if the InputStream is unable to be read
      * @throws JSONException thrown if the JSON is malformed
      */
-    private static Object parseJSON(String input) throws JSONException {
-        JSONObject json = new JSONObject();
-        try {
-            if ("null".equals(input.trim())) {
-                return JSONObject.NULL;
-            } else if ("true".equals(input.trim())) {
-                return new JSONObject().put("flag", "true");
-            } else if ("false".equals(input.trim())) {
-                return new JSONObject().put("flag", "false");
-            } else {
-                try {
-                    return new JSObject(input);
-                } catch (JSONException e) {
-                    return new JSArray(input);
-                }
+    private static Object readStreamAsJSON(InputStream in, String contentType) throws IOException, JSONException {
+        try (Reader reader = new TextBodyReader(in, TextBodyReader.charsetOf(contentType))) {
+            Object value = JsonStreamDecoder.decode(reader);
+            if (value instanceof Boolean) {
+                // booleans have always been wrapped, keep it that way for existing callers
+                return new JSONObject().put("flag", value.toString());
             }
-        } catch (JSONException e) {
-            return new JSArray(input);
+            return value;
         }
     }
 
     /**
-     * Returns a string based on a base64 InputStream
-     * @param in The base64 InputStream to convert to a String
+     * Returns the base64 encoding of an InputStream, encoded as it is read
+     * @param in The InputStream to encode
+     * @param contentLength The length of the body in bytes if known, or -1
      * @return String value of InputStream
-     * @throws IOException thrown if the InputStream is unable to be read as base64
+     * @throws IOException thrown if the InputStream is unable to be read
      */
-    private static String readStreamAsBase64(InputStream in) throws IOException {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            byte[] buffer = new byte[1024];
-            int readBytes;
-            while ((readBytes = in.read(buffer)) != -1) {
-                out.write(buffer, 0, readBytes);
-            }
-            byte[] result = out.toByteArray();
-            return Base64.encodeToString(result, 0, result.length, Base64.DEFAULT);
-        }
+    private static String readStreamAsBase64(InputStream in, long contentLength) throws IOException {
+        return Base64StreamEncoder.encode(in, contentLength);
     }
 
     /**
-     * Returns a string based on an InputStream
+     * Returns a string based on an InputStream, decoded with the charset of the response
      * @param in The InputStream to convert to a String
+     * @param contentType The Content-Type of the response, which may declare its charset
+     * @param contentLength The length of the body in bytes if known, or -1
      * @return String value of InputStream
      * @throws IOException thrown if the InputStream is unable to be read
      */
-    private static String readStreamAsString(InputStream in) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
-            StringBuilder builder = new StringBuilder();
-            String line = reader.readLine();
-            while (line != null) {
-                builder.append(line);
-                line = reader.readLine();
-                if (line != null) {
-                    builder.append(System.getProperty("line.separator"));
-                }
-            }
-            return builder.toString();
+    private static String readStreamAsString(InputStream in, String contentType, long contentLength) throws IOException {
+        return TextBodyReader.readFully(in, TextBodyReader.charsetOf(contentType), contentLength);
+    }
+
+    /**
+     * Returns the engine a request selected with its {@code transport} or {@code http2} options
+     * @param call The Capacitor PluginCall that contains the request options
+     * @return the engine name, or null to use the default engine
+     */
+    private static String getTransportName(PluginCall call) {
+        String transport = call.getString("transport");
+        if (transport != null) {
+            return transport;
         }
+        Boolean http2 = call.getBoolean("http2");
+        if (http2 == null) {
+            return null;
+        }
+        if (http2) {
+            return Http2Transport.NAME;
+        }
+        return Http2Transport.NAME.equals(transports.getDefaultName()) ? transports.getFallback().getName() : null;
+    }
+
+    /**
+     * Returns whether a request with this method sends a body and changes the resource
+     * @param method the upper case HTTP method
+     */
+    static boolean isMutating(String method) {
+        return method.equals("DELETE") || method.equals("PATCH") || method.equals("POST") || method.equals("PUT");
     }
 
     /**
@@ -362,6 +610,21 @@ public class HttpRequestHandler {
      * @throws JSONException thrown when the incoming JSON is malformed
      */
     public static JSObject request(PluginCall call, String httpMethod) throws IOException, URISyntaxException, JSONException {
+        return request(call, httpMethod, null);
+    }
+
+    /**
+     * Makes an Http Request based on the PluginCall parameters, optionally handing the response
+     * body to a streamer in chunks instead of returning it
+     * @param call The Capacitor PluginCall that contains the options need for an Http request
+     * @param httpMethod The HTTP method that overrides the PluginCall HTTP method
+     * @param streamer Receives the body in chunks, or null to return it in the response
+     * @throws IOException throws an IO request when a connection can't be made
+     * @throws URISyntaxException thrown when the URI is malformed
+     * @throws JSONException thrown when the incoming JSON is malformed
+     */
+    static JSObject request(PluginCall call, String httpMethod, ResponseStreamer streamer)
+        throws IOException, URISyntaxException, JSONException {
         String urlString = call.getString("url", "");
         JSObject headers = call.getObject("headers");
         JSObject params = call.getObject("params");
@@ -369,11 +632,13 @@ public class HttpRequestHandler {
         Integer readTimeout = call.getInt("readTimeout");
         Boolean disableRedirects = call.getBoolean("disableRedirects");
         Boolean shouldEncode = call.getBoolean("shouldEncodeUrlParams", true);
+        String transport = getTransportName(call);
         ResponseType responseType = ResponseType.parse(call.getString("responseType"));
+        ResponseSpill spill = getResponseSpill(call, responseType);
 
         String method = httpMethod != null ? httpMethod.toUpperCase() : call.getString("method", "").toUpperCase();
 
-        boolean isHttpMutate = method.equals("DELETE") || method.equals("PATCH") || method.equals("POST") || method.equals("PUT");
+        boolean isHttpMutate = isMutating(method);
 
         URL url = new URL(urlString);
         HttpURLConnectionBuilder connectionBuilder = new HttpURLConnectionBuilder()
@@ -384,22 +649,72 @@ public class HttpRequestHandler {
             .setConnectTimeout(connectTimeout)
             .setReadTimeout(readTimeout)
             .setDisableRedirects(disableRedirects)
-            .openConnection();
+            .setTransport(transport);
+
+        HttpCache.Lookup lookup = cache.lookup(method, connectionBuilder.getUrl(), headers, call.getString("cache"));
+        ICapacitorHttpUrlConnection cached = lookup.getResponse();
+        if (cached != null) {
+            try {
+                JSObject response = buildResponse(cached, responseType, spill, streamer);
+                response.put("cache", lookup.status);
+                return response;
+            } finally {
+                cached.release(true);
+            }
+        }
 
-        CapacitorHttpUrlConnection connection = connectionBuilder.build();
+        ICapacitorHttpUrlConnection connection = connectionBuilder.openConnection().build();
+        ICapacitorHttpUrlConnection network = connection;
+        ICapacitorHttpUrlConnection stored = null;
 
-        // Set HTTP body on a non GET or HEAD request
-        if (isHttpMutate) {
-            JSValue data = new JSValue(call, "data");
-            if (data.getValue() != null) {
-                connection.setDoOutput(true);
-                connection.setRequestBody(call, data);
+        boolean success = false;
+        try {
+            requests.bind(call, connection);
+
+            // Set HTTP body on a non GET or HEAD request
+            if (isHttpMutate) {
+                JSValue data = new JSValue(call, "data");
+                if (data.getValue() != null) {
+                    connection.setDoOutput(true);
+                    connection.setRequestBody(call, data);
+                }
             }
-        }
 
-        connection.connect();
+            if (lookup.isRevalidation()) {
+                for (Map.Entry<String, String> header : lookup.getConditionalHeaders().entrySet()) {
+                    connection.setRequestProperty(header.getKey(), header.getValue());
+                }
+                cache.revalidating();
+            }
+
+            // the request can reach the server from here on; an engine may send it on connect
+            requests.sent(call);
+            connection.connect();
+
+            String cacheStatus = lookup.status;
+            if (lookup.isRevalidation() && connection.getResponseCode() == 304) {
+                stored = cache.revalidated(lookup, connection);
+                cacheStatus = HttpCache.STATUS_REVALIDATED;
+            }
+            if (stored == null) {
+                network = cache.store(lookup, connection, headers);
+            }
+            if (isHttpMutate && connection.getResponseCode() < 400) {
+                cache.invalidate(connectionBuilder.getUrl());
+            }
 
-        return buildResponse(connection, responseType);
+            JSObject response = buildResponse(stored != null ? stored : network, responseType, spill, streamer);
+            if (cacheStatus != null) {
+                response.put("cache", cacheStatus);
+            }
+            success = true;
+            return response;
+        } finally {
+            if (stored != null) {
+                stored.release(success);
+            }
+            network.release(success);
+        }
     }
 
     /**
@@ -410,62 +725,137 @@ public class HttpRequestHandler {
      * @throws IOException throws an IO request when a connection can't be made
      * @throws URISyntaxException thrown when the URI is malformed
      */
-    public static JSObject downloadFile(PluginCall call, Context context, ProgressEmitter progress)
+    public static JSObject downloadFile(final PluginCall call, Context context, ProgressEmitter progress)
         throws IOException, URISyntaxException, JSONException {
         String urlString = call.getString("url");
-        String method = call.getString("method", "GET").toUpperCase();
+        final String method = call.getString("method", "GET").toUpperCase();
         String filePath = call.getString("filePath");
         String fileDirectory = call.getString("fileDirectory", FilesystemUtils.DIRECTORY_DOCUMENTS);
-        JSObject headers = call.getObject("headers");
+        final JSObject headers = call.getObject("headers");
         JSObject params = call.getObject("params");
-        Integer connectTimeout = call.getInt("connectTimeout");
-        Integer readTimeout = call.getInt("readTimeout");
+        final Integer connectTimeout = call.getInt("connectTimeout");
+        final Integer readTimeout = call.getInt("readTimeout");
 
         final URL url = new URL(urlString);
+        String extract = call.getString("extract");
+        if (extract != null) {
+            File directory = filePath != null
+                ? FilesystemUtils.getFileObject(context, filePath, fileDirectory)
+                : FilesystemUtils.getDirectory(context, fileDirectory);
+            return downloadArchive(call, new HttpURLConnectionBuilder().setUrl(url).setUrlParams(params).getUrl(), directory, extract, progress);
+        }
         final File file = FilesystemUtils.getFileObject(context, filePath, fileDirectory);
 
-        HttpURLConnectionBuilder connectionBuilder = new HttpURLConnectionBuilder()
-            .setUrl(url)
-            .setMethod(method)
-            .setHeaders(headers)
-            .setUrlParams(params)
-            .setConnectTimeout(connectTimeout)
-            .setReadTimeout(readTimeout)
-            .openConnection();
-
-        ICapacitorHttpUrlConnection connection = connectionBuilder.build();
-        InputStream connectionInputStream = connection.getInputStream();
-
-        FileOutputStream fileOutputStream = new FileOutputStream(file, false);
-
-        String contentLength = connection.getHeaderField("content-length");
-        int bytes = 0;
-        int maxBytes = 0;
+        Double minBytes = call.getDouble("progressMinBytes");
+        ProgressThrottle throttle = new ProgressThrottle(
+            progress,
+            minBytes != null ? minBytes.longValue() : ProgressThrottle.DEFAULT_MIN_BYTES,
+            call.getInt("progressInterval", (int) ProgressThrottle.DEFAULT_INTERVAL_MS)
+        );
+        // only a GET can be asked for part of its body
+        boolean ranges = "GET".equals(method);
+        boolean resume = ranges && call.getBoolean("resume", false);
+        int segments = ranges ? call.getInt("segments", 1) : 1;
+
+        final URL target = new HttpURLConnectionBuilder().setUrl(url).setUrlParams(params).getUrl();
+        FileDownloader downloader = new FileDownloader(
+            file,
+            target.toString(),
+            resume,
+            segments,
+            new FileDownloader.Connector() {
+                @Override
+                public ICapacitorHttpUrlConnection open(JSObject extraHeaders) throws IOException {
+                    ICapacitorHttpUrlConnection connection = new HttpURLConnectionBuilder()
+                        .setUrl(target)
+                        .setMethod(method)
+                        .setHeaders(mergeHeaders(headers, extraHeaders))
+                        .setConnectTimeout(connectTimeout)
+                        .setReadTimeout(readTimeout)
+                        .openConnection()
+                        .build();
+                    requests.bind(call, connection);
+                    return connection;
+                }
+            },
+            throttle
+        );
+        Integer bufferSize = call.getInt("bufferSize");
+        if (bufferSize != null) {
+            downloader.setBufferSize(bufferSize);
+        }
+        ContentHasher hasher = ContentHasher.fromOptions(call.getArray("hashAlgorithms"), call.getString("expectedHash"));
+        downloader.setHasher(hasher);
+        // a file still as it was downloaded is only downloaded again if it changed on the server
+        DownloadMetadataStore.Entry known = ranges && call.getBoolean("skipUnchanged", true)
+            ? downloadMetadata.get(file, target.toString())
+            : null;
+        if (known != null && (hasher == null || hasher.isSatisfiedBy(known.hashes))) {
+            downloader.setKnownVersion(known.etag, known.lastModified);
+        }
+        downloader.download();
+
+        JSObject result = new JSObject();
+        result.put("path", file.getAbsolutePath());
+        result.put("transferred", downloader.isTransferred());
+        if (downloader.isTransferred()) {
+            if (ranges) {
+                downloadMetadata.put(file, target.toString(), downloader.getETag(), downloader.getLastModified(), downloader.getHashes());
+            } else {
+                downloadMetadata.remove(file);
+            }
+            if (downloader.getHashes() != null) {
+                result.put("hashes", downloader.getHashes());
+            }
+        } else if (hasher != null) {
+            result.put("hashes", known.hashes);
+        }
+        return result;
+    }
 
+    /**
+     * Downloads an archive and unpacks it into a directory as it is received
+     * @param call The Capacitor PluginCall that contains the options need for an Http request
+     * @param url the URL of the archive, with its query parameters
+     * @param directory the directory to unpack it into
+     * @param format the format of the archive, zip or tar.gz
+     * @param progress The emitter which is notified of every entry unpacked
+     */
+    private static JSObject downloadArchive(PluginCall call, URL url, File directory, String format, ProgressEmitter progress)
+        throws IOException {
+        ArchiveExtractor extractor = new ArchiveExtractor(directory, format, progress);
+        extractor.setHasher(ContentHasher.fromOptions(call.getArray("hashAlgorithms"), call.getString("expectedHash")));
+        // the archive is unpacked as sent, so it mustn't be decoded on the way
+        JSObject identity = new JSObject();
+        identity.put("Accept-Encoding", "identity");
+        ICapacitorHttpUrlConnection connection = new HttpURLConnectionBuilder()
+            .setUrl(url)
+            .setMethod(call.getString("method", "GET").toUpperCase())
+            .setHeaders(mergeHeaders(call.getObject("headers"), identity))
+            .setConnectTimeout(call.getInt("connectTimeout"))
+            .setReadTimeout(call.getInt("readTimeout"))
+            .openConnection()
+            .build();
+
+        boolean success = false;
         try {
-            maxBytes = contentLength != null ? Integer.parseInt(contentLength) : 0;
-        } catch (NumberFormatException e) {
-            maxBytes = 0;
+            requests.bind(call, connection);
+            // throws for error responses before anything is unpacked
+            InputStream in = connection.getInputStream();
+            extractor.extract(in, Math.max(0, getContentLength(connection)));
+            success = true;
+        } finally {
+            connection.release(success);
         }
 
-        byte[] buffer = new byte[1024];
-        int len;
-
-        while ((len = connectionInputStream.read(buffer)) > 0) {
-            fileOutputStream.write(buffer, 0, len);
-
-            bytes += len;
-            progress.emit(bytes, maxBytes);
+        JSObject result = new JSObject();
+        result.put("path", directory.getAbsolutePath());
+        result.put("transferred", true);
+        result.put("entries", extractor.getEntries());
+        if (extractor.getHashes() != null) {
+            result.put("hashes", extractor.getHashes());
         }
-
-        connectionInputStream.close();
-        fileOutputStream.close();
-
-        return new JSObject() {
-            {
-                put("path", file.getAbsolutePath());
-            }
-        };
+        return result;
     }
 
     /**
@@ -502,18 +892,47 @@ public class HttpRequestHandler {
             .setReadTimeout(readTimeout)
             .openConnection();
 
-        CapacitorHttpUrlConnection connection = connectionBuilder.build();
+        ICapacitorHttpUrlConnection connection = connectionBuilder.build();
         connection.setDoOutput(true);
 
-        FileUploader builder = new FileUploader(connection.getHttpConnection());
-        builder.addFilePart(name, file, data);
-
-
-        return buildResponse(connection, responseType);
+        boolean success = false;
+        try {
+            requests.bind(call, connection);
+            ContentHasher hasher = ContentHasher.fromOptions(call.getArray("hashAlgorithms"), null);
+            FileUploader builder = new FileUploader(connection);
+            builder.setHasher(hasher);
+            builder.addFilePart(name, file, data);
+
+            JSObject response = buildResponse(connection, responseType, null, null);
+            if (hasher != null) {
+                response.put("hashes", hasher.getDigests());
+            }
+            success = true;
+            return response;
+        } finally {
+            connection.release(success);
+        }
     }
 
     @FunctionalInterface
     public interface ProgressEmitter {
-        void emit(Integer bytes, Integer contentLength);
+        /**
+         * @param bytes the bytes transferred so far
+         * @param contentLength the total length of the transfer, or 0 if it is unknown
+         */
+        void emit(long bytes, long contentLength);
+    }
+
+    /**
+     * Also receives an event for every entry unpacked from a downloaded archive
+     */
+    public interface EntryProgressEmitter extends ProgressEmitter {
+        /**
+         * @param entry the name of the entry in the archive
+         * @param entries how many entries have been unpacked so far
+         * @param bytes the bytes of the archive downloaded so far
+         * @param contentLength the length of the archive, or 0 if it is unknown
+         */
+        void emitEntry(String entry, int entries, long bytes, long contentLength);
     }
 }
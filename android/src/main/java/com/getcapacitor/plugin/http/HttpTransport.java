@@ -0,0 +1,45 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * An engine that carries out HTTP exchanges for the plugin. Engines hand out
+ * {@link HttpURLConnection} instances, which cover the request line, headers, streaming request
+ * and response bodies, and the response status and headers; {@link CapacitorHttpUrlConnection}
+ * wraps whichever engine was selected, so the rest of the request pipeline is engine agnostic.
+ *
+ * <p>Engines are registered with an {@link HttpTransportRegistry} and selected per request with
+ * the {@code transport} option.
+ */
+public interface HttpTransport {
+    /**
+     * Returns the name requests use to select this engine
+     */
+    String getName();
+
+    /**
+     * Creates an unconnected connection for the URL
+     * @param url the URL to request
+     * @param connectTimeout the timeout for establishing a connection, in milliseconds, or null
+     * @return the connection, or null if this engine can't serve the URL and the request should
+     *         fall back to the default engine
+     * @throws IOException if the connection could not be created
+     */
+    HttpURLConnection open(URL url, Integer connectTimeout) throws IOException;
+
+    /**
+     * Called once the exchange on a connection from {@link #open(URL, Integer)} has finished and its
+     * response body has been consumed
+     * @param connection the connection
+     * @param reusable whether the exchange completed cleanly and its socket may be reused
+     */
+    void release(HttpURLConnection connection, boolean reusable);
+
+    /**
+     * Returns a snapshot of the engine's usage counters
+     */
+    JSObject getStats();
+}
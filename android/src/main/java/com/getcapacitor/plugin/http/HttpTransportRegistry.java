@@ -0,0 +1,109 @@
+package com.getcapacitor.plugin.http;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The set of {@link HttpTransport} engines requests can be sent with. One engine is the fallback,
+ * used whenever the selected engine can't serve a URL; it is also the default engine unless
+ * another one is configured.
+ */
+public class HttpTransportRegistry {
+
+    private final Map<String, HttpTransport> transports = new LinkedHashMap<>();
+    private final HttpTransport fallback;
+    private String defaultName;
+
+    /**
+     * @param fallback the engine used when no other engine is selected or able to serve a request
+     */
+    public HttpTransportRegistry(HttpTransport fallback) {
+        this.fallback = fallback;
+        this.defaultName = fallback.getName();
+        transports.put(fallback.getName(), fallback);
+    }
+
+    /**
+     * Adds an engine, replacing any engine registered under the same name
+     * @param transport the engine
+     */
+    public synchronized void register(HttpTransport transport) {
+        if (transport.getName().equals(fallback.getName())) {
+            throw new IllegalArgumentException("The fallback transport can't be replaced");
+        }
+        transports.put(transport.getName(), transport);
+    }
+
+    /**
+     * Returns the engine registered under a name
+     * @param name the engine name
+     * @return the engine, or null if there is none by that name
+     */
+    public synchronized HttpTransport get(String name) {
+        return transports.get(name);
+    }
+
+    /**
+     * Sets the engine used by requests that don't select one
+     * @param name the engine name
+     * @throws IllegalArgumentException if no engine is registered under the name
+     */
+    public synchronized void setDefault(String name) {
+        if (!transports.containsKey(name)) {
+            throw new IllegalArgumentException("Unknown transport: " + name);
+        }
+        defaultName = name;
+    }
+
+    public synchronized String getDefaultName() {
+        return defaultName;
+    }
+
+    public HttpTransport getFallback() {
+        return fallback;
+    }
+
+    public synchronized List<String> getNames() {
+        return new ArrayList<>(transports.keySet());
+    }
+
+    /**
+     * Opens a connection with the named engine, falling back if it can't serve the URL
+     * @param name the engine name, or null for the default engine
+     * @param url the URL to request
+     * @param connectTimeout the connect timeout in milliseconds, or null
+     * @return the connection, and the engine that created it
+     * @throws IllegalArgumentException if no engine is registered under the name
+     */
+    Opened open(String name, URL url, Integer connectTimeout) throws IOException {
+        HttpTransport transport = get(name != null ? name : getDefaultName());
+        if (transport == null) {
+            throw new IllegalArgumentException("Unknown transport: " + name);
+        }
+        HttpURLConnection connection = transport.open(url, connectTimeout);
+        if (connection == null && transport != fallback) {
+            transport = fallback;
+            connection = fallback.open(url, connectTimeout);
+        }
+        if (connection == null) {
+            throw new IOException("No transport is able to open " + url);
+        }
+        return new Opened(transport, connection);
+    }
+
+    static final class Opened {
+
+        final HttpTransport transport;
+        final HttpURLConnection connection;
+
+        Opened(HttpTransport transport, HttpURLConnection connection) {
+            this.transport = transport;
+            this.connection = connection;
+        }
+    }
+}
@@ -1,15 +1,71 @@
 package com.getcapacitor.plugin.http;
 
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONException;
 
 /**
- * This interface was extracted from {@link CapacitorHttpUrlConnection} to enable mocking that class.
+ * A single HTTP exchange as seen by {@link HttpRequestHandler}: the request line, headers and
+ * body going out, and the response status, headers and body coming back. This was extracted from
+ * {@link CapacitorHttpUrlConnection} to enable mocking that class; the exchange itself is carried
+ * out by whichever {@link HttpTransport} opened the underlying connection.
  */
-interface ICapacitorHttpUrlConnection {
+public interface ICapacitorHttpUrlConnection {
+    void setRequestMethod(String method) throws ProtocolException;
+
+    void setConnectTimeout(int timeout);
+
+    void setReadTimeout(int timeout);
+
+    void setDisableRedirects(boolean disableRedirects);
+
+    void setRequestHeaders(JSObject headers);
+
+    void setRequestProperty(String key, String value);
+
+    String getRequestProperty(String key);
+
+    void setDoOutput(boolean shouldDoOutput);
+
+    void setRequestBody(PluginCall call, JSValue body) throws JSONException, IOException;
+
+    OutputStream getOutputStream() throws IOException;
+
+    void connect() throws IOException;
+
+    int getResponseCode() throws IOException;
+
+    URL getURL();
+
+    Map<String, List<String>> getHeaderFields();
+
     InputStream getErrorStream();
 
     String getHeaderField(String name);
 
     InputStream getInputStream() throws IOException;
+
+    /**
+     * Returns the content coding of the response body, and how many bytes were received and
+     * how many they decoded to, or null if the body wasn't decoded
+     */
+    JSObject getContentEncodingStats();
+
+    /**
+     * Finishes the exchange, handing the connection back to its transport
+     * @param success whether the exchange completed normally
+     */
+    void release(boolean success);
+
+    /**
+     * Aborts the exchange from another thread, failing any blocked read or write
+     */
+    void disconnect();
 }
@@ -0,0 +1,361 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.io.IOException;
+import java.io.Reader;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Decodes a JSON document straight from a character stream in a single pass, without first
+ * buffering it as a String. The first token decides the result: a {@link JSObject}, a
+ * {@link JSArray}, or a scalar ({@link String}, {@link Number}, {@link Boolean} or
+ * {@link JSONObject#NULL}). Nested values are plain {@link JSONObject}s and {@link JSONArray}s, as
+ * they are when a String is parsed.
+ *
+ * <p>Unlike {@link org.json.JSONTokener} the decoder is strict: the input must be RFC 8259 JSON,
+ * optionally preceded by a byte order mark.
+ */
+final class JsonStreamDecoder {
+
+    static final int MAX_DEPTH = 512;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder scratch = new StringBuilder();
+    private int position = 0;
+    private int limit = 0;
+    private long offset = 0;
+    private int depth = 0;
+
+    private JsonStreamDecoder(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Decodes a whole document
+     * @param reader the document; it is read to the end but not closed
+     * @return the top-level value
+     * @throws JSONException if the document is not valid JSON
+     * @throws IOException if the document can't be read
+     */
+    static Object decode(Reader reader) throws IOException, JSONException {
+        JsonStreamDecoder decoder = new JsonStreamDecoder(reader);
+        int c = decoder.peekNonWhitespace();
+        if (c == '\uFEFF') {
+            decoder.position++;
+            c = decoder.peekNonWhitespace();
+        }
+        Object value;
+        if (c == '{') {
+            value = decoder.readObject(new JSObject());
+        } else if (c == '[') {
+            value = decoder.readArray(new JSArray());
+        } else {
+            value = decoder.readValue();
+        }
+        if (decoder.peekNonWhitespace() != -1) {
+            throw decoder.syntaxError("Unexpected content after the end of the document");
+        }
+        return value;
+    }
+
+    private Object readValue() throws IOException, JSONException {
+        int c = peekNonWhitespace();
+        switch (c) {
+            case '{':
+                return readObject(new JSONObject());
+            case '[':
+                return readArray(new JSONArray());
+            case '"':
+                position++;
+                return readString();
+            case 't':
+                expectLiteral("true");
+                return Boolean.TRUE;
+            case 'f':
+                expectLiteral("false");
+                return Boolean.FALSE;
+            case 'n':
+                expectLiteral("null");
+                return JSONObject.NULL;
+            case -1:
+                throw syntaxError("Unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return readNumber();
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private JSONObject readObject(JSONObject object) throws IOException, JSONException {
+        enter();
+        position++;
+        if (peekNonWhitespace() == '}') {
+            position++;
+            depth--;
+            return object;
+        }
+        while (true) {
+            if (peekNonWhitespace() != '"') {
+                throw syntaxError("Expected a property name");
+            }
+            position++;
+            String name = readString();
+            if (peekNonWhitespace() != ':') {
+                throw syntaxError("Expected ':' after a property name");
+            }
+            position++;
+            object.put(name, readValue());
+
+            int c = peekNonWhitespace();
+            position++;
+            if (c == '}') {
+                depth--;
+                return object;
+            } else if (c != ',') {
+                position--;
+                throw syntaxError("Expected ',' or '}' in an object");
+            }
+        }
+    }
+
+    private JSONArray readArray(JSONArray array) throws IOException, JSONException {
+        enter();
+        position++;
+        if (peekNonWhitespace() == ']') {
+            position++;
+            depth--;
+            return array;
+        }
+        while (true) {
+            array.put(readValue());
+
+            int c = peekNonWhitespace();
+            position++;
+            if (c == ']') {
+                depth--;
+                return array;
+            } else if (c != ',') {
+                position--;
+                throw syntaxError("Expected ',' or ']' in an array");
+            }
+        }
+    }
+
+    /**
+     * Reads a string whose opening quote has been consumed
+     */
+    private String readString() throws IOException, JSONException {
+        scratch.setLength(0);
+        while (true) {
+            // copy runs of plain characters in bulk
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == '"' || c == '\\' || c < 0x20) {
+                    break;
+                }
+                position++;
+            }
+            scratch.append(buffer, start, position - start);
+            if (position == limit) {
+                if (!fill()) {
+                    throw syntaxError("Unterminated string");
+                }
+                continue;
+            }
+
+            char c = buffer[position++];
+            if (c == '"') {
+                return scratch.toString();
+            } else if (c == '\\') {
+                scratch.append(readEscape());
+            } else {
+                position--;
+                throw syntaxError("Unescaped control character in a string");
+            }
+        }
+    }
+
+    private char readEscape() throws IOException, JSONException {
+        int c = read();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                throw syntaxError("Invalid escape sequence");
+        }
+    }
+
+    private Object readNumber() throws IOException, JSONException {
+        scratch.setLength(0);
+        boolean decimal = false;
+        while (true) {
+            int c = peek();
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+') {
+                scratch.append((char) c);
+            } else if (c == '.' || c == 'e' || c == 'E') {
+                scratch.append((char) c);
+                decimal = true;
+            } else {
+                break;
+            }
+            position++;
+        }
+
+        String literal = scratch.toString();
+        if (!isNumber(literal)) {
+            // Long and Double accept forms JSON doesn't, such as 01, 1. and -.5
+            throw syntaxError("Invalid number '" + literal + "'");
+        }
+        try {
+            if (!decimal) {
+                long value = Long.parseLong(literal);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            }
+        } catch (NumberFormatException ignored) {
+            // too large for a long, read it as a double below
+        }
+        try {
+            return Double.valueOf(literal);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Invalid number '" + literal + "'");
+        }
+    }
+
+    /**
+     * Whether the literal follows the number grammar of RFC 8259: an integer part without leading
+     * zeros, then an optional fraction and an optional exponent, each with at least one digit
+     */
+    private static boolean isNumber(String literal) {
+        int length = literal.length();
+        int i = 0;
+        if (i < length && literal.charAt(i) == '-') {
+            i++;
+        }
+        if (i < length && literal.charAt(i) == '0') {
+            i++;
+        } else {
+            int start = i;
+            i = skipDigits(literal, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < length && literal.charAt(i) == '.') {
+            int start = ++i;
+            i = skipDigits(literal, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        if (i < length && (literal.charAt(i) == 'e' || literal.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (literal.charAt(i) == '+' || literal.charAt(i) == '-')) {
+                i++;
+            }
+            int start = i;
+            i = skipDigits(literal, i);
+            if (i == start) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+    private static int skipDigits(String literal, int i) {
+        while (i < literal.length() && literal.charAt(i) >= '0' && literal.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private void expectLiteral(String literal) throws IOException, JSONException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (read() != literal.charAt(i)) {
+                throw syntaxError("Expected '" + literal + "'");
+            }
+        }
+    }
+
+    private void enter() throws JSONException {
+        if (++depth > MAX_DEPTH) {
+            throw syntaxError("Nesting deeper than " + MAX_DEPTH + " levels");
+        }
+    }
+
+    private int peekNonWhitespace() throws IOException {
+        while (true) {
+            int c = peek();
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+            position++;
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c != -1) {
+            position++;
+        }
+        return c;
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        position = 0;
+        limit = 0;
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        limit = read;
+        return true;
+    }
+
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at character " + (offset + position));
+    }
+}
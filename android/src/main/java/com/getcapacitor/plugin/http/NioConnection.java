@@ -0,0 +1,236 @@
+package com.getcapacitor.plugin.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A non-blocking socket channel with direct read and write buffers, used by {@link NioTransport}.
+ * Reads and writes block the calling thread on a per-connection selector so that timeouts can be
+ * enforced, which a blocking SocketChannel can't do.
+ */
+final class NioConnection {
+
+    static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    final String route;
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final SelectionKey key;
+
+    // kept in read mode: the bytes between position and limit have been received but not consumed
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private boolean reused = false;
+    private long idleSince = 0;
+
+    private NioConnection(String route, SocketChannel channel, Selector selector, SelectionKey key) {
+        this.route = route;
+        this.channel = channel;
+        this.selector = selector;
+        this.key = key;
+        readBuffer.flip();
+    }
+
+    /**
+     * Opens a connection
+     * @param route the pool key of the connection
+     * @param address the address to connect to
+     * @param connectTimeout the connect timeout in milliseconds, or 0 for none
+     */
+    static NioConnection connect(String route, InetSocketAddress address, int connectTimeout) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        Selector selector = null;
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            selector = Selector.open();
+            SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT);
+            NioConnection connection = new NioConnection(route, channel, selector, key);
+            if (!channel.connect(address)) {
+                long deadline = connectTimeout > 0 ? System.currentTimeMillis() + connectTimeout : 0;
+                do {
+                    connection.await(SelectionKey.OP_CONNECT, deadline, "connect");
+                } while (!channel.finishConnect());
+            }
+            return connection;
+        } catch (IOException e) {
+            if (selector != null) {
+                selector.close();
+            }
+            channel.close();
+            throw e;
+        }
+    }
+
+    boolean isReused() {
+        return reused;
+    }
+
+    long getIdleSince() {
+        return idleSince;
+    }
+
+    void markIdle(long now) {
+        idleSince = now;
+    }
+
+    /**
+     * Checks an idle connection before it is reused
+     * @return false if the peer closed the connection or sent data nobody asked for
+     */
+    boolean prepareForReuse() {
+        if (!channel.isOpen() || readBuffer.hasRemaining()) {
+            return false;
+        }
+        try {
+            readBuffer.clear();
+            int read = channel.read(readBuffer);
+            readBuffer.flip();
+            if (read != 0) {
+                return false;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+        reused = true;
+        return true;
+    }
+
+    /**
+     * Writes bytes to the peer
+     * @param timeout the write timeout in milliseconds, or 0 for none
+     */
+    void write(byte[] b, int off, int len, int timeout) throws IOException {
+        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+        while (len > 0) {
+            int count = Math.min(len, writeBuffer.capacity());
+            writeBuffer.clear();
+            writeBuffer.put(b, off, count);
+            writeBuffer.flip();
+            while (writeBuffer.hasRemaining()) {
+                if (channel.write(writeBuffer) == 0) {
+                    await(SelectionKey.OP_WRITE, deadline, "write");
+                }
+            }
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Reads up to {@code len} bytes
+     * @param timeout the read timeout in milliseconds, or 0 for none
+     * @return the number of bytes read, or -1 if the peer closed the connection
+     */
+    int read(byte[] b, int off, int len, int timeout) throws IOException {
+        if (!readBuffer.hasRemaining() && !fill(timeout)) {
+            return -1;
+        }
+        int count = Math.min(len, readBuffer.remaining());
+        readBuffer.get(b, off, count);
+        return count;
+    }
+
+    /**
+     * Returns the number of received bytes that can be read without blocking
+     */
+    int buffered() {
+        return readBuffer.remaining();
+    }
+
+    /**
+     * Reads a CRLF or LF terminated line, decoded as ISO-8859-1
+     * @param timeout the read timeout in milliseconds, or 0 for none
+     * @return the line without its terminator, or null if the peer closed the connection first
+     */
+    String readLine(int timeout) throws IOException {
+        StringBuilder line = new StringBuilder();
+        boolean any = false;
+        while (true) {
+            if (!readBuffer.hasRemaining() && !fill(timeout)) {
+                if (any) {
+                    throw new ProtocolException("Unexpected end of stream in the middle of a line");
+                }
+                return null;
+            }
+            any = true;
+            char c = (char) (readBuffer.get() & 0xFF);
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            if (line.length() >= MAX_LINE_LENGTH) {
+                throw new ProtocolException("Response line too long");
+            }
+            line.append(c);
+        }
+    }
+
+    void close() {
+        try {
+            selector.close();
+        } catch (IOException ignored) {}
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Refills the empty read buffer
+     * @return false if the peer closed the connection
+     */
+    private boolean fill(int timeout) throws IOException {
+        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+        readBuffer.clear();
+        try {
+            while (true) {
+                int read = channel.read(readBuffer);
+                if (read > 0) {
+                    return true;
+                }
+                if (read < 0) {
+                    return false;
+                }
+                await(SelectionKey.OP_READ, deadline, "read");
+            }
+        } finally {
+            readBuffer.flip();
+        }
+    }
+
+    private void await(int ops, long deadline, String operation) throws IOException {
+        key.interestOps(ops);
+        while (true) {
+            long wait = 0;
+            if (deadline != 0) {
+                wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    throw new SocketTimeoutException(operation + " timed out");
+                }
+            }
+            int selected = selector.select(wait);
+            selector.selectedKeys().clear();
+            if (selected > 0) {
+                return;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException();
+            }
+            if (!channel.isOpen()) {
+                throw new IOException("Connection closed");
+            }
+        }
+    }
+}
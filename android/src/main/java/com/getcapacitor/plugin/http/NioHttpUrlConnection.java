@@ -0,0 +1,406 @@
+package com.getcapacitor.plugin.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An HTTP/1.1 exchange over a {@link NioConnection}. Request bodies are streamed with their fixed
+ * length when one is known and chunked otherwise; response bodies are framed by content length,
+ * chunked encoding or the end of the connection.
+ */
+class NioHttpUrlConnection extends TransportUrlConnection {
+
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+    private final NioTransport transport;
+    private NioConnection connection;
+
+    private byte[] requestHead;
+    private boolean hasRequestBody;
+    private long requestContentLength = -1;
+
+    private ResponseHead responseHead;
+    private boolean responseKeepAlive;
+
+    NioHttpUrlConnection(URL url, NioTransport transport) {
+        super(url);
+        this.transport = transport;
+    }
+
+    @Override
+    protected void startExchange(List<String[]> headers, boolean hasBody) throws IOException {
+        hasRequestBody = hasBody;
+        requestContentLength = -1;
+        responseHead = null;
+        requestHead = buildRequestHead(headers, hasBody);
+
+        connection = transport.acquire(url, getConnectTimeout());
+        try {
+            connection.write(requestHead, 0, requestHead.length, getReadTimeout());
+        } catch (IOException e) {
+            if (!connection.isReused()) {
+                abortExchange();
+                throw e;
+            }
+            // the pooled connection went stale; retry once on a fresh one
+            retryOnNewConnection();
+        }
+    }
+
+    /**
+     * Only plain http can be spoken over a NIO connection, so a redirect to https is returned
+     * rather than sent in cleartext to the https port, the way HttpURLConnection doesn't follow
+     * redirects across protocols either. The cleartext policy is checked for the new host as it
+     * was for the first.
+     */
+    @Override
+    protected boolean canFollowRedirect(URL location) throws IOException {
+        if (!location.getProtocol().equals("http")) {
+            return false;
+        }
+        transport.checkCleartextPermitted(location.getHost());
+        return true;
+    }
+
+    @Override
+    protected OutputStream openRequestBody() {
+        return new RequestBodyStream(requestContentLength);
+    }
+
+    @Override
+    protected ResponseHead readResponseHead() throws IOException {
+        int timeout = getReadTimeout();
+        while (true) {
+            String statusLine = connection.readLine(timeout);
+            if (statusLine == null) {
+                if (connection.isReused() && !hasRequestBody) {
+                    retryOnNewConnection();
+                    continue;
+                }
+                throw new IOException("Unexpected end of stream on " + url);
+            }
+
+            String[] parts = statusLine.split(" ", 3);
+            if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+                throw new ProtocolException("Unexpected status line: " + statusLine);
+            }
+            int code;
+            try {
+                code = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                throw new ProtocolException("Unexpected status line: " + statusLine);
+            }
+
+            List<String[]> headers = new ArrayList<>();
+            String line;
+            while ((line = connection.readLine(timeout)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.add(new String[] { line.substring(0, colon).trim(), line.substring(colon + 1).trim() });
+                }
+            }
+            if (line == null) {
+                throw new IOException("Unexpected end of stream on " + url);
+            }
+
+            if (code >= 100 && code < 200) {
+                // informational responses precede the final one
+                continue;
+            }
+
+            String connectionHeader = headerValue(headers, "Connection");
+            boolean http10 = parts[0].equals("HTTP/1.0");
+            responseKeepAlive = http10
+                ? "keep-alive".equalsIgnoreCase(connectionHeader)
+                : !"close".equalsIgnoreCase(connectionHeader);
+            responseHead = new ResponseHead(code, parts.length > 2 ? parts[2] : "", statusLine, headers);
+            return responseHead;
+        }
+    }
+
+    @Override
+    protected InputStream openResponseBody() throws IOException {
+        int code = responseHead.code;
+        if ("HEAD".equals(method) || code == HTTP_NO_CONTENT || code == HTTP_NOT_MODIFIED) {
+            return new ResponseBodyStream(false, 0);
+        }
+        String transferEncoding = headerValue(responseHead.headers, "Transfer-Encoding");
+        if (transferEncoding != null && transferEncoding.toLowerCase(Locale.US).contains("chunked")) {
+            return new ResponseBodyStream(true, -1);
+        }
+        String contentLength = headerValue(responseHead.headers, "Content-Length");
+        if (contentLength != null) {
+            try {
+                return new ResponseBodyStream(false, Long.parseLong(contentLength.trim()));
+            } catch (NumberFormatException e) {
+                throw new ProtocolException("Invalid Content-Length: " + contentLength);
+            }
+        }
+        responseKeepAlive = false;
+        return new ResponseBodyStream(false, -1);
+    }
+
+    @Override
+    protected void abortExchange() {
+        NioConnection current = connection;
+        connection = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private void retryOnNewConnection() throws IOException {
+        connection.close();
+        connection = transport.connect(url, getConnectTimeout());
+        connection.write(requestHead, 0, requestHead.length, getReadTimeout());
+    }
+
+    /**
+     * Hands the connection back to the transport, or closes it if it can't be reused
+     */
+    private void finishExchange(boolean clean) {
+        NioConnection current = connection;
+        connection = null;
+        if (current == null) {
+            return;
+        }
+        if (clean && responseKeepAlive) {
+            transport.recycle(current);
+        } else {
+            current.close();
+        }
+    }
+
+    private byte[] buildRequestHead(List<String[]> headers, boolean hasBody) {
+        String path = url.getPath().isEmpty() ? "/" : url.getPath();
+        if (url.getQuery() != null) {
+            path += "?" + url.getQuery();
+        }
+        String host = url.getPort() != -1 && url.getPort() != url.getDefaultPort() ? url.getHost() + ":" + url.getPort() : url.getHost();
+
+        StringBuilder head = new StringBuilder(256);
+        head.append(method).append(' ').append(path).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(host).append("\r\n");
+        for (String[] header : headers) {
+            if (header[0].equalsIgnoreCase("Host") || header[0].equalsIgnoreCase("Transfer-Encoding")) {
+                continue;
+            }
+            if (header[0].equalsIgnoreCase("Content-Length")) {
+                try {
+                    requestContentLength = Long.parseLong(header[1].trim());
+                } catch (NumberFormatException ignored) {}
+            }
+            head.append(header[0]).append(": ").append(header[1]).append("\r\n");
+        }
+        if (hasBody && requestContentLength == -1) {
+            head.append("Transfer-Encoding: chunked\r\n");
+        }
+        head.append("\r\n");
+        return head.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String headerValue(List<String[]> headers, String name) {
+        String value = null;
+        for (String[] header : headers) {
+            if (header[0].equalsIgnoreCase(name)) {
+                value = header[1];
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Writes the request body with its fixed length, or in chunks when the length isn't known
+     */
+    private final class RequestBodyStream extends OutputStream {
+
+        private final long contentLength;
+        private long written = 0;
+        private boolean closed = false;
+
+        RequestBodyStream(long contentLength) {
+            this.contentLength = contentLength;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Request body already closed");
+            }
+            if (len == 0) {
+                return;
+            }
+            if (contentLength != -1) {
+                if (written + len > contentLength) {
+                    throw new ProtocolException("Request body exceeds the Content-Length of " + contentLength + " bytes");
+                }
+                connection.write(b, off, len, getReadTimeout());
+            } else {
+                ByteArrayOutputStream chunk = new ByteArrayOutputStream(len + 16);
+                byte[] size = (Integer.toHexString(len) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+                chunk.write(size, 0, size.length);
+                chunk.write(b, off, len);
+                chunk.write('\r');
+                chunk.write('\n');
+                connection.write(chunk.toByteArray(), 0, chunk.size(), getReadTimeout());
+            }
+            written += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (contentLength == -1) {
+                byte[] last = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+                connection.write(last, 0, last.length, getReadTimeout());
+            } else if (written != contentLength) {
+                abortExchange();
+                throw new ProtocolException("Request body is shorter than its Content-Length of " + contentLength + " bytes");
+            }
+        }
+    }
+
+    /**
+     * Reads the response body according to its framing. The connection is recycled as soon as
+     * the body has been read to its end.
+     */
+    private final class ResponseBodyStream extends InputStream {
+
+        private final boolean chunked;
+        // bytes left in the body (or the current chunk); -1 when reading to the end of the stream
+        private long remaining;
+        private boolean firstChunk = true;
+        private boolean finished = false;
+
+        ResponseBodyStream(boolean chunked, long length) {
+            this.chunked = chunked;
+            this.remaining = chunked ? 0 : length;
+            if (!chunked && length == 0) {
+                finishExchange(true);
+                finished = true;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                return -1;
+            }
+            if (connection == null) {
+                throw new IOException("Connection closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (chunked && remaining == 0 && !nextChunk()) {
+                return -1;
+            }
+
+            int toRead = remaining == -1 ? len : (int) Math.min(len, remaining);
+            int read = connection.read(b, off, toRead, getReadTimeout());
+            if (read == -1) {
+                if (remaining == -1) {
+                    finished = true;
+                    finishExchange(false);
+                    return -1;
+                }
+                finishExchange(false);
+                throw new ProtocolException("Unexpected end of stream in the response body");
+            }
+            if (remaining != -1) {
+                remaining -= read;
+                if (!chunked && remaining == 0) {
+                    finished = true;
+                    finishExchange(true);
+                }
+            }
+            return read;
+        }
+
+        /**
+         * Reads the next chunk header
+         * @return false if the last chunk was reached and the body is complete
+         */
+        private boolean nextChunk() throws IOException {
+            int timeout = getReadTimeout();
+            if (!firstChunk) {
+                connection.readLine(timeout);
+            }
+            firstChunk = false;
+            String line = connection.readLine(timeout);
+            if (line == null) {
+                finishExchange(false);
+                throw new ProtocolException("Unexpected end of stream in a chunked response body");
+            }
+            int extension = line.indexOf(';');
+            String size = extension != -1 ? line.substring(0, extension) : line;
+            try {
+                remaining = Long.parseLong(size.trim(), 16);
+            } catch (NumberFormatException e) {
+                finishExchange(false);
+                throw new ProtocolException("Invalid chunk size: " + line);
+            }
+            if (remaining == 0) {
+                // skip trailers
+                String trailer;
+                while ((trailer = connection.readLine(timeout)) != null && !trailer.isEmpty()) {}
+                finished = true;
+                finishExchange(trailer != null);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int available() {
+            if (finished || connection == null) {
+                return 0;
+            }
+            int buffered = connection.buffered();
+            return remaining == -1 ? buffered : (int) Math.min(buffered, remaining);
+        }
+
+        @Override
+        public void close() {
+            if (finished || connection == null) {
+                return;
+            }
+            // drain small leftovers so the connection can be reused
+            byte[] buffer = new byte[4096];
+            int drained = 0;
+            try {
+                int read;
+                while (drained <= MAX_DRAIN_BYTES && (read = read(buffer, 0, buffer.length)) != -1) {
+                    drained += read;
+                }
+            } catch (IOException ignored) {}
+            if (!finished) {
+                finished = true;
+                finishExchange(false);
+            }
+        }
+    }
+}
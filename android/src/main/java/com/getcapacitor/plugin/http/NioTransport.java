@@ -0,0 +1,171 @@
+package com.getcapacitor.plugin.http;
+
+import android.os.Build;
+import android.security.NetworkSecurityPolicy;
+import com.getcapacitor.JSObject;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.UnknownServiceException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * HTTP/1.1 engine built on non-blocking socket channels with direct buffers, keeping its own
+ * keep-alive pool. It only speaks cleartext HTTP; {@code https} URLs fall back to the
+ * {@code urlconnection} engine.
+ */
+public class NioTransport implements HttpTransport {
+
+    public static final String NAME = "nio";
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS_PER_HOST = 5;
+
+    private final int maxIdleConnectionsPerHost;
+    private final long keepAliveDurationMs;
+
+    // route -> idle connections, oldest first
+    private final Map<String, ArrayDeque<NioConnection>> idleConnections = new HashMap<>();
+
+    private long connectionsOpened = 0;
+    private long connectionsReused = 0;
+    private long fallbacks = 0;
+
+    /**
+     * @param maxIdleConnectionsPerHost the maximum number of idle connections kept per host
+     * @param keepAliveDurationMs how long an idle connection is kept before it is closed
+     */
+    public NioTransport(int maxIdleConnectionsPerHost, long keepAliveDurationMs) {
+        this.maxIdleConnectionsPerHost = maxIdleConnectionsPerHost;
+        this.keepAliveDurationMs = keepAliveDurationMs;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public HttpURLConnection open(URL url, Integer connectTimeout) throws IOException {
+        if (!url.getProtocol().equals("http")) {
+            synchronized (this) {
+                fallbacks++;
+            }
+            return null;
+        }
+        checkCleartextPermitted(url.getHost());
+        return new NioHttpUrlConnection(url, this);
+    }
+
+    /**
+     * @throws UnknownServiceException if the network security policy forbids cleartext to the host
+     */
+    void checkCleartextPermitted(String host) throws UnknownServiceException {
+        if (!isCleartextPermitted(host)) {
+            throw new UnknownServiceException("CLEARTEXT communication to " + host + " not permitted by network security policy");
+        }
+    }
+
+    boolean isCleartextPermitted(String host) {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.N || NetworkSecurityPolicy.getInstance().isCleartextTrafficPermitted(host);
+    }
+
+    @Override
+    public void release(HttpURLConnection connection, boolean reusable) {
+        // connections recycle their socket themselves once the response body has been consumed
+    }
+
+    /**
+     * Returns an idle connection to the URL's origin, or opens a new one
+     */
+    NioConnection acquire(URL url, int connectTimeout) throws IOException {
+        String route = routeKey(url);
+        synchronized (this) {
+            evictExpired(System.currentTimeMillis());
+            ArrayDeque<NioConnection> idle = idleConnections.get(route);
+            while (idle != null && !idle.isEmpty()) {
+                NioConnection connection = idle.pollLast();
+                if (connection.prepareForReuse()) {
+                    connectionsReused++;
+                    return connection;
+                }
+                connection.close();
+            }
+        }
+        return connect(url, connectTimeout);
+    }
+
+    /**
+     * Opens a new connection to the URL's origin, bypassing the idle pool
+     */
+    NioConnection connect(URL url, int connectTimeout) throws IOException {
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        NioConnection connection = NioConnection.connect(routeKey(url), new InetSocketAddress(url.getHost(), port), connectTimeout);
+        synchronized (this) {
+            connectionsOpened++;
+        }
+        return connection;
+    }
+
+    /**
+     * Hands back a connection whose exchange completed cleanly, so a later request can reuse it
+     */
+    synchronized void recycle(NioConnection connection) {
+        if (maxIdleConnectionsPerHost == 0) {
+            connection.close();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        connection.markIdle(now);
+        ArrayDeque<NioConnection> idle = idleConnections.get(connection.route);
+        if (idle == null) {
+            idle = new ArrayDeque<>();
+            idleConnections.put(connection.route, idle);
+        }
+        idle.addLast(connection);
+        while (idle.size() > maxIdleConnectionsPerHost) {
+            idle.pollFirst().close();
+        }
+        evictExpired(now);
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, ArrayDeque<NioConnection>>> routes = idleConnections.entrySet().iterator();
+        while (routes.hasNext()) {
+            ArrayDeque<NioConnection> idle = routes.next().getValue();
+            while (!idle.isEmpty() && now - idle.peekFirst().getIdleSince() >= keepAliveDurationMs) {
+                idle.pollFirst().close();
+            }
+            if (idle.isEmpty()) {
+                routes.remove();
+            }
+        }
+    }
+
+    private static String routeKey(URL url) {
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        return url.getProtocol() + "://" + url.getHost() + ":" + port;
+    }
+
+    /**
+     * Returns a snapshot of the engine usage counters
+     */
+    @Override
+    public synchronized JSObject getStats() {
+        evictExpired(System.currentTimeMillis());
+
+        int idle = 0;
+        for (ArrayDeque<NioConnection> connections : idleConnections.values()) {
+            idle += connections.size();
+        }
+
+        JSObject stats = new JSObject();
+        stats.put("idle", idle);
+        stats.put("connectionsOpened", connectionsOpened);
+        stats.put("connectionsReused", connectionsReused);
+        stats.put("fallbacks", fallbacks);
+        return stats;
+    }
+}
@@ -0,0 +1,56 @@
+package com.getcapacitor.plugin.http;
+
+/**
+ * Passes transfer progress on to a {@link HttpRequestHandler.ProgressEmitter} only once enough
+ * bytes have been transferred and enough time has passed since the last event, so a large
+ * transfer sends a handful of events across the bridge rather than one per read. The final
+ * progress is always passed on.
+ */
+final class ProgressThrottle {
+
+    static final long DEFAULT_MIN_BYTES = 64 * 1024;
+    static final long DEFAULT_INTERVAL_MS = 100;
+
+    private final HttpRequestHandler.ProgressEmitter emitter;
+    private final long minBytes;
+    private final long intervalNanos;
+
+    private long lastBytes = -1;
+    private long lastTime;
+
+    /**
+     * @param emitter receives the progress events
+     * @param minBytes how many bytes must be transferred between two events
+     * @param intervalMs how many milliseconds must pass between two events
+     */
+    ProgressThrottle(HttpRequestHandler.ProgressEmitter emitter, long minBytes, long intervalMs) {
+        this.emitter = emitter;
+        this.minBytes = Math.max(0, minBytes);
+        this.intervalNanos = Math.max(0, intervalMs) * 1000000L;
+        this.lastTime = System.nanoTime();
+    }
+
+    /**
+     * Reports the progress of the transfer, which is passed on if the last event was long enough ago
+     * @param bytes the bytes transferred so far
+     * @param contentLength the total length of the transfer, or 0 if it is unknown
+     */
+    void update(long bytes, long contentLength) {
+        long now = System.nanoTime();
+        if (bytes - Math.max(0, lastBytes) >= minBytes && now - lastTime >= intervalNanos) {
+            lastBytes = bytes;
+            lastTime = now;
+            emitter.emit(bytes, contentLength);
+        }
+    }
+
+    /**
+     * Reports the end of the transfer, which is passed on unless it was the last event already
+     */
+    void finish(long bytes, long contentLength) {
+        if (bytes != lastBytes) {
+            lastBytes = bytes;
+            emitter.emit(bytes, contentLength);
+        }
+    }
+}
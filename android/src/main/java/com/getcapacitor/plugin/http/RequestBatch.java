@@ -0,0 +1,249 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.util.List;
+
+/**
+ * Runs the requests of a {@code requestBatch} call, keeping at most a fixed number of them in
+ * flight. Each request is handed to the plugin as a call of its own, so it is scheduled, tracked
+ * and cancelled like any other request; its outcome is collected here instead of being sent back
+ * over the bridge.
+ *
+ * <p>Requests that haven't been sent yet aren't known to the {@link RequestRegistry}, so the batch
+ * is cancelled through {@link #cancel(String)} too; those requests are then rejected as cancelled
+ * when their turn comes instead of being sent.
+ */
+class RequestBatch {
+
+    static final int DEFAULT_CONCURRENCY = 6;
+
+    /**
+     * Sends a single request of the batch
+     */
+    interface Submitter {
+        void submit(PluginCall itemCall);
+    }
+
+    /**
+     * Receives the outcome of each request as soon as it settles
+     */
+    interface Listener {
+        void onItem(JSObject item);
+    }
+
+    private final String batchId;
+    private final PluginCall call;
+    private final List<JSObject> items;
+    private final int concurrency;
+    private final Submitter submitter;
+    private final Listener listener;
+    private final JSObject[] results;
+    private final boolean[] cancelled;
+
+    private Runnable onComplete;
+    private int next = 0;
+    private int free;
+    private boolean submitting = false;
+    private int completed = 0;
+    private int succeeded = 0;
+
+    /**
+     * @param batchId the ID reported with every item
+     * @param call the {@code requestBatch} call, settled once every request has settled
+     * @param items the options of each request
+     * @param concurrency the maximum number of requests in flight at once
+     * @param submitter sends a request
+     * @param listener receives each outcome as it settles, or null to return them all at the end
+     */
+    RequestBatch(String batchId, PluginCall call, List<JSObject> items, int concurrency, Submitter submitter, Listener listener) {
+        this.batchId = batchId;
+        this.call = call;
+        this.items = items;
+        this.concurrency = Math.max(1, concurrency);
+        this.submitter = submitter;
+        this.listener = listener;
+        this.results = new JSObject[items.size()];
+        this.cancelled = new boolean[items.size()];
+        this.free = this.concurrency;
+    }
+
+    /**
+     * Sets what to run once every request has settled and the batch call was resolved
+     */
+    void setOnComplete(Runnable onComplete) {
+        this.onComplete = onComplete;
+    }
+
+    void start() {
+        if (items.isEmpty()) {
+            complete();
+            return;
+        }
+        submitNext();
+    }
+
+    /**
+     * Cancels the requests of the batch that haven't been sent yet. Requests already sent are
+     * cancelled through the request registry.
+     * @param option the request option to match, {@code requestId} or {@code tag}
+     * @param value the value the option must have, or null to cancel every request
+     * @return the number of requests cancelled
+     */
+    int cancel(String option, String value) {
+        int count = 0;
+        synchronized (this) {
+            for (int i = next; i < items.size(); i++) {
+                if (!cancelled[i] && (value == null || value.equals(items.get(i).getString(option)))) {
+                    cancelled[i] = true;
+                    count++;
+                }
+            }
+        }
+        if (count > 0) {
+            submitNext();
+        }
+        return count;
+    }
+
+    /**
+     * Sends requests while there is room for them, rejecting the cancelled ones as their turn
+     * comes. A request that settles while it is being sent frees its slot for this loop rather
+     * than starting another one, so requests that settle right away don't nest.
+     */
+    private void submitNext() {
+        synchronized (this) {
+            if (submitting) {
+                return;
+            }
+            submitting = true;
+        }
+        while (true) {
+            ItemCall itemCall;
+            synchronized (this) {
+                if (next >= items.size() || (free == 0 && !cancelled[next])) {
+                    submitting = false;
+                    return;
+                }
+                int index = next++;
+                itemCall = new ItemCall(index, items.get(index), !cancelled[index]);
+                if (itemCall.holdsSlot) {
+                    free--;
+                }
+            }
+            if (itemCall.holdsSlot) {
+                submitter.submit(itemCall);
+            } else {
+                itemCall.reject(RequestRegistry.CANCELLED_MESSAGE, RequestRegistry.CANCELLED_CODE);
+            }
+        }
+    }
+
+    private void itemSettled(ItemCall itemCall, JSObject item) {
+        boolean done;
+        synchronized (this) {
+            results[itemCall.index] = item;
+            completed++;
+            if (item.getBoolean("ok", false)) {
+                succeeded++;
+            }
+            if (itemCall.holdsSlot) {
+                free++;
+            }
+            done = completed == items.size();
+        }
+        if (listener != null) {
+            listener.onItem(item);
+        }
+        if (done) {
+            complete();
+        } else {
+            submitNext();
+        }
+    }
+
+    private void complete() {
+        call.resolve(buildResult());
+        if (onComplete != null) {
+            onComplete.run();
+        }
+    }
+
+    private synchronized JSObject buildResult() {
+        JSObject result = new JSObject();
+        result.put("batchId", batchId);
+        result.put("total", items.size());
+        result.put("succeeded", succeeded);
+        result.put("failed", completed - succeeded);
+        if (listener == null) {
+            JSArray responses = new JSArray();
+            for (JSObject item : results) {
+                responses.put(item);
+            }
+            result.put("results", responses);
+        }
+        return result;
+    }
+
+    /**
+     * The call a single request of the batch runs as. Settling it records the outcome in the
+     * batch rather than answering over the bridge.
+     */
+    private class ItemCall extends PluginCall {
+
+        private final int index;
+        private final boolean holdsSlot;
+        private boolean settled = false;
+
+        /**
+         * @param holdsSlot whether the request is sent and takes up one of the concurrent slots
+         */
+        ItemCall(int index, JSObject options, boolean holdsSlot) {
+            super(null, "Http", batchId + "/" + index, "request", options);
+            this.index = index;
+            this.holdsSlot = holdsSlot;
+        }
+
+        @Override
+        public void resolve(JSObject data) {
+            JSObject item = newItem(true);
+            if (item != null) {
+                item.put("response", data);
+                itemSettled(this, item);
+            }
+        }
+
+        @Override
+        public void resolve() {
+            resolve(new JSObject());
+        }
+
+        @Override
+        public void reject(String msg, String code, Exception ex, JSObject data) {
+            JSObject item = newItem(false);
+            if (item != null) {
+                JSObject error = new JSObject();
+                error.put("message", msg);
+                error.put("code", code);
+                item.put("error", error);
+                itemSettled(this, item);
+            }
+        }
+
+        /**
+         * @return the outcome to fill in, or null if the call has already been settled
+         */
+        private synchronized JSObject newItem(boolean ok) {
+            if (settled) {
+                return null;
+            }
+            settled = true;
+            JSObject item = new JSObject();
+            item.put("batchId", batchId);
+            item.put("index", index);
+            item.put("ok", ok);
+            return item;
+        }
+    }
+}
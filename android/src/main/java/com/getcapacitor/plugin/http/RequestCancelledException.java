@@ -0,0 +1,13 @@
+package com.getcapacitor.plugin.http;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Thrown when a request is cancelled through the {@link RequestRegistry} before or while it runs
+ */
+public class RequestCancelledException extends InterruptedIOException {
+
+    public RequestCancelledException() {
+        super(RequestRegistry.CANCELLED_MESSAGE);
+    }
+}
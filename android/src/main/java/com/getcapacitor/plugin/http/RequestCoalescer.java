@@ -0,0 +1,190 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Lets identical GET requests that are in flight at the same time share a single exchange. The
+ * first request of a kind goes to the network; requests with the same key that arrive before it
+ * completes wait for it and settle with its result. If the request that went to the network is
+ * cancelled, the first request waiting on it takes its place.
+ *
+ * <p>Requests are identical when they share the method, URL, query parameters, response type,
+ * transport and the values of the headers that make up the key. Other headers are ignored, so
+ * only headers that can't change the response should be left out of the key. Requests whose body
+ * may be returned as a file are never coalesced.
+ */
+public class RequestCoalescer {
+
+    public static final String[] DEFAULT_KEY_HEADERS = { "Accept", "Accept-Encoding", "Accept-Language", "Authorization", "Range" };
+
+    private final boolean enabledByDefault;
+    private final Set<String> keyHeaders = new HashSet<>();
+    private final Map<String, List<RequestRegistry.Entry>> flights = new HashMap<>();
+
+    private long leaders = 0;
+    private long coalesced = 0;
+    private long detached = 0;
+    private long promoted = 0;
+
+    public RequestCoalescer() {
+        this(false, DEFAULT_KEY_HEADERS);
+    }
+
+    /**
+     * @param enabledByDefault whether requests that don't set {@code coalesce} are coalesced
+     * @param keyHeaders the request headers whose values are part of the key
+     */
+    public RequestCoalescer(boolean enabledByDefault, String[] keyHeaders) {
+        this.enabledByDefault = enabledByDefault;
+        for (String header : keyHeaders) {
+            this.keyHeaders.add(header.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Computes the key identical requests share
+     * @param call the plugin call of the request
+     * @param method the HTTP method of the request
+     * @return the key, or null if the request must not be coalesced
+     */
+    public String getKey(PluginCall call, String method) {
+        if (!call.getBoolean("coalesce", enabledByDefault)) {
+            return null;
+        }
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return null;
+        }
+        if (HttpRequestHandler.mayReturnFile(call)) {
+            // each caller owns and deletes the file it gets, so it can't be handed to several
+            return null;
+        }
+        return describe(call, method, keyHeaders);
+    }
+
+    /**
+     * Describes a request by everything that can change its response
+     * @param call the plugin call of the request
+     * @param method the HTTP method of the request
+     * @param keyHeaders the lowercase names of the headers to include, or null for all of them
+     */
+    static String describe(PluginCall call, String method, Set<String> keyHeaders) {
+        StringBuilder key = new StringBuilder(method).append(' ').append(call.getString("url", ""));
+        key.append("\nencode=").append(call.getBoolean("shouldEncodeUrlParams", true));
+        key.append("\nresponseType=").append(call.getString("responseType", ""));
+        key.append("\ntransport=").append(call.getString("transport", "")).append('/').append(call.getBoolean("http2"));
+        key.append("\ncache=").append(call.getString("cache", HttpCache.MODE_DEFAULT));
+
+        JSObject params = call.getObject("params");
+        if (params != null) {
+            TreeMap<String, String> sorted = new TreeMap<>();
+            Iterator<String> keys = params.keys();
+            while (keys.hasNext()) {
+                String name = keys.next();
+                sorted.put(name, String.valueOf(params.opt(name)));
+            }
+            key.append("\nparams=").append(sorted);
+        }
+
+        JSObject headers = call.getObject("headers");
+        if (headers != null) {
+            TreeMap<String, String> sorted = new TreeMap<>();
+            Iterator<String> keys = headers.keys();
+            while (keys.hasNext()) {
+                String name = keys.next();
+                String lower = name.toLowerCase(Locale.ROOT);
+                if (keyHeaders == null || keyHeaders.contains(lower)) {
+                    sorted.put(lower, headers.getString(name));
+                }
+            }
+            key.append("\nheaders=").append(sorted);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Joins the request to an exchange already in flight for the key, or starts a new flight
+     * @param key the request key
+     * @param entry the request's registry entry
+     * @return true if the request joined an existing flight and must not be sent; false if it
+     *         leads a new flight and must call {@link #complete(String)} once it is done
+     */
+    public synchronized boolean join(String key, RequestRegistry.Entry entry) {
+        List<RequestRegistry.Entry> followers = flights.get(key);
+        if (followers == null) {
+            flights.put(key, new ArrayList<RequestRegistry.Entry>());
+            leaders++;
+            return false;
+        }
+        followers.add(entry);
+        coalesced++;
+        return true;
+    }
+
+    /**
+     * Detaches a waiting request from its flight, e.g. because it was cancelled
+     * @return true if the request was still waiting
+     */
+    public synchronized boolean leave(String key, RequestRegistry.Entry entry) {
+        List<RequestRegistry.Entry> followers = flights.get(key);
+        if (followers != null && followers.remove(entry)) {
+            detached++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Hands the flight for the key to the first request waiting on it, because the request that
+     * led it was cancelled
+     * @return the request that now leads the flight and must be sent, or null if none was waiting,
+     *         in which case the flight is over
+     */
+    public synchronized RequestRegistry.Entry promote(String key) {
+        List<RequestRegistry.Entry> followers = flights.get(key);
+        if (followers == null || followers.isEmpty()) {
+            flights.remove(key);
+            return null;
+        }
+        promoted++;
+        return followers.remove(0);
+    }
+
+    /**
+     * Ends the flight for the key. Requests with the same key that arrive afterwards start a new one.
+     * @return the requests that joined the flight and still wait for its result
+     */
+    public synchronized List<RequestRegistry.Entry> complete(String key) {
+        List<RequestRegistry.Entry> followers = flights.remove(key);
+        return followers != null ? followers : Collections.<RequestRegistry.Entry>emptyList();
+    }
+
+    /**
+     * Returns a snapshot of the coalescer counters
+     */
+    public synchronized JSObject getStats() {
+        int waiting = 0;
+        for (List<RequestRegistry.Entry> followers : flights.values()) {
+            waiting += followers.size();
+        }
+        JSObject stats = new JSObject();
+        stats.put("enabled", enabledByDefault);
+        stats.put("inFlight", flights.size());
+        stats.put("waiting", waiting);
+        stats.put("leaders", leaders);
+        stats.put("coalesced", coalesced);
+        stats.put("detached", detached);
+        stats.put("promoted", promoted);
+        return stats;
+    }
+}
@@ -0,0 +1,246 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs HTTP calls on a shared pool of reusable worker threads. The number of calls executing at
+ * once is bounded both globally and per host; calls that can't run yet wait in a queue ordered by
+ * priority (higher first) and then by arrival (FIFO).
+ */
+public class RequestDispatcher {
+
+    public static final int DEFAULT_MAX_REQUESTS = 64;
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 5;
+
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 60;
+
+    private final ExecutorService executorService;
+    private final PriorityQueue<Call> readyCalls = new PriorityQueue<>();
+    private final Map<String, Integer> runningCallsPerHost = new HashMap<>();
+
+    private int maxRequests;
+    private int maxRequestsPerHost;
+    private int runningCalls = 0;
+    private long nextSequence = 0;
+
+    private long startedCalls = 0;
+    private long completedCalls = 0;
+    private long totalWaitMillis = 0;
+    private long maxWaitMillis = 0;
+    private long lastWaitMillis = 0;
+
+    /**
+     * A unit of work waiting for, or holding, a dispatcher slot
+     */
+    public class Call implements Comparable<Call>, Runnable {
+
+        private final String host;
+        private final int priority;
+        private final long sequence;
+        private final long enqueuedAt;
+        private final Runnable task;
+
+        private Call(String host, int priority, long sequence, Runnable task) {
+            this.host = host;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.enqueuedAt = System.currentTimeMillis();
+            this.task = task;
+        }
+
+        /**
+         * Removes the call from the queue if it has not started yet
+         * @return true if the call was dequeued and will never run
+         */
+        public boolean cancel() {
+            synchronized (RequestDispatcher.this) {
+                return readyCalls.remove(this);
+            }
+        }
+
+        @Override
+        public int compareTo(Call other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                finished(this);
+            }
+        }
+    }
+
+    public RequestDispatcher() {
+        this(DEFAULT_MAX_REQUESTS, DEFAULT_MAX_REQUESTS_PER_HOST);
+    }
+
+    /**
+     * @param maxRequests the maximum number of calls executing at once
+     * @param maxRequestsPerHost the maximum number of calls executing at once against a single host
+     */
+    public RequestDispatcher(int maxRequests, int maxRequestsPerHost) {
+        setMaxRequests(maxRequests);
+        setMaxRequestsPerHost(maxRequestsPerHost);
+        executorService =
+            new ThreadPoolExecutor(
+                0,
+                Integer.MAX_VALUE,
+                WORKER_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger(0);
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "CapacitorHttp Dispatcher " + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }
+            );
+    }
+
+    public synchronized void setMaxRequests(int maxRequests) {
+        if (maxRequests < 1) {
+            throw new IllegalArgumentException("maxRequests must be at least 1");
+        }
+        this.maxRequests = maxRequests;
+    }
+
+    public synchronized void setMaxRequestsPerHost(int maxRequestsPerHost) {
+        if (maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("maxRequestsPerHost must be at least 1");
+        }
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    /**
+     * Queues a task and starts it as soon as the global and per-host limits allow
+     * @param host the host the task talks to, used for the per-host limit
+     * @param priority the task priority; higher values are started first
+     * @param task the work to execute on a dispatcher thread
+     * @return a handle that can be used to remove the task while it is still queued
+     */
+    public Call enqueue(String host, int priority, Runnable task) {
+        Call call;
+        synchronized (this) {
+            call = new Call(host != null ? host : "", priority, nextSequence++, task);
+            readyCalls.add(call);
+        }
+        promoteAndExecute();
+        return call;
+    }
+
+    /**
+     * Moves as many queued calls as the limits allow to the worker pool
+     */
+    private void promoteAndExecute() {
+        List<Call> executableCalls = new ArrayList<>();
+        synchronized (this) {
+            List<Call> skippedCalls = new ArrayList<>();
+            while (runningCalls < maxRequests && !readyCalls.isEmpty()) {
+                Call call = readyCalls.poll();
+                if (runningCallsForHost(call.host) >= maxRequestsPerHost) {
+                    skippedCalls.add(call);
+                    continue;
+                }
+                runningCalls++;
+                runningCallsPerHost.put(call.host, runningCallsForHost(call.host) + 1);
+                recordWait(call);
+                executableCalls.add(call);
+            }
+            readyCalls.addAll(skippedCalls);
+        }
+
+        for (Call call : executableCalls) {
+            executorService.execute(call);
+        }
+    }
+
+    private void finished(Call call) {
+        synchronized (this) {
+            runningCalls--;
+            int remaining = runningCallsForHost(call.host) - 1;
+            if (remaining > 0) {
+                runningCallsPerHost.put(call.host, remaining);
+            } else {
+                runningCallsPerHost.remove(call.host);
+            }
+            completedCalls++;
+        }
+        promoteAndExecute();
+    }
+
+    private int runningCallsForHost(String host) {
+        Integer count = runningCallsPerHost.get(host);
+        return count != null ? count : 0;
+    }
+
+    private void recordWait(Call call) {
+        long wait = Math.max(0, System.currentTimeMillis() - call.enqueuedAt);
+        startedCalls++;
+        totalWaitMillis += wait;
+        lastWaitMillis = wait;
+        if (wait > maxWaitMillis) {
+            maxWaitMillis = wait;
+        }
+    }
+
+    /**
+     * @return the number of calls waiting for a free slot
+     */
+    public synchronized int queuedCallsCount() {
+        return readyCalls.size();
+    }
+
+    /**
+     * @return the number of calls currently executing
+     */
+    public synchronized int runningCallsCount() {
+        return runningCalls;
+    }
+
+    /**
+     * Returns a snapshot of the dispatcher state, for tuning the concurrency limits
+     */
+    public synchronized JSObject getStats() {
+        JSObject stats = new JSObject();
+        stats.put("maxRequests", maxRequests);
+        stats.put("maxRequestsPerHost", maxRequestsPerHost);
+        stats.put("queued", readyCalls.size());
+        stats.put("running", runningCalls);
+        stats.put("started", startedCalls);
+        stats.put("completed", completedCalls);
+        stats.put("averageWaitMs", startedCalls > 0 ? totalWaitMillis / startedCalls : 0);
+        stats.put("maxWaitMs", maxWaitMillis);
+        stats.put("lastWaitMs", lastWaitMillis);
+
+        long oldestWait = 0;
+        long now = System.currentTimeMillis();
+        Iterator<Call> iterator = readyCalls.iterator();
+        while (iterator.hasNext()) {
+            oldestWait = Math.max(oldestWait, now - iterator.next().enqueuedAt);
+        }
+        stats.put("oldestQueuedWaitMs", oldestWait);
+        return stats;
+    }
+}
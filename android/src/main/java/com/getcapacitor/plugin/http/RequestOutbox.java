@@ -0,0 +1,574 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Keeps mutating requests that couldn't reach the server in a journal in app storage and sends
+ * them again, in the order they were made, once the network is back.
+ *
+ * <p>Every entry is a file of its own, written to a temporary file and renamed into place, and
+ * it is deleted only after the server has answered. An app that stops during a replay therefore
+ * sends the requests that were in flight again when it restarts; each entry carries an
+ * {@code Idempotency-Key} header with its ID so the server can recognise a request it has
+ * already processed. A replay stops at the first entry that fails to reach the server, or that
+ * the server asks to retry with a 429 or 5xx status, so later requests never overtake it.
+ *
+ * <p>A stopped replay is started again after a delay that doubles with every attempt at the
+ * entry, or after the delay a 429 or 503 response asked for with Retry-After. An entry added
+ * while no replay is in progress, because the server couldn't be reached, is sent again after
+ * the first of those delays. Either way a replay can also be started sooner, when the network
+ * comes back or the app asks for one.
+ */
+class RequestOutbox {
+
+    static final int DEFAULT_CONCURRENCY = 1;
+    static final int DEFAULT_MAX_ATTEMPTS = 10;
+
+    static final long INITIAL_RETRY_DELAY_MS = 1000;
+    static final long MAX_RETRY_DELAY_MS = 5 * 60 * 1000;
+
+    static final String STATUS_QUEUED = "queued";
+    static final String STATUS_SENDING = "sending";
+    static final String STATUS_SENT = "sent";
+    static final String STATUS_RETRYING = "retrying";
+    static final String STATUS_FAILED = "failed";
+
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    private static final String ENTRY_SUFFIX = ".json";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Sends a queued request
+     */
+    interface Submitter {
+        void submit(PluginCall entryCall);
+    }
+
+    /**
+     * Receives a status event every time an entry is queued, sent, retried or given up on
+     */
+    interface Listener {
+        void onEntry(JSObject event);
+    }
+
+    /**
+     * Runs a replay the outbox wants to start later
+     */
+    interface Scheduler {
+        /**
+         * @param replay starts the replay when run
+         * @param delayMs how many milliseconds to wait before running it
+         */
+        void schedule(Runnable replay, long delayMs);
+    }
+
+    private static final class Entry {
+
+        final long sequence;
+        final String id;
+        final String method;
+        final JSObject options;
+        final long createdAt;
+        int attempts;
+
+        Entry(long sequence, String id, String method, JSObject options, long createdAt, int attempts) {
+            this.sequence = sequence;
+            this.id = id;
+            this.method = method;
+            this.options = options;
+            this.createdAt = createdAt;
+            this.attempts = attempts;
+        }
+
+        JSObject toJSObject() {
+            JSObject json = new JSObject();
+            json.put("id", id);
+            json.put("method", method);
+            json.put("url", options.getString("url"));
+            json.put("attempts", attempts);
+            json.put("createdAt", createdAt);
+            return json;
+        }
+    }
+
+    private final File directory;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final Submitter submitter;
+    private final Scheduler scheduler;
+    private final Listener listener;
+
+    private final Map<String, Entry> inFlight = new HashMap<>();
+    private final Deque<Entry> queue = new ArrayDeque<>();
+    private long nextSequence = -1;
+    private boolean replaying = false;
+    private boolean halted = false;
+    // the longest delay an entry that stopped the current replay asked for
+    private long retryDelay = 0;
+    // identifies the latest scheduled replay; earlier ones have been overtaken when they run
+    private long retryGeneration = 0;
+    private boolean retryScheduled = false;
+
+    private long queued = 0;
+    private long sent = 0;
+    private long retried = 0;
+    private long failed = 0;
+
+    /**
+     * @param directory the directory the journal is kept in, created when the first entry is added
+     * @param concurrency the maximum number of entries sent at once during a replay
+     * @param maxAttempts how many times an entry is sent before it is given up on
+     * @param submitter sends an entry
+     * @param scheduler starts the replays that are retried later
+     * @param listener receives the status events of entries, or null
+     */
+    RequestOutbox(File directory, int concurrency, int maxAttempts, Submitter submitter, Scheduler scheduler, Listener listener) {
+        this.directory = directory;
+        this.concurrency = Math.max(1, concurrency);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.submitter = submitter;
+        this.scheduler = scheduler;
+        this.listener = listener;
+    }
+
+    /**
+     * Gives a request that may end up in the outbox the ID of its entry, and sends it as the
+     * {@code Idempotency-Key} header unless the request has one. This is done before the request
+     * is first sent, so a server that did receive that attempt recognises the replayed one.
+     * @param options the options of the request, as passed to the plugin
+     * @return the ID to journal the request with
+     */
+    static String attachIdempotencyKey(JSObject options) throws JSONException {
+        String id = UUID.randomUUID().toString();
+        JSObject headers = options.getJSObject("headers", new JSObject());
+        if (!hasHeader(headers, IDEMPOTENCY_KEY_HEADER)) {
+            headers.put(IDEMPOTENCY_KEY_HEADER, id);
+        }
+        options.put("headers", headers);
+        return id;
+    }
+
+    /**
+     * Whether a request that failed can be journaled without the risk of the server processing it
+     * twice: it failed to connect, or it failed before it was fully handed to the network. A
+     * request that timed out or lost its connection after that may well have been processed.
+     * @param e why the request failed
+     * @param sent whether the request had been fully handed to the network
+     */
+    static boolean failedBeforeSending(Exception e, boolean sent) {
+        if (e instanceof ConnectException || e instanceof UnknownHostException || e instanceof NoRouteToHostException) {
+            return true;
+        }
+        return !sent && e instanceof IOException && !(e instanceof RequestCancelledException);
+    }
+
+    /**
+     * Adds a request to the end of the journal
+     * @param method the HTTP method of the request
+     * @param options the options of the request, as passed to the plugin
+     * @return the ID of the entry
+     */
+    String add(String method, JSObject options) throws IOException, JSONException {
+        return add(null, method, options);
+    }
+
+    /**
+     * Adds a request to the end of the journal
+     * @param id the ID from {@link #attachIdempotencyKey(JSObject)}, or null to generate one
+     * @param method the HTTP method of the request
+     * @param options the options of the request, as passed to the plugin
+     * @return the ID of the entry
+     */
+    String add(String id, String method, JSObject options) throws IOException, JSONException {
+        JSObject copy = new JSObject(options.toString());
+        // the outbox retries the request itself; an ID could clash with a later request
+        copy.remove("queueWhenOffline");
+        copy.remove("requestId");
+        copy.put("method", method);
+        if (id == null) {
+            id = attachIdempotencyKey(copy);
+        }
+
+        Entry entry;
+        boolean launch;
+        synchronized (this) {
+            entry = new Entry(nextSequence(), id, method, copy, System.currentTimeMillis(), 0);
+            write(entry);
+            queued++;
+            // a replay in progress picks it up after the entries before it
+            launch = replaying && !halted;
+            if (launch) {
+                queue.add(entry);
+            } else if (!replaying && !retryScheduled) {
+                // nothing else would send it before the network comes back
+                scheduleRetry(INITIAL_RETRY_DELAY_MS);
+            }
+        }
+        emit(entry, STATUS_QUEUED, null, null);
+        if (launch) {
+            launch();
+        }
+        return id;
+    }
+
+    /**
+     * Sends the journaled requests in order, unless a replay is already in progress
+     */
+    void replay() {
+        synchronized (this) {
+            if (replaying) {
+                return;
+            }
+            replaying = true;
+            halted = false;
+            retryDelay = 0;
+            // overtakes any replay scheduled for later
+            retryGeneration++;
+            retryScheduled = false;
+            queue.clear();
+            for (Entry entry : readAll()) {
+                if (!inFlight.containsKey(entry.id)) {
+                    queue.add(entry);
+                }
+            }
+        }
+        launch();
+    }
+
+    /**
+     * Lists the journaled requests, oldest first
+     */
+    synchronized JSArray list() {
+        JSArray entries = new JSArray();
+        for (Entry entry : readAll()) {
+            entries.put(entry.toJSObject());
+        }
+        return entries;
+    }
+
+    synchronized JSObject getStats() {
+        JSObject stats = new JSObject();
+        stats.put("pending", readAll().size());
+        stats.put("inFlight", inFlight.size());
+        stats.put("replaying", replaying);
+        stats.put("queued", queued);
+        stats.put("sent", sent);
+        stats.put("retried", retried);
+        stats.put("failed", failed);
+        return stats;
+    }
+
+    private void launch() {
+        while (true) {
+            Entry entry;
+            synchronized (this) {
+                if (halted || queue.isEmpty() || inFlight.size() >= concurrency) {
+                    if (inFlight.isEmpty() && replaying) {
+                        replaying = false;
+                        if (halted) {
+                            scheduleRetry(retryDelay);
+                        }
+                    }
+                    return;
+                }
+                entry = queue.poll();
+                inFlight.put(entry.id, entry);
+            }
+            emit(entry, STATUS_SENDING, null, null);
+            submitter.submit(new EntryCall(entry));
+        }
+    }
+
+    /**
+     * Records the outcome of sending an entry and sends the next ones
+     * @param entry the entry
+     * @param response the response, or null if the request failed
+     * @param message why the request failed
+     * @param retry whether a failed request may succeed if it is sent again
+     */
+    private void settled(Entry entry, JSObject response, String message, boolean retry) {
+        if (response != null) {
+            int status = response.getInteger("status", 0);
+            if (status >= 400) {
+                // the server may get over a 429 or 5xx; it won't change its mind about other errors
+                message = "HTTP " + status;
+                retry = status == 429 || status >= 500;
+            }
+        }
+        if (response != null && message == null) {
+            delete(entry);
+            synchronized (this) {
+                sent++;
+            }
+            emit(entry, STATUS_SENT, response, null);
+        } else if (retry && entry.attempts + 1 < maxAttempts) {
+            entry.attempts++;
+            long delay = getRetryDelay(entry.attempts, response, System.currentTimeMillis());
+            synchronized (this) {
+                halted = true;
+                retryDelay = Math.max(retryDelay, delay);
+                retried++;
+                try {
+                    write(entry);
+                } catch (IOException | JSONException ignored) {
+                    // the previous attempt count stays journaled
+                }
+            }
+            emit(entry, STATUS_RETRYING, response, message);
+        } else {
+            entry.attempts++;
+            delete(entry);
+            synchronized (this) {
+                failed++;
+            }
+            emit(entry, STATUS_FAILED, response, message);
+        }
+        synchronized (this) {
+            inFlight.remove(entry.id);
+        }
+        launch();
+    }
+
+    /**
+     * Starts a replay once the delay has passed, unless another one starts first. Called with the
+     * lock held.
+     */
+    private void scheduleRetry(long delayMs) {
+        final long generation = ++retryGeneration;
+        retryScheduled = true;
+        scheduler.schedule(
+            new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (RequestOutbox.this) {
+                        if (generation != retryGeneration) {
+                            return;
+                        }
+                        retryScheduled = false;
+                    }
+                    replay();
+                }
+            },
+            delayMs
+        );
+    }
+
+    /**
+     * Returns how long to wait before sending an entry again: the delay a 429 or 503 response
+     * asked for with Retry-After, in seconds or as an HTTP-date, or else one that starts at
+     * {@link #INITIAL_RETRY_DELAY_MS} and doubles with every attempt up to
+     * {@link #MAX_RETRY_DELAY_MS}
+     * @param attempts how many times the entry has been sent
+     * @param response the response to the last attempt, or null if it failed
+     * @param now the current time in milliseconds
+     */
+    static long getRetryDelay(int attempts, JSObject response, long now) {
+        int status = response != null ? response.getInteger("status", 0) : 0;
+        if (status == 429 || status == 503) {
+            String retryAfter = getHeader(response.optJSONObject("headers"), "Retry-After");
+            if (retryAfter != null) {
+                retryAfter = retryAfter.trim();
+                if (retryAfter.matches("[0-9]+")) {
+                    // a timer can't wait past the end of time; nobody waits that long anyway
+                    return retryAfter.length() > 9 ? Integer.MAX_VALUE * 1000L : Long.parseLong(retryAfter) * 1000;
+                }
+                long date = CachePolicy.parseDate(retryAfter, -1);
+                if (date != -1) {
+                    return Math.max(0, date - now);
+                }
+            }
+        }
+        // doubling more than this would only go past the maximum
+        int doublings = Math.min(Math.max(0, attempts - 1), 20);
+        return Math.min(MAX_RETRY_DELAY_MS, INITIAL_RETRY_DELAY_MS << doublings);
+    }
+
+    private void emit(Entry entry, String status, JSObject response, String error) {
+        if (listener == null) {
+            return;
+        }
+        JSObject event = entry.toJSObject();
+        event.put("status", status);
+        if (response != null) {
+            event.put("response", response);
+        }
+        if (error != null) {
+            event.put("error", error);
+        }
+        listener.onEntry(event);
+    }
+
+    private long nextSequence() {
+        if (nextSequence == -1) {
+            nextSequence = 0;
+            for (Entry entry : readAll()) {
+                nextSequence = Math.max(nextSequence, entry.sequence + 1);
+            }
+        }
+        return nextSequence++;
+    }
+
+    private File fileOf(long sequence) {
+        // zero padded so that the files sort in the order they were added
+        return new File(directory, String.format(Locale.ROOT, "%019d", sequence) + ENTRY_SUFFIX);
+    }
+
+    private void write(Entry entry) throws IOException, JSONException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        JSObject json = new JSObject();
+        json.put("id", entry.id);
+        json.put("method", entry.method);
+        json.put("options", entry.options);
+        json.put("createdAt", entry.createdAt);
+        json.put("attempts", entry.attempts);
+        File temp = File.createTempFile("entry-", TEMP_SUFFIX, directory);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+            // the entry must be on disk before the request is reported as queued
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(fileOf(entry.sequence))) {
+            temp.delete();
+            throw new IOException("Unable to journal " + entry.id);
+        }
+    }
+
+    private synchronized void delete(Entry entry) {
+        fileOf(entry.sequence).delete();
+    }
+
+    /**
+     * Reads the journal, oldest entry first, dropping what an interrupted write left behind.
+     * Must be called holding the lock, which every write holds too.
+     */
+    private List<Entry> readAll() {
+        List<Entry> entries = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return entries;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                file.delete();
+                continue;
+            }
+            if (!name.endsWith(ENTRY_SUFFIX)) {
+                continue;
+            }
+            try {
+                long sequence = Long.parseLong(name.substring(0, name.length() - ENTRY_SUFFIX.length()));
+                JSObject json = new JSObject(TextBodyReader.readFully(new FileInputStream(file), StandardCharsets.UTF_8, file.length()));
+                entries.add(
+                    new Entry(
+                        sequence,
+                        json.getString("id"),
+                        json.getString("method"),
+                        json.getJSObject("options", new JSObject()),
+                        json.getLong("createdAt"),
+                        json.getInt("attempts")
+                    )
+                );
+            } catch (IOException | JSONException | NumberFormatException e) {
+                // an entry is only ever renamed into place whole, so this isn't one of ours
+                file.delete();
+            }
+        }
+        return entries;
+    }
+
+    private static String getHeader(JSONObject headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        Iterator<String> keys = headers.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (key.equalsIgnoreCase(name)) {
+                return headers.optString(key, null);
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasHeader(JSObject headers, String name) {
+        Iterator<String> keys = headers.keys();
+        while (keys.hasNext()) {
+            if (keys.next().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The call a journaled request is sent as. Settling it records the outcome in the outbox
+     * rather than answering over the bridge.
+     */
+    private class EntryCall extends PluginCall {
+
+        private final Entry entry;
+        private boolean settled = false;
+
+        EntryCall(Entry entry) {
+            super(null, "Http", "outbox/" + entry.id, "request", entry.options);
+            this.entry = entry;
+        }
+
+        @Override
+        public void resolve(JSObject data) {
+            if (settle()) {
+                settled(entry, data, null, false);
+            }
+        }
+
+        @Override
+        public void resolve() {
+            resolve(new JSObject());
+        }
+
+        @Override
+        public void reject(String msg, String code, Exception ex, JSObject data) {
+            if (settle()) {
+                // the network failing or the replay being cancelled is worth another try; a
+                // request that can't be built never will be
+                boolean retry = ex instanceof IOException || RequestRegistry.CANCELLED_CODE.equals(code);
+                settled(entry, null, ex != null && ex.getMessage() != null ? ex.getMessage() : msg, retry);
+            }
+        }
+
+        private synchronized boolean settle() {
+            if (settled) {
+                return false;
+            }
+            settled = true;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the requests that are queued or running, so JS can cancel them by ID or tag.
+ *
+ * <p>A queued request is removed from the {@link RequestDispatcher} and rejected right away. A
+ * running request has its connection disconnected and its worker interrupted, which makes the
+ * blocked I/O fail; the worker then rejects the call as cancelled and is free for the next request.
+ */
+public class RequestRegistry {
+
+    public static final String CANCELLED_MESSAGE = "Request cancelled";
+    public static final String CANCELLED_CODE = "CANCELLED";
+
+    /**
+     * Something that keeps a request from running yet, such as its place in the dispatcher queue
+     */
+    public interface Pending {
+        /**
+         * Drops the request before it starts
+         * @return true if the request will never run; the registry then rejects it as cancelled
+         */
+        boolean cancel();
+    }
+
+    /**
+     * A single in-flight request
+     */
+    public static class Entry {
+
+        final String id;
+        final String tag;
+        final String type;
+        final String url;
+        final PluginCall call;
+        final long createdAt = System.currentTimeMillis();
+
+        private Pending pending;
+        private ICapacitorHttpUrlConnection connection;
+        private Thread worker;
+        private boolean cancelled = false;
+        private boolean finished = false;
+        private boolean sent = false;
+
+        Entry(String id, String tag, String type, String url, PluginCall call) {
+            this.id = id;
+            this.tag = tag;
+            this.type = type;
+            this.url = url;
+            this.call = call;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        synchronized boolean isRunning() {
+            return worker != null;
+        }
+
+        /**
+         * Whether the request was fully handed to the network, so the server may have received it
+         */
+        public synchronized boolean isSent() {
+            return sent;
+        }
+    }
+
+    private final Map<String, Entry> entriesById = new LinkedHashMap<>();
+    private final Map<PluginCall, Entry> entriesByCall = new IdentityHashMap<>();
+
+    private long nextId = 1;
+    private long registered = 0;
+    private long cancelled = 0;
+    private long completed = 0;
+
+    /**
+     * Starts tracking a request. The ID is taken from the {@code requestId} option, or generated.
+     * @param call the plugin call of the request
+     * @param type the kind of request, e.g. {@code request} or {@code download}
+     * @return the registry entry
+     * @throws IllegalArgumentException if another request with the same ID is in flight
+     */
+    public synchronized Entry register(PluginCall call, String type) {
+        String id = call.getString("requestId");
+        if (id == null) {
+            id = type + "-" + nextId++;
+        } else if (entriesById.containsKey(id)) {
+            throw new IllegalArgumentException("A request with id '" + id + "' is already in flight");
+        }
+        Entry entry = new Entry(id, call.getString("tag"), type, call.getString("url", ""), call);
+        entriesById.put(id, entry);
+        entriesByCall.put(call, entry);
+        registered++;
+        return entry;
+    }
+
+    /**
+     * Associates whatever the request is waiting on, so a request that hasn't started can be
+     * dropped. A request cancelled before it had anything to wait on is dropped right away.
+     */
+    public void setPending(Entry entry, Pending pending) {
+        synchronized (entry) {
+            entry.pending = pending;
+            if (!entry.cancelled || entry.finished) {
+                return;
+            }
+        }
+        // the cancel found nothing to drop, so it is up to us
+        if (pending.cancel()) {
+            entry.call.reject(CANCELLED_MESSAGE, CANCELLED_CODE);
+            finished(entry);
+        }
+    }
+
+    /**
+     * Marks the request as running on the current thread
+     * @return false if the request was cancelled before it started, in which case the caller
+     *         rejects it and calls {@link #finished(Entry)}
+     */
+    public boolean start(Entry entry) {
+        synchronized (entry) {
+            if (entry.cancelled) {
+                return false;
+            }
+            entry.worker = Thread.currentThread();
+            return true;
+        }
+    }
+
+    /**
+     * Associates the connection of a running request, so cancelling it can disconnect the socket
+     * @param call the plugin call of the request; calls that aren't tracked are ignored
+     * @param connection the request's connection
+     * @throws RequestCancelledException if the request was cancelled in the meantime
+     */
+    public void bind(PluginCall call, ICapacitorHttpUrlConnection connection) throws RequestCancelledException {
+        Entry entry;
+        synchronized (this) {
+            entry = entriesByCall.get(call);
+        }
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (entry.cancelled) {
+                connection.disconnect();
+                throw new RequestCancelledException();
+            }
+            entry.connection = connection;
+        }
+    }
+
+    /**
+     * Records that a running request is about to be fully handed to the network; from then on the
+     * server may receive it even if the request fails
+     * @param call the plugin call of the request; calls that aren't tracked are ignored
+     */
+    public void sent(PluginCall call) {
+        Entry entry;
+        synchronized (this) {
+            entry = entriesByCall.get(call);
+        }
+        if (entry != null) {
+            synchronized (entry) {
+                entry.sent = true;
+            }
+        }
+    }
+
+    /**
+     * Stops tracking a request. Must be called on the worker thread once the request is done.
+     */
+    public void finished(Entry entry) {
+        synchronized (entry) {
+            entry.finished = true;
+            entry.connection = null;
+            if (entry.worker == Thread.currentThread()) {
+                entry.worker = null;
+                // swallow an interrupt from a cancel that raced with completion
+                Thread.interrupted();
+            }
+        }
+        synchronized (this) {
+            if (entriesById.get(entry.id) == entry) {
+                entriesById.remove(entry.id);
+            }
+            entriesByCall.remove(entry.call);
+            completed++;
+        }
+    }
+
+    /**
+     * Cancels a request
+     * @param id the request ID
+     * @return true if the request was in flight
+     */
+    public boolean cancel(String id) {
+        Entry entry;
+        synchronized (this) {
+            entry = entriesById.get(id);
+        }
+        return entry != null && cancel(entry);
+    }
+
+    /**
+     * Cancels every request with the given tag
+     * @param tag the tag, or null to cancel every request
+     * @return the number of requests cancelled
+     */
+    public int cancelAll(String tag) {
+        List<Entry> matching = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : entriesById.values()) {
+                if (tag == null || tag.equals(entry.tag)) {
+                    matching.add(entry);
+                }
+            }
+        }
+        int count = 0;
+        for (Entry entry : matching) {
+            if (cancel(entry)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean cancel(Entry entry) {
+        Pending pending;
+        synchronized (entry) {
+            if (entry.cancelled || entry.finished) {
+                return false;
+            }
+            entry.cancelled = true;
+            pending = entry.pending;
+            if (entry.worker != null) {
+                if (entry.connection != null) {
+                    entry.connection.disconnect();
+                }
+                entry.worker.interrupt();
+            }
+        }
+        synchronized (this) {
+            cancelled++;
+        }
+
+        if (pending != null && pending.cancel()) {
+            // it never started, so nobody else will settle the call
+            entry.call.reject(CANCELLED_MESSAGE, CANCELLED_CODE);
+            finished(entry);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the requests currently in flight
+     */
+    public JSObject getActiveRequests() {
+        List<Entry> entries;
+        synchronized (this) {
+            entries = new ArrayList<>(entriesById.values());
+        }
+        long now = System.currentTimeMillis();
+        JSArray requests = new JSArray();
+        int running = 0;
+        for (Entry entry : entries) {
+            boolean isRunning = entry.isRunning();
+            if (isRunning) {
+                running++;
+            }
+            JSObject request = new JSObject();
+            request.put("requestId", entry.id);
+            request.put("tag", entry.tag);
+            request.put("type", entry.type);
+            request.put("url", entry.url);
+            request.put("state", isRunning ? "running" : "queued");
+            request.put("elapsedMs", now - entry.createdAt);
+            requests.put(request);
+        }
+
+        JSObject result = new JSObject();
+        result.put("count", entries.size());
+        result.put("running", running);
+        result.put("queued", entries.size() - running);
+        result.put("requests", requests);
+        return result;
+    }
+
+    /**
+     * Returns a snapshot of the registry counters
+     */
+    public synchronized JSObject getStats() {
+        JSObject stats = new JSObject();
+        stats.put("active", entriesById.size());
+        stats.put("registered", registered);
+        stats.put("cancelled", cancelled);
+        stats.put("completed", completed);
+        return stats;
+    }
+}
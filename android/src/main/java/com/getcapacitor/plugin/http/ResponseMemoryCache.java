@@ -0,0 +1,218 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+/**
+ * Keeps the responses of hot GET requests as they were built, so that asking for the same
+ * configuration, flags or catalog again doesn't read and parse the body again. Only requests that
+ * set {@code maxAge} are kept. Once a response is older than that it can still be returned for
+ * {@code staleWhileRevalidate} more milliseconds while a single refresh runs in the background.
+ * The least recently used responses are dropped once the cache outgrows its size.
+ */
+public class ResponseMemoryCache {
+
+    static final String STATUS_MEMORY = "memory";
+    static final String STATUS_STALE = "stale";
+
+    /**
+     * A response returned from memory
+     */
+    static final class Hit {
+
+        final JSObject response;
+        final boolean stale;
+
+        Hit(JSObject response, boolean stale) {
+            this.response = response;
+            this.stale = stale;
+        }
+    }
+
+    private static final class Entry {
+
+        final String url;
+        final JSObject response;
+        final long size;
+        final long storedAt;
+
+        Entry(String url, JSObject response, long size, long storedAt) {
+            this.url = url;
+            this.response = response;
+            this.size = size;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private final long maxSize;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> refreshing = new HashSet<>();
+    private long size = 0;
+
+    private long hits = 0;
+    private long staleHits = 0;
+    private long misses = 0;
+    private long refreshes = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    public ResponseMemoryCache() {
+        this(0);
+    }
+
+    /**
+     * @param maxSize the approximate number of bytes the kept responses may take; 0 disables it
+     */
+    public ResponseMemoryCache(long maxSize) {
+        this.maxSize = Math.max(0, maxSize);
+    }
+
+    /**
+     * Computes the key a request's response is kept under
+     * @param call the plugin call of the request
+     * @param method the HTTP method of the request
+     * @return the key, or null if the response must not be kept
+     */
+    public String getKey(PluginCall call, String method) {
+        if (maxSize == 0 || !"GET".equals(method) || call.getInt("maxAge", 0) <= 0) {
+            return null;
+        }
+        if (HttpRequestHandler.mayReturnFile(call)) {
+            // the file may be gone by the time the response is returned again
+            return null;
+        }
+        return RequestCoalescer.describe(call, method, null);
+    }
+
+    /**
+     * Returns the response kept for a request
+     * @param key the key of the request
+     * @param maxAge how long, in milliseconds, the response is returned as is
+     * @param staleWhileRevalidate how long after that it is still returned while it is refreshed
+     * @return the response, or null if none is kept or it is too old
+     */
+    public synchronized Hit get(String key, long maxAge, long staleWhileRevalidate) {
+        Entry entry = entries.get(key);
+        long age = entry != null ? System.currentTimeMillis() - entry.storedAt : 0;
+        if (entry == null || age >= maxAge + Math.max(0, staleWhileRevalidate)) {
+            misses++;
+            return null;
+        }
+        boolean stale = age >= maxAge;
+        if (stale) {
+            staleHits++;
+        } else {
+            hits++;
+        }
+        JSObject response = copy(entry.response);
+        response.put("cache", stale ? STATUS_STALE : STATUS_MEMORY);
+        return new Hit(response, stale);
+    }
+
+    /**
+     * Keeps a response, if it succeeded and has its body in memory
+     * @param key the key of the request
+     * @param url the URL the request was made to, matched by {@link #invalidate(String)}
+     * @param response the response as returned to the caller
+     */
+    public void put(String key, String url, JSObject response) {
+        Integer status = response.getInteger("status");
+        if (status == null || status < 200 || status >= 300 || response.has("error") || response.has("stream") || response.has("file")) {
+            return;
+        }
+        JSObject kept = copy(response);
+        kept.remove("cache");
+        // strings take two bytes a character; close enough for the JSON the response is made of
+        long entrySize = 2L * kept.toString().length();
+        synchronized (this) {
+            if (entrySize > maxSize) {
+                remove(key);
+                return;
+            }
+            Entry previous = entries.put(key, new Entry(url, kept, entrySize, System.currentTimeMillis()));
+            size += entrySize - (previous != null ? previous.size : 0);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (size > maxSize && eldest.hasNext()) {
+                size -= eldest.next().size;
+                eldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    /**
+     * Claims the background refresh of a stale response
+     * @return true if no refresh of it is running yet, in which case the caller must run one
+     *         and call {@link #refreshed(String)} when it is done
+     */
+    public synchronized boolean startRefresh(String key) {
+        if (!refreshing.add(key)) {
+            return false;
+        }
+        refreshes++;
+        return true;
+    }
+
+    public synchronized void refreshed(String key) {
+        refreshing.remove(key);
+    }
+
+    /**
+     * Drops the responses of every URL starting with a prefix
+     * @return the number of responses dropped
+     */
+    public synchronized int invalidate(String urlPrefix) {
+        int removed = 0;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.url.startsWith(urlPrefix)) {
+                size -= entry.size;
+                iterator.remove();
+                removed++;
+            }
+        }
+        invalidations += removed;
+        return removed;
+    }
+
+    private void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            size -= removed.size;
+        }
+    }
+
+    /**
+     * Copies the top level of a response, so the kept one isn't changed by what is added to a
+     * returned one; nested values are never changed once a response is built
+     */
+    private static JSObject copy(JSObject response) {
+        JSObject copy = new JSObject();
+        Iterator<String> names = response.keys();
+        while (names.hasNext()) {
+            String name = names.next();
+            copy.put(name, response.opt(name));
+        }
+        return copy;
+    }
+
+    public synchronized JSObject getStats() {
+        JSObject stats = new JSObject();
+        stats.put("enabled", maxSize > 0);
+        stats.put("size", size);
+        stats.put("maxSize", maxSize);
+        stats.put("entries", entries.size());
+        stats.put("hits", hits);
+        stats.put("staleHits", staleHits);
+        stats.put("misses", misses);
+        stats.put("refreshes", refreshes);
+        stats.put("evictions", evictions);
+        stats.put("invalidations", invalidations);
+        return stats;
+    }
+}
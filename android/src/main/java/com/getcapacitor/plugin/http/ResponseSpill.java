@@ -0,0 +1,103 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Writes response bodies that are too large to return through the bridge to a file, so that
+ * reading them takes constant heap no matter how large they are
+ */
+final class ResponseSpill {
+
+    /**
+     * A response body written to a file
+     */
+    static final class SpilledBody {
+
+        final File file;
+        final long size;
+        final String contentType;
+
+        SpilledBody(File file, long size, String contentType) {
+            this.file = file;
+            this.size = size;
+            this.contentType = contentType;
+        }
+
+        JSObject toJSObject() {
+            JSObject result = new JSObject();
+            result.put("path", file.getAbsolutePath());
+            result.put("size", size);
+            result.put("contentType", contentType);
+            return result;
+        }
+    }
+
+    private final File directory;
+    private final long threshold;
+
+    /**
+     * @param directory the directory the files are created in
+     * @param threshold bodies longer than this many bytes are written to a file; 0 writes every body
+     */
+    ResponseSpill(File directory, long threshold) {
+        this.directory = directory;
+        this.threshold = Math.max(0, threshold);
+    }
+
+    long getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Whether a body of the given length has to be written to a file
+     * @param contentLength the length of the body, or -1 if it isn't known
+     */
+    boolean mustSpill(long contentLength) {
+        return threshold == 0 || contentLength > threshold;
+    }
+
+    /**
+     * Writes a body to a new file
+     * @param head bytes of the body that have already been read, may be null
+     * @param headLength the number of bytes in {@code head}
+     * @param rest the remainder of the body; it is closed afterwards
+     * @param contentType the Content-Type of the response, reported with the file
+     * @return the written file
+     */
+    SpilledBody write(byte[] head, int headLength, InputStream rest, String contentType) throws IOException {
+        if (!directory.exists() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        File file = File.createTempFile("response-", ".tmp", directory);
+        long size = 0;
+        boolean success = false;
+        byte[] buffer = BufferPool.acquireBytes();
+        try (OutputStream out = new FileOutputStream(file)) {
+            if (head != null) {
+                out.write(head, 0, headLength);
+                size += headLength;
+            }
+            int read;
+            while ((read = rest.read(buffer)) != -1) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new RequestCancelledException();
+                }
+                out.write(buffer, 0, read);
+                size += read;
+            }
+            success = true;
+        } finally {
+            BufferPool.release(buffer);
+            rest.close();
+            if (!success) {
+                file.delete();
+            }
+        }
+        return new SpilledBody(file, size, contentType);
+    }
+}
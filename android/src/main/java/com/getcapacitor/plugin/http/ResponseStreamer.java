@@ -0,0 +1,324 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Hands a response body to a listener in chunks as it is read, as text or Base64. A chunk is
+ * emitted once it is full or, when data arrives slowly, once the time window since the chunk was
+ * started has passed, even while the next read is still waiting for data. With a limit on pending
+ * chunks, reading from the socket pauses until the listener acknowledges the chunks it has handled.
+ */
+final class ResponseStreamer {
+
+    static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+    static final long DEFAULT_WINDOW_MS = 100;
+
+    static final String ENCODING_TEXT = "text";
+    static final String ENCODING_BASE64 = "base64";
+
+    /**
+     * Receives the chunks of a body, on the thread reading it
+     */
+    interface Listener {
+        void onChunk(JSObject chunk);
+    }
+
+    /**
+     * What was streamed of a body
+     */
+    static final class StreamedBody {
+
+        final int chunks;
+        final long size;
+
+        StreamedBody(int chunks, long size) {
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        JSObject toJSObject() {
+            JSObject result = new JSObject();
+            result.put("chunks", chunks);
+            result.put("size", size);
+            return result;
+        }
+    }
+
+    // emits chunks whose window has passed while the reading thread is blocked on the network
+    private static final Timer WINDOW_TIMER = new Timer("http-stream-window", true);
+
+    private final String requestId;
+    private final int chunkSize;
+    private final long windowMs;
+    private final int maxPending;
+    private final Listener listener;
+
+    private final Object lock = new Object();
+    private int emitted = 0;
+    private int acknowledged = 0;
+    private PendingChunk pending;
+
+    /**
+     * @param requestId reported with every chunk
+     * @param chunkSize the size of a full chunk, in chars for text and bytes for Base64
+     * @param windowMs how long a chunk may be held back waiting to fill up
+     * @param maxPending how many chunks may be emitted ahead of the last acknowledged one, or 0
+     *                   to emit without waiting for acknowledgements
+     * @param listener receives the chunks
+     */
+    ResponseStreamer(String requestId, int chunkSize, long windowMs, int maxPending, Listener listener) {
+        this.requestId = requestId;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.windowMs = Math.max(0, windowMs);
+        this.maxPending = Math.max(0, maxPending);
+        this.listener = listener;
+    }
+
+    /**
+     * Acknowledges that the listener has handled the chunks up to and including {@code index},
+     * letting reading go on if it was paused
+     */
+    void acknowledge(int index) {
+        synchronized (lock) {
+            if (index + 1 > acknowledged) {
+                acknowledged = Math.min(index + 1, emitted);
+                lock.notifyAll();
+                // a chunk whose window passed while there was no room for it goes out now
+                if (pending != null && pending.overdue && hasRoom()) {
+                    emitQuietly(pending);
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams a whole body
+     * @param in the body; it is closed afterwards
+     * @param contentType the Content-Type of the response, which may declare its charset
+     * @param binary whether to emit Base64 chunks instead of text
+     */
+    StreamedBody stream(InputStream in, String contentType, boolean binary) throws IOException {
+        CountingInputStream counted = new CountingInputStream(in);
+        if (binary) {
+            streamBytes(counted);
+        } else {
+            streamText(counted, TextBodyReader.charsetOf(contentType));
+        }
+        return new StreamedBody(emitted, counted.getCount());
+    }
+
+    private void streamBytes(InputStream in) throws IOException {
+        byte[] buffer = new byte[chunkSize];
+        ByteChunk chunk = new ByteChunk(chunkSize);
+        start(chunk);
+        try {
+            int read;
+            while ((read = in.read(buffer, 0, room(chunk))) != -1) {
+                synchronized (lock) {
+                    System.arraycopy(buffer, 0, chunk.bytes, chunk.length, read);
+                    added(chunk, read);
+                }
+            }
+            finish(chunk);
+        } finally {
+            stop(chunk);
+            in.close();
+        }
+    }
+
+    private void streamText(InputStream in, Charset charset) throws IOException {
+        char[] buffer = new char[chunkSize];
+        TextChunk chunk = new TextChunk(chunkSize);
+        start(chunk);
+        try (TextBodyReader reader = new TextBodyReader(in, charset)) {
+            int read;
+            while ((read = reader.read(buffer, 0, room(chunk))) != -1) {
+                synchronized (lock) {
+                    System.arraycopy(buffer, 0, chunk.chars, chunk.length, read);
+                    added(chunk, read);
+                }
+            }
+            finish(chunk);
+        } finally {
+            stop(chunk);
+        }
+    }
+
+    private void start(PendingChunk chunk) {
+        synchronized (lock) {
+            pending = chunk;
+        }
+    }
+
+    private void stop(PendingChunk chunk) {
+        synchronized (lock) {
+            chunk.cancelWindow();
+            pending = null;
+        }
+    }
+
+    private int room(PendingChunk chunk) {
+        synchronized (lock) {
+            return chunkSize - chunk.length;
+        }
+    }
+
+    /**
+     * Accounts for what was just copied into the chunk, emitting it if it is full and otherwise
+     * making sure it goes out once its window has passed. Called with the lock held.
+     */
+    private void added(final PendingChunk chunk, int count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        boolean started = chunk.length == 0;
+        chunk.length += count;
+        if (chunk.length == chunkSize || (started && windowMs == 0)) {
+            emit(chunk);
+        } else if (started) {
+            chunk.window =
+                new TimerTask() {
+                    @Override
+                    public void run() {
+                        synchronized (lock) {
+                            if (chunk.window != this) {
+                                return;
+                            }
+                            chunk.window = null;
+                            chunk.overdue = true;
+                            if (hasRoom()) {
+                                emitQuietly(chunk);
+                            }
+                        }
+                    }
+                };
+            WINDOW_TIMER.schedule(chunk.window, windowMs);
+        }
+    }
+
+    /**
+     * Emits what is left of the body
+     */
+    private void finish(PendingChunk chunk) throws IOException {
+        synchronized (lock) {
+            if (chunk.length > 0) {
+                emit(chunk);
+            }
+        }
+    }
+
+    private boolean hasRoom() {
+        return maxPending == 0 || emitted - acknowledged < maxPending;
+    }
+
+    /**
+     * Emits the chunk once there is room for it, pausing the reading thread until the listener
+     * acknowledges enough chunks. Called with the lock held.
+     */
+    private void emit(PendingChunk chunk) throws IOException {
+        // it may go out while we wait, if its window passes
+        while (chunk.length > 0 && !hasRoom()) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RequestCancelledException();
+            }
+        }
+        if (chunk.length > 0) {
+            send(chunk);
+        }
+    }
+
+    /**
+     * Emits the chunk from a thread other than the reading one, which must not fail or wait.
+     * Called with the lock held and room for the chunk.
+     */
+    private void emitQuietly(PendingChunk chunk) {
+        try {
+            send(chunk);
+        } catch (IOException | RuntimeException e) {
+            // the reading thread emits the chunk instead once it fills up or the body ends
+        }
+    }
+
+    private void send(PendingChunk chunk) throws IOException {
+        String data = chunk.take();
+        chunk.cancelWindow();
+        chunk.overdue = false;
+        JSObject event = new JSObject();
+        event.put("requestId", requestId);
+        event.put("index", emitted++);
+        event.put("encoding", chunk.encoding);
+        event.put("data", data);
+        listener.onChunk(event);
+    }
+
+    /**
+     * The chunk being filled, shared by the reading thread and the timer that emits it once its
+     * window has passed. Guarded by the streamer's lock.
+     */
+    private abstract static class PendingChunk {
+
+        final String encoding;
+        int length = 0;
+        TimerTask window;
+        boolean overdue = false;
+
+        PendingChunk(String encoding) {
+            this.encoding = encoding;
+        }
+
+        /**
+         * Returns the data gathered so far and empties the chunk
+         */
+        abstract String take() throws IOException;
+
+        void cancelWindow() {
+            if (window != null) {
+                window.cancel();
+                window = null;
+            }
+        }
+    }
+
+    private static final class ByteChunk extends PendingChunk {
+
+        final byte[] bytes;
+
+        ByteChunk(int size) {
+            super(ENCODING_BASE64);
+            bytes = new byte[size];
+        }
+
+        @Override
+        String take() throws IOException {
+            String data = Base64StreamEncoder.encode(new ByteArrayInputStream(bytes, 0, length), length);
+            length = 0;
+            return data;
+        }
+    }
+
+    private static final class TextChunk extends PendingChunk {
+
+        final char[] chars;
+
+        TextChunk(int size) {
+            super(ENCODING_TEXT);
+            chars = new char[size];
+        }
+
+        @Override
+        String take() {
+            String data = new String(chars, 0, length);
+            length = 0;
+            return data;
+        }
+    }
+}
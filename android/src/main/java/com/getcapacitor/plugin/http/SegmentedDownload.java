@@ -0,0 +1,322 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Receives a file over several connections at once, each fetching a byte range and writing it
+ * at its offset in a file preallocated to the full length.
+ *
+ * <p>The file starts out split into as many segments as it is large enough for, up to the
+ * maximum. The connection of the first response, which was asked for the whole file, receives
+ * the first segment and the others are requested with a Range made conditional on the file's
+ * validator with If-Range, so a file that changes meanwhile fails the download instead of mixing
+ * two versions. A connection that finishes its segment takes over the second half of the segment
+ * with the most left to receive, so fast connections end up receiving more of the file than
+ * slow ones.
+ */
+final class SegmentedDownload {
+
+    // no segment is smaller than this, so a file has to be at least twice as large to be split
+    static final long MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    /**
+     * A byte range of the file still to be received. The end moves down when another connection
+     * takes over part of it.
+     */
+    private static final class Segment {
+
+        long position;
+        long end;
+
+        Segment(long position, long end) {
+            this.position = position;
+            this.end = end;
+        }
+
+        long remaining() {
+            return end - position;
+        }
+    }
+
+    private final File file;
+    private final long length;
+    private final String validator;
+    private final FileDownloader.Connector connector;
+    private final ProgressThrottle throttle;
+    private final int maxSegments;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final List<ICapacitorHttpUrlConnection> connections = new ArrayList<>();
+    private long received = 0;
+    private IOException failure;
+
+    /**
+     * @param file the file to write to
+     * @param length the length of the whole file
+     * @param validator the ETag or Last-Modified value of the file, sent in If-Range
+     * @param connector opens the connections for the other segments
+     * @param throttle receives the progress of the download
+     * @param maxSegments the maximum number of connections receiving the file at once
+     */
+    SegmentedDownload(
+        File file,
+        long length,
+        String validator,
+        FileDownloader.Connector connector,
+        ProgressThrottle throttle,
+        int maxSegments
+    ) {
+        this.file = file;
+        this.length = length;
+        this.validator = validator;
+        this.connector = connector;
+        this.throttle = throttle;
+        this.maxSegments = maxSegments;
+    }
+
+    /**
+     * Whether a response to a request for the whole file can be received in segments
+     * @param connection the connection of the response
+     * @param length the length of the file, or 0 if it isn't known
+     * @param validator the ETag or Last-Modified value of the file, or null
+     * @param maxSegments the maximum number of segments
+     */
+    static boolean accepts(ICapacitorHttpUrlConnection connection, long length, String validator, int maxSegments) {
+        return (
+            maxSegments > 1 &&
+            validator != null &&
+            length >= 2 * MIN_SEGMENT_SIZE &&
+            "bytes".equalsIgnoreCase(trim(connection.getHeaderField("Accept-Ranges")))
+        );
+    }
+
+    /**
+     * Returns how many segments a file of the given length starts out split into
+     */
+    static int getSegmentCount(long length, int maxSegments) {
+        return (int) Math.max(1, Math.min(maxSegments, length / MIN_SEGMENT_SIZE));
+    }
+
+    /**
+     * Receives the file, blocking until every segment has been received
+     * @param first the connection of the response to the request for the whole file, which is
+     *              left for the caller to release
+     * @param firstBody its body, which the first segment is read from
+     * @throws IOException if a segment fails, in which case the others are stopped too
+     */
+    void run(ICapacitorHttpUrlConnection first, final InputStream firstBody) throws IOException {
+        int count = getSegmentCount(length, maxSegments);
+        long size = length / count;
+        Segment[] initial = new Segment[count];
+        synchronized (this) {
+            for (int i = 0; i < count; i++) {
+                initial[i] = new Segment(i * size, i == count - 1 ? length : (i + 1) * size);
+                segments.add(initial[i]);
+            }
+            connections.add(first);
+        }
+
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.setLength(length);
+            final FileChannel channel = output.getChannel();
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                final Segment segment = initial[i];
+                final InputStream body = i == 0 ? firstBody : null;
+                Thread worker = new Thread(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            work(channel, segment, body);
+                        }
+                    },
+                    "CapacitorHttp Segment " + (i + 1)
+                );
+                worker.setDaemon(true);
+                workers.add(worker);
+                worker.start();
+            }
+            // the file is closed only once every worker is done with it
+            boolean interrupted = false;
+            for (Thread worker : workers) {
+                while (true) {
+                    try {
+                        worker.join();
+                        break;
+                    } catch (InterruptedException e) {
+                        if (!interrupted) {
+                            interrupted = true;
+                            fail(new RequestCancelledException());
+                            for (Thread other : workers) {
+                                other.interrupt();
+                            }
+                        }
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            synchronized (this) {
+                connections.remove(first);
+            }
+        }
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        throttle.finish(length, length);
+    }
+
+    /**
+     * Receives a segment, then takes over part of another until nothing is left to take over
+     * @param body the body to read the segment from, or null to request it
+     */
+    private void work(FileChannel channel, Segment segment, InputStream body) {
+        ICapacitorHttpUrlConnection connection = null;
+        try {
+            while (segment != null) {
+                if (body == null) {
+                    connection = open(segment);
+                    body = connection.getInputStream();
+                }
+                boolean complete = receive(channel, segment, body);
+                if (connection != null) {
+                    release(connection, complete);
+                    connection = null;
+                }
+                body = null;
+                segment = takeOver();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (connection != null) {
+                release(connection, false);
+            }
+            fail(e instanceof IOException ? (IOException) e : new IOException(e));
+        }
+    }
+
+    private ICapacitorHttpUrlConnection open(Segment segment) throws IOException {
+        long position;
+        long end;
+        synchronized (this) {
+            position = segment.position;
+            end = segment.end;
+        }
+        JSObject headers = new JSObject();
+        headers.put("Accept-Encoding", "identity");
+        headers.put("Range", "bytes=" + position + "-" + (end - 1));
+        headers.put("If-Range", validator);
+        ICapacitorHttpUrlConnection connection = connector.open(headers);
+        synchronized (this) {
+            if (failure != null) {
+                connection.release(false);
+                throw failure;
+            }
+            connections.add(connection);
+        }
+        if (connection.getResponseCode() != 206 || FileDownloader.getRangeStart(connection) != position) {
+            release(connection, false);
+            throw new IOException("The file changed during the download");
+        }
+        return connection;
+    }
+
+    /**
+     * Reads a segment from a body and writes it at its offset
+     * @return whether the body was read to its end
+     */
+    private boolean receive(FileChannel channel, Segment segment, InputStream body) throws IOException {
+        byte[] buffer = BufferPool.acquireBytes();
+        try {
+            while (true) {
+                long remaining;
+                long position;
+                synchronized (this) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    remaining = segment.remaining();
+                    position = segment.position;
+                }
+                if (remaining <= 0) {
+                    // the body ends here unless another connection took over its tail
+                    return body.read() == -1;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new RequestCancelledException();
+                }
+                // a buffer is smaller than any segment, so a segment taken over meanwhile still
+                // ends past what is read here
+                int len = body.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (len == -1) {
+                    throw new IOException("Unexpected end of segment at " + position);
+                }
+                ByteBuffer data = ByteBuffer.wrap(buffer, 0, len);
+                long offset = position;
+                while (data.hasRemaining()) {
+                    offset += channel.write(data, offset);
+                }
+                synchronized (this) {
+                    segment.position += len;
+                    received += len;
+                    throttle.update(received, length);
+                }
+            }
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Splits the segment with the most left to receive, returning its second half, or null if no
+     * segment is large enough to split
+     */
+    private synchronized Segment takeOver() {
+        if (failure != null) {
+            return null;
+        }
+        Segment largest = null;
+        for (Segment segment : segments) {
+            if (largest == null || segment.remaining() > largest.remaining()) {
+                largest = segment;
+            }
+        }
+        if (largest == null || largest.remaining() < 2 * MIN_SEGMENT_SIZE) {
+            return null;
+        }
+        long middle = largest.position + largest.remaining() / 2;
+        Segment taken = new Segment(middle, largest.end);
+        largest.end = middle;
+        segments.add(taken);
+        return taken;
+    }
+
+    private synchronized void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+            for (ICapacitorHttpUrlConnection connection : connections) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private synchronized void release(ICapacitorHttpUrlConnection connection, boolean complete) {
+        connections.remove(connection);
+        connection.release(complete);
+    }
+
+    private static String trim(String value) {
+        return value != null ? value.trim() : null;
+    }
+}
@@ -0,0 +1,177 @@
+package com.getcapacitor.plugin.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Decodes a response body to text in bulk, using the charset declared in its Content-Type unless
+ * the body starts with a byte order mark, which wins and is dropped. Malformed input is replaced
+ * rather than rejected, and line endings are kept as they are.
+ */
+final class TextBodyReader extends Reader {
+
+    // upper bound on how much a Content-Length header can make us allocate up front
+    private static final int MAX_PRESIZE_CHARS = 8 * 1024 * 1024;
+
+    private final InputStream in;
+    private final byte[] bytes = BufferPool.acquireBytes();
+    private final ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+    private Charset charset;
+    private CharsetDecoder decoder;
+    private boolean eof = false;
+    private boolean flushing = false;
+    private boolean flushed = false;
+    private boolean closed = false;
+
+    /**
+     * @param in the body
+     * @param charset the charset to decode with if the body has no byte order mark
+     */
+    TextBodyReader(InputStream in, Charset charset) {
+        this.in = in;
+        this.charset = charset;
+        byteBuffer.limit(0);
+    }
+
+    /**
+     * Returns the charset declared by a Content-Type header
+     * @param contentType the header value, may be null
+     * @return the declared charset, or UTF-8 if none is declared or it isn't supported
+     */
+    static Charset charsetOf(String contentType) {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String trimmed = parameter.trim();
+                if (trimmed.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                    String name = trimmed.substring(8).trim().replace("\"", "").replace("'", "");
+                    try {
+                        return Charset.forName(name);
+                    } catch (IllegalArgumentException e) {
+                        // unknown or malformed name, fall back to the default
+                        break;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Reads a whole body as text
+     * @param in the body; it is closed afterwards
+     * @param charset the charset to decode with if the body has no byte order mark
+     * @param contentLength the length of the body in bytes if known, or -1; used to size the result
+     */
+    static String readFully(InputStream in, Charset charset, long contentLength) throws IOException {
+        int capacity = contentLength > 0 ? (int) Math.min(contentLength, MAX_PRESIZE_CHARS) : 16;
+        StringBuilder builder = new StringBuilder(capacity);
+        char[] chars = BufferPool.acquireChars();
+        try (TextBodyReader reader = new TextBodyReader(in, charset)) {
+            int read;
+            while ((read = reader.read(chars, 0, chars.length)) != -1) {
+                builder.append(chars, 0, read);
+            }
+        } finally {
+            BufferPool.release(chars);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Reader closed");
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (decoder == null) {
+            sniffByteOrderMark();
+            decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        if (flushed) {
+            return -1;
+        }
+
+        CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (true) {
+            if (flushing) {
+                flushed = decoder.flush(out).isUnderflow();
+                break;
+            }
+            CoderResult result = decoder.decode(byteBuffer, out, eof);
+            if (result.isOverflow()) {
+                break;
+            }
+            if (eof) {
+                flushing = true;
+            } else if (out.position() > off) {
+                // return what has been decoded instead of blocking for more
+                break;
+            } else {
+                fill();
+            }
+        }
+
+        int count = out.position() - off;
+        return count == 0 && flushed ? -1 : count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            BufferPool.release(bytes);
+            in.close();
+        }
+    }
+
+    /**
+     * Reads more bytes behind the ones not decoded yet
+     */
+    private void fill() throws IOException {
+        byteBuffer.compact();
+        try {
+            int read;
+            do {
+                read = in.read(bytes, byteBuffer.position(), byteBuffer.remaining());
+            } while (read == 0);
+            if (read < 0) {
+                eof = true;
+            } else {
+                byteBuffer.position(byteBuffer.position() + read);
+            }
+        } finally {
+            byteBuffer.flip();
+        }
+    }
+
+    private void sniffByteOrderMark() throws IOException {
+        while (byteBuffer.remaining() < 3 && !eof) {
+            fill();
+        }
+        int b0 = byteBuffer.remaining() > 0 ? bytes[0] & 0xFF : -1;
+        int b1 = byteBuffer.remaining() > 1 ? bytes[1] & 0xFF : -1;
+        int b2 = byteBuffer.remaining() > 2 ? bytes[2] & 0xFF : -1;
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) {
+            charset = StandardCharsets.UTF_8;
+            byteBuffer.position(3);
+        } else if (b0 == 0xFE && b1 == 0xFF) {
+            charset = StandardCharsets.UTF_16BE;
+            byteBuffer.position(2);
+        } else if (b0 == 0xFF && b1 == 0xFE) {
+            charset = StandardCharsets.UTF_16LE;
+            byteBuffer.position(2);
+        }
+    }
+}
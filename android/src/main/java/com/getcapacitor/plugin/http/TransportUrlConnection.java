@@ -0,0 +1,485 @@
+package com.getcapacitor.plugin.http;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.CookieHandler;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base for the {@link HttpURLConnection} implementations of the plugin's own engines. It carries
+ * the parts of the {@code HttpURLConnection} contract every engine shares - request properties,
+ * the request body stream, status and header accessors, error streams, redirects and cookies - so
+ * an engine only has to move a request head and body to its peer and read the response back.
+ */
+public abstract class TransportUrlConnection extends HttpURLConnection {
+
+    private static final int MAX_REDIRECTS = 20;
+    private static final int REQUEST_BODY_BUFFER_SIZE = 16 * 1024;
+
+    private boolean exchangeStarted = false;
+    private OutputStream requestBody;
+    private InputStream responseBody;
+
+    private Map<String, List<String>> requestHeaders;
+    private Map<String, List<String>> responseHeaders;
+    private List<String[]> responseHeaderList;
+
+    protected TransportUrlConnection(URL url) {
+        super(url);
+    }
+
+    /**
+     * The response status line and headers of an exchange
+     */
+    protected static final class ResponseHead {
+
+        final int code;
+        final String message;
+        final String statusLine;
+        final List<String[]> headers;
+
+        /**
+         * @param code the status code
+         * @param message the reason phrase, or an empty string
+         * @param statusLine the status line, reported as the header with a null name
+         * @param headers the response headers as name/value pairs, in the order received
+         */
+        protected ResponseHead(int code, String message, String statusLine, List<String[]> headers) {
+            this.code = code;
+            this.message = message;
+            this.statusLine = statusLine;
+            this.headers = headers;
+        }
+    }
+
+    /**
+     * Starts the exchange for the current {@link #url} and {@link #method} by sending the request
+     * head. When {@code hasBody} is true, {@link #openRequestBody()} is called next.
+     * @param headers the request headers, including cookies, user agent and a fixed content
+     *                length if one was set
+     * @param hasBody whether a request body follows
+     */
+    protected abstract void startExchange(List<String[]> headers, boolean hasBody) throws IOException;
+
+    /**
+     * Returns the stream the request body of the started exchange is written to. Closing the
+     * stream ends the request.
+     */
+    protected abstract OutputStream openRequestBody() throws IOException;
+
+    /**
+     * Waits for the final, non-informational response head of the started exchange
+     */
+    protected abstract ResponseHead readResponseHead() throws IOException;
+
+    /**
+     * Returns the response body of the exchange. Called at most once per exchange.
+     */
+    protected abstract InputStream openResponseBody() throws IOException;
+
+    /**
+     * Abandons the exchange, releasing whatever resources it holds
+     */
+    protected abstract void abortExchange();
+
+    /**
+     * Whether this engine can follow a redirect to the given URL. A redirect it can't follow is
+     * returned as the response.
+     * @param location the URL the redirect points to
+     * @throws IOException if the redirect must fail the request instead
+     */
+    protected boolean canFollowRedirect(URL location) throws IOException {
+        return true;
+    }
+
+    /**
+     * Called before a redirect is followed, after the body of the redirect response was closed
+     * @param location the URL the next exchange will be sent to
+     */
+    protected void onRedirect(URL location) {}
+
+    @Override
+    public void connect() throws IOException {
+        if (!exchangeStarted && !getDoOutput()) {
+            start(false);
+        }
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        if (requestBody != null) {
+            return requestBody;
+        }
+        if (!getDoOutput()) {
+            throw new ProtocolException("cannot write to a URLConnection if doOutput=false - call setDoOutput(true)");
+        }
+        if (exchangeStarted) {
+            throw new ProtocolException("cannot write request body after response has been read");
+        }
+        if ("GET".equals(method)) {
+            // match the platform, which turns a GET with a body into a POST
+            method = "POST";
+        }
+        start(true);
+        requestBody = new BufferedOutputStream(openRequestBody(), REQUEST_BODY_BUFFER_SIZE);
+        return requestBody;
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+        awaitResponse();
+        return responseCode;
+    }
+
+    @Override
+    public String getResponseMessage() throws IOException {
+        awaitResponse();
+        return responseMessage;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        awaitResponse();
+        if (responseCode >= HTTP_BAD_REQUEST) {
+            if (responseCode == HTTP_NOT_FOUND || responseCode == HTTP_GONE) {
+                throw new FileNotFoundException(url.toString());
+            }
+            throw new IOException("Server returned HTTP response code: " + responseCode + " for URL: " + url);
+        }
+        return responseBody();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        if (responseHeaders == null || responseCode < HTTP_BAD_REQUEST) {
+            return null;
+        }
+        try {
+            return responseBody();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        if (!awaitResponseQuietly()) {
+            return null;
+        }
+        if (name == null) {
+            return responseHeaderList.get(0)[1];
+        }
+        String value = null;
+        for (String[] header : responseHeaderList) {
+            if (header[0] != null && header[0].equalsIgnoreCase(name)) {
+                value = header[1];
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public String getHeaderFieldKey(int n) {
+        if (!awaitResponseQuietly() || n < 0 || n >= responseHeaderList.size()) {
+            return null;
+        }
+        return responseHeaderList.get(n)[0];
+    }
+
+    @Override
+    public String getHeaderField(int n) {
+        if (!awaitResponseQuietly() || n < 0 || n >= responseHeaderList.size()) {
+            return null;
+        }
+        return responseHeaderList.get(n)[1];
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        if (!awaitResponseQuietly()) {
+            return Collections.emptyMap();
+        }
+        return responseHeaders;
+    }
+
+    @Override
+    public Map<String, List<String>> getRequestProperties() {
+        if (requestHeaders != null) {
+            return requestHeaders;
+        }
+        return super.getRequestProperties();
+    }
+
+    @Override
+    public String getRequestProperty(String key) {
+        if (requestHeaders == null) {
+            return super.getRequestProperty(key);
+        }
+        for (Map.Entry<String, List<String>> entry : requestHeaders.entrySet()) {
+            if (entry.getKey() != null && entry.getKey().equalsIgnoreCase(key) && !entry.getValue().isEmpty()) {
+                return entry.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void disconnect() {
+        if (exchangeStarted) {
+            abortExchange();
+        }
+    }
+
+    @Override
+    public boolean usingProxy() {
+        return false;
+    }
+
+    private InputStream responseBody() throws IOException {
+        if (responseBody == null) {
+            if ("HEAD".equals(method) || responseCode == HTTP_NO_CONTENT || responseCode == HTTP_NOT_MODIFIED) {
+                // still let the engine know the (empty) body has been taken
+                openResponseBody().close();
+                responseBody = new ByteArrayInputStream(new byte[0]);
+            } else {
+                responseBody = openResponseBody();
+            }
+        }
+        return responseBody;
+    }
+
+    private boolean awaitResponseQuietly() {
+        try {
+            awaitResponse();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void start(boolean hasBody) throws IOException {
+        if (requestHeaders == null) {
+            requestHeaders = super.getRequestProperties();
+        }
+        startExchange(buildRequestHeaders(), hasBody);
+        exchangeStarted = true;
+        connected = true;
+    }
+
+    /**
+     * Whether two URLs share their scheme, host and port
+     */
+    static boolean isSameOrigin(URL a, URL b) {
+        int portA = a.getPort() != -1 ? a.getPort() : a.getDefaultPort();
+        int portB = b.getPort() != -1 ? b.getPort() : b.getDefaultPort();
+        return a.getProtocol().equals(b.getProtocol()) && a.getHost().equalsIgnoreCase(b.getHost()) && portA == portB;
+    }
+
+    /**
+     * Drops the credentials the caller set for the original origin, as the platform engine does
+     * when a redirect leaves it; cookies for the new origin still come from the cookie handler
+     */
+    private static Map<String, List<String>> withoutCredentials(Map<String, List<String>> headers) {
+        Map<String, List<String>> kept = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+            String name = entry.getKey();
+            if (name == null || !(name.equalsIgnoreCase("Authorization") || name.equalsIgnoreCase("Cookie"))) {
+                kept.put(name, entry.getValue());
+            }
+        }
+        return kept;
+    }
+
+    private List<String[]> buildRequestHeaders() {
+        List<String[]> headers = new ArrayList<>();
+        boolean hasUserAgent = false;
+        boolean hasCookie = false;
+        boolean hasContentLength = false;
+        for (Map.Entry<String, List<String>> entry : requestHeaders.entrySet()) {
+            String name = entry.getKey();
+            if (name == null) {
+                continue;
+            }
+            hasUserAgent |= name.equalsIgnoreCase("User-Agent");
+            hasCookie |= name.equalsIgnoreCase("Cookie");
+            hasContentLength |= name.equalsIgnoreCase("Content-Length");
+            for (String value : entry.getValue()) {
+                headers.add(new String[] { name, value });
+            }
+        }
+
+        if (!hasUserAgent) {
+            String agent = System.getProperty("http.agent");
+            if (agent != null) {
+                headers.add(new String[] { "User-Agent", agent });
+            }
+        }
+        if (!hasCookie) {
+            for (String cookie : cookiesFor(url)) {
+                headers.add(new String[] { "Cookie", cookie });
+            }
+        }
+        if (!hasContentLength) {
+            if (fixedContentLengthLong != -1) {
+                headers.add(new String[] { "Content-Length", String.valueOf(fixedContentLengthLong) });
+            } else if (fixedContentLength != -1) {
+                headers.add(new String[] { "Content-Length", String.valueOf(fixedContentLength) });
+            }
+        }
+        return headers;
+    }
+
+    private void awaitResponse() throws IOException {
+        if (responseHeaders != null) {
+            return;
+        }
+        if (!exchangeStarted) {
+            start(false);
+        }
+
+        for (int redirects = 0;; redirects++) {
+            if (requestBody != null) {
+                requestBody.close();
+            }
+            setResponseHead(readResponseHead());
+
+            URL redirect = redirects < MAX_REDIRECTS ? followUpUrl() : null;
+            if (redirect == null || !canFollowRedirect(redirect)) {
+                return;
+            }
+
+            responseBody().close();
+            if (responseCode == HTTP_SEE_OTHER || "POST".equals(method)) {
+                method = "GET";
+            }
+            if (!isSameOrigin(url, redirect)) {
+                requestHeaders = withoutCredentials(requestHeaders);
+            }
+            onRedirect(redirect);
+            url = redirect;
+            requestBody = null;
+            responseBody = null;
+            responseHeaders = null;
+            try {
+                start(false);
+            } catch (IOException e) {
+                throw new IOException("Unable to follow redirect to " + redirect, e);
+            }
+        }
+    }
+
+    /**
+     * @return the URL to follow for a redirect response, or null if the response is final
+     */
+    private URL followUpUrl() {
+        if (!getInstanceFollowRedirects()) {
+            return null;
+        }
+        switch (responseCode) {
+            case HTTP_MOVED_PERM:
+            case HTTP_MOVED_TEMP:
+            case HTTP_SEE_OTHER:
+                break;
+            case 307:
+            case 308:
+                // the request body has already been streamed and can't be replayed
+                if (getDoOutput()) {
+                    return null;
+                }
+                break;
+            default:
+                return null;
+        }
+        String location = getHeaderField("Location");
+        if (location == null) {
+            return null;
+        }
+        try {
+            URL redirect = new URL(url, location);
+            String protocol = redirect.getProtocol();
+            if (!protocol.equals("http") && !protocol.equals("https")) {
+                return null;
+            }
+            return redirect;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void setResponseHead(ResponseHead head) {
+        Map<String, List<String>> map = new LinkedHashMap<>();
+        map.put(null, Collections.singletonList(head.statusLine));
+
+        List<String[]> list = new ArrayList<>(head.headers.size() + 1);
+        list.add(new String[] { null, head.statusLine });
+
+        List<String> setCookies = new ArrayList<>();
+        for (String[] header : head.headers) {
+            List<String> values = map.get(header[0]);
+            if (values == null) {
+                values = new ArrayList<>();
+                map.put(header[0], values);
+            }
+            values.add(header[1]);
+            list.add(header);
+            if (header[0].equalsIgnoreCase("Set-Cookie")) {
+                setCookies.add(header[1]);
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+
+        responseCode = head.code;
+        responseMessage = head.message;
+        responseHeaders = Collections.unmodifiableMap(map);
+        responseHeaderList = list;
+
+        storeCookies(url, setCookies);
+    }
+
+    private static List<String> cookiesFor(URL url) {
+        CookieHandler handler = CookieHandler.getDefault();
+        if (handler == null) {
+            return Collections.emptyList();
+        }
+        try {
+            Map<String, List<String>> cookies = handler.get(url.toURI(), Collections.<String, List<String>>emptyMap());
+            List<String> result = new ArrayList<>();
+            for (Map.Entry<String, List<String>> entry : cookies.entrySet()) {
+                if ("cookie".equalsIgnoreCase(entry.getKey()) && !entry.getValue().isEmpty()) {
+                    result.addAll(entry.getValue());
+                }
+            }
+            return result;
+        } catch (IOException | URISyntaxException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static void storeCookies(URL url, List<String> setCookies) {
+        CookieHandler handler = CookieHandler.getDefault();
+        if (handler == null || setCookies.isEmpty()) {
+            return;
+        }
+        try {
+            URI uri = url.toURI();
+            Map<String, List<String>> cookies = new LinkedHashMap<>();
+            cookies.put("Set-Cookie", setCookies);
+            handler.put(uri, cookies);
+        } catch (IOException | URISyntaxException ignored) {}
+    }
+}
@@ -0,0 +1,235 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArchiveExtractorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private final List<String> events = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "bundle");
+    }
+
+    @Test
+    public void zip_entries_are_unpacked_into_the_directory() throws Exception {
+        directory.mkdirs();
+        write("kept.txt", "kept");
+        write("index.html", "old");
+        byte[] image = bytes(70000);
+        byte[] archive = zip("index.html", text("new"), "assets/", null, "assets/img/test.jpg", image);
+
+        ArchiveExtractor extractor = extractor(ArchiveExtractor.ZIP);
+        extractor.extract(new ByteArrayInputStream(archive), archive.length);
+
+        assertEquals("new", read("index.html"));
+        assertEquals("kept", read("kept.txt"));
+        assertArrayEquals(image, Files.readAllBytes(new File(directory, "assets/img/test.jpg").toPath()));
+        assertEquals(3, extractor.getEntries());
+        assertEquals(Arrays.asList("index.html 1", "assets/ 2", "assets/img/test.jpg 3"), events);
+        assertFalse(new File(directory, ArchiveExtractor.STAGING_NAME).exists());
+    }
+
+    @Test
+    public void tar_gz_entries_are_unpacked_with_long_names() throws Exception {
+        String longName = "very/" + repeat("deep/", 30) + "file.txt";
+        byte[] archive = tarGz(
+            tarEntry("docs/", '5', new byte[0]),
+            tarEntry("docs/readme.txt", '0', text("hello")),
+            tarEntry("PaxHeader", 'x', text(paxRecord("path", longName))),
+            tarEntry("short-name", '0', bytes(1000)),
+            tarEntry("link", '2', new byte[0])
+        );
+
+        ArchiveExtractor extractor = extractor(ArchiveExtractor.TAR_GZ);
+        extractor.extract(new ByteArrayInputStream(archive), archive.length);
+
+        assertEquals("hello", read("docs/readme.txt"));
+        assertArrayEquals(bytes(1000), Files.readAllBytes(new File(directory, longName).toPath()));
+        assertFalse(new File(directory, "short-name").exists());
+        assertFalse(new File(directory, "link").exists());
+        assertEquals(3, extractor.getEntries());
+        assertEquals("docs/ 1", events.get(0));
+        assertEquals(longName + " 3", events.get(2));
+    }
+
+    @Test
+    public void entry_outside_the_directory_fails_and_leaves_it_untouched() throws Exception {
+        directory.mkdirs();
+        write("index.html", "old");
+        byte[] archive = zip("index.html", text("new"), "../escaped.txt", text("x"));
+
+        try {
+            extractor(ArchiveExtractor.ZIP).extract(new ByteArrayInputStream(archive), archive.length);
+            fail("the extraction should have failed");
+        } catch (IOException expected) {
+            assertEquals("Archive entry ../escaped.txt is outside the target directory", expected.getMessage());
+        }
+
+        assertEquals("old", read("index.html"));
+        assertFalse(new File(folder.getRoot(), "escaped.txt").exists());
+        assertFalse(new File(directory, ArchiveExtractor.STAGING_NAME).exists());
+    }
+
+    @Test
+    public void truncated_archive_fails_without_unpacking_anything() throws Exception {
+        byte[] archive = tarGz(tarEntry("a.bin", '0', bytes(5000)));
+        byte[] truncated = Arrays.copyOf(archive, archive.length / 2);
+
+        try {
+            extractor(ArchiveExtractor.TAR_GZ).extract(new ByteArrayInputStream(truncated), truncated.length);
+            fail("the extraction should have failed");
+        } catch (IOException expected) {
+            // the gzip stream ends early
+        }
+
+        assertFalse(new File(directory, "a.bin").exists());
+    }
+
+    @Test
+    public void archive_not_matching_its_expected_hash_is_not_unpacked() throws Exception {
+        byte[] archive = zip("index.html", text("new"));
+        ArchiveExtractor extractor = extractor(ArchiveExtractor.ZIP);
+        extractor.setHasher(ContentHasher.fromOptions(null, "md5:00"));
+
+        try {
+            extractor.extract(new ByteArrayInputStream(archive), archive.length);
+            fail("the extraction should have failed");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().startsWith("The md5 hash"));
+        }
+
+        assertFalse(new File(directory, "index.html").exists());
+    }
+
+    @Test
+    public void large_sizes_are_read_in_base_256() throws Exception {
+        byte[] header = new byte[12];
+        header[0] = (byte) 0x80;
+        header[7] = 0x02;
+        header[11] = 0x01;
+        assertEquals((2L << 32) + 1, ArchiveExtractor.parseNumber(header, 0, 12));
+
+        byte[] octal = "00000001750 ".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(1000, ArchiveExtractor.parseNumber(octal, 0, 12));
+    }
+
+    private ArchiveExtractor extractor(String format) {
+        return new ArchiveExtractor(
+            directory,
+            format,
+            new HttpRequestHandler.EntryProgressEmitter() {
+                @Override
+                public void emit(long bytes, long contentLength) {}
+
+                @Override
+                public void emitEntry(String entry, int entries, long bytes, long contentLength) {
+                    events.add(entry + " " + entries);
+                }
+            }
+        );
+    }
+
+    private void write(String name, String content) throws IOException {
+        Files.write(new File(directory, name).toPath(), text(content));
+    }
+
+    private String read(String name) throws IOException {
+        return new String(Files.readAllBytes(new File(directory, name).toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] text(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (i * 7);
+        }
+        return bytes;
+    }
+
+    private static String repeat(String value, int count) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            result.append(value);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Zips pairs of entry names and contents; a null content makes a directory entry
+     */
+    private static byte[] zip(Object... entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry((String) entries[i]));
+                if (entries[i + 1] != null) {
+                    zip.write((byte[]) entries[i + 1]);
+                }
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] tarEntry(String name, char type, byte[] content) throws IOException {
+        byte[] header = new byte[512];
+        byte[] nameBytes = text(name);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(100, nameBytes.length));
+        byte[] size = text(String.format("%011o", content.length));
+        System.arraycopy(size, 0, header, 124, size.length);
+        header[156] = (byte) type;
+        System.arraycopy(text("ustar\u000000"), 0, header, 257, 8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(header);
+        out.write(content);
+        out.write(new byte[(512 - content.length % 512) % 512]);
+        return out.toByteArray();
+    }
+
+    private static String paxRecord(String key, String value) {
+        String record = " " + key + "=" + value + "\n";
+        int length = record.length();
+        length += String.valueOf(length + String.valueOf(length).length()).length();
+        return length + record;
+    }
+
+    private static byte[] tarGz(byte[]... entries) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            for (byte[] entry : entries) {
+                gzip.write(entry);
+            }
+            gzip.write(new byte[1024]);
+        }
+        return out.toByteArray();
+    }
+}
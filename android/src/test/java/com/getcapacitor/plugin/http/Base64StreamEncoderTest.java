@@ -0,0 +1,60 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import org.junit.Test;
+
+public class Base64StreamEncoderTest {
+
+    @Test
+    public void matches_android_default_encoding_at_line_and_padding_boundaries() throws IOException {
+        int[] lengths = { 0, 1, 2, 3, 56, 57, 58, 59, 114, 115, 1000 };
+        for (int length : lengths) {
+            byte[] body = randomBytes(length);
+
+            assertEquals("length " + length, expected(body), Base64StreamEncoder.encode(new ByteArrayInputStream(body), length));
+        }
+    }
+
+    @Test
+    public void encodes_body_read_in_uneven_pieces_without_length() throws IOException {
+        byte[] body = randomBytes(3 * BufferPool.BUFFER_SIZE + 7);
+        InputStream trickle = new ByteArrayInputStream(body) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 4097));
+            }
+        };
+
+        assertEquals(expected(body), Base64StreamEncoder.encode(trickle, -1));
+    }
+
+    @Test
+    public void tolerates_wrong_content_length() throws IOException {
+        byte[] body = randomBytes(5000);
+
+        assertEquals(expected(body), Base64StreamEncoder.encode(new ByteArrayInputStream(body), 10));
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * What android.util.Base64.encodeToString(body, Base64.DEFAULT) returns
+     */
+    private static String expected(byte[] body) {
+        String encoded = java.util.Base64.getEncoder().encodeToString(body);
+        StringBuilder wrapped = new StringBuilder();
+        for (int i = 0; i < encoded.length(); i += 76) {
+            wrapped.append(encoded, i, Math.min(encoded.length(), i + 76)).append('\n');
+        }
+        return wrapped.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+
+import com.getcapacitor.JSObject;
+import java.net.URL;
+import org.junit.Test;
+
+public class ConnectionPoolTest {
+
+    private static final String A = "http://a.invalid/path";
+    private static final String B = "http://b.invalid/path";
+
+    @Test
+    public void install_sizes_the_platform_pool() {
+        new ConnectionPool(false, 7, 1234).install();
+
+        assertEquals("false", System.getProperty("http.keepAlive"));
+        assertEquals("7", System.getProperty("http.maxConnections"));
+        assertEquals("1234", System.getProperty("http.keepAliveDuration"));
+
+        new ConnectionPool().install();
+    }
+
+    @Test
+    public void released_connections_are_counted_as_reused_by_the_next_lease() throws Exception {
+        ConnectionPool pool = new ConnectionPool(true, 5, 60000);
+
+        pool.lease(new URL(A));
+        pool.lease(new URL(A));
+        assertEquals(2, pool.getStats().getInt("active"));
+
+        pool.release(new URL(A), true);
+        pool.release(new URL(A), false);
+        pool.lease(new URL(A));
+        pool.lease(new URL(B));
+
+        JSObject stats = pool.getStats();
+        assertEquals(2, stats.getInt("active"));
+        assertEquals(0, stats.getInt("estimatedIdle"));
+        assertEquals(1L, stats.getLong("estimatedHits"));
+        assertEquals(3L, stats.getLong("estimatedMisses"));
+    }
+
+    @Test
+    public void idle_limit_applies_across_hosts() throws Exception {
+        ConnectionPool pool = new ConnectionPool(true, 2, 60000);
+
+        pool.release(new URL(A), true);
+        pool.release(new URL(B), true);
+        pool.release(new URL(B), true);
+
+        JSObject stats = pool.getStats();
+        assertEquals(2, stats.getInt("estimatedIdle"));
+        assertEquals(1L, stats.getLong("estimatedEvictions"));
+
+        // the connection to A was the oldest, so it is the one that went
+        pool.lease(new URL(A));
+        assertEquals(0L, pool.getStats().getLong("estimatedHits"));
+    }
+
+    @Test
+    public void idle_connections_expire_after_the_keep_alive_duration() throws Exception {
+        ConnectionPool pool = new ConnectionPool(true, 5, 50);
+
+        pool.release(new URL(A), true);
+        assertEquals(1, pool.getStats().getInt("estimatedIdle"));
+
+        Thread.sleep(100);
+
+        JSObject stats = pool.getStats();
+        assertEquals(0, stats.getInt("estimatedIdle"));
+        assertEquals(1L, stats.getLong("estimatedEvictions"));
+        pool.lease(new URL(A));
+        assertEquals(0L, pool.getStats().getLong("estimatedHits"));
+    }
+
+    @Test
+    public void nothing_is_kept_idle_without_keep_alive() throws Exception {
+        ConnectionPool pool = new ConnectionPool(false, 5, 60000);
+
+        pool.lease(new URL(A));
+        pool.release(new URL(A), true);
+
+        assertEquals(0, pool.getStats().getInt("estimatedIdle"));
+        assertEquals(0, pool.getStats().getInt("active"));
+    }
+}
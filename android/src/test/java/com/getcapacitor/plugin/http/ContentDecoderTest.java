@@ -0,0 +1,154 @@
+package com.getcapacitor.plugin.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.getcapacitor.JSObject;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Test;
+
+public class ContentDecoderTest {
+
+    private static final byte[] BODY = repeat("The quick brown fox jumps over the lazy dog. ", 200).getBytes(UTF_8);
+
+    @Test
+    public void advertises_gzip_and_deflate() {
+        String acceptEncoding = ContentDecoder.getAcceptEncoding();
+
+        assertTrue(acceptEncoding.startsWith("gzip, deflate"));
+    }
+
+    @Test
+    public void decodes_gzip() throws Exception {
+        byte[] encoded = gzip(BODY);
+        ContentDecoder.DecodedStream stream = ContentDecoder.decode(ContentDecoder.parse("gzip"), new ByteArrayInputStream(encoded));
+
+        assertArrayEquals(BODY, readFully(stream));
+        JSObject stats = stream.getStats();
+        assertEquals("gzip", stats.getString("contentEncoding"));
+        assertEquals(encoded.length, stats.getLong("compressedBytes"));
+        assertEquals(BODY.length, stats.getLong("decompressedBytes"));
+    }
+
+    @Test
+    public void decodes_zlib_and_raw_deflate() throws IOException {
+        byte[] zlib = deflate(BODY, false);
+        byte[] raw = deflate(BODY, true);
+
+        assertArrayEquals(BODY, readFully(ContentDecoder.decode(ContentDecoder.parse("deflate"), new ByteArrayInputStream(zlib))));
+        assertArrayEquals(BODY, readFully(ContentDecoder.decode(ContentDecoder.parse("Deflate"), new ByteArrayInputStream(raw))));
+    }
+
+    @Test
+    public void undoes_stacked_codings_from_the_last() throws IOException {
+        byte[] encoded = gzip(deflate(BODY, false));
+        String[] codings = ContentDecoder.parse("deflate, identity, x-gzip");
+
+        assertArrayEquals(new String[] { "deflate", "gzip" }, codings);
+        assertArrayEquals(BODY, readFully(ContentDecoder.decode(codings, new ByteArrayInputStream(encoded))));
+    }
+
+    @Test
+    public void empty_body_is_not_decoded() throws IOException {
+        ContentDecoder.DecodedStream stream = ContentDecoder.decode(ContentDecoder.parse("gzip"), new ByteArrayInputStream(new byte[0]));
+
+        assertEquals(0, readFully(stream).length);
+    }
+
+    @Test
+    public void unsupported_or_missing_coding_is_read_as_is() {
+        assertNull(ContentDecoder.parse(null));
+        assertNull(ContentDecoder.parse("identity"));
+        assertNull(ContentDecoder.parse("gzip, compress"));
+    }
+
+    @Test
+    public void registered_codec_is_advertised_and_used() throws IOException {
+        ContentDecoder.register(
+            "x-reversed",
+            new ContentDecoder.Codec() {
+                @Override
+                public InputStream decode(InputStream in) {
+                    return new FilterInputStream(in) {
+                        @Override
+                        public int read(byte[] b, int off, int len) throws IOException {
+                            int read = super.read(b, off, len);
+                            for (int i = off; i < off + read; i++) {
+                                b[i] = (byte) ~b[i];
+                            }
+                            return read;
+                        }
+                    };
+                }
+            }
+        );
+        byte[] encoded = new byte[BODY.length];
+        for (int i = 0; i < BODY.length; i++) {
+            encoded[i] = (byte) ~BODY[i];
+        }
+
+        assertTrue(ContentDecoder.getAcceptEncoding().endsWith("x-reversed"));
+        assertArrayEquals(BODY, readFully(ContentDecoder.decode(ContentDecoder.parse("x-reversed"), new ByteArrayInputStream(encoded))));
+    }
+
+    @Test
+    public void closing_a_stream_records_its_byte_counts() throws Exception {
+        byte[] encoded = gzip(BODY);
+        long responses = ContentDecoder.getStats().getLong("responses");
+        long decompressed = ContentDecoder.getStats().getLong("decompressedBytes");
+
+        readFully(ContentDecoder.decode(ContentDecoder.parse("gzip"), new ByteArrayInputStream(encoded)));
+
+        JSObject stats = ContentDecoder.getStats();
+        assertEquals(responses + 1, stats.getLong("responses"));
+        assertEquals(decompressed + BODY.length, stats.getLong("decompressedBytes"));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] body, boolean raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+            deflate.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+
+public class ContentEncoderTest {
+
+    @Test
+    public void gzip_is_always_supported() {
+        assertTrue(ContentEncoder.isSupported("gzip"));
+        assertTrue(ContentEncoder.isSupported(" GZIP "));
+        assertFalse(ContentEncoder.isSupported("br"));
+        assertFalse(ContentEncoder.isSupported(null));
+    }
+
+    @Test
+    public void large_body_is_sent_compressed() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        String json = largeJson();
+
+        send(handler, json, "gzip", null);
+
+        assertEquals("gzip", handler.request.getHeader("Content-Encoding"));
+        assertTrue(handler.request.body.length < json.length());
+        assertEquals(json, gunzip(handler.request.body));
+    }
+
+    @Test
+    public void body_under_threshold_is_sent_as_is() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+
+        send(handler, "{\"small\":true}", "gzip", null);
+
+        assertNull(handler.request.getHeader("Content-Encoding"));
+        assertEquals("{\"small\":true}", new String(handler.request.body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void threshold_can_be_set_per_request() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+
+        send(handler, "{\"small\":true}", "gzip", 0);
+
+        assertEquals("gzip", handler.request.getHeader("Content-Encoding"));
+        assertEquals("{\"small\":true}", gunzip(handler.request.body));
+    }
+
+    @Test
+    public void unavailable_coding_sends_body_as_is() throws Exception {
+        RecordingHandler handler = new RecordingHandler();
+        String json = largeJson();
+
+        send(handler, json, "compress", null);
+
+        assertNull(handler.request.getHeader("Content-Encoding"));
+        assertEquals(json, new String(handler.request.body, StandardCharsets.UTF_8));
+    }
+
+    private static void send(RecordingHandler handler, String json, String compression, Integer threshold) throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(handler);
+        CapacitorHttpUrlConnection connection = new CapacitorHttpUrlConnection(
+            transport.open(new URL("http://loopback.invalid/sync"), null),
+            transport
+        );
+        JSObject data = new JSObject();
+        data.put("data", json);
+        data.put("requestCompression", compression);
+        if (threshold != null) {
+            data.put("requestCompressionThreshold", threshold);
+        }
+        PluginCall call = new PluginCall(null, "Http", "1", "post", data);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "text/plain");
+        connection.setDoOutput(true);
+        connection.setRequestBody(call, new JSValue(call, "data"));
+        assertEquals(200, connection.getResponseCode());
+        connection.release(true);
+    }
+
+    private static String largeJson() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < 500; i++) {
+            builder.append(i == 0 ? "" : ",").append("{\"event\":\"tap\",\"index\":").append(i).append('}');
+        }
+        return builder.append(']').toString();
+    }
+
+    private static String gunzip(byte[] body) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        }
+    }
+
+    private static class RecordingHandler implements LoopbackTransport.Handler {
+
+        LoopbackTransport.Request request;
+
+        @Override
+        public LoopbackTransport.Response handle(LoopbackTransport.Request request) {
+            this.request = request;
+            return new LoopbackTransport.Response(200, null, null);
+        }
+    }
+}
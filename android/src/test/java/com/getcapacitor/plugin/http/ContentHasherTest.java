@@ -0,0 +1,118 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class ContentHasherTest {
+
+    private static final byte[] ABC = "abc".getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    public void digests_match_the_reference_values() {
+        ContentHasher hasher = ContentHasher.fromOptions(algorithms("sha256", "MD5", "crc32c"), null);
+        hasher.update(ABC, 0, ABC.length);
+
+        JSObject digests = hasher.getDigests();
+
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", digests.getString("sha256"));
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", digests.getString("md5"));
+        assertEquals("364b3fb7", digests.getString("crc32c"));
+    }
+
+    @Test
+    public void crc32c_matches_the_check_values() {
+        Crc32c crc = new Crc32c();
+        byte[] digits = "123456789".getBytes(StandardCharsets.US_ASCII);
+        crc.update(digits, 0, digits.length);
+        assertEquals(0xE3069283L, crc.getValue());
+
+        // from the iSCSI specification, RFC 3720
+        crc.reset();
+        crc.update(new byte[32], 0, 32);
+        assertEquals(0x8A9136AAL, crc.getValue());
+    }
+
+    @Test
+    public void crc32c_is_the_same_however_the_bytes_are_split() {
+        byte[] data = new byte[100003];
+        new Random(7).nextBytes(data);
+        Crc32c whole = new Crc32c();
+        whole.update(data, 0, data.length);
+
+        Crc32c pieces = new Crc32c();
+        int off = 0;
+        for (int len = 1; off < data.length; len = len * 3 + 1) {
+            int n = Math.min(len, data.length - off);
+            ByteBuffer direct = ByteBuffer.allocateDirect(n);
+            direct.put(data, off, n).flip();
+            pieces.update(direct);
+            assertEquals(n, direct.position());
+            off += n;
+        }
+        pieces.update(data[0] & 0xff);
+        whole.update(data, 0, 1);
+
+        assertEquals(whole.getValue(), pieces.getValue());
+    }
+
+    @Test
+    public void buffers_and_arrays_hash_alike() {
+        byte[] data = Arrays.copyOf(ABC, 3);
+        ContentHasher fromBuffer = ContentHasher.fromOptions(algorithms("sha256", "crc32c"), null);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(3);
+        buffer.put(data).flip();
+        fromBuffer.update(buffer);
+
+        ContentHasher fromArray = ContentHasher.fromOptions(algorithms("sha256", "crc32c"), null);
+        fromArray.update(data, 0, 3);
+
+        assertEquals(fromArray.getDigests().toString(), fromBuffer.getDigests().toString());
+        assertEquals(3, buffer.remaining());
+    }
+
+    @Test
+    public void expected_hash_is_checked_in_its_algorithm() throws Exception {
+        ContentHasher hasher = ContentHasher.fromOptions(null, "MD5:900150983CD24FB0D6963F7D28E17F72");
+        hasher.update(ABC, 0, ABC.length);
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", hasher.verify().getString("md5"));
+
+        hasher = ContentHasher.fromOptions(null, "0000");
+        hasher.update(ABC, 0, ABC.length);
+        try {
+            hasher.verify();
+            fail("the hash should not have matched");
+        } catch (IOException expected) {
+            // plain hex is taken as SHA-256
+        }
+    }
+
+    @Test
+    public void nothing_asked_for_means_no_hashing() {
+        assertNull(ContentHasher.fromOptions(null, null));
+        assertNull(ContentHasher.fromOptions(new JSArray(), null));
+        try {
+            ContentHasher.fromOptions(algorithms("sha1024"), null);
+            fail("the algorithm should have been rejected");
+        } catch (IllegalArgumentException expected) {
+            assertEquals("Unsupported hash algorithm sha1024", expected.getMessage());
+        }
+    }
+
+    private static JSArray algorithms(String... names) {
+        JSArray array = new JSArray();
+        for (String name : names) {
+            array.put(name);
+        }
+        return array;
+    }
+}
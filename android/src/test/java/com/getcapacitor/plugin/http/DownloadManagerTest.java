@@ -0,0 +1,230 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DownloadManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private FakeRunner runner;
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "downloads");
+        runner = new FakeRunner();
+    }
+
+    @Test
+    public void transfers_run_in_the_background_a_limited_number_at_a_time() throws Exception {
+        DownloadManager manager = new DownloadManager(directory, 2, runner, null);
+        String a = manager.enqueue(options("a.bin"));
+        String b = manager.enqueue(options("b.bin"));
+        String c = manager.enqueue(options("c.bin"));
+
+        awaitRunning(2);
+        assertEquals("active", statusOf(manager, a));
+        assertEquals("active", statusOf(manager, b));
+        assertEquals("pending", statusOf(manager, c));
+
+        runner.gate.release(3);
+
+        awaitStatus(manager, c, "completed");
+        awaitStatus(manager, a, "completed");
+        awaitStatus(manager, b, "completed");
+        assertEquals(2, runner.maxRunning);
+        assertEquals("/files/c.bin", find(manager, c).getString("path"));
+        assertEquals(3L, manager.getStats().getLong("completed"));
+    }
+
+    @Test
+    public void queue_survives_a_restart() throws Exception {
+        DownloadManager manager = new DownloadManager(directory, 1, runner, null);
+        String a = manager.enqueue(options("a.bin"));
+        String b = manager.enqueue(options("b.bin"));
+        awaitStatus(manager, a, "active");
+
+        DownloadManager restarted = new DownloadManager(directory, 1, runner, null);
+        JSArray transfers = restarted.list();
+
+        assertEquals(2, transfers.length());
+        assertEquals(a, transfers.getJSONObject(0).getString("id"));
+        assertEquals(b, transfers.getJSONObject(1).getString("id"));
+        assertEquals("active", transfers.getJSONObject(0).getString("status"));
+
+        manager.pause(a);
+        manager.pause(b);
+        runner.gate.release(2);
+        restarted.start();
+        awaitStatus(restarted, a, "completed");
+    }
+
+    @Test
+    public void paused_transfer_stops_and_resumes_later() throws Exception {
+        DownloadManager manager = new DownloadManager(directory, 1, runner, null);
+        String a = manager.enqueue(options("a.bin"));
+        awaitStatus(manager, a, "active");
+
+        assertTrue(manager.pause(a));
+        awaitIdle();
+        assertEquals("paused", statusOf(manager, a));
+        assertEquals(Collections.singletonList(a), runner.cancelled);
+        assertEquals(10L, find(manager, a).getLong("bytes"));
+
+        runner.gate.release();
+        assertTrue(manager.resume(a));
+        awaitStatus(manager, a, "completed");
+        assertFalse(manager.pause(a));
+    }
+
+    @Test
+    public void failed_transfer_keeps_its_error_and_can_be_retried() throws Exception {
+        DownloadManager manager = new DownloadManager(directory, 1, runner, null);
+        runner.error = "Connection reset";
+        String a = manager.enqueue(options("a.bin"));
+        runner.gate.release();
+
+        awaitStatus(manager, a, "failed");
+        assertEquals("Connection reset", find(manager, a).getString("error"));
+
+        runner.error = null;
+        runner.gate.release();
+        assertTrue(manager.resume(a));
+        awaitStatus(manager, a, "completed");
+    }
+
+    @Test
+    public void removed_transfer_is_stopped_and_its_partial_file_discarded() throws Exception {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        DownloadManager manager = new DownloadManager(
+            directory,
+            1,
+            runner,
+            new DownloadManager.Listener() {
+                @Override
+                public void onTransfer(JSObject event) {
+                    events.add(event.getString("status"));
+                }
+            }
+        );
+        String a = manager.enqueue(options("a.bin"));
+        awaitStatus(manager, a, "active");
+
+        assertTrue(manager.remove(a));
+        awaitIdle();
+
+        assertEquals(0, manager.list().length());
+        assertEquals(0, new DownloadManager(directory, 1, runner, null).list().length());
+        assertEquals(Collections.singletonList("a.bin"), runner.discarded);
+        assertEquals("pending", events.get(0));
+        assertFalse(manager.remove(a));
+    }
+
+    private static JSObject options(String filePath) {
+        JSObject options = new JSObject();
+        options.put("url", "https://example.com/" + filePath);
+        options.put("filePath", filePath);
+        return options;
+    }
+
+    private static JSObject find(DownloadManager manager, String id) throws Exception {
+        JSArray transfers = manager.list();
+        for (int i = 0; i < transfers.length(); i++) {
+            if (id.equals(transfers.getJSONObject(i).getString("id"))) {
+                return JSObject.fromJSONObject(transfers.getJSONObject(i));
+            }
+        }
+        return null;
+    }
+
+    private static String statusOf(DownloadManager manager, String id) throws Exception {
+        JSObject transfer = find(manager, id);
+        return transfer != null ? transfer.getString("status") : null;
+    }
+
+    private static void awaitStatus(DownloadManager manager, String id, String status) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!status.equals(statusOf(manager, id))) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("transfer " + id + " is " + statusOf(manager, id) + ", not " + status);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitRunning(int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (runner.running.get() != count) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(runner.running.get() + " downloads are running, not " + count);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private void awaitIdle() throws Exception {
+        awaitRunning(0);
+        // lets the worker record the outcome
+        Thread.sleep(50);
+    }
+
+    /**
+     * Reports some progress, then waits for a permit before finishing
+     */
+    private static class FakeRunner implements DownloadManager.Runner {
+
+        final Semaphore gate = new Semaphore(0);
+        final AtomicInteger running = new AtomicInteger();
+        final List<String> cancelled = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> discarded = Collections.synchronizedList(new ArrayList<String>());
+        volatile int maxRunning = 0;
+        volatile String error;
+
+        @Override
+        public JSObject run(String id, JSObject options, HttpRequestHandler.ProgressEmitter progress) throws Exception {
+            synchronized (this) {
+                maxRunning = Math.max(maxRunning, running.incrementAndGet());
+            }
+            try {
+                progress.emit(10, 100);
+                gate.acquire();
+                if (error != null) {
+                    throw new IOException(error);
+                }
+                JSObject result = new JSObject();
+                result.put("path", "/files/" + options.getString("filePath"));
+                return result;
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void cancel(String id) {
+            cancelled.add(id);
+        }
+
+        @Override
+        public void discard(JSObject options) {
+            discarded.add(options.getString("filePath"));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.nio.file.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DownloadMetadataStoreTest {
+
+    private static final String URL = "https://example.com/asset.bin";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DownloadMetadataStore store;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new DownloadMetadataStore(new File(folder.getRoot(), "metadata"));
+        file = folder.newFile("asset.bin");
+        Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+    }
+
+    @Test
+    public void recorded_download_is_found_for_the_same_url() {
+        JSObject hashes = new JSObject();
+        hashes.put("sha256", "abc");
+        store.put(file, URL, "\"v1\"", "Wed, 21 Oct 2015 07:28:00 GMT", hashes);
+
+        DownloadMetadataStore.Entry entry = new DownloadMetadataStore(new File(folder.getRoot(), "metadata")).get(file, URL);
+
+        assertNotNull(entry);
+        assertEquals("\"v1\"", entry.etag);
+        assertEquals("Wed, 21 Oct 2015 07:28:00 GMT", entry.lastModified);
+        assertEquals(3, entry.size);
+        assertEquals("abc", entry.hashes.getString("sha256"));
+        assertNull(store.get(file, URL + "?v=2"));
+    }
+
+    @Test
+    public void file_changed_since_the_download_is_not_matched() throws Exception {
+        store.put(file, URL, "\"v1\"", null, null);
+
+        Files.write(file.toPath(), new byte[] { 1, 2, 3, 4 });
+        assertNull(store.get(file, URL));
+
+        store.put(file, URL, "\"v1\"", null, null);
+        file.delete();
+        assertNull(store.get(file, URL));
+    }
+
+    @Test
+    public void response_without_validators_is_forgotten() {
+        store.put(file, URL, "\"v1\"", null, null);
+        store.put(file, URL, null, null, null);
+
+        assertNull(store.get(file, URL));
+    }
+}
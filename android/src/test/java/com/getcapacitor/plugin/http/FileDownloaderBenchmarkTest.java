@@ -0,0 +1,170 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Compares the ways a response body can be written to a file: the 1 KB stream loop downloads used
+ * to go through, FileChannel.transferFrom, and the direct buffer FileDownloader receives into.
+ * Every path reads the same body from a loopback connection, so what is measured is the copy into
+ * the file rather than the network.
+ *
+ * <p>Ignored as it takes a while and its numbers depend on the machine; remove the annotation to
+ * run it and read the throughput of each path from the output.
+ */
+@Ignore("benchmark, run by hand")
+public class FileDownloaderBenchmarkTest {
+
+    private static final String URL = "http://loopback.invalid/asset.bin";
+    private static final int BODY_SIZE = 64 * 1024 * 1024;
+    private static final int WARMUP_RUNS = 2;
+    private static final int RUNS = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] body = new byte[BODY_SIZE];
+
+    private interface Path {
+        void receive(File file) throws IOException;
+    }
+
+    @Test
+    public void compare_ways_of_writing_the_body() throws Exception {
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) (i * 31);
+        }
+        final File file = new File(folder.getRoot(), "asset.bin");
+
+        report(
+            "1 KB stream loop",
+            file,
+            new Path() {
+                @Override
+                public void receive(File file) throws IOException {
+                    ICapacitorHttpUrlConnection connection = open();
+                    try (InputStream in = connection.getInputStream(); FileOutputStream out = new FileOutputStream(file)) {
+                        byte[] buffer = new byte[1024];
+                        int len;
+                        while ((len = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, len);
+                        }
+                    } finally {
+                        connection.release(true);
+                    }
+                }
+            }
+        );
+        report(
+            "FileChannel.transferFrom",
+            file,
+            new Path() {
+                @Override
+                public void receive(File file) throws IOException {
+                    ICapacitorHttpUrlConnection connection = open();
+                    try (
+                        ReadableByteChannel source = Channels.newChannel(connection.getInputStream());
+                        RandomAccessFile output = new RandomAccessFile(file, "rw");
+                        FileChannel sink = output.getChannel()
+                    ) {
+                        sink.truncate(0);
+                        long position = 0;
+                        long len;
+                        while ((len = sink.transferFrom(source, position, FileDownloader.DEFAULT_BUFFER_SIZE)) > 0) {
+                            position += len;
+                        }
+                    } finally {
+                        connection.release(true);
+                    }
+                }
+            }
+        );
+        report(
+            "direct buffer (FileDownloader)",
+            file,
+            new Path() {
+                @Override
+                public void receive(File file) throws IOException {
+                    new FileDownloader(file, URL, false, 1, connector(), throttle()).download();
+                }
+            }
+        );
+    }
+
+    private void report(String name, File file, Path path) throws IOException {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            run(file, path);
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            best = Math.min(best, run(file, path));
+        }
+        double megabytes = BODY_SIZE / (1024.0 * 1024.0);
+        System.out.println(String.format("%-32s %8.1f MB/s", name, megabytes / (best / 1e9)));
+    }
+
+    /**
+     * Writes the body into a fresh file, returning how many nanoseconds it took
+     */
+    private long run(File file, Path path) throws IOException {
+        file.delete();
+        long start = System.nanoTime();
+        path.receive(file);
+        long elapsed = System.nanoTime() - start;
+        assertEquals(BODY_SIZE, file.length());
+        return elapsed;
+    }
+
+    private ICapacitorHttpUrlConnection open() throws IOException {
+        return connector().open(new JSObject());
+    }
+
+    private FileDownloader.Connector connector() {
+        return new FileDownloader.Connector() {
+            @Override
+            public ICapacitorHttpUrlConnection open(JSObject headers) throws IOException {
+                LoopbackTransport transport = new LoopbackTransport(
+                    new LoopbackTransport.Handler() {
+                        @Override
+                        public LoopbackTransport.Response handle(LoopbackTransport.Request request) {
+                            Map<String, String> headers = new HashMap<>();
+                            headers.put("Content-Type", "application/octet-stream");
+                            return new LoopbackTransport.Response(200, headers, body);
+                        }
+                    }
+                );
+                CapacitorHttpUrlConnection connection = new CapacitorHttpUrlConnection(transport.open(new URL(URL), null), transport);
+                connection.setRequestMethod("GET");
+                connection.setRequestHeaders(headers);
+                return connection;
+            }
+        };
+    }
+
+    private static ProgressThrottle throttle() {
+        return new ProgressThrottle(
+            new HttpRequestHandler.ProgressEmitter() {
+                @Override
+                public void emit(long bytes, long contentLength) {}
+            },
+            0,
+            0
+        );
+    }
+}
@@ -0,0 +1,410 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileDownloaderTest {
+
+    private static final String URL = "http://loopback.invalid/asset.bin";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Origin origin;
+    private File file;
+
+    @Before
+    public void setUp() {
+        origin = new Origin(body(100 * 1024, 1), "\"v1\"");
+        file = new File(folder.getRoot(), "asset.bin");
+    }
+
+    @After
+    public void tearDown() {
+        Thread.interrupted();
+    }
+
+    @Test
+    public void interrupted_download_is_resumed_with_a_range_request() throws Exception {
+        long kept = interruptAfter(true, 40 * 1024);
+
+        assertFalse(file.exists());
+        assertEquals(kept, partial().length());
+        assertTrue(journal().isFile());
+
+        FileDownloader downloader = downloader(true);
+        downloader.download();
+
+        assertEquals("bytes=" + kept + "-", origin.lastRange);
+        assertEquals("\"v1\"", origin.lastIfRange);
+        assertEquals("identity", origin.lastAcceptEncoding);
+        assertEquals(kept, downloader.getResumedFrom());
+        assertArrayEquals(origin.body, Files.readAllBytes(file.toPath()));
+        assertFalse(partial().exists());
+        assertFalse(journal().exists());
+    }
+
+    @Test
+    public void changed_file_is_downloaded_from_the_start() throws Exception {
+        interruptAfter(true, 40 * 1024);
+        origin.body = body(80 * 1024, 2);
+        origin.etag = "\"v2\"";
+
+        FileDownloader downloader = downloader(true);
+        downloader.download();
+
+        assertEquals(0, downloader.getResumedFrom());
+        assertArrayEquals(origin.body, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void server_without_range_support_restarts_the_file() throws Exception {
+        interruptAfter(true, 40 * 1024);
+        origin.ranges = false;
+
+        downloader(true).download();
+
+        assertArrayEquals(origin.body, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void partial_file_of_another_url_is_not_resumed() throws Exception {
+        interruptAfter(true, 40 * 1024);
+
+        FileDownloader downloader = new FileDownloader(file, URL + "?v=2", true, 1, connector(), throttle(null));
+        downloader.download();
+
+        assertNull(origin.lastRange);
+        assertArrayEquals(origin.body, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void without_resume_a_failed_download_leaves_nothing_behind() throws Exception {
+        interruptAfter(false, 40 * 1024);
+
+        assertFalse(file.exists());
+        assertFalse(partial().exists());
+        assertFalse(journal().exists());
+        assertNotEquals("identity", origin.lastAcceptEncoding);
+    }
+
+    @Test
+    public void finished_download_replaces_the_file() throws Exception {
+        Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+
+        downloader(false).download();
+
+        assertArrayEquals(origin.body, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void body_is_written_whole_whatever_the_buffer_size() throws Exception {
+        origin.body = body(1024 * 1024 + 7, 6);
+
+        FileDownloader downloader = downloader(false);
+        downloader.setBufferSize(10000);
+        downloader.download();
+        assertArrayEquals(origin.body, Files.readAllBytes(file.toPath()));
+
+        downloader = downloader(false);
+        downloader.setBufferSize(1);
+        downloader.download();
+        assertArrayEquals(origin.body, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void downloaded_file_is_hashed_including_what_was_resumed() throws Exception {
+        String sha256 = sha256(origin.body);
+        interruptAfter(true, 40 * 1024);
+
+        FileDownloader downloader = downloader(true);
+        downloader.setHasher(ContentHasher.fromOptions(null, "sha256:" + sha256));
+        downloader.download();
+
+        assertTrue(downloader.getResumedFrom() > 0);
+        assertEquals(sha256, downloader.getHashes().getString("sha256"));
+    }
+
+    @Test
+    public void segmented_file_is_hashed_once_whole() throws Exception {
+        origin.body = body(3 * 1024 * 1024, 7);
+
+        FileDownloader downloader = new FileDownloader(file, URL, false, 4, connector(), throttle(null));
+        downloader.setHasher(ContentHasher.fromOptions(null, sha256(origin.body)));
+        downloader.download();
+
+        assertEquals(sha256(origin.body), downloader.getHashes().getString("sha256"));
+    }
+
+    @Test
+    public void file_not_matching_its_expected_hash_is_discarded() throws Exception {
+        Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+
+        FileDownloader downloader = downloader(true);
+        downloader.setHasher(ContentHasher.fromOptions(null, sha256(new byte[] { 1, 2, 3 })));
+        try {
+            downloader.download();
+            fail("the download should have failed");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().startsWith("The sha256 hash"));
+        }
+
+        assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(file.toPath()));
+        assertFalse(partial().exists());
+        assertFalse(journal().exists());
+    }
+
+    @Test
+    public void unchanged_file_is_left_as_it_is() throws Exception {
+        downloader(false).download();
+        long modified = file.lastModified();
+
+        FileDownloader downloader = downloader(false);
+        downloader.setKnownVersion("\"v1\"", null);
+        downloader.download();
+
+        assertEquals("\"v1\"", origin.lastIfNoneMatch);
+        assertFalse(downloader.isTransferred());
+        assertEquals(modified, file.lastModified());
+        assertArrayEquals(origin.body, Files.readAllBytes(file.toPath()));
+        assertFalse(partial().exists());
+    }
+
+    @Test
+    public void changed_file_replaces_the_known_version() throws Exception {
+        downloader(false).download();
+        origin.body = body(50 * 1024, 8);
+        origin.etag = "\"v2\"";
+
+        FileDownloader downloader = downloader(false);
+        downloader.setKnownVersion("\"v1\"", null);
+        downloader.download();
+
+        assertTrue(downloader.isTransferred());
+        assertEquals("\"v2\"", downloader.getETag());
+        assertArrayEquals(origin.body, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void large_file_is_received_in_segments() throws Exception {
+        origin.body = body(5 * 1024 * 1024 + 123, 3);
+        final long[] last = new long[2];
+
+        new FileDownloader(
+            file,
+            URL,
+            false,
+            4,
+            connector(),
+            new ProgressThrottle(
+                new HttpRequestHandler.ProgressEmitter() {
+                    @Override
+                    public void emit(long bytes, long contentLength) {
+                        last[0] = bytes;
+                        last[1] = contentLength;
+                    }
+                },
+                0,
+                0
+            )
+        )
+            .download();
+
+        assertArrayEquals(origin.body, Files.readAllBytes(file.toPath()));
+        assertTrue(origin.rangeRequests >= 3);
+        assertEquals(origin.body.length, last[0]);
+        assertEquals(origin.body.length, last[1]);
+        assertFalse(partial().exists());
+    }
+
+    @Test
+    public void file_changing_between_segments_fails_the_download() throws Exception {
+        origin.body = body(4 * 1024 * 1024, 4);
+        origin.etagAfterFirst = "\"v2\"";
+
+        try {
+            new FileDownloader(file, URL, false, 4, connector(), throttle(null)).download();
+            fail("the download should have failed");
+        } catch (IOException expected) {
+            assertEquals("The file changed during the download", expected.getMessage());
+        }
+
+        assertFalse(file.exists());
+        assertFalse(partial().exists());
+    }
+
+    @Test
+    public void small_file_or_server_without_ranges_uses_one_connection() throws Exception {
+        new FileDownloader(file, URL, false, 4, connector(), throttle(null)).download();
+        origin.body = body(4 * 1024 * 1024, 5);
+        origin.ranges = false;
+        new FileDownloader(file, URL, false, 4, connector(), throttle(null)).download();
+
+        assertArrayEquals(origin.body, Files.readAllBytes(file.toPath()));
+        assertEquals(2, origin.requests);
+    }
+
+    @Test
+    public void segment_count_follows_the_file_size() {
+        assertEquals(2, SegmentedDownload.getSegmentCount(2 * SegmentedDownload.MIN_SEGMENT_SIZE, 8));
+        assertEquals(5, SegmentedDownload.getSegmentCount(5 * SegmentedDownload.MIN_SEGMENT_SIZE + 10, 8));
+        assertEquals(8, SegmentedDownload.getSegmentCount(100 * SegmentedDownload.MIN_SEGMENT_SIZE, 8));
+    }
+
+    /**
+     * Starts a download and cancels it once the given number of bytes have been received
+     * @return how many bytes were kept
+     */
+    private long interruptAfter(boolean resume, final long bytes) throws IOException {
+        FileDownloader downloader = new FileDownloader(
+            file,
+            URL,
+            resume,
+            1,
+            connector(),
+            throttle(
+                new HttpRequestHandler.ProgressEmitter() {
+                    @Override
+                    public void emit(long received, long contentLength) {
+                        if (received >= bytes) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            )
+        );
+        try {
+            downloader.download();
+            fail("the download should have been cancelled");
+        } catch (RequestCancelledException expected) {
+            Thread.interrupted();
+        }
+        origin.lastRange = null;
+        origin.lastIfRange = null;
+        return partial().length();
+    }
+
+    private FileDownloader downloader(boolean resume) {
+        return new FileDownloader(file, URL, resume, 1, connector(), throttle(null));
+    }
+
+    private FileDownloader.Connector connector() {
+        return new FileDownloader.Connector() {
+            @Override
+            public ICapacitorHttpUrlConnection open(JSObject headers) throws IOException {
+                LoopbackTransport transport = new LoopbackTransport(origin);
+                CapacitorHttpUrlConnection connection = new CapacitorHttpUrlConnection(transport.open(new URL(URL), null), transport);
+                connection.setRequestMethod("GET");
+                connection.setRequestHeaders(headers);
+                return connection;
+            }
+        };
+    }
+
+    private static ProgressThrottle throttle(HttpRequestHandler.ProgressEmitter emitter) {
+        if (emitter == null) {
+            emitter =
+                new HttpRequestHandler.ProgressEmitter() {
+                    @Override
+                    public void emit(long bytes, long contentLength) {}
+                };
+        }
+        return new ProgressThrottle(emitter, 0, 0);
+    }
+
+    private File partial() {
+        return new File(file.getPath() + FileDownloader.PARTIAL_SUFFIX);
+    }
+
+    private File journal() {
+        return new File(file.getPath() + FileDownloader.JOURNAL_SUFFIX);
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static byte[] body(int size, int seed) {
+        byte[] body = new byte[size];
+        for (int i = 0; i < size; i++) {
+            body[i] = (byte) (i * 31 + seed);
+        }
+        return body;
+    }
+
+    /**
+     * Serves one file, honouring Range requests whose If-Range matches its ETag
+     */
+    private static class Origin implements LoopbackTransport.Handler {
+
+        byte[] body;
+        String etag;
+        boolean ranges = true;
+        String lastRange;
+        String lastIfRange;
+        String lastAcceptEncoding;
+        String lastIfNoneMatch;
+        String etagAfterFirst;
+        int requests = 0;
+        int rangeRequests = 0;
+
+        Origin(byte[] body, String etag) {
+            this.body = body;
+            this.etag = etag;
+        }
+
+        @Override
+        public synchronized LoopbackTransport.Response handle(LoopbackTransport.Request request) {
+            requests++;
+            lastRange = request.getHeader("Range");
+            lastIfRange = request.getHeader("If-Range");
+            lastAcceptEncoding = request.getHeader("Accept-Encoding");
+            lastIfNoneMatch = request.getHeader("If-None-Match");
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Content-Type", "application/octet-stream");
+            headers.put("ETag", etag);
+            if (ranges) {
+                headers.put("Accept-Ranges", "bytes");
+            }
+            if (etag.equals(lastIfNoneMatch)) {
+                return new LoopbackTransport.Response(304, headers, new byte[0]);
+            }
+            if (ranges && lastRange != null && etag.equals(lastIfRange)) {
+                String[] bounds = lastRange.substring("bytes=".length()).split("-", -1);
+                int start = Integer.parseInt(bounds[0]);
+                int end = bounds[1].isEmpty() ? body.length : Integer.parseInt(bounds[1]) + 1;
+                rangeRequests++;
+                headers.put("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + body.length);
+                return new LoopbackTransport.Response(206, headers, Arrays.copyOfRange(body, start, end));
+            }
+            if (etagAfterFirst != null) {
+                etag = etagAfterFirst;
+            }
+            return new LoopbackTransport.Response(200, headers, body);
+        }
+    }
+}
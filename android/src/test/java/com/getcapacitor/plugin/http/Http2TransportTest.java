@@ -0,0 +1,278 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class Http2TransportTest {
+
+    private H2cServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new H2cServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void hpack_round_trips_headers_through_dynamic_table() throws IOException {
+        Hpack.Writer writer = new Hpack.Writer();
+        Hpack.Reader reader = new Hpack.Reader(Hpack.DEFAULT_HEADER_TABLE_SIZE);
+        List<Hpack.Header> headers = Arrays.asList(
+            new Hpack.Header(":method", "GET"),
+            new Hpack.Header(":path", "/api/items?page=2"),
+            new Hpack.Header("authorization", "Bearer secret"),
+            new Hpack.Header("x-custom", "value")
+        );
+
+        byte[] first = writer.encode(headers);
+        byte[] second = writer.encode(headers);
+
+        assertEquals(headers.toString(), reader.decode(first).toString());
+        assertEquals(headers.toString(), reader.decode(second).toString());
+        assertTrue(second.length < first.length);
+    }
+
+    @Test
+    public void concurrent_requests_share_one_connection() throws Exception {
+        final Http2Transport transport = new Http2Transport(60000);
+        final URL base = new URL("http://127.0.0.1:" + server.getPort());
+        final int count = 4;
+        final CountDownLatch done = new CountDownLatch(count);
+        final List<String> bodies = Collections.synchronizedList(new ArrayList<String>());
+        server.holdResponsesUntil(count);
+
+        for (int i = 0; i < count; i++) {
+            final int index = i;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        HttpURLConnection connection = transport.open(new URL(base, "/item/" + index), 5000);
+                        connection.setReadTimeout(5000);
+                        assertEquals(200, connection.getResponseCode());
+                        bodies.add(readFully(connection.getInputStream()));
+                    } catch (IOException e) {
+                        bodies.add(e.toString());
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }
+                .start();
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        Collections.sort(bodies);
+        assertEquals(Arrays.asList("/item/0", "/item/1", "/item/2", "/item/3"), bodies);
+        assertEquals(1, server.connectionCount());
+        assertEquals(1L, transport.getStats().getLong("connectionsOpened"));
+        assertEquals((long) count, transport.getStats().getLong("streamsOpened"));
+    }
+
+    @Test
+    public void request_body_is_sent_on_stream() throws Exception {
+        Http2Transport transport = new Http2Transport(60000);
+        HttpURLConnection connection = transport.open(new URL("http://127.0.0.1:" + server.getPort() + "/echo"), 5000);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.getOutputStream().write("hello".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("/echo:hello", readFully(connection.getInputStream()));
+    }
+
+    @Test
+    public void redirect_to_another_protocol_is_returned_as_the_response() throws Exception {
+        Http2Transport transport = new Http2Transport(60000);
+        HttpURLConnection connection = transport.open(new URL("http://127.0.0.1:" + server.getPort() + "/redirect-https"), 5000);
+        connection.setReadTimeout(5000);
+
+        assertEquals(302, connection.getResponseCode());
+        assertEquals("https://127.0.0.1:" + server.getPort() + "/secure", connection.getHeaderField("Location"));
+    }
+
+    @Test
+    public void redirect_to_an_origin_without_http2_is_returned_as_the_response() throws Exception {
+        Http2Transport transport = new Http2Transport(60000) {
+            @Override
+            Http2Connection acquire(URL url, int connectTimeout) throws IOException {
+                return url.getHost().equals("localhost") ? null : super.acquire(url, connectTimeout);
+            }
+        };
+        HttpURLConnection connection = transport.open(new URL("http://127.0.0.1:" + server.getPort() + "/redirect-host"), 5000);
+        connection.setReadTimeout(5000);
+
+        assertEquals(302, connection.getResponseCode());
+
+        // an origin that does speak HTTP/2 is followed to
+        connection = new Http2Transport(60000).open(new URL("http://127.0.0.1:" + server.getPort() + "/redirect-host"), 5000);
+        connection.setReadTimeout(5000);
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("/landed", readFully(connection.getInputStream()));
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toString("UTF-8");
+    }
+
+    /**
+     * Minimal cleartext HTTP/2 peer. Responds to every stream with its path (and request body,
+     * if any), optionally holding responses until a number of streams are open at once.
+     * {@code /redirect-https} and {@code /redirect-host} redirect to https and to another host name.
+     */
+    private static class H2cServer extends Thread {
+
+        private final ServerSocket serverSocket;
+        private final AtomicInteger connections = new AtomicInteger();
+        private volatile int holdUntil = 0;
+
+        H2cServer() throws IOException {
+            serverSocket = new ServerSocket(0);
+            setDaemon(true);
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        int connectionCount() {
+            return connections.get();
+        }
+
+        void holdResponsesUntil(int streams) {
+            holdUntil = streams;
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    Thread handler = new Thread() {
+                        @Override
+                        public void run() {
+                            try {
+                                serve(socket);
+                            } catch (IOException ignored) {}
+                        }
+                    };
+                    handler.setDaemon(true);
+                    handler.start();
+                }
+            } catch (IOException ignored) {}
+        }
+
+        private void serve(Socket socket) throws IOException {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            in.readFully(new byte[24]);
+            writeFrame(out, Http2Connection.TYPE_SETTINGS, 0, 0, new byte[0]);
+
+            Hpack.Reader reader = new Hpack.Reader(Hpack.DEFAULT_HEADER_TABLE_SIZE);
+            Hpack.Writer writer = new Hpack.Writer();
+            List<Integer> pending = new ArrayList<>();
+            Map<Integer, String> paths = new HashMap<>();
+            Map<Integer, ByteArrayOutputStream> bodies = new HashMap<>();
+
+            while (true) {
+                int length = (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+                int type = in.readUnsignedByte();
+                int flags = in.readUnsignedByte();
+                int streamId = in.readInt() & 0x7FFFFFFF;
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+
+                boolean endStream = (flags & Http2Connection.FLAG_END_STREAM) != 0;
+                if (type == Http2Connection.TYPE_SETTINGS && (flags & Http2Connection.FLAG_ACK) == 0) {
+                    writeFrame(out, Http2Connection.TYPE_SETTINGS, Http2Connection.FLAG_ACK, 0, new byte[0]);
+                } else if (type == Http2Connection.TYPE_HEADERS) {
+                    for (Hpack.Header header : reader.decode(payload)) {
+                        if (header.name.equals(":path")) {
+                            paths.put(streamId, header.value);
+                        }
+                    }
+                    bodies.put(streamId, new ByteArrayOutputStream());
+                } else if (type == Http2Connection.TYPE_DATA) {
+                    bodies.get(streamId).write(payload);
+                } else {
+                    continue;
+                }
+
+                if (type != Http2Connection.TYPE_SETTINGS && endStream) {
+                    pending.add(streamId);
+                    if (pending.size() >= holdUntil) {
+                        for (int id : pending) {
+                            String path = paths.get(id);
+                            if (path.startsWith("/redirect-")) {
+                                String location = path.equals("/redirect-https")
+                                    ? "https://127.0.0.1:" + getPort() + "/secure"
+                                    : "http://localhost:" + getPort() + "/landed";
+                                byte[] block = writer.encode(
+                                    Arrays.asList(new Hpack.Header(":status", "302"), new Hpack.Header("location", location))
+                                );
+                                writeFrame(out, Http2Connection.TYPE_HEADERS, Http2Connection.FLAG_END_HEADERS | Http2Connection.FLAG_END_STREAM, id, block);
+                                continue;
+                            }
+                            String body = bodies.get(id).size() > 0 ? paths.get(id) + ":" + bodies.get(id).toString("UTF-8") : paths.get(id);
+                            byte[] block = writer.encode(Collections.singletonList(new Hpack.Header(":status", "200")));
+                            writeFrame(out, Http2Connection.TYPE_HEADERS, Http2Connection.FLAG_END_HEADERS, id, block);
+                            writeFrame(out, Http2Connection.TYPE_DATA, Http2Connection.FLAG_END_STREAM, id, body.getBytes(StandardCharsets.UTF_8));
+                        }
+                        pending.clear();
+                    }
+                }
+            }
+        }
+
+        private static synchronized void writeFrame(DataOutputStream out, int type, int flags, int streamId, byte[] payload)
+            throws IOException {
+            out.writeByte(payload.length >>> 16);
+            out.writeByte(payload.length >>> 8);
+            out.writeByte(payload.length);
+            out.writeByte(type);
+            out.writeByte(flags);
+            out.writeInt(streamId);
+            out.write(payload);
+            out.flush();
+        }
+    }
+}
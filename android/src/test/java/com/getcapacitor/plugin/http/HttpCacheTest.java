@@ -0,0 +1,201 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HttpCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpTransportRegistry previousTransports;
+    private HttpCache previousCache;
+    private Origin origin;
+
+    @Before
+    public void setUp() {
+        previousTransports = HttpRequestHandler.getTransportRegistry();
+        previousCache = HttpRequestHandler.getHttpCache();
+        origin = new Origin();
+        HttpRequestHandler.setTransportRegistry(new HttpTransportRegistry(new LoopbackTransport(origin)));
+        HttpRequestHandler.setHttpCache(new HttpCache(folder.getRoot(), 1024 * 1024));
+    }
+
+    @After
+    public void tearDown() {
+        HttpRequestHandler.setTransportRegistry(previousTransports);
+        HttpRequestHandler.setHttpCache(previousCache);
+    }
+
+    @Test
+    public void fresh_response_is_served_without_network() throws Exception {
+        origin.respond("/fresh", "Cache-Control", "max-age=60");
+
+        JSObject first = get("/fresh", null);
+        JSObject second = get("/fresh", null);
+
+        assertEquals("miss", first.getString("cache"));
+        assertEquals("hit", second.getString("cache"));
+        assertEquals(200, (int) second.getInteger("status"));
+        assertEquals("body of /fresh", second.getString("data"));
+        assertEquals(1, origin.requests);
+        JSObject stats = HttpRequestHandler.getHttpCache().getStats();
+        assertEquals(1L, stats.getLong("hits"));
+        assertEquals(1L, stats.getLong("misses"));
+        assertEquals(1, (int) stats.getInteger("entries"));
+    }
+
+    @Test
+    public void stale_response_is_revalidated_and_served_on_304() throws Exception {
+        origin.respond("/stale", "Cache-Control", "max-age=0", "ETag", "\"v1\"");
+
+        get("/stale", null);
+        JSObject second = get("/stale", null);
+
+        assertEquals("\"v1\"", origin.lastIfNoneMatch);
+        assertEquals("revalidated", second.getString("cache"));
+        assertEquals(200, (int) second.getInteger("status"));
+        assertEquals("body of /stale", second.getString("data"));
+        assertEquals(2, origin.requests);
+        assertEquals(1L, HttpRequestHandler.getHttpCache().getStats().getLong("notModified"));
+    }
+
+    @Test
+    public void no_store_responses_and_requests_bypass_the_cache() throws Exception {
+        origin.respond("/private", "Cache-Control", "no-store");
+        origin.respond("/public", "Cache-Control", "max-age=60");
+
+        get("/private", null);
+        get("/private", null);
+        get("/public", "no-store");
+        get("/public", "no-store");
+
+        assertEquals(4, origin.requests);
+        assertEquals(0, (int) HttpRequestHandler.getHttpCache().getStats().getInteger("entries"));
+    }
+
+    @Test
+    public void only_if_cached_without_entry_is_a_gateway_timeout() throws Exception {
+        JSObject response = get("/missing", "only-if-cached");
+
+        assertEquals(504, (int) response.getInteger("status"));
+        assertEquals(0, origin.requests);
+    }
+
+    @Test
+    public void unsafe_request_invalidates_stored_response() throws Exception {
+        origin.respond("/item", "Cache-Control", "max-age=60");
+
+        get("/item", null);
+        HttpRequestHandler.request(call("/item", null), "DELETE");
+        JSObject after = get("/item", null);
+
+        assertEquals("miss", after.getString("cache"));
+        assertEquals(3, origin.requests);
+        assertEquals(1L, HttpRequestHandler.getHttpCache().getStats().getLong("invalidations"));
+    }
+
+    @Test
+    public void least_recently_used_response_is_evicted() throws Exception {
+        HttpRequestHandler.setHttpCache(new HttpCache(folder.newFolder(), 3000));
+        origin.bodySize = 1000;
+        for (String path : Arrays.asList("/a", "/b", "/c")) {
+            origin.respond(path, "Cache-Control", "max-age=60");
+        }
+
+        get("/a", null);
+        get("/b", null);
+        get("/a", null);
+        get("/c", null);
+        int before = origin.requests;
+
+        assertEquals("hit", get("/a", null).getString("cache"));
+        assertEquals("hit", get("/c", null).getString("cache"));
+        assertEquals(before, origin.requests);
+        assertEquals("miss", get("/b", null).getString("cache"));
+        JSObject stats = HttpRequestHandler.getHttpCache().getStats();
+        assertFalse(stats.getLong("size") > 3000);
+        // storing /b again made room by evicting /a
+        assertEquals(2L, stats.getLong("evictions"));
+    }
+
+    @Test
+    public void disabled_cache_leaves_responses_alone() throws Exception {
+        HttpRequestHandler.setHttpCache(new HttpCache(null, 0));
+        origin.respond("/fresh", "Cache-Control", "max-age=60");
+
+        JSObject response = get("/fresh", null);
+        get("/fresh", null);
+
+        assertNull(response.getString("cache"));
+        assertEquals(2, origin.requests);
+    }
+
+    private static JSObject get(String path, String cache) throws Exception {
+        return HttpRequestHandler.request(call(path, cache), "GET");
+    }
+
+    private static PluginCall call(String path, String cache) {
+        JSObject data = new JSObject();
+        data.put("url", "http://loopback.invalid" + path);
+        data.put("headers", new JSObject());
+        data.put("params", new JSObject());
+        if (cache != null) {
+            data.put("cache", cache);
+        }
+        return new PluginCall(null, "Http", "1", "request", data);
+    }
+
+    /**
+     * Answers with a fixed body and the configured headers, and with 304 when If-None-Match
+     * matches the ETag
+     */
+    private static class Origin implements LoopbackTransport.Handler {
+
+        final Map<String, Map<String, String>> headers = new HashMap<>();
+        int requests = 0;
+        int bodySize = 0;
+        String lastIfNoneMatch;
+
+        void respond(String path, String... nameValues) {
+            Map<String, String> map = new HashMap<>();
+            for (int i = 0; i < nameValues.length; i += 2) {
+                map.put(nameValues[i], nameValues[i + 1]);
+            }
+            map.put("Content-Type", "text/plain");
+            headers.put(path, map);
+        }
+
+        @Override
+        public synchronized LoopbackTransport.Response handle(LoopbackTransport.Request request) {
+            requests++;
+            String path = request.url.getPath();
+            Map<String, String> responseHeaders = headers.get(path);
+            if (responseHeaders == null) {
+                return new LoopbackTransport.Response(404, null, null);
+            }
+            lastIfNoneMatch = request.getHeader("If-None-Match");
+            if (lastIfNoneMatch != null && lastIfNoneMatch.equals(responseHeaders.get("ETag"))) {
+                return new LoopbackTransport.Response(304, responseHeaders, null);
+            }
+            StringBuilder body = new StringBuilder("body of ").append(path);
+            while (body.length() < bodySize) {
+                body.append('.');
+            }
+            return new LoopbackTransport.Response(200, responseHeaders, body.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
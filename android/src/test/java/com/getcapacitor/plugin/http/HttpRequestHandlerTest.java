@@ -1,22 +1,39 @@
 package com.getcapacitor.plugin.http;
 
+import static com.getcapacitor.plugin.http.HttpRequestHandler.ResponseType.FILE;
 import static com.getcapacitor.plugin.http.HttpRequestHandler.ResponseType.JSON;
+import static com.getcapacitor.plugin.http.HttpRequestHandler.ResponseType.TEXT;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import android.util.MutableBoolean;
 import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class HttpRequestHandlerTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void readData_error_with_HTML_message() throws IOException, JSONException {
         MutableBoolean isError = new MutableBoolean(false);
@@ -43,6 +60,65 @@ public class HttpRequestHandlerTest {
         assertEquals(jsonObject.toString(), result.toString());
     }
 
+    @Test
+    public void readData_spills_body_over_threshold_to_file() throws IOException, JSONException {
+        byte[] body = "0123456789abcdef".getBytes(UTF_8);
+        ResponseSpill spill = new ResponseSpill(folder.getRoot(), 8);
+
+        Object result = HttpRequestHandler.readData(successWithText(body), TEXT, spill);
+
+        ResponseSpill.SpilledBody spilled = (ResponseSpill.SpilledBody) result;
+        assertEquals(body.length, spilled.size);
+        assertEquals(MimeType.TEXT_HTML.getValue(), spilled.contentType);
+        assertArrayEquals(body, readFile(spilled.file));
+    }
+
+    @Test
+    public void readData_keeps_body_under_threshold_in_memory() throws IOException, JSONException {
+        ResponseSpill spill = new ResponseSpill(folder.getRoot(), 16);
+
+        Object result = HttpRequestHandler.readData(successWithText("0123456789abcdef".getBytes(UTF_8)), TEXT, spill);
+
+        assertEquals("0123456789abcdef", result);
+        assertEquals(0, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void readData_file_response_type_spills_every_body() throws IOException, JSONException {
+        ResponseSpill spill = new ResponseSpill(folder.getRoot(), 0);
+
+        Object result = HttpRequestHandler.readData(successWithText(new byte[0]), FILE, spill);
+
+        ResponseSpill.SpilledBody spilled = (ResponseSpill.SpilledBody) result;
+        assertEquals(0, spilled.size);
+        assertTrue(spilled.file.isFile());
+    }
+
+    @Test
+    public void readData_error_body_is_not_spilled() throws IOException, JSONException {
+        ResponseSpill spill = new ResponseSpill(folder.getRoot(), 0);
+
+        Object result = HttpRequestHandler.readData(errorWithHtmlMessage("html-error"), FILE, spill);
+
+        assertEquals("html-error", result);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static CapacitorHttpUrlResponseMock successWithText(byte[] body) {
+        return new CapacitorHttpUrlResponseMock(new ByteArrayInputStream(body), null, MimeType.TEXT_HTML.getValue());
+    }
+
     @SuppressWarnings("SameParameterValue")
     private static CapacitorHttpUrlResponseMock errorWithHtmlMessage(String htmlErrorMessage) {
         return new CapacitorHttpUrlResponseMock(
@@ -83,6 +159,11 @@ public class HttpRequestHandlerTest {
             return inputStream;
         }
 
+        @Override
+        public JSObject getContentEncodingStats() {
+            return null;
+        }
+
         @Override
         public InputStream getErrorStream() {
             return errorStream;
@@ -92,5 +173,63 @@ public class HttpRequestHandlerTest {
         public String getHeaderField(String name) {
             return headerFields.get(name);
         }
+
+        @Override
+        public void setRequestMethod(String method) {}
+
+        @Override
+        public void setConnectTimeout(int timeout) {}
+
+        @Override
+        public void setReadTimeout(int timeout) {}
+
+        @Override
+        public void setDisableRedirects(boolean disableRedirects) {}
+
+        @Override
+        public void setRequestHeaders(JSObject headers) {}
+
+        @Override
+        public void setRequestProperty(String key, String value) {}
+
+        @Override
+        public String getRequestProperty(String key) {
+            return null;
+        }
+
+        @Override
+        public void setDoOutput(boolean shouldDoOutput) {}
+
+        @Override
+        public void setRequestBody(PluginCall call, JSValue body) {}
+
+        @Override
+        public OutputStream getOutputStream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void connect() {}
+
+        @Override
+        public int getResponseCode() {
+            return errorStream != null ? 500 : 200;
+        }
+
+        @Override
+        public URL getURL() {
+            return null;
+        }
+
+        @Override
+        public Map<String, List<String>> getHeaderFields() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void release(boolean success) {}
+
+        @Override
+        public void disconnect() {}
     }
 }
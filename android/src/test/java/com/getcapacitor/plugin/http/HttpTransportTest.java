@@ -0,0 +1,365 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.getcapacitor.JSObject;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.UnknownServiceException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpTransportTest {
+
+    private Http11Server server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new Http11Server();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void registry_falls_back_when_engine_declines() throws IOException {
+        HttpTransport fallback = new LoopbackTransport(echoHandler());
+        HttpTransportRegistry registry = new HttpTransportRegistry(fallback);
+        registry.register(new NioTransport(5, 60000));
+
+        HttpTransportRegistry.Opened opened = registry.open(NioTransport.NAME, new URL("https://example.com/"), null);
+
+        assertSame(fallback, opened.transport);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void registry_rejects_unknown_engine() throws IOException {
+        HttpTransportRegistry registry = new HttpTransportRegistry(new LoopbackTransport(echoHandler()));
+        registry.open("carrier-pigeon", new URL("http://example.com/"), null);
+    }
+
+    @Test
+    public void loopback_answers_without_network() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport(echoHandler());
+        HttpURLConnection connection = transport.open(new URL("http://loopback.invalid/items"), null);
+        connection.setRequestMethod("PUT");
+        connection.setRequestProperty("X-Test", "1");
+        connection.setDoOutput(true);
+        connection.getOutputStream().write("payload".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(201, connection.getResponseCode());
+        assertEquals("1", connection.getHeaderField("x-echo-test"));
+        assertEquals("PUT /items payload", readFully(connection.getInputStream()));
+        assertEquals(1L, transport.getStats().getLong("exchanges"));
+    }
+
+    @Test
+    public void nio_reuses_connection_and_reads_chunked_body() throws Exception {
+        NioTransport transport = new NioTransport(5, 60000);
+        URL base = new URL("http://127.0.0.1:" + server.getPort());
+
+        for (int i = 0; i < 3; i++) {
+            HttpURLConnection connection = transport.open(new URL(base, "/chunked/" + i), 5000);
+            connection.setReadTimeout(5000);
+            assertEquals(200, connection.getResponseCode());
+            assertEquals("hello /chunked/" + i, readFully(connection.getInputStream()));
+        }
+
+        assertEquals(1, server.connectionCount());
+        JSObject stats = transport.getStats();
+        assertEquals(1L, stats.getLong("connectionsOpened"));
+        assertEquals(2L, stats.getLong("connectionsReused"));
+    }
+
+    @Test
+    public void nio_streams_request_body_in_chunks() throws Exception {
+        NioTransport transport = new NioTransport(5, 60000);
+        HttpURLConnection connection = transport.open(new URL("http://127.0.0.1:" + server.getPort() + "/echo"), 5000);
+        connection.setReadTimeout(5000);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        OutputStream out = connection.getOutputStream();
+        out.write("abc".getBytes(StandardCharsets.UTF_8));
+        out.write("def".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("abcdef", readFully(connection.getInputStream()));
+        assertNull(connection.getErrorStream());
+    }
+
+    @Test
+    public void nio_returns_a_redirect_to_https_instead_of_following_it() throws Exception {
+        NioTransport transport = new NioTransport(5, 60000);
+        HttpURLConnection connection = transport.open(new URL("http://127.0.0.1:" + server.getPort() + "/redirect-https"), 5000);
+        connection.setReadTimeout(5000);
+
+        assertEquals(302, connection.getResponseCode());
+        assertEquals("https://127.0.0.1:" + server.getPort() + "/secure", connection.getHeaderField("Location"));
+        assertEquals(1, server.requestCount());
+    }
+
+    @Test
+    public void nio_checks_the_cleartext_policy_of_the_host_redirected_to() throws Exception {
+        NioTransport transport = new NioTransport(5, 60000) {
+            @Override
+            boolean isCleartextPermitted(String host) {
+                return !host.equals("localhost");
+            }
+        };
+        HttpURLConnection connection = transport.open(new URL("http://127.0.0.1:" + server.getPort() + "/redirect-host"), 5000);
+        connection.setReadTimeout(5000);
+
+        try {
+            connection.getResponseCode();
+            fail("the redirect should have been refused");
+        } catch (UnknownServiceException expected) {
+            assertEquals("CLEARTEXT communication to localhost not permitted by network security policy", expected.getMessage());
+        }
+        assertEquals(1, server.requestCount());
+
+        connection = new NioTransport(5, 60000).open(new URL("http://127.0.0.1:" + server.getPort() + "/redirect-host"), 5000);
+        connection.setReadTimeout(5000);
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("hello /landed", readFully(connection.getInputStream()));
+    }
+
+    @Test
+    public void credentials_are_only_sent_again_to_the_same_origin() throws Exception {
+        NioTransport transport = new NioTransport(5, 60000);
+        for (String path : new String[] { "/redirect-host", "/redirect-same" }) {
+            HttpURLConnection connection = transport.open(new URL("http://127.0.0.1:" + server.getPort() + path), 5000);
+            connection.setReadTimeout(5000);
+            connection.setRequestProperty("Authorization", "Bearer secret");
+            connection.setRequestProperty("Cookie", "session=1");
+            connection.setRequestProperty("X-Trace", "abc");
+            assertEquals(200, connection.getResponseCode());
+            readFully(connection.getInputStream());
+        }
+
+        List<String> crossOrigin = server.headersOf("/landed");
+        assertFalse(crossOrigin.contains("authorization: bearer secret"));
+        assertFalse(crossOrigin.contains("cookie: session=1"));
+        assertTrue(crossOrigin.contains("x-trace: abc"));
+        List<String> sameOrigin = server.headersOf("/stayed");
+        assertTrue(sameOrigin.contains("authorization: bearer secret"));
+        assertTrue(sameOrigin.contains("cookie: session=1"));
+    }
+
+    @Test
+    public void connection_whose_body_fails_to_drain_is_not_reused() throws Exception {
+        final boolean[] reusable = { true };
+        final boolean[] disconnected = { false };
+        HttpURLConnection failing = new HttpURLConnection(new URL("http://loopback.invalid/items")) {
+            @Override
+            public InputStream getInputStream() {
+                return new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("Connection reset");
+                    }
+                };
+            }
+
+            @Override
+            public void disconnect() {
+                disconnected[0] = true;
+            }
+
+            @Override
+            public boolean usingProxy() {
+                return false;
+            }
+
+            @Override
+            public void connect() {}
+        };
+        HttpTransport transport = new LoopbackTransport(echoHandler()) {
+            @Override
+            public void release(HttpURLConnection connection, boolean reused) {
+                reusable[0] = reused;
+            }
+        };
+
+        new CapacitorHttpUrlConnection(failing, transport).release(true);
+
+        assertFalse(reusable[0]);
+        assertTrue(disconnected[0]);
+    }
+
+    private static LoopbackTransport.Handler echoHandler() {
+        return new LoopbackTransport.Handler() {
+            @Override
+            public LoopbackTransport.Response handle(LoopbackTransport.Request request) {
+                String body = request.method + " " + request.url.getPath() + " " + new String(request.body, StandardCharsets.UTF_8);
+                return new LoopbackTransport.Response(
+                    201,
+                    Collections.singletonMap("X-Echo-Test", request.getHeader("x-test")),
+                    body.getBytes(StandardCharsets.UTF_8)
+                );
+            }
+        };
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toString("UTF-8");
+    }
+
+    /**
+     * Minimal keep-alive HTTP/1.1 server. {@code /echo} answers with the request body,
+     * {@code /redirect-https}, {@code /redirect-host} and {@code /redirect-same} redirect to https,
+     * to another host name and within the origin, any other path answers with a chunked greeting.
+     */
+    private static class Http11Server extends Thread {
+
+        private final ServerSocket serverSocket;
+        private final AtomicInteger connections = new AtomicInteger();
+        private final AtomicInteger requests = new AtomicInteger();
+        private final Map<String, List<String>> headersByPath = new ConcurrentHashMap<>();
+
+        Http11Server() throws IOException {
+            serverSocket = new ServerSocket(0);
+            setDaemon(true);
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        int connectionCount() {
+            return connections.get();
+        }
+
+        int requestCount() {
+            return requests.get();
+        }
+
+        /**
+         * Returns the header lines of the last request for the path, lowercased
+         */
+        List<String> headersOf(String path) {
+            return headersByPath.get(path);
+        }
+
+        void close() throws IOException {
+            serverSocket.close();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    Thread handler = new Thread() {
+                        @Override
+                        public void run() {
+                            try {
+                                serve(socket);
+                            } catch (IOException ignored) {}
+                        }
+                    };
+                    handler.setDaemon(true);
+                    handler.start();
+                }
+            } catch (IOException ignored) {}
+        }
+
+        private void serve(Socket socket) throws IOException {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+            OutputStream out = socket.getOutputStream();
+            String requestLine;
+            while ((requestLine = in.readLine()) != null) {
+                String path = requestLine.split(" ")[1];
+                requests.incrementAndGet();
+                int contentLength = 0;
+                boolean chunked = false;
+                List<String> headers = new ArrayList<>();
+                String line;
+                while (!(line = in.readLine()).isEmpty()) {
+                    String lower = line.toLowerCase();
+                    headers.add(lower);
+                    if (lower.startsWith("content-length:")) {
+                        contentLength = Integer.parseInt(line.substring(15).trim());
+                    } else if (lower.startsWith("transfer-encoding:") && lower.contains("chunked")) {
+                        chunked = true;
+                    }
+                }
+
+                StringBuilder body = new StringBuilder();
+                if (chunked) {
+                    int size;
+                    while ((size = Integer.parseInt(in.readLine().trim(), 16)) > 0) {
+                        char[] chunk = new char[size];
+                        int read = 0;
+                        while (read < size) {
+                            read += in.read(chunk, read, size - read);
+                        }
+                        body.append(chunk);
+                        in.readLine();
+                    }
+                    in.readLine();
+                } else {
+                    for (int i = 0; i < contentLength; i++) {
+                        body.append((char) in.read());
+                    }
+                }
+
+                headersByPath.put(path, headers);
+
+                if (path.startsWith("/redirect-")) {
+                    String location = path.equals("/redirect-https")
+                        ? "https://127.0.0.1:" + getPort() + "/secure"
+                        : path.equals("/redirect-same")
+                            ? "http://127.0.0.1:" + getPort() + "/stayed"
+                            : "http://localhost:" + getPort() + "/landed";
+                    out.write(("HTTP/1.1 302 Found\r\nLocation: " + location + "\r\nContent-Length: 0\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                } else if (path.equals("/echo")) {
+                    byte[] bytes = body.toString().getBytes(StandardCharsets.ISO_8859_1);
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + bytes.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                    out.write(bytes);
+                } else {
+                    String response = "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                        "6\r\nhello \r\n" +
+                        Integer.toHexString(path.length()) +
+                        "\r\n" +
+                        path +
+                        "\r\n0\r\n\r\n";
+                    out.write(response.getBytes(StandardCharsets.ISO_8859_1));
+                }
+                out.flush();
+            }
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.io.IOException;
+import java.io.StringReader;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class JsonStreamDecoderTest {
+
+    @Test
+    public void decodes_nested_document() throws Exception {
+        Object value = decode("\uFEFF { \"a\": [1, -2.5, 1e3, 12345678901, true, null], \"b\": {\"c\": \"d\"}, \"e\": [] }");
+
+        assertTrue(value instanceof JSObject);
+        JSObject object = (JSObject) value;
+        JSONArray a = object.getJSONArray("a");
+        assertEquals(1, a.get(0));
+        assertEquals(-2.5, a.getDouble(1), 0);
+        assertEquals(1000.0, a.getDouble(2), 0);
+        assertEquals(12345678901L, a.get(3));
+        assertEquals(true, a.get(4));
+        assertEquals(JSONObject.NULL, a.get(5));
+        assertEquals("d", object.getJSONObject("b").getString("c"));
+        assertEquals(0, object.getJSONArray("e").length());
+    }
+
+    @Test
+    public void picks_result_type_from_first_token() throws Exception {
+        assertTrue(decode("[{\"a\":1}]") instanceof JSArray);
+        assertEquals("text", decode(" \"text\" "));
+        assertEquals(42, decode("42"));
+        assertEquals(JSONObject.NULL, decode("null"));
+    }
+
+    @Test
+    public void decodes_escapes_across_buffer_boundaries() throws Exception {
+        StringBuilder expected = new StringBuilder();
+        StringBuilder json = new StringBuilder("{\"s\":\"");
+        for (int i = 0; i < 5000; i++) {
+            expected.append("\u00E9\n\"\u263A");
+            json.append("\u00E9\\n\\\"\\u263a");
+        }
+        json.append("\"}");
+
+        JSObject object = (JSObject) decode(json.toString());
+
+        assertEquals(expected.toString(), object.getString("s"));
+    }
+
+    @Test
+    public void matches_string_parsing() throws Exception {
+        String json = "{\"id\":7,\"tags\":[\"x\",\"y\"],\"nested\":{\"ok\":false,\"ratio\":0.25}}";
+
+        assertEquals(new JSONObject(json).toString(), decode(json).toString());
+    }
+
+    @Test
+    public void rejects_malformed_documents() throws IOException {
+        String[] documents = { "", "{", "{\"a\" 1}", "[1,]", "[1 2]", "{'a':1}", "\"tab\there\"", "tru", "{} {}", "\"\\x\"" };
+        for (String document : documents) {
+            try {
+                decode(document);
+                fail("Expected a JSONException for " + document);
+            } catch (JSONException expected) {}
+        }
+    }
+
+    @Test
+    public void numbers_follow_the_json_grammar() throws Exception {
+        String[] invalid = { "01", "-01", "1.", "-.5", ".5", "+1", "1e", "1e+", "1.e5", "--1", "-", "1-2", "0x10", "1.5.2" };
+        for (String number : invalid) {
+            try {
+                decode("[" + number + "]");
+                fail("Expected a JSONException for " + number);
+            } catch (JSONException expected) {}
+        }
+
+        JSONArray valid = (JSONArray) decode("[0, -0, 10, -1.5, 0.25, 1e5, 2E-3, -3.5e+2, 12345678901]");
+        assertEquals(0, valid.get(0));
+        assertEquals(10, valid.get(2));
+        assertEquals(-1.5, valid.getDouble(3), 0);
+        assertEquals(100000.0, valid.getDouble(5), 0);
+        assertEquals(0.002, valid.getDouble(6), 0);
+        assertEquals(-350.0, valid.getDouble(7), 0);
+        assertEquals(12345678901L, valid.get(8));
+    }
+
+    @Test(expected = JSONException.class)
+    public void rejects_excessive_nesting() throws Exception {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i <= JsonStreamDecoder.MAX_DEPTH; i++) {
+            json.append('[');
+        }
+        decode(json.toString());
+    }
+
+    private static Object decode(String json) throws IOException, JSONException {
+        return JsonStreamDecoder.decode(new StringReader(json));
+    }
+}
@@ -0,0 +1,180 @@
+package com.getcapacitor.plugin.http;
+
+import com.getcapacitor.JSObject;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory engine that answers requests with a {@link Handler} instead of the network, so tests
+ * can exercise the request pipeline - option parsing, body encoding, response decoding - without
+ * sockets.
+ */
+class LoopbackTransport implements HttpTransport {
+
+    public static final String NAME = "loopback";
+
+    /**
+     * Produces the response for a request
+     */
+    public interface Handler {
+        Response handle(Request request) throws IOException;
+    }
+
+    /**
+     * A request as it would have been sent on the wire
+     */
+    public static final class Request {
+
+        public final String method;
+        public final URL url;
+        public final List<String[]> headers;
+        public final byte[] body;
+
+        Request(String method, URL url, List<String[]> headers, byte[] body) {
+            this.method = method;
+            this.url = url;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        /**
+         * Returns the first value of a request header
+         * @param name the case-insensitive header name
+         */
+        public String getHeader(String name) {
+            for (String[] header : headers) {
+                if (header[0].equalsIgnoreCase(name)) {
+                    return header[1];
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The response a handler answers a request with
+     */
+    public static final class Response {
+
+        final int status;
+        final Map<String, String> headers;
+        final byte[] body;
+
+        /**
+         * @param status the response status code
+         * @param headers the response headers, or null
+         * @param body the response body, or null for an empty body
+         */
+        public Response(int status, Map<String, String> headers, byte[] body) {
+            this.status = status;
+            this.headers = headers != null ? headers : Collections.<String, String>emptyMap();
+            this.body = body != null ? body : new byte[0];
+        }
+    }
+
+    private final Handler handler;
+
+    private long exchanges = 0;
+    private long bytesSent = 0;
+    private long bytesReceived = 0;
+
+    /**
+     * @param handler the handler answering every request sent with this engine
+     */
+    public LoopbackTransport(Handler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public HttpURLConnection open(URL url, Integer connectTimeout) {
+        return new LoopbackUrlConnection(url);
+    }
+
+    @Override
+    public void release(HttpURLConnection connection, boolean reusable) {
+        // nothing is held between exchanges
+    }
+
+    private Response exchange(Request request) throws IOException {
+        Response response = handler.handle(request);
+        synchronized (this) {
+            exchanges++;
+            bytesSent += request.body.length;
+            bytesReceived += response.body.length;
+        }
+        return response;
+    }
+
+    @Override
+    public synchronized JSObject getStats() {
+        JSObject stats = new JSObject();
+        stats.put("exchanges", exchanges);
+        stats.put("bytesSent", bytesSent);
+        stats.put("bytesReceived", bytesReceived);
+        return stats;
+    }
+
+    private class LoopbackUrlConnection extends TransportUrlConnection {
+
+        private List<String[]> requestHeaders;
+        private ByteArrayOutputStream requestBody;
+        private Response response;
+
+        LoopbackUrlConnection(URL url) {
+            super(url);
+        }
+
+        @Override
+        protected void startExchange(List<String[]> headers, boolean hasBody) {
+            requestHeaders = headers;
+            requestBody = new ByteArrayOutputStream();
+            response = null;
+        }
+
+        @Override
+        protected OutputStream openRequestBody() {
+            return requestBody;
+        }
+
+        @Override
+        protected ResponseHead readResponseHead() throws IOException {
+            if (response == null) {
+                response = exchange(new Request(method, url, requestHeaders, requestBody.toByteArray()));
+            }
+            List<String[]> headers = new ArrayList<>();
+            Map<String, String> responseHeaders = new LinkedHashMap<>(response.headers);
+            if (!responseHeaders.containsKey("Content-Length")) {
+                responseHeaders.put("Content-Length", String.valueOf(response.body.length));
+            }
+            for (Map.Entry<String, String> header : responseHeaders.entrySet()) {
+                headers.add(new String[] { header.getKey(), header.getValue() });
+            }
+            return new ResponseHead(response.status, "", "HTTP/1.1 " + response.status, headers);
+        }
+
+        @Override
+        protected InputStream openResponseBody() {
+            return new ByteArrayInputStream(response.body);
+        }
+
+        @Override
+        protected void abortExchange() {
+            // nothing to release
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class ProgressThrottleTest {
+
+    private final List<Long> events = new ArrayList<>();
+    private final HttpRequestHandler.ProgressEmitter recorder = new HttpRequestHandler.ProgressEmitter() {
+        @Override
+        public void emit(long bytes, long contentLength) {
+            events.add(bytes);
+        }
+    };
+
+    @Test
+    public void events_are_at_least_min_bytes_apart() {
+        ProgressThrottle throttle = new ProgressThrottle(recorder, 100, 0);
+
+        for (long bytes : new long[] { 40, 80, 120, 160, 200, 240, 250 }) {
+            throttle.update(bytes, 250);
+        }
+
+        assertEquals(Arrays.asList(120L, 240L), events);
+    }
+
+    @Test
+    public void events_are_at_least_the_interval_apart() {
+        ProgressThrottle throttle = new ProgressThrottle(recorder, 0, 60 * 60 * 1000);
+
+        for (long bytes = 1024; bytes <= 100 * 1024; bytes += 1024) {
+            throttle.update(bytes, 100 * 1024);
+        }
+
+        assertEquals(0, events.size());
+    }
+
+    @Test
+    public void final_progress_is_always_emitted_once() {
+        ProgressThrottle throttle = new ProgressThrottle(recorder, 100, 0);
+
+        throttle.update(150, 0);
+        throttle.update(170, 0);
+        throttle.finish(170, 0);
+        throttle.finish(170, 0);
+
+        assertEquals(Arrays.asList(150L, 170L), events);
+    }
+
+    @Test
+    public void final_progress_is_not_repeated() {
+        ProgressThrottle throttle = new ProgressThrottle(recorder, 100, 0);
+
+        throttle.update(200, 200);
+        throttle.finish(200, 200);
+
+        assertEquals(Arrays.asList(200L), events);
+    }
+
+    @Test
+    public void counters_go_beyond_two_gigabytes() {
+        final long[] reported = new long[2];
+        ProgressThrottle throttle = new ProgressThrottle(
+            new HttpRequestHandler.ProgressEmitter() {
+                @Override
+                public void emit(long bytes, long contentLength) {
+                    reported[0] = bytes;
+                    reported[1] = contentLength;
+                }
+            },
+            ProgressThrottle.DEFAULT_MIN_BYTES,
+            0
+        );
+
+        throttle.update(3000000000L, 5000000000L);
+
+        assertEquals(3000000000L, reported[0]);
+        assertEquals(5000000000L, reported[1]);
+    }
+
+    @Test
+    public void empty_transfer_still_reports_its_end() {
+        ProgressThrottle throttle = new ProgressThrottle(recorder, 100, 100);
+
+        throttle.finish(0, 0);
+
+        assertEquals(Arrays.asList(0L), events);
+    }
+}
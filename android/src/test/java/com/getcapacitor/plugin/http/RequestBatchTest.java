@@ -0,0 +1,210 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONArray;
+import org.junit.Test;
+
+public class RequestBatchTest {
+
+    @Test
+    public void results_are_returned_in_request_order() throws Exception {
+        ResultCall call = new ResultCall();
+        List<JSObject> items = items("/a", "/fail", "/c");
+
+        new RequestBatch(
+            "batch",
+            call,
+            items,
+            2,
+            new RequestBatch.Submitter() {
+                @Override
+                public void submit(PluginCall itemCall) {
+                    String url = itemCall.getString("url");
+                    if (url.endsWith("fail")) {
+                        itemCall.reject("UnknownHostException", (Exception) null);
+                    } else {
+                        itemCall.resolve(new JSObject().put("url", url));
+                    }
+                }
+            },
+            null
+        )
+            .start();
+
+        JSObject result = call.await();
+        assertEquals(3, (int) result.getInteger("total"));
+        assertEquals(2, (int) result.getInteger("succeeded"));
+        assertEquals(1, (int) result.getInteger("failed"));
+        JSONArray results = result.getJSONArray("results");
+        assertEquals("https://example.com/a", results.getJSONObject(0).getJSONObject("response").getString("url"));
+        assertFalse(results.getJSONObject(1).getBoolean("ok"));
+        assertEquals("UnknownHostException", results.getJSONObject(1).getJSONObject("error").getString("message"));
+        assertEquals(2, results.getJSONObject(2).getInt("index"));
+    }
+
+    @Test
+    public void concurrency_is_bounded_and_items_are_emitted() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<Integer> emitted = new ArrayList<>();
+        ResultCall call = new ResultCall();
+
+        new RequestBatch(
+            "batch",
+            call,
+            items("/1", "/2", "/3", "/4", "/5", "/6", "/7"),
+            3,
+            new RequestBatch.Submitter() {
+                @Override
+                public void submit(final PluginCall itemCall) {
+                    synchronized (maxRunning) {
+                        maxRunning.set(Math.max(maxRunning.get(), running.incrementAndGet()));
+                    }
+                    executor.execute(
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    Thread.sleep(10);
+                                } catch (InterruptedException ignored) {}
+                                running.decrementAndGet();
+                                itemCall.resolve(new JSObject());
+                            }
+                        }
+                    );
+                }
+            },
+            new RequestBatch.Listener() {
+                @Override
+                public void onItem(JSObject item) {
+                    synchronized (emitted) {
+                        emitted.add(item.getInteger("index"));
+                    }
+                }
+            }
+        )
+            .start();
+
+        JSObject result = call.await();
+        executor.shutdown();
+        assertEquals(7, (int) result.getInteger("succeeded"));
+        assertFalse(result.has("results"));
+        assertEquals(7, emitted.size());
+        assertTrue(maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void cancelling_the_tag_rejects_requests_not_sent_yet() throws Exception {
+        ResultCall call = new ResultCall();
+        List<JSObject> items = items("/1", "/2", "/3", "/4");
+        for (JSObject item : items) {
+            item.put("tag", "sync");
+        }
+        final List<PluginCall> sent = new ArrayList<>();
+
+        RequestBatch batch = new RequestBatch(
+            "batch",
+            call,
+            items,
+            2,
+            new RequestBatch.Submitter() {
+                @Override
+                public void submit(PluginCall itemCall) {
+                    sent.add(itemCall);
+                }
+            },
+            null
+        );
+        batch.start();
+        assertEquals(2, sent.size());
+
+        assertEquals(0, batch.cancel("tag", "other"));
+        assertEquals(2, batch.cancel("tag", "sync"));
+        // the sent requests are cancelled through the registry, which rejects their calls
+        sent.get(0).reject(RequestRegistry.CANCELLED_MESSAGE, RequestRegistry.CANCELLED_CODE);
+        sent.get(1).resolve(new JSObject());
+
+        JSObject result = call.await();
+        assertEquals(2, sent.size());
+        assertEquals(1, (int) result.getInteger("succeeded"));
+        JSONArray results = result.getJSONArray("results");
+        for (int i = 2; i < 4; i++) {
+            assertFalse(results.getJSONObject(i).getBoolean("ok"));
+            assertEquals(RequestRegistry.CANCELLED_CODE, results.getJSONObject(i).getJSONObject("error").getString("code"));
+        }
+    }
+
+    @Test
+    public void requests_that_settle_right_away_are_submitted_without_nesting() throws Exception {
+        ResultCall call = new ResultCall();
+        String[] paths = new String[20000];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = "/" + i;
+        }
+        final AtomicInteger depth = new AtomicInteger();
+        final AtomicInteger maxDepth = new AtomicInteger();
+
+        new RequestBatch(
+            "batch",
+            call,
+            items(paths),
+            1,
+            new RequestBatch.Submitter() {
+                @Override
+                public void submit(PluginCall itemCall) {
+                    maxDepth.set(Math.max(maxDepth.get(), depth.incrementAndGet()));
+                    // like a memory cache hit, which resolves before submit returns
+                    itemCall.resolve(new JSObject());
+                    depth.decrementAndGet();
+                }
+            },
+            null
+        )
+            .start();
+
+        assertEquals(paths.length, (int) call.await().getInteger("succeeded"));
+        assertEquals(1, maxDepth.get());
+    }
+
+    private static List<JSObject> items(String... paths) {
+        List<JSObject> items = new ArrayList<>();
+        for (String path : paths) {
+            items.add(new JSObject().put("url", "https://example.com" + path));
+        }
+        return items;
+    }
+
+    private static class ResultCall extends PluginCall {
+
+        private final CountDownLatch settled = new CountDownLatch(1);
+        private volatile JSObject result;
+
+        ResultCall() {
+            super(null, "Http", "cb", "requestBatch", new JSObject());
+        }
+
+        @Override
+        public void resolve(JSObject data) {
+            result = data;
+            settled.countDown();
+        }
+
+        JSObject await() throws InterruptedException {
+            assertTrue(settled.await(5, TimeUnit.SECONDS));
+            return result;
+        }
+    }
+}
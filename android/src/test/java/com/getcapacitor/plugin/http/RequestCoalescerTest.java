@@ -0,0 +1,143 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.io.File;
+import java.util.List;
+import org.junit.Test;
+
+public class RequestCoalescerTest {
+
+    private final RequestCoalescer coalescer = new RequestCoalescer(true, RequestCoalescer.DEFAULT_KEY_HEADERS);
+    private final RequestRegistry registry = new RequestRegistry();
+
+    @Test
+    public void key_ignores_param_order_and_unselected_headers() {
+        PluginCall first = get("https://example.com/items", "a", "1", "b", "2");
+        first.getData().put("headers", new JSObject().put("Accept", "application/json").put("X-Trace-Id", "one"));
+        PluginCall second = get("https://example.com/items", "b", "2", "a", "1");
+        second.getData().put("headers", new JSObject().put("accept", "application/json").put("X-Trace-Id", "two"));
+
+        assertEquals(coalescer.getKey(first, "GET"), coalescer.getKey(second, "GET"));
+    }
+
+    @Test
+    public void key_differs_by_selected_header_and_response_type() {
+        PluginCall plain = get("https://example.com/items");
+        PluginCall authorized = get("https://example.com/items");
+        authorized.getData().put("headers", new JSObject().put("authorization", "Bearer x"));
+        PluginCall blob = get("https://example.com/items");
+        blob.getData().put("responseType", "blob");
+
+        String key = coalescer.getKey(plain, "GET");
+        assertNotEquals(key, coalescer.getKey(authorized, "GET"));
+        assertNotEquals(key, coalescer.getKey(blob, "GET"));
+    }
+
+    @Test
+    public void key_is_null_when_not_coalescable() {
+        PluginCall optedOut = get("https://example.com/items");
+        optedOut.getData().put("coalesce", false);
+
+        assertNull(coalescer.getKey(get("https://example.com/items"), "POST"));
+        assertNull(coalescer.getKey(optedOut, "GET"));
+        assertNull(new RequestCoalescer().getKey(get("https://example.com/items"), "GET"));
+    }
+
+    @Test
+    public void key_is_null_when_the_body_may_be_returned_as_a_file() {
+        PluginCall file = get("https://example.com/items");
+        file.getData().put("responseType", "file");
+        PluginCall spilled = get("https://example.com/items");
+        spilled.getData().put("spillThreshold", 1024);
+
+        assertNull(coalescer.getKey(file, "GET"));
+        assertNull(coalescer.getKey(spilled, "GET"));
+
+        File directory = new File(System.getProperty("java.io.tmpdir"), "http-responses");
+        HttpRequestHandler.setResponseSpill(directory, 0);
+        try {
+            assertNull(coalescer.getKey(get("https://example.com/items"), "GET"));
+            PluginCall inMemory = get("https://example.com/items");
+            inMemory.getData().put("spillThreshold", -1);
+            assertNotNull(coalescer.getKey(inMemory, "GET"));
+        } finally {
+            HttpRequestHandler.setResponseSpill(directory, -1);
+        }
+    }
+
+    @Test
+    public void followers_join_the_leaders_flight() throws Exception {
+        String key = coalescer.getKey(get("https://example.com/items"), "GET");
+        RequestRegistry.Entry leader = registry.register(get("https://example.com/items"), "request");
+        RequestRegistry.Entry follower = registry.register(get("https://example.com/items"), "request");
+        RequestRegistry.Entry cancelled = registry.register(get("https://example.com/items"), "request");
+
+        assertFalse(coalescer.join(key, leader));
+        assertTrue(coalescer.join(key, follower));
+        assertTrue(coalescer.join(key, cancelled));
+        assertTrue(coalescer.leave(key, cancelled));
+
+        List<RequestRegistry.Entry> followers = coalescer.complete(key);
+        assertEquals(1, followers.size());
+        assertEquals(follower, followers.get(0));
+        assertFalse(coalescer.join(key, follower));
+
+        JSObject stats = coalescer.getStats();
+        assertEquals(2L, stats.getLong("leaders"));
+        assertEquals(2L, stats.getLong("coalesced"));
+        assertEquals(1L, stats.getLong("detached"));
+    }
+
+    @Test
+    public void first_follower_takes_over_a_flight_whose_leader_was_cancelled() throws Exception {
+        String key = coalescer.getKey(get("https://example.com/items"), "GET");
+        RequestRegistry.Entry leader = registry.register(get("https://example.com/items"), "request");
+        RequestRegistry.Entry first = registry.register(get("https://example.com/items"), "request");
+        RequestRegistry.Entry second = registry.register(get("https://example.com/items"), "request");
+        coalescer.join(key, leader);
+        coalescer.join(key, first);
+        coalescer.join(key, second);
+
+        assertEquals(first, coalescer.promote(key));
+        // the flight goes on under the new leader, so new requests still join it
+        RequestRegistry.Entry late = registry.register(get("https://example.com/items"), "request");
+        assertTrue(coalescer.join(key, late));
+        assertFalse(coalescer.leave(key, first));
+
+        List<RequestRegistry.Entry> followers = coalescer.complete(key);
+        assertEquals(2, followers.size());
+        assertEquals(second, followers.get(0));
+        assertEquals(late, followers.get(1));
+        assertEquals(1L, coalescer.getStats().getLong("promoted"));
+    }
+
+    @Test
+    public void flight_ends_when_a_cancelled_leader_has_no_followers() {
+        String key = coalescer.getKey(get("https://example.com/items"), "GET");
+        RequestRegistry.Entry leader = registry.register(get("https://example.com/items"), "request");
+        coalescer.join(key, leader);
+
+        assertNull(coalescer.promote(key));
+        assertFalse(coalescer.join(key, registry.register(get("https://example.com/items"), "request")));
+    }
+
+    private static PluginCall get(String url, String... params) {
+        JSObject query = new JSObject();
+        for (int i = 0; i < params.length; i += 2) {
+            query.put(params[i], params[i + 1]);
+        }
+        JSObject data = new JSObject();
+        data.put("url", url);
+        data.put("params", query);
+        data.put("headers", new JSObject().put("Accept", "application/json"));
+        return new PluginCall(null, "Http", "cb", "get", data);
+    }
+}
@@ -0,0 +1,120 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class RequestDispatcherTest {
+
+    @Test
+    public void enqueue_respects_global_limit() throws InterruptedException {
+        RequestDispatcher dispatcher = new RequestDispatcher(2, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(5);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            dispatcher.enqueue("host" + i, 0, blockingTask(release, done, running, maxRunning));
+        }
+
+        assertEquals(2, dispatcher.runningCallsCount());
+        assertEquals(3, dispatcher.queuedCallsCount());
+        awaitRunning(running, 2);
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void enqueue_respects_per_host_limit() throws InterruptedException {
+        RequestDispatcher dispatcher = new RequestDispatcher(10, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        dispatcher.enqueue("a.example.com", 0, blockingTask(release, done, running, maxRunning));
+        dispatcher.enqueue("a.example.com", 0, blockingTask(release, done, running, maxRunning));
+        dispatcher.enqueue("b.example.com", 0, blockingTask(release, done, running, maxRunning));
+
+        assertEquals(2, dispatcher.runningCallsCount());
+        assertEquals(1, dispatcher.queuedCallsCount());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void queued_calls_start_by_priority_then_fifo() throws InterruptedException {
+        RequestDispatcher dispatcher = new RequestDispatcher(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(5);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        dispatcher.enqueue("host", 0, blockingTask(release, done, new AtomicInteger(), new AtomicInteger()));
+        dispatcher.enqueue("host", 0, recordingTask(order, "low-1", done));
+        dispatcher.enqueue("host", 5, recordingTask(order, "high", done));
+        dispatcher.enqueue("host", 0, recordingTask(order, "low-2", done));
+        RequestDispatcher.Call cancelled = dispatcher.enqueue("host", 0, recordingTask(order, "cancelled", done));
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        done.countDown();
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("high", "low-1", "low-2"), order);
+    }
+
+    private static void awaitRunning(AtomicInteger running, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (running.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static Runnable blockingTask(
+        final CountDownLatch release,
+        final CountDownLatch done,
+        final AtomicInteger running,
+        final AtomicInteger maxRunning
+    ) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                int current = running.incrementAndGet();
+                int max = maxRunning.get();
+                while (current > max && !maxRunning.compareAndSet(max, current)) {
+                    max = maxRunning.get();
+                }
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {} finally {
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            }
+        };
+    }
+
+    private static Runnable recordingTask(final List<String> order, final String name, final CountDownLatch done) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+                done.countDown();
+            }
+        };
+    }
+}
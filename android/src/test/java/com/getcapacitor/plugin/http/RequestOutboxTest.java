@@ -0,0 +1,321 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RequestOutboxTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private final List<PluginCall> submitted = new ArrayList<>();
+    private final List<String> events = new ArrayList<>();
+    private final List<Runnable> retries = new ArrayList<>();
+    private final List<Long> retryDelays = new ArrayList<>();
+    private RequestRegistry.Entry posted;
+
+    @Before
+    public void setUp() {
+        directory = new File(folder.getRoot(), "outbox");
+    }
+
+    @Test
+    public void entries_survive_a_restart_in_order() throws Exception {
+        RequestOutbox outbox = outbox(1, 3);
+        outbox.add("POST", options("https://example.com/a"));
+        outbox.add("DELETE", options("https://example.com/b"));
+
+        JSArray entries = outbox(1, 3).list();
+
+        assertEquals(2, entries.length());
+        assertEquals("https://example.com/a", entries.getJSONObject(0).getString("url"));
+        assertEquals("DELETE", entries.getJSONObject(1).getString("method"));
+        assertEquals(Arrays.asList("queued", "queued"), events);
+    }
+
+    @Test
+    public void replay_sends_entries_in_order_with_an_idempotency_key() throws Exception {
+        RequestOutbox outbox = outbox(1, 3);
+        String first = outbox.add("POST", options("https://example.com/a"));
+        outbox.add("PUT", options("https://example.com/b"));
+
+        outbox.replay();
+        settle(0, 201);
+        settle(1, 200);
+
+        assertEquals("https://example.com/a", submitted.get(0).getString("url"));
+        assertEquals("POST", submitted.get(0).getString("method"));
+        assertEquals(first, submitted.get(0).getObject("headers").getString("Idempotency-Key"));
+        assertNull(submitted.get(0).getString("queueWhenOffline"));
+        assertEquals("https://example.com/b", submitted.get(1).getString("url"));
+        assertEquals(0, outbox.list().length());
+        assertEquals(Arrays.asList("queued", "queued", "sending", "sent", "sending", "sent"), events);
+    }
+
+    @Test
+    public void network_failure_stops_the_replay_and_keeps_the_entry() throws Exception {
+        RequestOutbox outbox = outbox(1, 3);
+        outbox.add("POST", options("https://example.com/a"));
+        outbox.add("POST", options("https://example.com/b"));
+
+        outbox.replay();
+        submitted.get(0).reject("ConnectException", new ConnectException("Network is unreachable"));
+
+        assertEquals(1, submitted.size());
+        JSArray entries = outbox(1, 3).list();
+        assertEquals(2, entries.length());
+        assertEquals(1, entries.getJSONObject(0).getInt("attempts"));
+
+        // the next replay starts over with the same entry
+        outbox.replay();
+        assertEquals(2, submitted.size());
+        assertEquals("https://example.com/a", submitted.get(1).getString("url"));
+    }
+
+    @Test
+    public void server_errors_are_retried_and_client_errors_dropped() throws Exception {
+        RequestOutbox outbox = outbox(1, 3);
+        outbox.add("POST", options("https://example.com/a"));
+        outbox.add("POST", options("https://example.com/b"));
+
+        outbox.replay();
+        settle(0, 503);
+        assertEquals(1, submitted.size());
+
+        outbox.replay();
+        settle(1, 400);
+        settle(2, 200);
+
+        assertEquals(0, outbox.list().length());
+        assertEquals("retrying", events.get(3));
+        assertEquals("failed", events.get(5));
+        JSObject stats = outbox.getStats();
+        assertEquals(1L, stats.getLong("retried"));
+        assertEquals(1L, stats.getLong("failed"));
+        assertEquals(1L, stats.getLong("sent"));
+    }
+
+    @Test
+    public void entry_is_given_up_after_max_attempts() throws Exception {
+        RequestOutbox outbox = outbox(1, 2);
+        outbox.add("POST", options("https://example.com/a"));
+
+        outbox.replay();
+        settle(0, 500);
+        outbox.replay();
+        settle(1, 500);
+
+        assertEquals(0, outbox.list().length());
+        assertEquals("failed", events.get(events.size() - 1));
+    }
+
+    @Test
+    public void stopped_replay_is_retried_with_a_delay_that_doubles() throws Exception {
+        RequestOutbox outbox = outbox(1, 5);
+        outbox.add("POST", options("https://example.com/a"));
+        outbox.add("POST", options("https://example.com/b"));
+        assertEquals(Arrays.asList(1000L), retryDelays);
+
+        retries.get(0).run();
+        submitted.get(0).reject("ConnectException", new ConnectException("Connection refused"));
+        retries.get(1).run();
+        settle(1, 500);
+        retries.get(2).run();
+        settle(2, 200);
+        settle(3, 200);
+
+        assertEquals(Arrays.asList(1000L, 1000L, 2000L), retryDelays);
+        assertEquals(4, submitted.size());
+        assertEquals(0, outbox.list().length());
+    }
+
+    @Test
+    public void retry_waits_as_long_as_retry_after_asks() throws Exception {
+        RequestOutbox outbox = outbox(1, 5);
+        outbox.add("POST", options("https://example.com/a"));
+
+        outbox.replay();
+        settle(0, 429, "120");
+        outbox.replay();
+        settle(1, 503, "Thu, 01 Jan 1970 00:01:00 GMT");
+
+        assertEquals(120000L, (long) retryDelays.get(1));
+        assertEquals(60000L - 1000L, RequestOutbox.getRetryDelay(2, response(503, "Thu, 01 Jan 1970 00:01:00 GMT"), 1000L));
+        // other statuses don't get to choose
+        assertEquals(2000L, RequestOutbox.getRetryDelay(2, response(500, "120"), 0));
+        assertEquals(RequestOutbox.MAX_RETRY_DELAY_MS, RequestOutbox.getRetryDelay(40, null, 0));
+    }
+
+    @Test
+    public void replay_started_sooner_overtakes_the_scheduled_one() throws Exception {
+        RequestOutbox outbox = outbox(1, 5);
+        outbox.add("POST", options("https://example.com/a"));
+
+        outbox.replay();
+        settle(0, 200);
+        retries.get(0).run();
+
+        assertEquals(1, submitted.size());
+    }
+
+    @Test
+    public void replay_keeps_at_most_concurrency_entries_in_flight() throws Exception {
+        RequestOutbox outbox = outbox(2, 3);
+        for (String path : Arrays.asList("a", "b", "c")) {
+            outbox.add("POST", options("https://example.com/" + path));
+        }
+
+        outbox.replay();
+        assertEquals(2, submitted.size());
+
+        settle(1, 200);
+        assertEquals(3, submitted.size());
+        assertEquals("https://example.com/c", submitted.get(2).getString("url"));
+    }
+
+    @Test
+    public void idempotency_key_is_attached_before_the_first_attempt() throws Exception {
+        JSObject options = options("https://example.com/a");
+
+        String id = RequestOutbox.attachIdempotencyKey(options);
+        String queued = outbox(1, 3).add(id, "POST", options);
+
+        assertEquals(id, options.getJSObject("headers").getString("Idempotency-Key"));
+        assertEquals(id, queued);
+        outbox(1, 3).replay();
+        assertEquals(id, submitted.get(0).getObject("headers").getString("Idempotency-Key"));
+    }
+
+    @Test
+    public void only_requests_that_never_reached_the_server_are_queued() throws Exception {
+        HttpRequestHandler.setRequestRegistry(new RequestRegistry());
+        final ServerSocket server = new ServerSocket(0);
+        Thread silent = new Thread() {
+            @Override
+            public void run() {
+                // read the request and never answer it
+                try (Socket socket = server.accept()) {
+                    InputStream in = socket.getInputStream();
+                    while (in.read() != -1) {}
+                } catch (IOException ignored) {}
+            }
+        };
+        silent.setDaemon(true);
+        silent.start();
+
+        Exception timedOut = post("http://127.0.0.1:" + server.getLocalPort() + "/a");
+        assertTrue(timedOut instanceof SocketTimeoutException);
+        assertTrue(posted.isSent());
+        assertFalse(RequestOutbox.failedBeforeSending(timedOut, posted.isSent()));
+        server.close();
+
+        Exception refused = post("http://127.0.0.1:" + server.getLocalPort() + "/a");
+        assertTrue(refused instanceof ConnectException);
+        assertTrue(RequestOutbox.failedBeforeSending(refused, posted.isSent()));
+
+        assertTrue(RequestOutbox.failedBeforeSending(new IOException("Broken pipe"), false));
+        assertFalse(RequestOutbox.failedBeforeSending(new RequestCancelledException(), false));
+        HttpRequestHandler.setRequestRegistry(new RequestRegistry());
+    }
+
+    /**
+     * Sends a POST the way the plugin does, keeping its registry entry in {@link #posted}
+     * @return how the request failed
+     */
+    private Exception post(String url) {
+        JSObject options = options(url);
+        options.put("method", "POST");
+        options.put("readTimeout", 200);
+        options.put("connectTimeout", 2000);
+        options.put("params", new JSObject());
+        PluginCall call = new PluginCall(null, "Http", "cb", "request", options);
+        RequestRegistry registry = HttpRequestHandler.getRequestRegistry();
+        posted = registry.register(call, "request");
+        registry.start(posted);
+        try {
+            HttpRequestHandler.request(call, "POST");
+            return null;
+        } catch (Exception e) {
+            return e;
+        } finally {
+            registry.finished(posted);
+        }
+    }
+
+    private RequestOutbox outbox(int concurrency, int maxAttempts) {
+        return new RequestOutbox(
+            directory,
+            concurrency,
+            maxAttempts,
+            new RequestOutbox.Submitter() {
+                @Override
+                public void submit(PluginCall entryCall) {
+                    submitted.add(entryCall);
+                }
+            },
+            new RequestOutbox.Scheduler() {
+                @Override
+                public void schedule(Runnable replay, long delayMs) {
+                    retries.add(replay);
+                    retryDelays.add(delayMs);
+                }
+            },
+            new RequestOutbox.Listener() {
+                @Override
+                public void onEntry(JSObject event) {
+                    events.add(event.getString("status"));
+                }
+            }
+        );
+    }
+
+    private void settle(int index, int status) {
+        settle(index, status, null);
+    }
+
+    private void settle(int index, int status, String retryAfter) {
+        submitted.get(index).resolve(response(status, retryAfter));
+    }
+
+    private static JSObject response(int status, String retryAfter) {
+        JSObject headers = new JSObject();
+        if (retryAfter != null) {
+            headers.put("retry-after", retryAfter);
+        }
+        JSObject response = new JSObject();
+        response.put("status", status);
+        response.put("headers", headers);
+        response.put("data", "");
+        return response;
+    }
+
+    private static JSObject options(String url) {
+        JSObject options = new JSObject();
+        options.put("url", url);
+        options.put("data", "{}");
+        options.put("queueWhenOffline", true);
+        options.put("headers", new JSObject());
+        return options;
+    }
+}
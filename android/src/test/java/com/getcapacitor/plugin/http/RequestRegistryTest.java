@@ -0,0 +1,148 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RequestRegistryTest {
+
+    private RequestRegistry registry;
+
+    @Before
+    public void setUp() {
+        registry = new RequestRegistry();
+        HttpRequestHandler.setRequestRegistry(registry);
+    }
+
+    @After
+    public void tearDown() {
+        HttpRequestHandler.setRequestRegistry(new RequestRegistry());
+    }
+
+    @Test
+    public void request_cancelled_before_it_waits_on_anything_is_dropped_once_it_does() throws Exception {
+        RecordingCall call = new RecordingCall("early", null);
+        RequestRegistry.Entry entry = registry.register(call, "request");
+
+        assertTrue(registry.cancel("early"));
+        assertNull(call.rejectedCode);
+
+        final AtomicReference<Boolean> dropped = new AtomicReference<>(false);
+        registry.setPending(
+            entry,
+            new RequestRegistry.Pending() {
+                @Override
+                public boolean cancel() {
+                    dropped.set(true);
+                    return true;
+                }
+            }
+        );
+
+        assertTrue(dropped.get());
+        assertEquals(RequestRegistry.CANCELLED_CODE, call.rejectedCode);
+        assertEquals(0, registry.getActiveRequests().getInt("count"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void register_refuses_duplicate_request_id() {
+        registry.register(new RecordingCall("same", null), "request");
+        registry.register(new RecordingCall("same", null), "request");
+    }
+
+    @Test
+    public void cancel_disconnects_running_request() throws Exception {
+        final ServerSocket server = new ServerSocket(0);
+        final Socket[] accepted = new Socket[1];
+        Thread acceptor = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    // read the request head and never answer, so the client blocks reading the response
+                    Socket socket = server.accept();
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                    String line;
+                    while ((line = in.readLine()) != null && !line.isEmpty()) {}
+                    accepted[0] = socket;
+                } catch (IOException ignored) {}
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        final RecordingCall call = new RecordingCall("slow", null);
+        call.getData().put("url", "http://127.0.0.1:" + server.getLocalPort() + "/slow");
+        call.getData().put("readTimeout", 30000);
+        call.getData().put("headers", new JSObject());
+        call.getData().put("params", new JSObject());
+        final RequestRegistry.Entry entry = registry.register(call, "request");
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread worker = new Thread() {
+            @Override
+            public void run() {
+                assertTrue(registry.start(entry));
+                try {
+                    HttpRequestHandler.request(call, "GET");
+                } catch (Exception e) {
+                    failure.set(e);
+                } finally {
+                    registry.finished(entry);
+                    done.countDown();
+                }
+            }
+        };
+        worker.start();
+
+        acceptor.join(5000);
+        assertNotNull(accepted[0]);
+        assertEquals(1, registry.getActiveRequests().getInt("running"));
+
+        assertTrue(registry.cancel("slow"));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        // the exception type depends on the platform's HttpURLConnection; callers go by isCancelled()
+        assertNotNull(failure.get());
+        assertTrue(entry.isCancelled());
+        JSObject stats = registry.getStats();
+        assertEquals(0, stats.getInt("active"));
+        assertEquals(1L, stats.getLong("cancelled"));
+        accepted[0].close();
+        server.close();
+    }
+
+    private static class RecordingCall extends PluginCall {
+
+        volatile String rejectedCode;
+
+        RecordingCall(String requestId, String tag) {
+            super(null, "Http", "cb", "request", new JSObject());
+            getData().put("requestId", requestId);
+            if (tag != null) {
+                getData().put("tag", tag);
+            }
+        }
+
+        @Override
+        public void reject(String msg, String code) {
+            rejectedCode = code;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+import org.junit.Test;
+
+public class ResponseMemoryCacheTest {
+
+    private static final long MINUTE = 60000;
+
+    @Test
+    public void only_get_requests_with_max_age_are_kept() {
+        ResponseMemoryCache cache = new ResponseMemoryCache(1024 * 1024);
+
+        assertNotNull(cache.getKey(call("https://example.com/config", 1000, null, null), "GET"));
+        assertNull(cache.getKey(call("https://example.com/config", 0, null, null), "GET"));
+        assertNull(cache.getKey(call("https://example.com/config", 1000, null, null), "POST"));
+        assertNull(cache.getKey(call("https://example.com/config", 1000, "file", null), "GET"));
+        assertNull(new ResponseMemoryCache().getKey(call("https://example.com/config", 1000, null, null), "GET"));
+    }
+
+    @Test
+    public void key_includes_every_header() {
+        ResponseMemoryCache cache = new ResponseMemoryCache(1024 * 1024);
+
+        String alice = cache.getKey(call("https://example.com/flags", 1000, null, "alice"), "GET");
+        String bob = cache.getKey(call("https://example.com/flags", 1000, null, "bob"), "GET");
+
+        assertNotEquals(alice, bob);
+    }
+
+    @Test
+    public void fresh_response_is_returned_as_a_copy() throws Exception {
+        ResponseMemoryCache cache = new ResponseMemoryCache(1024 * 1024);
+        cache.put("config", "https://example.com/config", response(200, "{\"theme\":\"dark\"}"));
+
+        ResponseMemoryCache.Hit first = cache.get("config", MINUTE, 0);
+        first.response.put("data", "changed by the caller");
+        ResponseMemoryCache.Hit second = cache.get("config", MINUTE, 0);
+
+        assertFalse(second.stale);
+        assertEquals("memory", second.response.getString("cache"));
+        assertEquals("{\"theme\":\"dark\"}", second.response.getString("data"));
+        assertEquals(2L, cache.getStats().getLong("hits"));
+    }
+
+    @Test
+    public void stale_response_is_returned_within_stale_while_revalidate() {
+        ResponseMemoryCache cache = new ResponseMemoryCache(1024 * 1024);
+        cache.put("config", "https://example.com/config", response(200, "v1"));
+
+        ResponseMemoryCache.Hit stale = cache.get("config", 0, MINUTE);
+
+        assertTrue(stale.stale);
+        assertEquals("stale", stale.response.getString("cache"));
+        assertNull(cache.get("config", 0, 0));
+    }
+
+    @Test
+    public void one_refresh_runs_at_a_time() {
+        ResponseMemoryCache cache = new ResponseMemoryCache(1024 * 1024);
+
+        assertTrue(cache.startRefresh("config"));
+        assertFalse(cache.startRefresh("config"));
+        cache.refreshed("config");
+        assertTrue(cache.startRefresh("config"));
+    }
+
+    @Test
+    public void failed_responses_are_not_kept() {
+        ResponseMemoryCache cache = new ResponseMemoryCache(1024 * 1024);
+        JSObject error = response(500, "oops");
+        error.put("error", true);
+
+        cache.put("config", "https://example.com/config", error);
+
+        assertNull(cache.get("config", MINUTE, 0));
+    }
+
+    @Test
+    public void least_recently_used_response_is_dropped_when_full() throws Exception {
+        ResponseMemoryCache cache = new ResponseMemoryCache(1000);
+        String body = new String(new char[150]).replace('\0', 'x');
+        cache.put("a", "https://example.com/a", response(200, body));
+        cache.put("b", "https://example.com/b", response(200, body));
+        cache.get("a", MINUTE, 0);
+
+        cache.put("c", "https://example.com/c", response(200, body));
+
+        assertNotNull(cache.get("a", MINUTE, 0));
+        assertNull(cache.get("b", MINUTE, 0));
+        assertNotNull(cache.get("c", MINUTE, 0));
+        assertEquals(1L, cache.getStats().getLong("evictions"));
+    }
+
+    @Test
+    public void invalidate_drops_responses_by_url_prefix() {
+        ResponseMemoryCache cache = new ResponseMemoryCache(1024 * 1024);
+        cache.put("flags", "https://example.com/api/flags", response(200, "1"));
+        cache.put("catalog", "https://example.com/api/catalog?page=2", response(200, "2"));
+        cache.put("other", "https://cdn.example.com/api/catalog", response(200, "3"));
+
+        assertEquals(2, cache.invalidate("https://example.com/api/"));
+
+        assertNull(cache.get("flags", MINUTE, 0));
+        assertNull(cache.get("catalog", MINUTE, 0));
+        assertNotNull(cache.get("other", MINUTE, 0));
+    }
+
+    private static JSObject response(int status, String data) {
+        JSObject response = new JSObject();
+        response.put("status", status);
+        response.put("headers", new JSObject());
+        response.put("data", data);
+        return response;
+    }
+
+    private static PluginCall call(String url, int maxAge, String responseType, String user) {
+        JSObject data = new JSObject();
+        data.put("url", url);
+        data.put("maxAge", maxAge);
+        if (responseType != null) {
+            data.put("responseType", responseType);
+        }
+        JSObject headers = new JSObject();
+        if (user != null) {
+            headers.put("X-User", user);
+        }
+        data.put("headers", headers);
+        return new PluginCall(null, "Http", "1", "get", data);
+    }
+}
@@ -0,0 +1,202 @@
+package com.getcapacitor.plugin.http;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.getcapacitor.JSObject;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+public class ResponseStreamerTest {
+
+    @Test
+    public void text_body_is_split_into_full_chunks() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ResponseStreamer streamer = new ResponseStreamer("text", 4, 60000, 0, listener);
+
+        ResponseStreamer.StreamedBody body = streamer.stream(stream("h\u00e9llo world"), "text/plain; charset=utf-8", false);
+
+        assertEquals(3, body.chunks);
+        assertEquals(12, body.size);
+        assertEquals("h\u00e9ll", listener.chunks.get(0).getString("data"));
+        assertEquals("o wo", listener.chunks.get(1).getString("data"));
+        assertEquals("rld", listener.chunks.get(2).getString("data"));
+        for (int i = 0; i < 3; i++) {
+            assertEquals("text", listener.chunks.get(i).getString("requestId"));
+            assertEquals(i, listener.chunks.get(i).getInt("index"));
+            assertEquals(ResponseStreamer.ENCODING_TEXT, listener.chunks.get(i).getString("encoding"));
+        }
+    }
+
+    @Test
+    public void binary_body_is_emitted_as_base64() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ResponseStreamer streamer = new ResponseStreamer("binary", 3, 60000, 0, listener);
+
+        ResponseStreamer.StreamedBody body = streamer.stream(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4 }), null, true);
+
+        assertEquals(2, body.chunks);
+        assertEquals("AQID\n", listener.chunks.get(0).getString("data"));
+        assertEquals("BA==\n", listener.chunks.get(1).getString("data"));
+        assertEquals(ResponseStreamer.ENCODING_BASE64, listener.chunks.get(1).getString("encoding"));
+    }
+
+    @Test
+    public void partial_chunk_is_emitted_once_window_has_passed() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        ResponseStreamer streamer = new ResponseStreamer("window", 1024, 0, 0, listener);
+
+        streamer.stream(stream("abc"), null, false);
+
+        assertEquals(1, listener.chunks.size());
+        assertEquals("abc", listener.chunks.get(0).getString("data"));
+    }
+
+    @Test
+    public void partial_chunk_is_emitted_while_the_next_read_is_blocked() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        final ResponseStreamer streamer = new ResponseStreamer("drip", 1024, 50, 0, listener);
+        final CountDownLatch more = new CountDownLatch(1);
+        final InputStream drip = new InputStream() {
+            private int position = 0;
+
+            @Override
+            public int read() throws IOException {
+                if (position == 1) {
+                    // the second byte takes a while to arrive
+                    try {
+                        more.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return position < 2 ? "ab".charAt(position++) : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int c = read();
+                if (c == -1) {
+                    return -1;
+                }
+                b[off] = (byte) c;
+                return 1;
+            }
+        };
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    streamer.stream(drip, null, true);
+                } catch (Exception ignored) {} finally {
+                    done.countDown();
+                }
+            }
+        };
+        reader.start();
+
+        assertTrue(listener.awaitChunks(1));
+        assertEquals("YQ==\n", listener.chunks.get(0).getString("data"));
+        assertEquals(1, done.getCount());
+
+        more.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, listener.size());
+        assertEquals("Yg==\n", listener.chunks.get(1).getString("data"));
+    }
+
+    @Test
+    public void reading_pauses_until_chunks_are_acknowledged() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        final ResponseStreamer streamer = new ResponseStreamer("paced", 1, 60000, 2, listener);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    streamer.stream(stream("abcd"), null, false);
+                } catch (Exception ignored) {} finally {
+                    done.countDown();
+                }
+            }
+        };
+        reader.start();
+
+        assertTrue(listener.awaitChunks(2));
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(2, listener.size());
+
+        streamer.acknowledge(0);
+        assertTrue(listener.awaitChunks(3));
+        streamer.acknowledge(3);
+        streamer.acknowledge(2);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(4, listener.size());
+    }
+
+    @Test
+    public void interrupting_a_paused_stream_cancels_it() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        final ResponseStreamer streamer = new ResponseStreamer("cancelled", 1, 60000, 1, listener);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    streamer.stream(stream("abc"), null, false);
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            }
+        };
+        reader.start();
+
+        assertTrue(listener.awaitChunks(1));
+        reader.interrupt();
+        reader.join(5000);
+
+        assertTrue(failure.get() instanceof RequestCancelledException);
+        assertEquals(1, listener.size());
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(UTF_8));
+    }
+
+    private static class RecordingListener implements ResponseStreamer.Listener {
+
+        final List<JSObject> chunks = new ArrayList<>();
+
+        @Override
+        public synchronized void onChunk(JSObject chunk) {
+            chunks.add(chunk);
+            notifyAll();
+        }
+
+        synchronized int size() {
+            return chunks.size();
+        }
+
+        synchronized boolean awaitChunks(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (chunks.size() < count) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+    }
+}
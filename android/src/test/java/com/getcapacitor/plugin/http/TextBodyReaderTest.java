@@ -0,0 +1,70 @@
+package com.getcapacitor.plugin.http;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+public class TextBodyReaderTest {
+
+    @Test
+    public void keeps_line_endings_and_trailing_newline() throws IOException {
+        String body = "first\r\nsecond\nthird\n";
+
+        assertEquals(body, read(body.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void uses_declared_charset() throws IOException {
+        byte[] latin1 = "caf\u00E9".getBytes(StandardCharsets.ISO_8859_1);
+        Charset charset = TextBodyReader.charsetOf("text/plain; Charset=\"ISO-8859-1\"");
+
+        assertEquals("caf\u00E9", read(latin1, charset));
+        assertEquals(StandardCharsets.UTF_8, TextBodyReader.charsetOf("text/plain; charset=no-such-charset"));
+        assertEquals(StandardCharsets.UTF_8, TextBodyReader.charsetOf(null));
+    }
+
+    @Test
+    public void byte_order_mark_overrides_declared_charset() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(0xFF);
+        body.write(0xFE);
+        body.write("h\u00E9llo".getBytes(StandardCharsets.UTF_16LE));
+
+        assertEquals("h\u00E9llo", read(body.toByteArray(), StandardCharsets.ISO_8859_1));
+    }
+
+    @Test
+    public void decodes_characters_split_across_reads() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < BufferPool.BUFFER_SIZE; i++) {
+            text.append(i % 3 == 0 ? "\u263A" : "a\u00E9");
+        }
+        final byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        // hand the bytes out in odd-sized pieces so multi-byte sequences straddle reads
+        InputStream trickle = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1021));
+            }
+        };
+
+        assertEquals(text.toString(), TextBodyReader.readFully(trickle, StandardCharsets.UTF_8, bytes.length));
+    }
+
+    @Test
+    public void replaces_malformed_input() throws IOException {
+        byte[] body = { 'o', 'k', (byte) 0xC3 };
+
+        assertEquals("ok\uFFFD", read(body, StandardCharsets.UTF_8));
+    }
+
+    private static String read(byte[] body, Charset charset) throws IOException {
+        return TextBodyReader.readFully(new ByteArrayInputStream(body), charset, body.length);
+    }
+}
@@ -1,7 +1,7 @@
 import type { PluginListenerHandle } from '@capacitor/core';
 import { Directory } from '@capacitor/filesystem';
 
-type HttpResponseType = 'arraybuffer' | 'blob' | 'json' | 'text' | 'document';
+type HttpResponseType = 'arraybuffer' | 'blob' | 'json' | 'text' | 'document' | 'file';
 
 export interface HttpPlugin {
   request(options: HttpOptions): Promise<HttpResponse>;
@@ -10,6 +10,7 @@ export interface HttpPlugin {
   put(options: HttpOptions): Promise<HttpResponse>;
   patch(options: HttpOptions): Promise<HttpResponse>;
   del(options: HttpOptions): Promise<HttpResponse>;
+  requestBatch(options: HttpBatchOptions): Promise<HttpBatchResult>;
 
   setCookie(options: HttpSetCookieOptions): Promise<void>;
   getCookie(options: HttpSingleCookieOptions): Promise<HttpCookie>;
@@ -19,6 +20,32 @@ export interface HttpPlugin {
   clearAllCookies(): Promise<void>;
   deleteCookie(options: HttpSingleCookieOptions): Promise<void>;
 
+  getStats(): Promise<HttpStats>;
+
+  cancel(options: HttpCancelOptions): Promise<HttpCancelResult>;
+  cancelAll(options?: HttpCancelAllOptions): Promise<HttpCancelResult>;
+  getActiveRequests(): Promise<HttpActiveRequestsResult>;
+  ackChunk(options: HttpAckChunkOptions): Promise<void>;
+  invalidateCache(
+    options: HttpInvalidateCacheOptions,
+  ): Promise<HttpInvalidateCacheResult>;
+  getOutbox(): Promise<HttpOutboxResult>;
+  replayOutbox(): Promise<void>;
+
+  enqueueDownload(
+    options: HttpDownloadFileOptions,
+  ): Promise<HttpEnqueueDownloadResult>;
+  getDownloads(): Promise<HttpDownloadsResult>;
+  pauseDownload(
+    options: HttpDownloadIdOptions,
+  ): Promise<{ paused: boolean }>;
+  resumeDownload(
+    options: HttpDownloadIdOptions,
+  ): Promise<{ resumed: boolean }>;
+  removeDownload(
+    options: HttpDownloadIdOptions,
+  ): Promise<{ removed: boolean }>;
+
   uploadFile(options: HttpUploadFileOptions): Promise<HttpUploadFileResult>;
   downloadFile(
     options: HttpDownloadFileOptions,
@@ -29,6 +56,26 @@ export interface HttpPlugin {
     listenerFunc: HttpProgressListener,
   ): Promise<PluginListenerHandle> & PluginListenerHandle;
 
+  addListener(
+    eventName: 'batchItem',
+    listenerFunc: HttpBatchItemListener,
+  ): Promise<PluginListenerHandle> & PluginListenerHandle;
+
+  addListener(
+    eventName: 'responseChunk',
+    listenerFunc: HttpResponseChunkListener,
+  ): Promise<PluginListenerHandle> & PluginListenerHandle;
+
+  addListener(
+    eventName: 'outboxEntry',
+    listenerFunc: HttpOutboxEntryListener,
+  ): Promise<PluginListenerHandle> & PluginListenerHandle;
+
+  addListener(
+    eventName: 'downloadTransfer',
+    listenerFunc: HttpDownloadTransferListener,
+  ): Promise<PluginListenerHandle> & PluginListenerHandle;
+
   removeAllListeners(): Promise<void>;
 }
 
@@ -58,13 +105,175 @@ export interface HttpOptions {
   /**
    * This is used to parse the response appropriately before returning it to
    * the requestee. If the response content-type is "json", this value is ignored.
+   * `file` writes the body to a file in the cache directory and returns its
+   * path instead. (`file` is Android only)
    */
   responseType?: HttpResponseType;
+  /**
+   * Write bodies longer than this many bytes to a file in the cache directory,
+   * as with the `file` response type, instead of returning them in memory.
+   * Defaults to the `spillThreshold` plugin config value. (Android only)
+   */
+  spillThreshold?: number;
   /**
    * Use this option if you need to keep the URL unencoded in certain cases
    * (already encoded, azure/firebase testing, etc.). The default is _true_.
    */
   shouldEncodeUrlParams?: boolean;
+  /**
+   * Requests waiting for a free slot are started in order of priority,
+   * highest first. The default is _0_. (Android only)
+   */
+  priority?: number;
+  /**
+   * Send the request over a shared, multiplexed HTTP/2 connection. Falls back
+   * to HTTP/1.1 when the server or device doesn't support it. Defaults to the
+   * `http2` plugin config value. (Android only)
+   */
+  http2?: boolean;
+  /**
+   * The engine the request is sent with: `urlconnection`, `http2`, `nio`, or
+   * any engine registered natively. Engines that can't serve a URL fall back
+   * to `urlconnection`. Takes precedence over `http2`. Defaults to the
+   * `transport` plugin config value. (Android only)
+   */
+  transport?: string;
+  /**
+   * Identifies the request so it can be cancelled with `cancel`. Must be
+   * unique among requests in flight; one is generated when omitted.
+   * (Android only)
+   */
+  requestId?: string;
+  /**
+   * Groups requests so they can be cancelled together with `cancelAll`.
+   * (Android only)
+   */
+  tag?: string;
+  /**
+   * Share the response of an identical GET request already in flight instead
+   * of sending another one. Requests are identical when their URL, params,
+   * response type, transport and the headers listed in the `coalesceHeaders`
+   * plugin config match. Defaults to the `coalesceRequests` plugin config
+   * value. (Android only)
+   */
+  coalesce?: boolean;
+  /**
+   * Deliver the body as `responseChunk` events while it is read instead of in
+   * the response, which then has an empty `data`. Chunks are text, or Base64
+   * for the `arraybuffer` and `blob` response types. Error bodies are returned
+   * as usual. (Android only)
+   */
+  stream?: boolean;
+  /**
+   * Size of a streamed chunk, in characters for text and bytes for Base64.
+   * The default is _16384_. (Android only)
+   */
+  streamChunkSize?: number;
+  /**
+   * How long, in milliseconds, a streamed chunk may be held back waiting to
+   * fill up before it is emitted. The default is _100_. (Android only)
+   */
+  streamWindow?: number;
+  /**
+   * How many streamed chunks may be emitted before they are acknowledged with
+   * `ackChunk`; reading from the network pauses until they are. The default
+   * is _0_, which never waits. (Android only)
+   */
+  streamMaxPending?: number;
+  /**
+   * Compress JSON, form and text request bodies with this coding as they are
+   * sent, setting `Content-Encoding`. `zstd` requires the app to include
+   * `com.github.luben:zstd-jni`; bodies are sent uncompressed when the coding
+   * isn't available. (Android only)
+   */
+  requestCompression?: 'gzip' | 'zstd';
+  /**
+   * Bodies shorter than this many bytes are sent uncompressed. The default is
+   * _1024_. (Android only)
+   */
+  requestCompressionThreshold?: number;
+  /**
+   * How the HTTP cache is used for GET requests, as with the `cache` option
+   * of `fetch`, which it is passed to on the web. On Android it is ignored
+   * unless the `cacheSize` plugin config value is set. The default is
+   * _'default'_.
+   */
+  cache?: HttpCacheMode;
+  /**
+   * Keep the response of this GET request in memory for this many
+   * milliseconds, returning it without reading or parsing the body again.
+   * Ignored unless the `memoryCacheSize` plugin config value is set.
+   * (Android only)
+   */
+  maxAge?: number;
+  /**
+   * For this many milliseconds after `maxAge`, keep returning the response
+   * from memory while it is fetched again in the background. (Android only)
+   */
+  staleWhileRevalidate?: number;
+  /**
+   * If a POST, PUT, PATCH or DELETE request can't connect to the server,
+   * keep it in the outbox and send it again once the network is back,
+   * instead of failing. A request that fails after it was sent isn't kept,
+   * since the server may have processed it. The request then resolves with `status` _0_ and a `queueId`,
+   * and its progress is reported with `outboxEntry` events. (Android only)
+   */
+  queueWhenOffline?: boolean;
+}
+
+export type HttpCacheMode =
+  | 'default'
+  | 'no-store'
+  | 'reload'
+  | 'no-cache'
+  | 'force-cache'
+  | 'only-if-cached';
+
+export interface HttpBatchOptions {
+  requests: HttpOptions[];
+  /**
+   * Reported with the result and every `batchItem` event. Generated when omitted.
+   */
+  batchId?: string;
+  /**
+   * Tag given to requests that don't have one, so the whole batch can be
+   * cancelled with `cancelAll`. (Android only)
+   */
+  tag?: string;
+  /**
+   * Maximum number of requests of the batch in flight at once. The default is _6_.
+   */
+  concurrency?: number;
+  /**
+   * Emit a `batchItem` event as each request settles instead of returning
+   * every result when the batch completes
+   */
+  emitEvents?: boolean;
+}
+
+export interface HttpBatchItem {
+  batchId: string;
+  /**
+   * Position of the request in `requests`
+   */
+  index: number;
+  ok: boolean;
+  response?: HttpResponse;
+  error?: {
+    message: string;
+    code?: string;
+  };
+}
+
+export interface HttpBatchResult {
+  batchId: string;
+  total: number;
+  succeeded: number;
+  failed: number;
+  /**
+   * The outcome of each request, in request order. Omitted when `emitEvents` is set.
+   */
+  results?: HttpBatchItem[];
 }
 
 export interface HttpParams {
@@ -80,6 +289,172 @@ export interface HttpResponse {
   status: number;
   headers: HttpHeaders;
   url: string;
+  /**
+   * Set when the body was written to a file, in which case `data` holds its
+   * path. (Android only)
+   */
+  file?: HttpResponseFile;
+  /**
+   * Set when the body was delivered as `responseChunk` events. (Android only)
+   */
+  stream?: HttpResponseStreamInfo;
+  /**
+   * Set when the body was compressed and decoded natively. (Android only)
+   */
+  encoding?: HttpResponseEncoding;
+  /**
+   * How the HTTP cache answered the request: `hit` without going to the
+   * network, `revalidated` after the server confirmed the stored response
+   * with 304, or `miss`. `memory` and `stale` are returned from the memory
+   * cache, `stale` while it is being refreshed. Omitted when no cache was
+   * used. (Android only)
+   */
+  cache?: 'hit' | 'miss' | 'revalidated' | 'memory' | 'stale';
+  /**
+   * Set when the request was kept in the outbox to be sent later, in which
+   * case `status` is _0_. (Android only)
+   */
+  queueId?: string;
+}
+
+export interface HttpResponseEncoding {
+  /**
+   * The codings the body was decoded from, as sent in Content-Encoding
+   */
+  contentEncoding: string;
+  /**
+   * Bytes of the body received over the network
+   */
+  compressedBytes: number;
+  /**
+   * Bytes the body decoded to
+   */
+  decompressedBytes: number;
+}
+
+export interface HttpResponseStreamInfo {
+  /**
+   * Number of chunks emitted
+   */
+  chunks: number;
+  /**
+   * Length of the body in bytes
+   */
+  size: number;
+}
+
+export interface HttpResponseChunk {
+  requestId: string;
+  /**
+   * Position of the chunk in the body, starting at 0
+   */
+  index: number;
+  encoding: 'text' | 'base64';
+  data: string;
+}
+
+export interface HttpAckChunkOptions {
+  requestId: string;
+  /**
+   * Acknowledges this chunk and every chunk before it
+   */
+  index: number;
+}
+
+export interface HttpInvalidateCacheOptions {
+  /**
+   * Responses to URLs starting with this are dropped
+   */
+  urlPrefix: string;
+}
+
+export interface HttpInvalidateCacheResult {
+  /**
+   * Responses dropped from the memory cache and from the HTTP cache
+   */
+  memory: number;
+  disk: number;
+}
+
+export interface HttpOutboxEntry {
+  /**
+   * The `queueId` the request resolved with, also sent as its
+   * `Idempotency-Key` header, from the first attempt on, unless it had one
+   */
+  id: string;
+  method: string;
+  url: string;
+  /**
+   * How many times sending it has failed
+   */
+  attempts: number;
+  createdAt: number;
+}
+
+export interface HttpOutboxResult {
+  /**
+   * The requests waiting to be sent, oldest first
+   */
+  entries: HttpOutboxEntry[];
+}
+
+export interface HttpOutboxEntryEvent extends HttpOutboxEntry {
+  /**
+   * `retrying` entries are sent again with the next replay; `sent` and
+   * `failed` entries have left the outbox
+   */
+  status: 'queued' | 'sending' | 'sent' | 'retrying' | 'failed';
+  response?: HttpResponse;
+  error?: string;
+}
+
+export interface HttpEnqueueDownloadResult {
+  /**
+   * The ID of the transfer
+   */
+  id: string;
+}
+
+export interface HttpDownloadIdOptions {
+  id: string;
+}
+
+export interface HttpDownloadTransfer {
+  id: string;
+  url: string;
+  filePath: string;
+  /**
+   * `completed` and `failed` transfers stay listed until they are removed
+   */
+  status: 'pending' | 'active' | 'paused' | 'completed' | 'failed';
+  bytes: number;
+  contentLength: number;
+  createdAt: number;
+  /**
+   * Absolute path of the downloaded file, once completed
+   */
+  path?: string;
+  error?: string;
+}
+
+export interface HttpDownloadsResult {
+  /**
+   * Every transfer, in the order they were queued
+   */
+  transfers: HttpDownloadTransfer[];
+}
+
+export interface HttpResponseFile {
+  /**
+   * Absolute path of the file holding the body. The file is not deleted by
+   * the plugin; remove it once it has been read.
+   */
+  path: string;
+  /**
+   * Length of the body in bytes
+   */
+  size: number;
+  contentType?: string;
 }
 
 export interface HttpDownloadFileOptions extends HttpOptions {
@@ -96,11 +471,59 @@ export interface HttpDownloadFileOptions extends HttpOptions {
   /**
    * Optionally, the switch that enables notifying listeners about downloaded progress
    *
-   * If this option is used, progress event should be dispatched on every chunk received
+   * If this option is used, progress events are dispatched as the file is received, at most
+   * one per `progressMinBytes` and `progressInterval`, plus one when the download completes
    */
   progress?: Boolean;
+  /**
+   * How many bytes must be received between two progress events. Defaults to 65536. (Android only)
+   */
+  progressMinBytes?: number;
+  /**
+   * How many milliseconds must pass between two progress events. Defaults to 100. (Android only)
+   */
+  progressInterval?: number;
+  /**
+   * Whether to keep what was received when the download fails, and continue from there the
+   * next time the same URL is downloaded to the same file. Only GET downloads whose response
+   * carries an ETag or Last-Modified header can be resumed. (Android only)
+   */
+  resume?: boolean;
+  /**
+   * The maximum number of connections to receive the file over at once. Files of at least 2 MB
+   * from servers that accept byte ranges are split into segments of at least 1 MB, fetched in
+   * parallel and written at their offsets; connections that finish early take over part of the
+   * slower ones' segments. Defaults to 1. (Android only)
+   */
+  segments?: number;
+  /**
+   * How many bytes are gathered from the connection before they are written to the file.
+   * Defaults to 262144; values below 8192 are raised to it. (Android only)
+   */
+  bufferSize?: number;
+  /**
+   * Hashes to compute while the file is downloaded, returned in `hashes`. (Android only)
+   */
+  hashAlgorithms?: HttpHashAlgorithm[];
+  /**
+   * The hash the downloaded file must have, as `algorithm:hex` or plain hex for SHA-256. A file
+   * that doesn't match is discarded and the download fails. (Android only)
+   */
+  expectedHash?: string;
+  /**
+   * Whether to ask the server if the file changed since it was last downloaded from the same
+   * URL, and leave it as it is if it didn't. Defaults to true for GET downloads. (Android only)
+   */
+  skipUnchanged?: boolean;
+  /**
+   * Unpacks the downloaded archive into the directory at `filePath` as it is received, instead
+   * of storing it. Progress events are sent for every entry unpacked. (Android only)
+   */
+  extract?: HttpArchiveFormat;
 }
 
+export type HttpArchiveFormat = 'zip' | 'tar.gz';
+
 export interface HttpUploadFileOptions extends HttpOptions {
   /**
    * The URL to upload the file to
@@ -124,6 +547,10 @@ export interface HttpUploadFileOptions extends HttpOptions {
    * If this option is used, filePath can be a relative path rather than absolute
    */
   fileDirectory?: Directory;
+  /**
+   * Hashes to compute while the file is sent, returned in `hashes`. (Android only)
+   */
+  hashAlgorithms?: HttpHashAlgorithm[];
 }
 
 export interface HttpCookie {
@@ -170,9 +597,288 @@ export interface HttpGetCookiesResult {
 export interface HttpDownloadFileResult {
   path?: string;
   blob?: Blob;
+  /**
+   * Whether the file was downloaded, rather than left as it was because it hadn't changed on
+   * the server (Android only)
+   */
+  transferred?: boolean;
+  /**
+   * How many entries were unpacked, with `extract` (Android only)
+   */
+  entries?: number;
+  /**
+   * The hashes of the file asked for with `hashAlgorithms` or `expectedHash`, in lowercase hex
+   */
+  hashes?: HttpHashes;
+}
+
+export interface HttpUploadFileResult extends HttpResponse {
+  /**
+   * The hashes of the file asked for with `hashAlgorithms`, in lowercase hex
+   */
+  hashes?: HttpHashes;
+}
+
+export type HttpHashAlgorithm = 'sha256' | 'md5' | 'crc32c';
+
+export type HttpHashes = { [algorithm in HttpHashAlgorithm]?: string };
+
+export interface HttpDispatcherStats {
+  maxRequests: number;
+  maxRequestsPerHost: number;
+  /**
+   * Requests waiting for a free slot
+   */
+  queued: number;
+  running: number;
+  started: number;
+  completed: number;
+  /**
+   * Average time a request spent queued before it started
+   */
+  averageWaitMs: number;
+  maxWaitMs: number;
+  lastWaitMs: number;
+  oldestQueuedWaitMs: number;
 }
 
-export interface HttpUploadFileResult extends HttpResponse {}
+export interface HttpConnectionPoolStats {
+  keepAlive: boolean;
+  /**
+   * The size of the platform's idle connection pool, shared by all hosts
+   */
+  maxIdleConnections: number;
+  keepAliveDuration: number;
+  /**
+   * Connections currently leased by a request
+   */
+  active: number;
+  /**
+   * Connections kept alive for reuse. HttpURLConnection doesn't report socket reuse, so this and
+   * the counts below are estimated from the connections released as reusable.
+   */
+  estimatedIdle: number;
+  /**
+   * Requests estimated to have reused an idle connection
+   */
+  estimatedHits: number;
+  /**
+   * Requests estimated to have opened a new connection
+   */
+  estimatedMisses: number;
+  /**
+   * Idle connections estimated to have been dropped because they expired or the pool was full
+   */
+  estimatedEvictions: number;
+}
+
+export interface HttpHttp2Stats {
+  /**
+   * Open HTTP/2 connections
+   */
+  connections: number;
+  /**
+   * Streams currently open across all connections
+   */
+  activeStreams: number;
+  connectionsOpened: number;
+  streamsOpened: number;
+  /**
+   * Streams opened while another stream was active on the same connection
+   */
+  multiplexedStreams: number;
+  /**
+   * Connections that fell back to HTTP/1.1 because h2 wasn't negotiated
+   */
+  fallbacks: number;
+}
+
+export interface HttpNioStats {
+  /**
+   * Connections kept alive for reuse
+   */
+  idle: number;
+  connectionsOpened: number;
+  connectionsReused: number;
+  /**
+   * Requests handed to `urlconnection` because the URL wasn't cleartext HTTP
+   */
+  fallbacks: number;
+}
+
+export interface HttpRequestRegistryStats {
+  /**
+   * Requests queued or running
+   */
+  active: number;
+  registered: number;
+  cancelled: number;
+  completed: number;
+}
+
+export interface HttpCoalescerStats {
+  /**
+   * Whether requests are coalesced unless they opt out
+   */
+  enabled: boolean;
+  /**
+   * Exchanges currently shared by identical requests
+   */
+  inFlight: number;
+  /**
+   * Requests currently waiting for another request's response
+   */
+  waiting: number;
+  /**
+   * Coalescable requests that went to the network
+   */
+  leaders: number;
+  /**
+   * Requests that were served by another request's exchange
+   */
+  coalesced: number;
+  /**
+   * Waiting requests that were cancelled before the shared exchange finished
+   */
+  detached: number;
+  /**
+   * Waiting requests that were sent in place of a cancelled request
+   */
+  promoted: number;
+}
+
+export interface HttpCompressionStats {
+  /**
+   * Content codings advertised in Accept-Encoding and decoded natively
+   */
+  supported: string[];
+  /**
+   * Compressed responses read so far
+   */
+  responses: number;
+  compressedBytes: number;
+  decompressedBytes: number;
+}
+
+export interface HttpCacheStats {
+  enabled: boolean;
+  /**
+   * Bytes stored, and the most that may be
+   */
+  size: number;
+  maxSize: number;
+  entries: number;
+  /**
+   * GET requests the cache was consulted for
+   */
+  requests: number;
+  hits: number;
+  misses: number;
+  /**
+   * Conditional requests sent for stale responses, and how many were answered with 304
+   */
+  revalidations: number;
+  notModified: number;
+  stores: number;
+  evictions: number;
+  invalidations: number;
+}
+
+export interface HttpMemoryCacheStats {
+  enabled: boolean;
+  /**
+   * Approximate bytes taken by the kept responses, and the most they may take
+   */
+  size: number;
+  maxSize: number;
+  entries: number;
+  hits: number;
+  /**
+   * Stale responses returned while they were refreshed
+   */
+  staleHits: number;
+  misses: number;
+  refreshes: number;
+  evictions: number;
+  invalidations: number;
+}
+
+export interface HttpOutboxStats {
+  /**
+   * Requests in the outbox, and how many of them are being sent
+   */
+  pending: number;
+  inFlight: number;
+  replaying: boolean;
+  queued: number;
+  sent: number;
+  retried: number;
+  failed: number;
+}
+
+export interface HttpDownloadManagerStats {
+  /**
+   * Transfers listed, and how many of them are waiting or running
+   */
+  transfers: number;
+  pending: number;
+  active: number;
+  enqueued: number;
+  completed: number;
+  failed: number;
+}
+
+export interface HttpStats {
+  /**
+   * The engine used by requests that don't select one
+   */
+  transport: string;
+  dispatcher: HttpDispatcherStats;
+  requests: HttpRequestRegistryStats;
+  coalescer: HttpCoalescerStats;
+  compression: HttpCompressionStats;
+  cache: HttpCacheStats;
+  memoryCache: HttpMemoryCacheStats;
+  outbox: HttpOutboxStats;
+  downloads: HttpDownloadManagerStats;
+  connectionPool: HttpConnectionPoolStats;
+  http2: HttpHttp2Stats;
+  nio: HttpNioStats;
+}
+
+export interface HttpCancelOptions {
+  requestId: string;
+}
+
+export interface HttpCancelAllOptions {
+  /**
+   * Only cancel requests with this tag. All requests are cancelled when omitted.
+   */
+  tag?: string;
+}
+
+export interface HttpCancelResult {
+  /**
+   * Whether the request was in flight, or how many requests were cancelled
+   */
+  cancelled: boolean | number;
+}
+
+export interface HttpActiveRequest {
+  requestId: string;
+  tag?: string;
+  type: 'request' | 'download' | 'upload';
+  url: string;
+  state: 'queued' | 'running';
+  elapsedMs: number;
+}
+
+export interface HttpActiveRequestsResult {
+  count: number;
+  running: number;
+  queued: number;
+  requests: HttpActiveRequest[];
+}
 
 export type ProgressType = 'DOWNLOAD' | 'UPLOAD';
 
@@ -181,6 +887,24 @@ export interface ProgressStatus {
   url: string;
   bytes: number;
   contentLength: number;
+  /**
+   * With `extract`, the name of the entry just unpacked
+   */
+  entry?: string;
+  /**
+   * With `extract`, how many entries have been unpacked so far
+   */
+  entries?: number;
 }
 
 export type HttpProgressListener = (progress: ProgressStatus) => void;
+
+export type HttpBatchItemListener = (item: HttpBatchItem) => void;
+
+export type HttpResponseChunkListener = (chunk: HttpResponseChunk) => void;
+
+export type HttpOutboxEntryListener = (event: HttpOutboxEntryEvent) => void;
+
+export type HttpDownloadTransferListener = (
+  event: HttpDownloadTransfer,
+) => void;
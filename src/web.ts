@@ -12,6 +12,21 @@ import type {
   HttpSetCookieOptions,
   HttpMultiCookiesOptions,
   HttpSingleCookieOptions,
+  HttpStats,
+  HttpCancelOptions,
+  HttpCancelAllOptions,
+  HttpCancelResult,
+  HttpActiveRequestsResult,
+  HttpAckChunkOptions,
+  HttpInvalidateCacheOptions,
+  HttpInvalidateCacheResult,
+  HttpOutboxResult,
+  HttpEnqueueDownloadResult,
+  HttpDownloadsResult,
+  HttpDownloadIdOptions,
+  HttpBatchOptions,
+  HttpBatchItem,
+  HttpBatchResult,
   ProgressStatus,
 } from './definitions';
 import { WebPlugin } from '@capacitor/core';
@@ -30,6 +45,50 @@ export class HttpWeb extends WebPlugin implements HttpPlugin {
   public request = async (options: HttpOptions): Promise<HttpResponse> =>
     Request.request(options);
 
+  /**
+   * Perform several Http requests, keeping at most `concurrency` of them in flight
+   * @param options The requests and how to run them
+   */
+  public requestBatch = async (
+    options: HttpBatchOptions,
+  ): Promise<HttpBatchResult> => {
+    const batchId = options.batchId || `batch-${Date.now()}`;
+    const concurrency = Math.max(1, options.concurrency || 6);
+    const results: HttpBatchItem[] = new Array(options.requests.length);
+    let next = 0;
+
+    const worker = async () => {
+      while (next < options.requests.length) {
+        const index = next++;
+        let item: HttpBatchItem;
+        try {
+          const response = await Request.request(options.requests[index]);
+          item = { batchId, index, ok: true, response };
+        } catch (e) {
+          item = { batchId, index, ok: false, error: { message: `${e}` } };
+        }
+        results[index] = item;
+        if (options.emitEvents) {
+          this.notifyListeners('batchItem', item);
+        }
+      }
+    };
+    const workers = [];
+    for (let i = 0; i < concurrency; i++) {
+      workers.push(worker());
+    }
+    await Promise.all(workers);
+
+    const succeeded = results.filter(item => item.ok).length;
+    return {
+      batchId,
+      total: results.length,
+      succeeded,
+      failed: results.length - succeeded,
+      results: options.emitEvents ? undefined : results,
+    };
+  };
+
   /**
    * Perform an Http GET request given a set of options
    * @param options Options to build the HTTP request
@@ -135,6 +194,121 @@ export class HttpWeb extends WebPlugin implements HttpPlugin {
    */
   public clearAllCookies = async (): Promise<void> => Cookie.clearCookies();
 
+  /**
+   * Gets the native request scheduling statistics
+   */
+  public getStats = async (): Promise<HttpStats> => {
+    throw this.unimplemented('Not implemented on web.');
+  };
+
+  /**
+   * Cancels an in-flight native request
+   */
+  public cancel = async (
+    // @ts-ignore
+    options: HttpCancelOptions,
+  ): Promise<HttpCancelResult> => {
+    throw this.unimplemented('Not implemented on web.');
+  };
+
+  /**
+   * Cancels every in-flight native request, or those with a tag
+   */
+  public cancelAll = async (
+    // @ts-ignore
+    options?: HttpCancelAllOptions,
+  ): Promise<HttpCancelResult> => {
+    throw this.unimplemented('Not implemented on web.');
+  };
+
+  /**
+   * Lists the native requests that are queued or running
+   */
+  public getActiveRequests = async (): Promise<HttpActiveRequestsResult> => {
+    throw this.unimplemented('Not implemented on web.');
+  };
+
+  /**
+   * Acknowledges streamed response chunks, letting a paused native stream go on
+   */
+  public ackChunk = async (
+    // @ts-ignore
+    options: HttpAckChunkOptions,
+  ): Promise<void> => {
+    throw this.unimplemented('Not implemented on web.');
+  };
+
+  /**
+   * Drops cached native responses by URL prefix
+   */
+  public invalidateCache = async (
+    // @ts-ignore
+    options: HttpInvalidateCacheOptions,
+  ): Promise<HttpInvalidateCacheResult> => {
+    throw this.unimplemented('Not implemented on web.');
+  };
+
+  /**
+   * Lists the native requests waiting in the outbox
+   */
+  public getOutbox = async (): Promise<HttpOutboxResult> => {
+    throw this.unimplemented('Not implemented on web.');
+  };
+
+  /**
+   * Sends the native requests waiting in the outbox
+   */
+  public replayOutbox = async (): Promise<void> => {
+    throw this.unimplemented('Not implemented on web.');
+  };
+
+  /**
+   * Queues a native background download
+   */
+  public enqueueDownload = async (
+    // @ts-ignore
+    options: HttpDownloadFileOptions,
+  ): Promise<HttpEnqueueDownloadResult> => {
+    throw this.unimplemented('Not implemented on web.');
+  };
+
+  /**
+   * Lists the native background downloads
+   */
+  public getDownloads = async (): Promise<HttpDownloadsResult> => {
+    throw this.unimplemented('Not implemented on web.');
+  };
+
+  /**
+   * Pauses a native background download
+   */
+  public pauseDownload = async (
+    // @ts-ignore
+    options: HttpDownloadIdOptions,
+  ): Promise<{ paused: boolean }> => {
+    throw this.unimplemented('Not implemented on web.');
+  };
+
+  /**
+   * Resumes a paused or failed native background download
+   */
+  public resumeDownload = async (
+    // @ts-ignore
+    options: HttpDownloadIdOptions,
+  ): Promise<{ resumed: boolean }> => {
+    throw this.unimplemented('Not implemented on web.');
+  };
+
+  /**
+   * Removes a native background download
+   */
+  public removeDownload = async (
+    // @ts-ignore
+    options: HttpDownloadIdOptions,
+  ): Promise<{ removed: boolean }> => {
+    throw this.unimplemented('Not implemented on web.');
+  };
+
   /**
    * Uploads a file through a POST request
    * @param options TODO